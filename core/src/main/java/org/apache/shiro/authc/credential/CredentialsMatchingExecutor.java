@@ -0,0 +1,529 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authc.credential;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.HostAuthenticationToken;
+import org.apache.shiro.util.Destroyable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs expensive credentials matches, such as verifying passwords hashed with many iterations, on a bounded number of
+ * dedicated threads, so that a burst of login attempts cannot occupy every request thread of the application.
+ * {@link HashedCredentialsMatcher} and {@link PasswordMatcher} use an instance when it is set as their
+ * {@code matchingExecutor} property.
+ * <h2>Admission Control</h2>
+ * A match is rejected immediately with a {@link CredentialsMatchingRejectedException}, instead of being queued, if
+ * <ul>
+ * <li>{@link #setMaxQueueSize(int) maxQueueSize} matches are already waiting for a thread,</li>
+ * <li>{@link #setMaxPendingPerSource(int) maxPendingPerSource} matches submitted from the same source are already
+ * waiting or running, or</li>
+ * <li>the expected wait, estimated from the number of waiting matches and the average duration of recent matches,
+ * exceeds {@link #setMaxWaitTime(long) maxWaitTime}.</li>
+ * </ul>
+ * A match that is admitted but has not started after {@code maxWaitTime} milliseconds is withdrawn and rejected as
+ * well.  Rejected attempts never verify the credentials, so they do not count as failed attempts.
+ * <h2>Fairness</h2>
+ * Waiting matches are queued per source - the {@link HostAuthenticationToken#getHost() host} of the submitted token -
+ * and sources take turns, so a single client flooding the application with login attempts only delays its own
+ * attempts.  Tokens without a host share a single source.
+ * <h2>Threads</h2>
+ * Matches run on the configured {@link #setExecutor(Executor) executor}, or on an internal pool of
+ * {@link #setThreads(int) threads} daemon threads that is created when first needed and shut down by
+ * {@link #destroy()}.  The calling thread waits for the match to complete.
+ *
+ * @since 1.3
+ */
+public class CredentialsMatchingExecutor implements Destroyable {
+
+    private static final Logger log = LoggerFactory.getLogger(CredentialsMatchingExecutor.class);
+
+    /**
+     * Default maximum number of matches waiting for a thread.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+
+    /**
+     * Default maximum number of waiting or running matches per source.
+     */
+    public static final int DEFAULT_MAX_PENDING_PER_SOURCE = 10;
+
+    /**
+     * Default maximum time in milliseconds a match may wait for a thread.
+     */
+    public static final long DEFAULT_MAX_WAIT_TIME = 2000;
+
+    /**
+     * Source of matches for tokens without a host.
+     */
+    private static final String UNKNOWN_SOURCE = "";
+
+    private static final AtomicInteger instanceCount = new AtomicInteger();
+
+    private int threads;
+    private int maxQueueSize;
+    private int maxPendingPerSource;
+    private long maxWaitTime;
+    private Executor executor;
+    private ExecutorService defaultExecutor;
+
+    /**
+     * Waiting matches per source; guarded by {@code this.queues}, like all queue state.
+     */
+    private final Map<String, LinkedList<Match<?>>> queues = new HashMap<String, LinkedList<Match<?>>>();
+    /**
+     * Sources with waiting matches, in the order they take turns.
+     */
+    private final LinkedList<String> turns = new LinkedList<String>();
+    /**
+     * Number of waiting or running matches per source.
+     */
+    private final Map<String, Integer> pending = new HashMap<String, Integer>();
+    private int queueSize;
+    private double averageExecutionTime; //milliseconds, exponentially weighted
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public CredentialsMatchingExecutor() {
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        this.maxPendingPerSource = DEFAULT_MAX_PENDING_PER_SOURCE;
+        this.maxWaitTime = DEFAULT_MAX_WAIT_TIME;
+    }
+
+    /**
+     * Returns the number of threads of the internal pool used when no {@link #getExecutor() executor} is configured.
+     * It is also the assumed concurrency when estimating the expected wait of a match.  Defaults to the number of
+     * available processors.
+     *
+     * @return the number of threads running matches.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads of the internal pool used when no {@link #getExecutor() executor} is configured.  If
+     * an executor is configured, this should be the number of threads it runs matches on.
+     *
+     * @param threads the number of threads running matches.
+     * @throws IllegalArgumentException if {@code threads} is not positive.
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be greater than zero.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the maximum number of matches waiting for a thread; further matches are rejected.  Defaults to
+     * {@code 100}.
+     *
+     * @return the maximum number of matches waiting for a thread.
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Sets the maximum number of matches waiting for a thread; further matches are rejected.  A value of {@code 0}
+     * rejects all matches that cannot start immediately.
+     *
+     * @param maxQueueSize the maximum number of matches waiting for a thread.
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Returns the maximum number of waiting or running matches submitted from the same source; further matches from
+     * that source are rejected.  Defaults to {@code 10}.
+     *
+     * @return the maximum number of waiting or running matches per source.
+     */
+    public int getMaxPendingPerSource() {
+        return maxPendingPerSource;
+    }
+
+    /**
+     * Sets the maximum number of waiting or running matches submitted from the same source.  Keep in mind that many
+     * legitimate users may share a source, for example behind a proxy.
+     *
+     * @param maxPendingPerSource the maximum number of waiting or running matches per source.
+     */
+    public void setMaxPendingPerSource(int maxPendingPerSource) {
+        this.maxPendingPerSource = maxPendingPerSource;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a match may wait for a thread.  Defaults to {@code 2000}.
+     *
+     * @return the maximum time in milliseconds a match may wait for a thread.
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds a match may wait for a thread.  Matches expected to wait longer are
+     * rejected immediately; matches that did wait that long are withdrawn and rejected.
+     *
+     * @param maxWaitTime the maximum time in milliseconds a match may wait for a thread.
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * Returns the executor running matches, or {@code null} if an internal pool of {@link #getThreads() threads} is
+     * used.
+     *
+     * @return the executor running matches, or {@code null} if an internal pool is used.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor running matches.  The executor is not shut down by {@link #destroy()}.
+     *
+     * @param executor the executor running matches, or {@code null} to use an internal pool.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the number of matches currently waiting for a thread.
+     *
+     * @return the number of matches currently waiting for a thread.
+     */
+    public int getQueueSize() {
+        synchronized (this.queues) {
+            return this.queueSize;
+        }
+    }
+
+    /**
+     * Returns the number of matches currently running.
+     *
+     * @return the number of matches currently running.
+     */
+    public int getActiveCount() {
+        return this.activeCount.get();
+    }
+
+    /**
+     * Returns the number of matches that completed, successfully or not, since this instance was created.
+     *
+     * @return the number of matches that completed since this instance was created.
+     */
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * Returns the number of matches that were rejected since this instance was created.
+     *
+     * @return the number of matches that were rejected since this instance was created.
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Returns the average duration in milliseconds of recent matches, weighted towards the most recent ones.
+     *
+     * @return the average duration in milliseconds of recent matches.
+     */
+    public double getAverageExecutionTime() {
+        synchronized (this.queues) {
+            return this.averageExecutionTime;
+        }
+    }
+
+    /**
+     * Shuts down the internal thread pool, if it was created.
+     */
+    public void destroy() {
+        ExecutorService service;
+        synchronized (this.queues) {
+            service = this.defaultExecutor;
+            this.defaultExecutor = null;
+        }
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Returns the source of authentication attempts with the specified token: its
+     * {@link HostAuthenticationToken#getHost() host} if known, or a shared source otherwise.
+     *
+     * @param token the submitted authentication token
+     * @return the source of authentication attempts with the specified token.
+     */
+    protected String getSource(AuthenticationToken token) {
+        if (token instanceof HostAuthenticationToken) {
+            String host = ((HostAuthenticationToken) token).getHost();
+            if (host != null) {
+                return host;
+            }
+        }
+        return UNKNOWN_SOURCE;
+    }
+
+    /**
+     * Runs the specified credentials match for the specified token on a matching thread, waits for it to complete
+     * and returns its result.  Runtime exceptions thrown by the match are propagated as-is.
+     *
+     * @param token the submitted authentication token, used to determine the source of the attempt
+     * @param match the credentials match to run
+     * @param <V>   the result type of the match
+     * @return the result of the match
+     * @throws CredentialsMatchingRejectedException
+     *          if the match was rejected without being run.
+     */
+    public <V> V execute(AuthenticationToken token, Callable<V> match) throws CredentialsMatchingRejectedException {
+        return execute(getSource(token), match);
+    }
+
+    /**
+     * Runs the specified credentials match for the specified source on a matching thread, waits for it to complete
+     * and returns its result.  Runtime exceptions thrown by the match are propagated as-is.
+     *
+     * @param source the source of the authentication attempt, such as a client address, or {@code null} if unknown
+     * @param match  the credentials match to run
+     * @param <V>    the result type of the match
+     * @return the result of the match
+     * @throws CredentialsMatchingRejectedException
+     *          if the match was rejected without being run.
+     */
+    public <V> V execute(String source, final Callable<V> match) throws CredentialsMatchingRejectedException {
+        final String matchSource = source != null ? source : UNKNOWN_SOURCE;
+        Match<V> task = new Match<V>(matchSource, new Callable<V>() {
+            public V call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    return match.call();
+                } finally {
+                    //account before the result is visible to the caller:
+                    completed(matchSource, start);
+                }
+            }
+        });
+        admit(task);
+        try {
+            getRequiredExecutor().execute(new Runnable() {
+                public void run() {
+                    runNext();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            withdraw(task);
+            throw reject(task.source, "the executor rejected it", e);
+        }
+
+        try {
+            try {
+                return task.get(getMaxWaitTime(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (withdraw(task)) {
+                    throw reject(task.source, "it waited longer than " + getMaxWaitTime() + " ms", null);
+                }
+                //it already started, so wait for it to complete:
+                return task.get();
+            }
+        } catch (InterruptedException e) {
+            withdraw(task);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException("Interrupted while waiting for the credentials match.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AuthenticationException("Unable to match credentials.", cause);
+        }
+    }
+
+    private void admit(Match<?> task) {
+        String source = task.source;
+        String reason = null;
+        synchronized (this.queues) {
+            Integer sourcePending = this.pending.get(source);
+            int count = sourcePending != null ? sourcePending : 0;
+            //queued matches about to be taken by idle threads do not wait:
+            int waiting = this.queueSize - Math.max(0, getThreads() - this.activeCount.get());
+            if (count >= getMaxPendingPerSource()) {
+                reason = count + " matches from the same source are pending";
+            } else if (waiting >= getMaxQueueSize()) {
+                reason = this.queueSize + " matches are waiting";
+            } else if ((waiting + 1) * this.averageExecutionTime / getThreads() > getMaxWaitTime()) {
+                reason = "its expected wait exceeds " + getMaxWaitTime() + " ms";
+            } else {
+                LinkedList<Match<?>> queue = this.queues.get(source);
+                if (queue == null) {
+                    queue = new LinkedList<Match<?>>();
+                    this.queues.put(source, queue);
+                    this.turns.add(source);
+                }
+                queue.add(task);
+                this.queueSize++;
+                this.pending.put(source, count + 1);
+            }
+        }
+        if (reason != null) {
+            throw reject(source, reason, null);
+        }
+    }
+
+    private CredentialsMatchingRejectedException reject(String source, String reason, Throwable cause) {
+        this.rejectedCount.incrementAndGet();
+        String msg = "Credentials match from source [" + source + "] rejected because " + reason + ".";
+        log.debug(msg);
+        return new CredentialsMatchingRejectedException(msg, cause);
+    }
+
+    /**
+     * Removes the specified match from its queue if it has not started yet.
+     *
+     * @return {@code true} if the match was removed, {@code false} if it already started.
+     */
+    private boolean withdraw(Match<?> task) {
+        synchronized (this.queues) {
+            LinkedList<Match<?>> queue = this.queues.get(task.source);
+            if (queue == null || !queue.remove(task)) {
+                return false;
+            }
+            this.queueSize--;
+            if (queue.isEmpty()) {
+                this.queues.remove(task.source);
+                this.turns.remove(task.source);
+            }
+            release(task.source);
+            return true;
+        }
+    }
+
+    private void release(String source) {
+        int count = this.pending.get(source) - 1;
+        if (count > 0) {
+            this.pending.put(source, count);
+        } else {
+            this.pending.remove(source);
+        }
+    }
+
+    /**
+     * Runs the next waiting match in turn.  Called once for every admitted match; if matches were withdrawn in the
+     * meantime, there may be none left.
+     */
+    private void runNext() {
+        Match<?> task;
+        synchronized (this.queues) {
+            String source = this.turns.poll();
+            if (source == null) {
+                return;
+            }
+            LinkedList<Match<?>> queue = this.queues.get(source);
+            task = queue.removeFirst();
+            if (queue.isEmpty()) {
+                this.queues.remove(source);
+            } else {
+                //let other sources take their turn first:
+                this.turns.add(source);
+            }
+            this.queueSize--;
+            this.activeCount.incrementAndGet();
+        }
+
+        task.run();
+    }
+
+    private void completed(String source, long start) {
+        double duration = (System.nanoTime() - start) / 1000000d;
+        this.activeCount.decrementAndGet();
+        this.completedCount.incrementAndGet();
+        synchronized (this.queues) {
+            this.averageExecutionTime = this.averageExecutionTime == 0 ? duration :
+                    this.averageExecutionTime + (duration - this.averageExecutionTime) / 8;
+            release(source);
+        }
+    }
+
+    private Executor getRequiredExecutor() {
+        Executor configured = getExecutor();
+        if (configured != null) {
+            return configured;
+        }
+        synchronized (this.queues) {
+            if (this.defaultExecutor == null) {
+                final String threadName = "CredentialsMatchingExecutor-" + instanceCount.incrementAndGet() + "-";
+                this.defaultExecutor = Executors.newFixedThreadPool(getThreads(), new ThreadFactory() {
+                    private int threadCount;
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName + (++threadCount));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return this.defaultExecutor;
+        }
+    }
+
+    /**
+     * A submitted match, remembering its source.
+     */
+    private static final class Match<V> extends FutureTask<V> {
+
+        private final String source;
+
+        private Match(String source, Callable<V> callable) {
+            super(callable);
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authc.credential;
+
+import org.apache.shiro.authc.AuthenticationException;
+
+/**
+ * Exception thrown when a {@link CredentialsMatchingExecutor} rejects a credentials match because it is overloaded,
+ * either overall or by authentication attempts from the same source.  The submitted credentials were not verified,
+ * so the attempt may be retried later.
+ *
+ * @since 1.3
+ */
+public class CredentialsMatchingRejectedException extends AuthenticationException {
+
+    /**
+     * Creates a new CredentialsMatchingRejectedException.
+     */
+    public CredentialsMatchingRejectedException() {
+        super();
+    }
+
+    /**
+     * Constructs a new CredentialsMatchingRejectedException.
+     *
+     * @param message the reason for the exception
+     */
+    public CredentialsMatchingRejectedException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new CredentialsMatchingRejectedException.
+     *
+     * @param cause the underlying Throwable that caused this exception to be thrown.
+     */
+    public CredentialsMatchingRejectedException(Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * Constructs a new CredentialsMatchingRejectedException.
+     *
+     * @param message the reason for the exception
+     * @param cause   the underlying Throwable that caused this exception to be thrown.
+     */
+    public CredentialsMatchingRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
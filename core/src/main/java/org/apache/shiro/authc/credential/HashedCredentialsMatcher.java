@@ -28,6 +28,8 @@ import org.apache.shiro.crypto.hash.Hash;
 import org.apache.shiro.crypto.hash.SimpleHash;
 import org.apache.shiro.util.StringUtils;
 
+import java.util.concurrent.Callable;
+
 /**
  * A {@code HashedCredentialMatcher} provides support for hashing of supplied {@code AuthenticationToken} credentials
  * before being compared to those in the {@code AuthenticationInfo} from the data store.
@@ -105,6 +107,10 @@ import org.apache.shiro.util.StringUtils;
  * <a href="http://www.owasp.org/index.php/Hashing_Java#Hardening_against_the_attacker.27s_attack">
  * &quot;Hardening against the attacker's attack&quot;</a> section to learn more about why you might want to use
  * multiple hash iterations.
+ * <p/>
+ * Because many iterations make each match expensive, matches can be run on a bounded pool of dedicated threads with
+ * admission control by setting the {@link #setMatchingExecutor(CredentialsMatchingExecutor) matchingExecutor}
+ * property.
  * <h2>MD5 &amp; SHA-1 Notice</h2>
  * <a href="http://en.wikipedia.org/wiki/MD5">MD5</a> and
  * <a href="http://en.wikipedia.org/wiki/SHA_hash_functions">SHA-1</a> algorithms are now known to be vulnerable to
@@ -126,6 +132,7 @@ public class HashedCredentialsMatcher extends SimpleCredentialsMatcher {
     private int hashIterations;
     private boolean hashSalted;
     private boolean storedCredentialsHexEncoded;
+    private CredentialsMatchingExecutor matchingExecutor;
 
     /**
      * JavaBeans-compatibile no-arg constructor intended for use in IoC/Dependency Injection environments.  If you
@@ -296,6 +303,30 @@ public class HashedCredentialsMatcher extends SimpleCredentialsMatcher {
         }
     }
 
+    /**
+     * Returns the executor running credentials matches, or {@code null} if matches run on the calling thread (the
+     * default).
+     *
+     * @return the executor running credentials matches, or {@code null} if matches run on the calling thread.
+     * @since 1.3
+     */
+    public CredentialsMatchingExecutor getMatchingExecutor() {
+        return matchingExecutor;
+    }
+
+    /**
+     * Sets the executor running credentials matches.  With many {@link #setHashIterations(int) hashIterations}, this
+     * bounds the number of threads hashing submitted credentials at any time and rejects attempts with a
+     * {@link CredentialsMatchingRejectedException} when overloaded.  {@code null} runs matches on the calling thread.
+     *
+     * @param matchingExecutor the executor running credentials matches, or {@code null} to run matches on the
+     *                         calling thread.
+     * @since 1.3
+     */
+    public void setMatchingExecutor(CredentialsMatchingExecutor matchingExecutor) {
+        this.matchingExecutor = matchingExecutor;
+    }
+
     /**
      * Returns a salt value used to hash the token's credentials.
      * <p/>
@@ -375,7 +406,19 @@ public class HashedCredentialsMatcher extends SimpleCredentialsMatcher {
      * @since 1.1
      */
     @Override
-    public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
+    public boolean doCredentialsMatch(final AuthenticationToken token, final AuthenticationInfo info) {
+        CredentialsMatchingExecutor executor = getMatchingExecutor();
+        if (executor != null) {
+            return executor.execute(token, new Callable<Boolean>() {
+                public Boolean call() {
+                    return hashedCredentialsMatch(token, info);
+                }
+            });
+        }
+        return hashedCredentialsMatch(token, info);
+    }
+
+    private boolean hashedCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
         Object tokenHashedCredentials = hashProvidedCredentials(token, info);
         Object accountCredentials = getCredentials(info);
         return equals(tokenHashedCredentials, accountCredentials);
@@ -22,24 +22,43 @@ import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.crypto.hash.Hash;
 
+import java.util.concurrent.Callable;
+
 /**
  * A {@link CredentialsMatcher} that employs best-practices comparisons for hashed text passwords.
  * <p/>
  * This implementation delegates to an internal {@link PasswordService} to perform the actual password
  * comparison.  This class is essentially a bridge between the generic CredentialsMatcher interface and the
  * more specific {@code PasswordService} component.
+ * <p/>
+ * Password hashes are deliberately expensive to compute, so comparisons can be run on a bounded pool of dedicated
+ * threads with admission control by setting the {@link #setMatchingExecutor(CredentialsMatchingExecutor)
+ * matchingExecutor} property.
  *
  * @since 1.2
  */
 public class PasswordMatcher implements CredentialsMatcher {
 
     private PasswordService passwordService;
+    private CredentialsMatchingExecutor matchingExecutor;
 
     public PasswordMatcher() {
         this.passwordService = new DefaultPasswordService();
     }
 
-    public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
+    public boolean doCredentialsMatch(final AuthenticationToken token, final AuthenticationInfo info) {
+        CredentialsMatchingExecutor executor = getMatchingExecutor();
+        if (executor != null) {
+            return executor.execute(token, new Callable<Boolean>() {
+                public Boolean call() {
+                    return passwordsMatch(token, info);
+                }
+            });
+        }
+        return passwordsMatch(token, info);
+    }
+
+    private boolean passwordsMatch(AuthenticationToken token, AuthenticationInfo info) {
 
         PasswordService service = ensurePasswordService();
 
@@ -107,4 +126,28 @@ public class PasswordMatcher implements CredentialsMatcher {
     public void setPasswordService(PasswordService passwordService) {
         this.passwordService = passwordService;
     }
+
+    /**
+     * Returns the executor running password comparisons, or {@code null} if comparisons run on the calling thread
+     * (the default).
+     *
+     * @return the executor running password comparisons, or {@code null} if comparisons run on the calling thread.
+     * @since 1.3
+     */
+    public CredentialsMatchingExecutor getMatchingExecutor() {
+        return matchingExecutor;
+    }
+
+    /**
+     * Sets the executor running password comparisons, bounding the number of threads hashing submitted passwords at
+     * any time and rejecting attempts with a {@link CredentialsMatchingRejectedException} when overloaded.
+     * {@code null} runs comparisons on the calling thread.
+     *
+     * @param matchingExecutor the executor running password comparisons, or {@code null} to run comparisons on the
+     *                         calling thread.
+     * @since 1.3
+     */
+    public void setMatchingExecutor(CredentialsMatchingExecutor matchingExecutor) {
+        this.matchingExecutor = matchingExecutor;
+    }
 }
@@ -37,6 +37,39 @@ import java.util.Collection;
  */
 public class FirstSuccessfulStrategy extends AbstractAuthenticationStrategy {
 
+    private boolean stopAfterFirstSuccess;
+
+    /**
+     * Returns {@code true} if realms should no longer be consulted once a realm has authenticated successfully,
+     * {@code false} if all remaining realms should still be consulted (and their results ignored).
+     * <p/>
+     * Enabling this avoids needless (and potentially slow) realm look-ups once the outcome is known.  When the
+     * {@link ModularRealmAuthenticator ModularRealmAuthenticator} consults realms
+     * {@link ModularRealmAuthenticator#setRealmExecutor concurrently}, it also allows the attempt to complete as soon as
+     * the fastest realm succeeds.
+     * <p/>
+     * The default value is {@code false}, for backwards compatibility.
+     *
+     * @return {@code true} if realms should no longer be consulted once a realm has authenticated successfully,
+     *         {@code false} otherwise.
+     * @since 1.3
+     */
+    public boolean isStopAfterFirstSuccess() {
+        return stopAfterFirstSuccess;
+    }
+
+    /**
+     * Sets whether or not realms should no longer be consulted once a realm has authenticated successfully.  See
+     * {@link #isStopAfterFirstSuccess()} for more.
+     *
+     * @param stopAfterFirstSuccess whether or not realms should no longer be consulted once a realm has authenticated
+     *                              successfully.
+     * @since 1.3
+     */
+    public void setStopAfterFirstSuccess(boolean stopAfterFirstSuccess) {
+        this.stopAfterFirstSuccess = stopAfterFirstSuccess;
+    }
+
     /**
      * Returns {@code null} immediately, relying on this class's {@link #merge merge} implementation to return
      * only the first {@code info} object it encounters, ignoring all subsequent ones.
@@ -45,6 +78,21 @@ public class FirstSuccessfulStrategy extends AbstractAuthenticationStrategy {
         return null;
     }
 
+    /**
+     * Throws a {@link ShortCircuitIterationException ShortCircuitIterationException} if
+     * {@link #isStopAfterFirstSuccess() stopAfterFirstSuccess} is enabled and a previously consulted realm has
+     * already authenticated successfully, otherwise returns the {@code aggregate} argument without modification.
+     *
+     * @since 1.3
+     */
+    public AuthenticationInfo beforeAttempt(Realm realm, AuthenticationToken token, AuthenticationInfo aggregate) throws AuthenticationException {
+        if (isStopAfterFirstSuccess() && aggregate != null && !CollectionUtils.isEmpty(aggregate.getPrincipals())) {
+            throw new ShortCircuitIterationException("Already authenticated by a previous realm.  Skipping realm [" +
+                    realm + "].");
+        }
+        return aggregate;
+    }
+
     /**
      * Returns the specified {@code aggregate} instance if is non null and valid (that is, has principals and they are
      * not empty) immediately, or, if it is null or not valid, the {@code info} argument is returned instead.
@@ -25,7 +25,18 @@ import org.apache.shiro.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A {@code ModularRealmAuthenticator} delgates account lookups to a pluggable (modular) collection of
@@ -54,6 +65,10 @@ import java.util.Collection;
  * <p/>
  * As most multi-realm applications require at least one Realm authenticates successfully, the default
  * implementation is the {@link AtLeastOneSuccessfulStrategy}.
+ * <p/>
+ * By default, realms are consulted one at a time, so a multi-realm attempt takes as long as all of the realm
+ * look-ups combined.  If a {@link #setRealmExecutor(java.util.concurrent.Executor) realmExecutor} is configured,
+ * realms are consulted concurrently instead.
  *
  * @see #setRealms
  * @see AtLeastOneSuccessfulStrategy
@@ -82,6 +97,17 @@ public class ModularRealmAuthenticator extends AbstractAuthenticator {
      */
     private AuthenticationStrategy authenticationStrategy;
 
+    /**
+     * The executor used to consult the realms concurrently during multi-realm attempts, or {@code null} to consult
+     * them one at a time.
+     */
+    private Executor realmExecutor;
+
+    /**
+     * The maximum time, in milliseconds, to wait for realm responses when consulting realms concurrently.
+     */
+    private long realmTimeout;
+
     /*--------------------------------------------
     |         C O N S T R U C T O R S           |
     ============================================*/
@@ -143,6 +169,77 @@ public class ModularRealmAuthenticator extends AbstractAuthenticator {
         this.authenticationStrategy = authenticationStrategy;
     }
 
+    /**
+     * Returns the {@code Executor} used to consult realms concurrently during multi-realm authentication attempts, or
+     * {@code null} (the default) if realms are consulted one at a time, in iteration order.
+     * <p/>
+     * When an executor is configured, the look-ups of all realms that {@link Realm#supports support} the submitted
+     * token are started at the same time.  The {@link #getAuthenticationStrategy() strategy} is still called back in
+     * the calling thread, in iteration order, exactly as for a serial attempt - only the realm look-ups themselves
+     * run ahead.  A multi-realm attempt therefore takes as long as its slowest realm rather than as long as all realms
+     * combined.  If the strategy short-circuits the remaining realms by throwing a
+     * {@link ShortCircuitIterationException ShortCircuitIterationException}, the attempt completes without waiting
+     * for the remaining realms: their look-ups are cancelled if they have not started yet, and their results are
+     * ignored otherwise.
+     * <p/>
+     * A {@link FirstSuccessfulStrategy FirstSuccessfulStrategy} with
+     * {@link FirstSuccessfulStrategy#setStopAfterFirstSuccess(boolean) stopAfterFirstSuccess} enabled is instead
+     * called back in the order the look-ups complete, so the attempt completes as soon as the <em>fastest</em>
+     * successful realm has responded.  If several realms would authenticate the token, the account data of the
+     * fastest one is used, rather than that of the first one in iteration order.
+     * <p/>
+     * Realm look-ups run outside of the calling thread, so realms that rely on thread-bound state should be given a
+     * {@link org.apache.shiro.concurrent.SubjectAwareExecutor SubjectAwareExecutor}.  If the executor rejects a
+     * look-up, that realm is consulted in the calling thread instead.
+     *
+     * @return the {@code Executor} used to consult realms concurrently during multi-realm authentication attempts, or
+     *         {@code null} if realms are consulted one at a time.
+     * @since 1.3
+     */
+    public Executor getRealmExecutor() {
+        return realmExecutor;
+    }
+
+    /**
+     * Sets the {@code Executor} used to consult realms concurrently during multi-realm authentication attempts, or
+     * {@code null} to consult them one at a time (the default).  See {@link #getRealmExecutor()} for more.
+     *
+     * @param realmExecutor the {@code Executor} used to consult realms concurrently, or {@code null} to consult them
+     *                      one at a time.
+     * @since 1.3
+     */
+    public void setRealmExecutor(Executor realmExecutor) {
+        this.realmExecutor = realmExecutor;
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, to wait for each realm to respond when realms are consulted
+     * {@link #getRealmExecutor() concurrently}, or {@code 0} (the default) to wait indefinitely.
+     * <p/>
+     * All realms are consulted at the same time, so the timeout is measured from the start of the attempt.  A realm
+     * that has not responded in time is reported to the {@link #getAuthenticationStrategy() strategy} as having
+     * thrown an {@link AuthenticationException AuthenticationException}.
+     *
+     * @return the maximum time, in milliseconds, to wait for each realm to respond, or {@code 0} to wait indefinitely.
+     * @since 1.3
+     */
+    public long getRealmTimeout() {
+        return realmTimeout;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, to wait for each realm to respond when realms are consulted
+     * {@link #getRealmExecutor() concurrently}.  A value of {@code 0} or less waits indefinitely.  See
+     * {@link #getRealmTimeout()} for more.
+     *
+     * @param realmTimeout the maximum time, in milliseconds, to wait for each realm to respond, or {@code 0} to wait
+     *                     indefinitely.
+     * @since 1.3
+     */
+    public void setRealmTimeout(long realmTimeout) {
+        this.realmTimeout = realmTimeout;
+    }
+
     /*--------------------------------------------
     |               M E T H O D S               |
 
@@ -188,7 +285,8 @@ public class ModularRealmAuthenticator extends AbstractAuthenticator {
 
     /**
      * Performs the multi-realm authentication attempt by calling back to a {@link AuthenticationStrategy} object
-     * as each realm is consulted for {@code AuthenticationInfo} for the specified {@code token}.
+     * as each realm is consulted for {@code AuthenticationInfo} for the specified {@code token}.  Realms are
+     * consulted concurrently if a {@link #getRealmExecutor() realmExecutor} is configured.
      *
      * @param realms the multiple realms configured on this Authenticator instance.
      * @param token  the submitted AuthenticationToken representing the subject's (user's) log-in principals and credentials.
@@ -201,13 +299,28 @@ public class ModularRealmAuthenticator extends AbstractAuthenticator {
 
         AuthenticationInfo aggregate = strategy.beforeAllAttempts(realms, token);
 
+        Executor executor = getRealmExecutor();
+        if (executor != null) {
+            if (isStopAfterFirstSuccess(strategy)) {
+                aggregate = doFirstSuccessfulRealmAttempts(realms, token, strategy, aggregate, executor);
+            } else {
+                aggregate = doConcurrentRealmAttempts(realms, token, strategy, aggregate, executor);
+            }
+            return strategy.afterAllAttempts(token, aggregate);
+        }
+
         if (log.isTraceEnabled()) {
             log.trace("Iterating through {} realms for PAM authentication", realms.size());
         }
 
         for (Realm realm : realms) {
 
-            aggregate = strategy.beforeAttempt(realm, token, aggregate);
+            try {
+                aggregate = strategy.beforeAttempt(realm, token, aggregate);
+            } catch (ShortCircuitIterationException shortCircuitSignal) {
+                log.trace("Strategy has short-circuited the remaining realms: {}", shortCircuitSignal.getMessage());
+                break;
+            }
 
             if (realm.supports(token)) {
 
@@ -237,6 +350,236 @@ public class ModularRealmAuthenticator extends AbstractAuthenticator {
         return aggregate;
     }
 
+    /**
+     * Starts the look-ups of all of the specified realms that support the token on the specified executor, and then
+     * calls back to the strategy in the calling thread for each realm in iteration order, waiting for each realm's
+     * look-up as needed.
+     *
+     * @return the aggregate after all realms have been consulted or the strategy has short-circuited the rest.
+     */
+    private AuthenticationInfo doConcurrentRealmAttempts(Collection<Realm> realms, AuthenticationToken token,
+                                                         AuthenticationStrategy strategy, AuthenticationInfo aggregate,
+                                                         Executor executor) {
+        if (log.isTraceEnabled()) {
+            log.trace("Consulting {} realms concurrently for PAM authentication", realms.size());
+        }
+
+        long timeout = getRealmTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<RealmAttempt> attempts = new ArrayList<RealmAttempt>(realms.size());
+        try {
+            for (Realm realm : realms) {
+                RealmAttempt attempt = null;
+                if (realm.supports(token)) {
+                    attempt = new RealmAttempt(realm, token);
+                    try {
+                        FutureTask<RealmAttempt> future = new FutureTask<RealmAttempt>(attempt, attempt);
+                        attempt.future = future;
+                        executor.execute(future);
+                    } catch (RejectedExecutionException e) {
+                        log.debug("Realm executor rejected a look-up.  Realm [{}] will be consulted in the calling " +
+                                "thread.", realm);
+                        attempt.future = null;
+                    }
+                }
+                attempts.add(attempt);
+            }
+
+            int i = 0;
+            for (Realm realm : realms) {
+                RealmAttempt attempt = attempts.get(i++);
+
+                try {
+                    aggregate = strategy.beforeAttempt(realm, token, aggregate);
+                } catch (ShortCircuitIterationException shortCircuitSignal) {
+                    log.trace("Strategy has short-circuited the remaining realms: {}", shortCircuitSignal.getMessage());
+                    break;
+                }
+
+                if (attempt == null) {
+                    log.debug("Realm [{}] does not support token {}.  Skipping realm.", realm, token);
+                    continue;
+                }
+
+                AuthenticationInfo info = null;
+                Throwable t = null;
+                if (attempt.future == null) {
+                    attempt.run();
+                    info = attempt.info;
+                    t = attempt.failure;
+                } else {
+                    try {
+                        if (timeout > 0) {
+                            attempt.future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        } else {
+                            attempt.future.get();
+                        }
+                        info = attempt.info;
+                        t = attempt.failure;
+                    } catch (TimeoutException e) {
+                        String msg = "Realm [" + realm + "] did not respond within the realm timeout of " +
+                                timeout + " ms.";
+                        log.debug(msg);
+                        t = new AuthenticationException(msg, e);
+                    }
+                }
+
+                aggregate = strategy.afterAttempt(realm, token, info, aggregate, t);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException("Interrupted while waiting for realm authentication attempts.", e);
+        } catch (ExecutionException e) {
+            //RealmAttempt catches all Throwables, so this is not expected:
+            throw new AuthenticationException("Unable to complete realm authentication attempt.", e.getCause());
+        } finally {
+            //cancel the look-ups that are no longer needed and have not started yet:
+            for (RealmAttempt attempt : attempts) {
+                if (attempt != null && attempt.future != null) {
+                    attempt.future.cancel(false);
+                }
+            }
+        }
+        return aggregate;
+    }
+
+    private static boolean isStopAfterFirstSuccess(AuthenticationStrategy strategy) {
+        return strategy instanceof FirstSuccessfulStrategy &&
+                ((FirstSuccessfulStrategy) strategy).isStopAfterFirstSuccess();
+    }
+
+    /**
+     * Starts the look-ups of all of the specified realms that support the token on the specified executor, and then
+     * calls back to the strategy in the calling thread for each realm in the order the look-ups complete, until a
+     * realm has authenticated successfully.  This is only used for strategies that stop after the first success, so
+     * that the attempt takes as long as the fastest successful realm.
+     *
+     * @return the aggregate after the first successful realm, or after all realms have been consulted.
+     */
+    private AuthenticationInfo doFirstSuccessfulRealmAttempts(Collection<Realm> realms, AuthenticationToken token,
+                                                              AuthenticationStrategy strategy,
+                                                              AuthenticationInfo aggregate, Executor executor) {
+        if (log.isTraceEnabled()) {
+            log.trace("Consulting {} realms concurrently until the first success", realms.size());
+        }
+
+        long timeout = getRealmTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        CompletionService<RealmAttempt> completed = new ExecutorCompletionService<RealmAttempt>(executor);
+        List<RealmAttempt> pending = new ArrayList<RealmAttempt>(realms.size());
+        List<RealmAttempt> rejected = new ArrayList<RealmAttempt>();
+        try {
+            for (Realm realm : realms) {
+                if (!realm.supports(token)) {
+                    log.debug("Realm [{}] does not support token {}.  Skipping realm.", realm, token);
+                    continue;
+                }
+                RealmAttempt attempt = new RealmAttempt(realm, token);
+                try {
+                    attempt.future = completed.submit(attempt, attempt);
+                    pending.add(attempt);
+                } catch (RejectedExecutionException e) {
+                    log.debug("Realm executor rejected a look-up.  Realm [{}] will be consulted in the calling " +
+                            "thread.", realm);
+                    rejected.add(attempt);
+                }
+            }
+
+            //the calling thread would wait otherwise, so consult the rejected realms first:
+            for (RealmAttempt attempt : rejected) {
+                attempt.run();
+                aggregate = afterFirstSuccessfulAttempt(attempt, null, token, strategy, aggregate);
+                if (isAuthenticated(aggregate)) {
+                    return aggregate;
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                Future<RealmAttempt> future;
+                if (timeout > 0) {
+                    future = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } else {
+                    future = completed.take();
+                }
+                if (future == null) {
+                    String msg = "Realms did not respond within the realm timeout of " + timeout + " ms.";
+                    log.debug(msg);
+                    for (RealmAttempt attempt : pending) {
+                        aggregate = afterFirstSuccessfulAttempt(attempt, new AuthenticationException(msg), token,
+                                strategy, aggregate);
+                    }
+                    break;
+                }
+                RealmAttempt attempt = future.get();
+                pending.remove(attempt);
+                aggregate = afterFirstSuccessfulAttempt(attempt, null, token, strategy, aggregate);
+                if (isAuthenticated(aggregate)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException("Interrupted while waiting for realm authentication attempts.", e);
+        } catch (ExecutionException e) {
+            //RealmAttempt catches all Throwables, so this is not expected:
+            throw new AuthenticationException("Unable to complete realm authentication attempt.", e.getCause());
+        } finally {
+            //cancel the look-ups that are no longer needed and have not started yet:
+            for (RealmAttempt attempt : pending) {
+                attempt.future.cancel(false);
+            }
+        }
+        return aggregate;
+    }
+
+    /**
+     * Calls back to the strategy for a completed (or timed out, if {@code timeoutFailure} is not {@code null})
+     * realm look-up.
+     */
+    private AuthenticationInfo afterFirstSuccessfulAttempt(RealmAttempt attempt, Throwable timeoutFailure,
+                                                           AuthenticationToken token, AuthenticationStrategy strategy,
+                                                           AuthenticationInfo aggregate) {
+        aggregate = strategy.beforeAttempt(attempt.realm, token, aggregate);
+        if (timeoutFailure != null) {
+            return strategy.afterAttempt(attempt.realm, token, null, aggregate, timeoutFailure);
+        }
+        return strategy.afterAttempt(attempt.realm, token, attempt.info, aggregate, attempt.failure);
+    }
+
+    private static boolean isAuthenticated(AuthenticationInfo aggregate) {
+        return aggregate != null && !CollectionUtils.isEmpty(aggregate.getPrincipals());
+    }
+
+    /**
+     * A single realm look-up performed during a concurrent multi-realm authentication attempt.
+     */
+    private static final class RealmAttempt implements Runnable {
+
+        private final Realm realm;
+        private final AuthenticationToken token;
+        private Future<RealmAttempt> future;
+        private AuthenticationInfo info;
+        private Throwable failure;
+
+        private RealmAttempt(Realm realm, AuthenticationToken token) {
+            this.realm = realm;
+            this.token = token;
+        }
+
+        public void run() {
+            log.trace("Attempting to authenticate token [{}] using realm [{}]", token, realm);
+            try {
+                info = realm.getAuthenticationInfo(token);
+            } catch (Throwable throwable) {
+                failure = throwable;
+                if (log.isDebugEnabled()) {
+                    String msg = "Realm [" + realm + "] threw an exception during a multi-realm authentication attempt:";
+                    log.debug(msg, throwable);
+                }
+            }
+        }
+    }
+
 
     /**
      * Attempts to authenticate the given token by iterating over the internal collection of
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authc.pam;
+
+import org.apache.shiro.authc.AuthenticationException;
+
+
+/**
+ * Exception thrown by an {@link AuthenticationStrategy AuthenticationStrategy} to signal that the outcome of a
+ * multi-realm authentication attempt has already been decided and that the remaining realms need not be consulted.
+ * <p/>
+ * This is not an authentication failure: the {@link ModularRealmAuthenticator ModularRealmAuthenticator} catches it
+ * when thrown from {@link AuthenticationStrategy#beforeAttempt beforeAttempt}, stops consulting realms (cancelling any
+ * outstanding {@link ModularRealmAuthenticator#setRealmExecutor concurrent} realm attempts) and proceeds directly to
+ * {@link AuthenticationStrategy#afterAllAttempts afterAllAttempts} with the current aggregate.
+ *
+ * @see FirstSuccessfulStrategy#setStopAfterFirstSuccess(boolean)
+ * @since 1.3
+ */
+public class ShortCircuitIterationException extends AuthenticationException {
+
+    /**
+     * Creates a new ShortCircuitIterationException.
+     */
+    public ShortCircuitIterationException() {
+        super();
+    }
+
+    /**
+     * Constructs a new ShortCircuitIterationException.
+     *
+     * @param message the reason for the exception
+     */
+    public ShortCircuitIterationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+import org.apache.shiro.subject.PrincipalCollection;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A {@code BatchAuthorizer} can check a large number of permissions for a single subject/user at once, for example
+ * to filter a result list down to the rows the user may see.
+ * <p/>
+ * Calling {@link Authorizer#isPermitted(PrincipalCollection, Permission) isPermitted} once per row looks up (and
+ * searches) the subject's authorization data once per row.  A {@code BatchAuthorizer} looks up that data once for the
+ * whole batch and can use a compiled form of it, such as a
+ * {@link org.apache.shiro.authz.permission.PermissionIndex PermissionIndex}, for every check.
+ *
+ * @since 1.3
+ */
+public interface BatchAuthorizer {
+
+    /**
+     * Returns a bit set in which bit {@code i} is set if and only if the corresponding subject/user is permitted the
+     * {@link PermissionMapper#getPermission permission} of the {@code i}th element (in iteration order) of the
+     * specified collection.
+     * <p/>
+     * Elements for which the mapper returns {@code null} are never permitted.
+     *
+     * @param principals the application-specific subject/user identifier.
+     * @param items      the objects to check
+     * @param mapper     maps each object to the permission required to access it
+     * @param <T>        the type of the objects being checked
+     * @return a bit set with a set bit at the index of each permitted object.
+     */
+    <T> BitSet filterPermitted(PrincipalCollection principals, Collection<T> items, PermissionMapper<? super T> mapper);
+}
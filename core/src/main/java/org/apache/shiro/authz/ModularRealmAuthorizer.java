@@ -24,9 +24,21 @@ import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.authz.permission.RolePermissionResolverAware;
 import org.apache.shiro.realm.Realm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -35,7 +47,10 @@ import java.util.List;
  *
  * @since 0.2
  */
-public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAware, RolePermissionResolverAware {
+public class ModularRealmAuthorizer implements Authorizer, BatchAuthorizer, PermissionResolverAware,
+        RolePermissionResolverAware {
+
+    private static final Logger log = LoggerFactory.getLogger(ModularRealmAuthorizer.class);
 
     /**
      * The realms to consult during any authorization check.
@@ -54,6 +69,16 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
      */
     protected RolePermissionResolver rolePermissionResolver;
 
+    /**
+     * The executor used to consult the realms concurrently, or {@code null} to consult them one at a time.
+     */
+    private Executor realmExecutor;
+
+    /**
+     * The maximum time, in milliseconds, to wait for realm responses when consulting realms concurrently.
+     */
+    private long realmTimeout;
+
     /**
      * Default no-argument constructor, does nothing.
      */
@@ -90,6 +115,71 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
         applyRolePermissionResolverToRealms();
     }
 
+    /**
+     * Returns the {@code Executor} used to consult the configured realms concurrently, or {@code null} (the default)
+     * if realms are consulted one at a time, in iteration order.
+     * <p/>
+     * When an executor is configured, each {@link #isPermitted(org.apache.shiro.subject.PrincipalCollection, String) isPermitted}
+     * and {@link #hasRole(org.apache.shiro.subject.PrincipalCollection, String) hasRole} check (and therefore every
+     * method built on them) submits one task per {@link Authorizer Authorizer} realm and returns {@code true} as soon
+     * as any realm answers {@code true}, without waiting for the remaining realms.  This makes the latency of a check
+     * that of the fastest granting realm rather than the sum of all realms, which is useful when several realms
+     * perform I/O.  With a single realm, checks are always performed in the calling thread.
+     * <p/>
+     * Realm tasks run outside of the calling thread, so realms that access the current {@code Subject} (e.g. via
+     * {@code SecurityUtils.getSubject()}) should be given a
+     * {@link org.apache.shiro.concurrent.SubjectAwareExecutor SubjectAwareExecutor}.  If the executor rejects a task,
+     * that realm is consulted in the calling thread instead.  An exception thrown by a realm is only propagated if no
+     * other realm grants the check.
+     *
+     * @return the {@code Executor} used to consult the configured realms concurrently, or {@code null} if realms are
+     *         consulted one at a time.
+     * @since 1.3
+     */
+    public Executor getRealmExecutor() {
+        return realmExecutor;
+    }
+
+    /**
+     * Sets the {@code Executor} used to consult the configured realms concurrently, or {@code null} to consult them
+     * one at a time (the default).  See {@link #getRealmExecutor()} for more.
+     *
+     * @param realmExecutor the {@code Executor} used to consult the configured realms concurrently, or {@code null}
+     *                      to consult them one at a time.
+     * @since 1.3
+     */
+    public void setRealmExecutor(Executor realmExecutor) {
+        this.realmExecutor = realmExecutor;
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, to wait for each realm to respond when realms are consulted
+     * {@link #getRealmExecutor() concurrently}, or {@code 0} (the default) to wait indefinitely.
+     * <p/>
+     * All realms are consulted at the same time, so the timeout is measured from the start of the check.  A realm
+     * that has not responded in time is treated as if it had returned {@code false}: the check is denied unless
+     * another realm has already granted it.  The realm's task is left to complete in the background.
+     *
+     * @return the maximum time, in milliseconds, to wait for each realm to respond, or {@code 0} to wait indefinitely.
+     * @since 1.3
+     */
+    public long getRealmTimeout() {
+        return realmTimeout;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, to wait for each realm to respond when realms are consulted
+     * {@link #getRealmExecutor() concurrently}.  A value of {@code 0} or less waits indefinitely.  See
+     * {@link #getRealmTimeout()} for more.
+     *
+     * @param realmTimeout the maximum time, in milliseconds, to wait for each realm to respond, or {@code 0} to wait
+     *                     indefinitely.
+     * @since 1.3
+     */
+    public void setRealmTimeout(long realmTimeout) {
+        this.realmTimeout = realmTimeout;
+    }
+
     /**
      * Returns the PermissionResolver to be used on <em>all</em> configured realms, or <code>null</code (the default)
      * if all realm instances will each configure their own permission resolver.
@@ -212,35 +302,196 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
     }
 
     /**
-     * Returns <code>true</code> if any of the configured realms'
-     * {@link #isPermitted(org.apache.shiro.subject.PrincipalCollection, String)} returns <code>true</code>,
-     * <code>false</code> otherwise.
+     * A single check performed against each realm until one of them returns {@code true}.
      */
-    public boolean isPermitted(PrincipalCollection principals, String permission) {
-        assertRealmsConfigured();
+    private interface RealmCheck {
+        boolean check(Authorizer realm);
+    }
+
+    /**
+     * Returns {@code true} if the specified check returns {@code true} for any of the configured {@code Authorizer}
+     * realms, consulting them concurrently if a {@link #getRealmExecutor() realmExecutor} is configured.
+     *
+     * @param check the check to perform against each realm
+     * @return {@code true} if the specified check returns {@code true} for any of the configured realms.
+     */
+    private boolean isAnyRealmTrue(RealmCheck check) {
+        Executor executor = getRealmExecutor();
+        if (executor != null) {
+            List<Authorizer> authorizers = new ArrayList<Authorizer>(getRealms().size());
+            for (Realm realm : getRealms()) {
+                if (realm instanceof Authorizer) {
+                    authorizers.add((Authorizer) realm);
+                }
+            }
+            if (authorizers.size() > 1) {
+                return isAnyRealmTrue(check, authorizers, executor);
+            }
+        }
         for (Realm realm : getRealms()) {
             if (!(realm instanceof Authorizer)) continue;
-            if (((Authorizer) realm).isPermitted(principals, permission)) {
+            if (check.check((Authorizer) realm)) {
                 return true;
             }
         }
         return false;
     }
 
+    private boolean isAnyRealmTrue(final RealmCheck check, List<Authorizer> authorizers, Executor executor) {
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<Boolean>(executor);
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(authorizers.size());
+        Throwable failure = null;
+        long timeout = getRealmTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            for (final Authorizer authorizer : authorizers) {
+                try {
+                    futures.add(completionService.submit(new Callable<Boolean>() {
+                        public Boolean call() {
+                            return check.check(authorizer);
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    log.debug("Realm executor rejected a task.  Consulting realm [{}] in the calling thread.", authorizer);
+                    try {
+                        if (check.check(authorizer)) {
+                            return true;
+                        }
+                    } catch (RuntimeException checkFailure) {
+                        if (failure == null) {
+                            failure = checkFailure;
+                        }
+                    }
+                }
+            }
+            for (int pending = futures.size(); pending > 0; pending--) {
+                Future<Boolean> future;
+                if (timeout > 0) {
+                    future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) {
+                        log.warn("{} realm(s) did not respond within the realm timeout of {} ms.  Treating them as " +
+                                "not granting the authorization check.", pending, timeout);
+                        break;
+                    }
+                } else {
+                    future = completionService.take();
+                }
+                try {
+                    if (Boolean.TRUE.equals(future.get())) {
+                        return true;
+                    }
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthorizationException("Interrupted while waiting for realm authorization checks.", e);
+        } finally {
+            //stop any realm checks that have not started yet:
+            for (Future<Boolean> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        //no realm granted the check - propagate a realm failure as a serial check would have:
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new AuthorizationException(failure);
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if any of the configured realms'
+     * {@link #isPermitted(org.apache.shiro.subject.PrincipalCollection, String)} returns <code>true</code>,
+     * <code>false</code> otherwise.
+     */
+    public boolean isPermitted(final PrincipalCollection principals, final String permission) {
+        assertRealmsConfigured();
+        return isAnyRealmTrue(new RealmCheck() {
+            public boolean check(Authorizer realm) {
+                return realm.isPermitted(principals, permission);
+            }
+        });
+    }
+
     /**
      * Returns <code>true</code> if any of the configured realms'
      * {@link #isPermitted(org.apache.shiro.subject.PrincipalCollection, Permission)} call returns <code>true</code>,
      * <code>false</code> otherwise.
      */
-    public boolean isPermitted(PrincipalCollection principals, Permission permission) {
+    public boolean isPermitted(final PrincipalCollection principals, final Permission permission) {
         assertRealmsConfigured();
+        return isAnyRealmTrue(new RealmCheck() {
+            public boolean check(Authorizer realm) {
+                return realm.isPermitted(principals, permission);
+            }
+        });
+    }
+
+    /**
+     * Returns a bit set with the bits of all items permitted by any of the configured realms set.
+     * <p/>
+     * Realms that implement {@link BatchAuthorizer BatchAuthorizer} check all items with a single call, others are
+     * asked about each item individually.  Items permitted by a realm are not passed on to subsequent realms.
+     *
+     * @since 1.3
+     */
+    public <T> BitSet filterPermitted(PrincipalCollection principals, Collection<T> items,
+                                      PermissionMapper<? super T> mapper) {
+        assertRealmsConfigured();
+        BitSet permitted = new BitSet(items.size());
+        Collection<T> remaining = items;
+        //the index in 'items' of each remaining item, or null while 'remaining' is 'items':
+        int[] positions = null;
         for (Realm realm : getRealms()) {
+            if (remaining.isEmpty()) {
+                break;
+            }
             if (!(realm instanceof Authorizer)) continue;
-            if (((Authorizer) realm).isPermitted(principals, permission)) {
-                return true;
+            BitSet realmPermitted;
+            if (realm instanceof BatchAuthorizer) {
+                realmPermitted = ((BatchAuthorizer) realm).filterPermitted(principals, remaining, mapper);
+            } else {
+                realmPermitted = new BitSet(remaining.size());
+                int i = 0;
+                for (T item : remaining) {
+                    Permission permission = mapper.getPermission(item);
+                    if (permission != null && ((Authorizer) realm).isPermitted(principals, permission)) {
+                        realmPermitted.set(i);
+                    }
+                    i++;
+                }
             }
+            if (realmPermitted.isEmpty()) {
+                continue;
+            }
+
+            List<T> denied = new ArrayList<T>(remaining.size() - realmPermitted.cardinality());
+            int[] deniedPositions = new int[remaining.size() - realmPermitted.cardinality()];
+            int i = 0;
+            for (T item : remaining) {
+                int position = positions != null ? positions[i] : i;
+                if (realmPermitted.get(i)) {
+                    permitted.set(position);
+                } else {
+                    deniedPositions[denied.size()] = position;
+                    denied.add(item);
+                }
+                i++;
+            }
+            remaining = denied;
+            positions = deniedPositions;
         }
-        return false;
+        return permitted;
     }
 
     /**
@@ -367,15 +618,13 @@ public class ModularRealmAuthorizer implements Authorizer, PermissionResolverAwa
      * {@link #hasRole(org.apache.shiro.subject.PrincipalCollection, String)} call returns <code>true</code>,
      * <code>false</code> otherwise.
      */
-    public boolean hasRole(PrincipalCollection principals, String roleIdentifier) {
+    public boolean hasRole(final PrincipalCollection principals, final String roleIdentifier) {
         assertRealmsConfigured();
-        for (Realm realm : getRealms()) {
-            if (!(realm instanceof Authorizer)) continue;
-            if (((Authorizer) realm).hasRole(principals, roleIdentifier)) {
-                return true;
+        return isAnyRealmTrue(new RealmCheck() {
+            public boolean check(Authorizer realm) {
+                return realm.hasRole(principals, roleIdentifier);
             }
-        }
-        return false;
+        });
     }
 
     /**
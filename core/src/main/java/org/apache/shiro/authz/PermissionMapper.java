@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz;
+
+/**
+ * Maps an application object (such as a domain record in a result list) to the {@link Permission Permission} required
+ * to access it.  Used by {@link BatchAuthorizer BatchAuthorizer}s to check a large number of objects at once.
+ * <p/>
+ * Implementations should be cheap and side-effect free, since an object may be mapped more than once (e.g. once per
+ * configured realm).
+ *
+ * @param <T> the type of the objects being mapped
+ * @since 1.3
+ */
+public interface PermissionMapper<T> {
+
+    /**
+     * Returns the permission required to access the specified object, or {@code null} if the object may not be
+     * accessed at all.
+     *
+     * @param item the object for which to return the required permission
+     * @return the permission required to access the specified object, or {@code null} if the object may not be
+     *         accessed.
+     */
+    Permission getPermission(T item);
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link PermissionResolver PermissionResolver} decorator that memoizes the {@code Permission} instances returned by
+ * a delegate resolver, so frequently checked permission strings are only parsed once.
+ * <p/>
+ * The cache is bounded to {@link #getMaxSize() maxSize} entries and evicts using the CLOCK (second-chance)
+ * algorithm, an approximation of least-recently-used eviction that does not require locking on reads.  Only
+ * inserting a newly resolved permission, evicting and {@link #clear() clearing} are serialized by a lock, so the
+ * {@link #size() size} always matches the number of cached permissions.
+ * Hit, miss and eviction counts are available for monitoring.
+ * <p/>
+ * <b>Note:</b> because the same {@code Permission} instance is returned for every resolution of an equal string,
+ * this class must only wrap resolvers whose returned permissions are immutable, such as the
+ * {@link WildcardPermissionResolver WildcardPermissionResolver}.
+ * <p/>
+ * When the delegate is a {@code WildcardPermissionResolver}, its {@link WildcardPermissionResolver#setCompact(boolean)
+ * compact} property is also exposed by this class, so it can be configured (e.g. in INI) without having to
+ * reference the delegate:
+ * <pre>
+ * realm.permissionResolver.compact = true</pre>
+ * <p/>
+ * This implementation is thread-safe.
+ *
+ * @since 1.3
+ */
+public class CachingPermissionResolver implements PermissionResolver {
+
+    /**
+     * The default maximum number of cached permissions, equal to {@code 1000}.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private PermissionResolver delegate;
+    private volatile int maxSize;
+
+    private final ConcurrentMap<String, CachedPermission> cache;
+    /**
+     * CLOCK ring, in insertion order.  Entries that have been read since they were last examined are given a second
+     * chance (re-queued) before being evicted.
+     */
+    private final Queue<String> clock;
+    private final AtomicInteger size;
+    /**
+     * Guards all changes to the cache, clock and size; lookups do not acquire it.
+     */
+    private final Lock lock;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
+
+    public CachingPermissionResolver() {
+        this(new WildcardPermissionResolver());
+    }
+
+    public CachingPermissionResolver(PermissionResolver delegate) {
+        this(delegate, DEFAULT_MAX_SIZE);
+    }
+
+    public CachingPermissionResolver(PermissionResolver delegate, int maxSize) {
+        this.cache = new ConcurrentHashMap<String, CachedPermission>();
+        this.clock = new ConcurrentLinkedQueue<String>();
+        this.size = new AtomicInteger();
+        this.lock = new ReentrantLock();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        setDelegate(delegate);
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Returns the resolver whose results are cached.
+     *
+     * @return the resolver whose results are cached.
+     */
+    public PermissionResolver getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Sets the resolver whose results are cached.  Any previously cached permissions are discarded.
+     *
+     * @param delegate the resolver whose results are cached.
+     */
+    public void setDelegate(PermissionResolver delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate PermissionResolver cannot be null.");
+        }
+        this.delegate = delegate;
+        clear();
+    }
+
+    /**
+     * Returns {@code true} if the delegate is a {@link WildcardPermissionResolver WildcardPermissionResolver} that
+     * returns {@link CompactWildcardPermission CompactWildcardPermission}s, {@code false} otherwise.
+     *
+     * @return {@code true} if the delegate returns {@code CompactWildcardPermission}s, {@code false} otherwise.
+     * @see WildcardPermissionResolver#isCompact()
+     */
+    public boolean isCompact() {
+        return delegate instanceof WildcardPermissionResolver && ((WildcardPermissionResolver) delegate).isCompact();
+    }
+
+    /**
+     * Sets the {@link WildcardPermissionResolver#setCompact(boolean) compact} property of the delegate
+     * {@link WildcardPermissionResolver WildcardPermissionResolver}.  Any previously cached permissions are discarded.
+     *
+     * @param compact whether or not the delegate returns {@code CompactWildcardPermission}s
+     * @throws IllegalStateException if the delegate is not a {@code WildcardPermissionResolver}.
+     * @see WildcardPermissionResolver#setCompact(boolean)
+     */
+    public void setCompact(boolean compact) {
+        if (!(delegate instanceof WildcardPermissionResolver)) {
+            throw new IllegalStateException("The compact property is only supported when the delegate is a " +
+                    WildcardPermissionResolver.class.getName() + ", not " + delegate.getClass().getName() + ".");
+        }
+        ((WildcardPermissionResolver) delegate).setCompact(compact);
+        clear();
+    }
+
+    /**
+     * Returns the maximum number of permissions retained by this resolver.  The default value is
+     * {@link #DEFAULT_MAX_SIZE}.
+     *
+     * @return the maximum number of permissions retained by this resolver.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of permissions retained by this resolver.  A value of {@code 0} disables caching.
+     *
+     * @param maxSize the maximum number of permissions retained by this resolver.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize cannot be negative.");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the number of resolutions served from the cache.
+     *
+     * @return the number of resolutions served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of resolutions that had to be delegated.
+     *
+     * @return the number of resolutions that had to be delegated.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of cached permissions evicted to stay within {@link #getMaxSize() maxSize}.
+     *
+     * @return the number of cached permissions evicted to stay within {@code maxSize}.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of currently cached permissions.
+     *
+     * @return the number of currently cached permissions.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Discards all cached permissions.  Statistics are retained.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            cache.clear();
+            clock.clear();
+            size.set(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Permission resolvePermission(String permissionString) {
+        if (permissionString == null) {
+            return delegate.resolvePermission(null);
+        }
+        CachedPermission cached = cache.get(permissionString);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            cached.touch();
+            return cached.permission;
+        }
+        missCount.incrementAndGet();
+        Permission permission = delegate.resolvePermission(permissionString);
+        if (permission != null && maxSize > 0) {
+            lock.lock();
+            try {
+                CachedPermission existing = cache.putIfAbsent(permissionString, new CachedPermission(permission));
+                if (existing == null) {
+                    clock.offer(permissionString);
+                    if (size.incrementAndGet() > maxSize) {
+                        evict();
+                    }
+                } else {
+                    permission = existing.permission;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return permission;
+    }
+
+    /**
+     * Evicts cached permissions until there are at most {@link #getMaxSize() maxSize}.  Must be called while holding
+     * the {@link #lock}.
+     */
+    private void evict() {
+        while (size.get() > maxSize) {
+            String key = clock.poll();
+            if (key == null) {
+                return;
+            }
+            CachedPermission candidate = cache.get(key);
+            if (candidate == null) {
+                continue;
+            }
+            if (candidate.referenced) {
+                //second chance:
+                candidate.referenced = false;
+                clock.offer(key);
+            } else if (cache.remove(key, candidate)) {
+                size.decrementAndGet();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    public String toString() {
+        return getClass().getSimpleName() + "[delegate=" + delegate + ", size=" + size() + ", maxSize=" + maxSize +
+                ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class CachedPermission {
+
+        private final Permission permission;
+        private volatile boolean referenced;
+
+        private CachedPermission(Permission permission) {
+            this.permission = permission;
+        }
+
+        private void touch() {
+            //avoid a volatile write (and the associated cache line invalidation) when already referenced:
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+    }
+}
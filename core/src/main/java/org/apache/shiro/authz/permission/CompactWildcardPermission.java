@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A memory-compact {@link WildcardPermission WildcardPermission} with identical {@link #implies implies} semantics.
+ * <p/>
+ * Instead of a {@code List} of {@code Set}s of strings, each part is stored as a sorted array of token ids assigned by
+ * a shared {@link WildcardTokenTable WildcardTokenTable}.  When both permissions were created with the same table,
+ * {@link #implies(org.apache.shiro.authz.Permission) implies} is a merge of small sorted {@code int} arrays and does
+ * not allocate or hash anything.  Comparisons with other {@code WildcardPermission}s (or compact permissions from a
+ * different table) fall back to the standard string-based logic, so instances may be freely mixed with regular
+ * {@code WildcardPermission}s (and are {@link #equals(Object) equal} to them if they have the same parts).  The
+ * string form of the parts is only materialized, and then retained, by the first such comparison.
+ * <p/>
+ * Instances are usually obtained from a {@link WildcardPermissionResolver WildcardPermissionResolver} configured
+ * with {@link WildcardPermissionResolver#setCompact(boolean) compact = true}.  Compact permissions are serialized as
+ * regular {@code WildcardPermission}s.
+ *
+ * @since 1.3
+ */
+public class CompactWildcardPermission extends WildcardPermission {
+
+    private final transient WildcardTokenTable tokenTable;
+
+    /**
+     * The parts of this permission, each a sorted array of unique token ids.  A part contains the wildcard token if
+     * and only if its first element is {@link WildcardTokenTable#WILDCARD_ID}.
+     */
+    private final transient int[][] tokenParts;
+
+    private transient int hashCode;
+
+    /**
+     * The parts as strings, materialized on first interaction with a non-compact permission.
+     */
+    private transient volatile List<Set<String>> parts;
+
+    public CompactWildcardPermission(String wildcardString, WildcardTokenTable tokenTable) {
+        this(wildcardString, DEFAULT_CASE_SENSITIVE, tokenTable);
+    }
+
+    public CompactWildcardPermission(String wildcardString, boolean caseSensitive, WildcardTokenTable tokenTable) {
+        super();
+        if (tokenTable == null) {
+            throw new IllegalArgumentException("WildcardTokenTable argument cannot be null.");
+        }
+        this.tokenTable = tokenTable;
+        List<Set<String>> parts = parseParts(wildcardString, caseSensitive);
+        this.tokenParts = new int[parts.size()][];
+        int i = 0;
+        for (Set<String> part : parts) {
+            int[] ids = new int[part.size()];
+            int j = 0;
+            for (String subpart : part) {
+                ids[j++] = tokenTable.intern(subpart);
+            }
+            Arrays.sort(ids);
+            this.tokenParts[i++] = ids;
+        }
+    }
+
+    /**
+     * Returns the table used to intern this permission's tokens.
+     *
+     * @return the table used to intern this permission's tokens.
+     */
+    public WildcardTokenTable getTokenTable() {
+        return tokenTable;
+    }
+
+    /**
+     * Returns this permission's parts as an unmodifiable {@code List} of {@code Set}s of strings, as expected by the
+     * standard {@code WildcardPermission} logic.  The parts are only materialized (and then retained) once this
+     * permission interacts with a non-compact permission, or one created with a different table.
+     *
+     * @return an unmodifiable list of this permission's parts.
+     */
+    @Override
+    protected List<Set<String>> getParts() {
+        List<Set<String>> parts = this.parts;
+        if (parts == null) {
+            parts = materializeParts();
+            this.parts = parts;
+        }
+        return parts;
+    }
+
+    /**
+     * Returns the {@link #getParts() parts} if they were already materialized, or a temporary copy that is not
+     * retained otherwise, for one-off uses that should not grow this instance, such as compiling a
+     * {@link PermissionIndex PermissionIndex}.
+     */
+    List<Set<String>> peekParts() {
+        List<Set<String>> parts = this.parts;
+        return parts != null ? parts : materializeParts();
+    }
+
+    private List<Set<String>> materializeParts() {
+        List<Set<String>> parts = new ArrayList<Set<String>>(this.tokenParts.length);
+        for (int[] ids : this.tokenParts) {
+            Set<String> part = new LinkedHashSet<String>(ids.length * 4 / 3 + 1);
+            for (int id : ids) {
+                part.add(this.tokenTable.getToken(id));
+            }
+            parts.add(Collections.unmodifiableSet(part));
+        }
+        return Collections.unmodifiableList(parts);
+    }
+
+    @Override
+    public boolean implies(Permission p) {
+        if (p instanceof CompactWildcardPermission) {
+            CompactWildcardPermission cwp = (CompactWildcardPermission) p;
+            if (cwp.tokenTable == this.tokenTable) {
+                return implies(cwp.tokenParts);
+            }
+        }
+        return super.implies(p);
+    }
+
+    private boolean implies(int[][] otherParts) {
+        int[][] parts = this.tokenParts;
+        int i = 0;
+        for (; i < otherParts.length; i++) {
+            // If this permission has less parts than the other permission, everything after the number of parts
+            // contained in this permission is automatically implied, so return true
+            if (i >= parts.length) {
+                return true;
+            }
+            int[] part = parts[i];
+            if (part[0] != WildcardTokenTable.WILDCARD_ID && !containsAll(part, otherParts[i])) {
+                return false;
+            }
+        }
+
+        // If this permission has more parts than the other parts, only imply it if all of the other parts are wildcards
+        for (; i < parts.length; i++) {
+            if (parts[i][0] != WildcardTokenTable.WILDCARD_ID) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the sorted array {@code a} contains every element of the sorted array {@code b}.
+     */
+    private static boolean containsAll(int[] a, int[] b) {
+        if (b.length > a.length) {
+            return false;
+        }
+        int i = 0;
+        for (int id : b) {
+            while (i < a.length && a[i] < id) {
+                i++;
+            }
+            if (i == a.length || a[i] != id) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (Set<String> part : peekParts()) {
+            if (buffer.length() > 0) {
+                buffer.append(":");
+            }
+            buffer.append(part);
+        }
+        return buffer.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof CompactWildcardPermission) {
+            CompactWildcardPermission cwp = (CompactWildcardPermission) o;
+            if (cwp.tokenTable == this.tokenTable) {
+                return Arrays.deepEquals(this.tokenParts, cwp.tokenParts);
+            }
+        }
+        //symmetric with WildcardPermission.equals:
+        return o instanceof WildcardPermission && getParts().equals(((WildcardPermission) o).getParts());
+    }
+
+    @Override
+    public int hashCode() {
+        int h = this.hashCode;
+        if (h == 0) {
+            //consistent with WildcardPermission's hash of equal parts:
+            h = peekParts().hashCode();
+            this.hashCode = h;
+        }
+        return h;
+    }
+
+    /**
+     * Serializes this instance as a regular (case sensitive, since case has already been normalized)
+     * {@link WildcardPermission WildcardPermission} with the same parts, since token ids are only meaningful within
+     * a single {@link WildcardTokenTable WildcardTokenTable}.
+     *
+     * @return an equivalent {@code WildcardPermission} to serialize in place of this instance.
+     * @throws ObjectStreamException never
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        StringBuilder sb = new StringBuilder();
+        for (Set<String> part : peekParts()) {
+            if (sb.length() > 0) {
+                sb.append(PART_DIVIDER_TOKEN);
+            }
+            //an empty subpart only survives re-parsing if it is not trailing:
+            boolean first = !part.contains("");
+            for (String subpart : part) {
+                if (subpart.length() == 0) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(SUBPART_DIVIDER_TOKEN);
+                }
+                sb.append(subpart);
+                first = false;
+            }
+        }
+        return new WildcardPermission(sb.toString(), true);
+    }
+}
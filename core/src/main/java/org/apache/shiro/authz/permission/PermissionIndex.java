@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, pre-compiled view of a collection of granted {@link Permission Permission}s that can answer
+ * {@link #implies(org.apache.shiro.authz.Permission) implies} checks without scanning every granted permission.
+ * <p/>
+ * {@link WildcardPermission WildcardPermission}s (including {@link CompactWildcardPermission CompactWildcardPermission}s
+ * and other subclasses that do not override the {@code implies} logic) are
+ * compiled into a trie keyed on their parts, with a separate branch for parts containing the
+ * {@link WildcardPermission#WILDCARD_TOKEN wildcard token}.  An {@code implies} check then costs roughly the number of
+ * parts in the permission being checked instead of the number of granted permissions.  Any other {@code Permission}
+ * implementation is retained as-is and checked via its own {@code implies} method, so the result of
+ * {@link #implies(org.apache.shiro.authz.Permission) implies} is always identical to iterating over the original
+ * collection and returning {@code true} if any granted permission implies the argument.
+ * <p/>
+ * Instances of this class are thread-safe once constructed.
+ *
+ * @since 1.3
+ */
+public class PermissionIndex {
+
+    private final Node root;
+    private final Permission[] others;
+    private final int size;
+
+    /**
+     * Compiles the specified granted permissions into a new index.
+     *
+     * @param permissions the granted permissions to index, may be {@code null} or empty.
+     */
+    public PermissionIndex(Collection<? extends Permission> permissions) {
+        Node root = new Node(null);
+        List<Permission> others = new ArrayList<Permission>();
+        int size = 0;
+        if (permissions != null) {
+            Map<Class, Boolean> indexableClasses = new HashMap<Class, Boolean>();
+            for (Permission permission : permissions) {
+                if (permission == null) {
+                    continue;
+                }
+                size++;
+                if (isIndexable(permission, indexableClasses)) {
+                    List<Set<String>> parts = getParts((WildcardPermission) permission);
+                    if (parts != null && !parts.isEmpty()) {
+                        root.add(parts, 0);
+                        continue;
+                    }
+                }
+                others.add(permission);
+            }
+        }
+        root.compile();
+        this.root = root;
+        this.others = others.toArray(new Permission[others.size()]);
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of granted (non-null) permissions compiled into this index.
+     *
+     * @return the number of granted (non-null) permissions compiled into this index.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns {@code true} if this index does not contain any granted permissions, {@code false} otherwise.
+     *
+     * @return {@code true} if this index does not contain any granted permissions, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns {@code true} if any of the indexed permissions implies the specified permission, {@code false}
+     * otherwise.
+     *
+     * @param permission the permission to check
+     * @return {@code true} if any of the indexed permissions implies the specified permission, {@code false}
+     *         otherwise.
+     */
+    public boolean implies(Permission permission) {
+        if (permission instanceof WildcardPermission) {
+            List<Set<String>> parts = permission.getClass() == CompactWildcardPermission.class ?
+                    ((CompactWildcardPermission) permission).peekParts() :
+                    ((WildcardPermission) permission).getParts();
+            if (parts != null && root.implies(parts, 0)) {
+                return true;
+            }
+        }
+        for (Permission other : this.others) {
+            if (other.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the specified permission may be compiled into the trie, that is, it is a
+     * {@code WildcardPermission} whose class does not override either {@code implies} or {@code getParts}.
+     *
+     * @param permission       the granted permission to check
+     * @param indexableClasses results of previous checks, keyed by permission class
+     * @return {@code true} if the specified permission may be compiled into the trie, {@code false} otherwise.
+     */
+    private static boolean isIndexable(Permission permission, Map<Class, Boolean> indexableClasses) {
+        if (!(permission instanceof WildcardPermission)) {
+            return false;
+        }
+        Class clazz = permission.getClass();
+        Boolean indexable = indexableClasses.get(clazz);
+        if (indexable == null) {
+            indexable = Boolean.TRUE;
+            for (Class c = clazz; c != WildcardPermission.class && c != CompactWildcardPermission.class;
+                 c = c.getSuperclass()) {
+                if (declares(c, "implies", Permission.class) || declares(c, "getParts")) {
+                    indexable = Boolean.FALSE;
+                    break;
+                }
+            }
+            indexableClasses.put(clazz, indexable);
+        }
+        return indexable;
+    }
+
+    /**
+     * Returns the parts of an {@link #isIndexable indexable} permission.  The parts of a
+     * {@code CompactWildcardPermission} are copied rather than materialized, so that the permission does not retain
+     * them in addition to its compact representation.
+     */
+    private static List<Set<String>> getParts(WildcardPermission permission) {
+        if (permission instanceof CompactWildcardPermission) {
+            return ((CompactWildcardPermission) permission).peekParts();
+        }
+        return permission.getParts();
+    }
+
+    private static boolean declares(Class clazz, String methodName, Class... parameterTypes) {
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.getName().equals(methodName) &&
+                    Arrays.equals(method.getParameterTypes(), parameterTypes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A trie node.  Each node represents the permission prefix consumed to reach it; its outgoing edges are the
+     * possible values of the next part.  Mirrors the {@link WildcardPermission#implies(Permission)} rules exactly.
+     */
+    private static final class Node {
+
+        /**
+         * The part (edge value) leading to this node, {@code null} for the root.
+         */
+        private final Set<String> part;
+
+        /**
+         * {@code true} if a granted permission ends at this node.
+         */
+        private boolean terminal;
+
+        /**
+         * {@code true} if a granted permission ends at this node or continues from it with wildcard parts only.
+         */
+        private boolean wildcardTail;
+
+        /**
+         * The child reached by any part that contains the wildcard token.
+         */
+        private Node wildcardChild;
+
+        /**
+         * Non-wildcard children, keyed by their exact part.
+         */
+        private Map<Set<String>, Node> children;
+
+        /**
+         * Non-wildcard children, keyed by every subpart token that their part contains.
+         */
+        private Map<String, Node[]> childrenByToken;
+
+        private Node(Set<String> part) {
+            this.part = part;
+        }
+
+        private void add(List<Set<String>> parts, int index) {
+            if (index == parts.size()) {
+                this.terminal = true;
+                return;
+            }
+            Set<String> next = parts.get(index);
+            Node child;
+            if (next.contains(WildcardPermission.WILDCARD_TOKEN)) {
+                if (this.wildcardChild == null) {
+                    this.wildcardChild = new Node(next);
+                }
+                child = this.wildcardChild;
+            } else {
+                if (this.children == null) {
+                    this.children = new HashMap<Set<String>, Node>();
+                }
+                child = this.children.get(next);
+                if (child == null) {
+                    child = new Node(next);
+                    this.children.put(next, child);
+                }
+            }
+            child.add(parts, index + 1);
+        }
+
+        /**
+         * Builds the token lookup tables and wildcard-tail flags once all permissions have been added.
+         */
+        private void compile() {
+            if (this.wildcardChild != null) {
+                this.wildcardChild.compile();
+            }
+            this.wildcardTail = this.terminal || (this.wildcardChild != null && this.wildcardChild.wildcardTail);
+
+            if (this.children != null) {
+                Map<String, List<Node>> byToken = new HashMap<String, List<Node>>();
+                for (Node child : this.children.values()) {
+                    child.compile();
+                    for (String token : child.part) {
+                        List<Node> nodes = byToken.get(token);
+                        if (nodes == null) {
+                            nodes = new ArrayList<Node>(1);
+                            byToken.put(token, nodes);
+                        }
+                        nodes.add(child);
+                    }
+                }
+                this.childrenByToken = new HashMap<String, Node[]>(byToken.size());
+                for (Map.Entry<String, List<Node>> entry : byToken.entrySet()) {
+                    List<Node> nodes = entry.getValue();
+                    this.childrenByToken.put(entry.getKey(), nodes.toArray(new Node[nodes.size()]));
+                }
+            }
+        }
+
+        private boolean implies(List<Set<String>> parts, int index) {
+            if (index == parts.size()) {
+                //the checked permission has no more parts - only imply it if a granted permission ends here or
+                //only has wildcard parts remaining:
+                return this.wildcardTail;
+            }
+            if (this.terminal) {
+                //a granted permission with fewer parts implies everything after its last part:
+                return true;
+            }
+            if (this.wildcardChild != null && this.wildcardChild.implies(parts, index + 1)) {
+                return true;
+            }
+            if (this.children == null) {
+                return false;
+            }
+            Set<String> otherPart = parts.get(index);
+            Iterator<String> tokens = otherPart.iterator();
+            if (!tokens.hasNext()) {
+                for (Node candidate : this.children.values()) {
+                    if (candidate.implies(parts, index + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            //only children containing the first token can contain all of them:
+            Node[] candidates = this.childrenByToken.get(tokens.next());
+            if (candidates != null) {
+                for (Node candidate : candidates) {
+                    if (candidate.part.containsAll(otherPart) && candidate.implies(parts, index + 1)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -147,6 +147,20 @@ public class WildcardPermission implements Permission, Serializable {
     }
 
     protected void setParts(String wildcardString, boolean caseSensitive) {
+        this.parts = parseParts(wildcardString, caseSensitive);
+    }
+
+    /**
+     * Splits the specified wildcard string into its parts (and each part into its subparts), lower-casing each
+     * subpart if {@code caseSensitive} is {@code false}.
+     *
+     * @param wildcardString the wildcard string to parse
+     * @param caseSensitive  whether or not the subparts should retain their case
+     * @return the parsed parts
+     * @throws IllegalArgumentException if the wildcard string is not properly formatted.
+     * @since 1.3
+     */
+    static List<Set<String>> parseParts(String wildcardString, boolean caseSensitive) {
         if (wildcardString == null || wildcardString.trim().length() == 0) {
             throw new IllegalArgumentException("Wildcard string cannot be null or empty. Make sure permission strings are properly formatted.");
         }
@@ -155,7 +169,7 @@ public class WildcardPermission implements Permission, Serializable {
 
         List<String> parts = CollectionUtils.asList(wildcardString.split(PART_DIVIDER_TOKEN));
 
-        this.parts = new ArrayList<Set<String>>();
+        List<Set<String>> result = new ArrayList<Set<String>>();
         for (String part : parts) {
             Set<String> subparts = CollectionUtils.asSet(part.split(SUBPART_DIVIDER_TOKEN));
             if (!caseSensitive) {
@@ -164,15 +178,16 @@ public class WildcardPermission implements Permission, Serializable {
             if (subparts.isEmpty()) {
                 throw new IllegalArgumentException("Wildcard string cannot contain parts with only dividers. Make sure permission strings are properly formatted.");
             }
-            this.parts.add(subparts);
+            result.add(subparts);
         }
 
-        if (this.parts.isEmpty()) {
+        if (result.isEmpty()) {
             throw new IllegalArgumentException("Wildcard string cannot contain only dividers. Make sure permission strings are properly formatted.");
         }
+        return result;
     }
 
-    private Set<String> lowercase(Set<String> subparts) {
+    private static Set<String> lowercase(Set<String> subparts) {
         Set<String> lowerCasedSubparts = new LinkedHashSet<String>(subparts.size());
         for (String subpart : subparts) {
             lowerCasedSubparts.add(subpart.toLowerCase());
@@ -241,13 +256,13 @@ public class WildcardPermission implements Permission, Serializable {
     public boolean equals(Object o) {
         if (o instanceof WildcardPermission) {
             WildcardPermission wp = (WildcardPermission) o;
-            return parts.equals(wp.parts);
+            return getParts().equals(wp.getParts());
         }
         return false;
     }
 
     public int hashCode() {
-        return parts.hashCode();
+        return getParts().hashCode();
     }
 
 }
@@ -24,20 +24,88 @@ import org.apache.shiro.authz.Permission;
 /**
  * <tt>PermissionResolver</tt> implementation that returns a new {@link WildcardPermission WildcardPermission}
  * based on the input string.
+ * <p/>
+ * If the {@link #setCompact(boolean) compact} property is {@code true}, the returned permissions will be
+ * {@link CompactWildcardPermission CompactWildcardPermission}s sharing this resolver's
+ * {@link #getTokenTable() token table}, which use considerably less memory and implement {@code implies} checks
+ * between each other without any allocation.
  *
  * @since 0.9
  */
 public class WildcardPermissionResolver implements PermissionResolver {
 
+    private boolean compact = false;
+    private WildcardTokenTable tokenTable;
+
+    /**
+     * Returns {@code true} if this resolver returns {@link CompactWildcardPermission CompactWildcardPermission}s,
+     * {@code false} if it returns standard {@link WildcardPermission WildcardPermission}s.
+     * <p/>
+     * The default value is {@code false}.
+     *
+     * @return {@code true} if this resolver returns {@code CompactWildcardPermission}s, {@code false} otherwise.
+     * @since 1.3
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Sets whether or not this resolver returns {@link CompactWildcardPermission CompactWildcardPermission}s
+     * instead of standard {@link WildcardPermission WildcardPermission}s.  If enabled and no
+     * {@link #setTokenTable(WildcardTokenTable) tokenTable} has been configured, a new one will be created.
+     * <p/>
+     * The default value is {@code false}.
+     *
+     * @param compact whether or not this resolver returns {@code CompactWildcardPermission}s
+     * @since 1.3
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+        if (compact && this.tokenTable == null) {
+            this.tokenTable = new WildcardTokenTable();
+        }
+    }
+
+    /**
+     * Returns the table used to intern the tokens of {@link #isCompact() compact} permissions, or {@code null} if
+     * compact permissions are not enabled.
+     *
+     * @return the table used to intern the tokens of compact permissions.
+     * @since 1.3
+     */
+    public WildcardTokenTable getTokenTable() {
+        return tokenTable;
+    }
+
+    /**
+     * Sets the table used to intern the tokens of {@link #isCompact() compact} permissions.  Resolvers (for example
+     * in multiple realms) may share a single table so their permissions can be compared by token id.
+     *
+     * @param tokenTable the table used to intern the tokens of compact permissions.
+     * @since 1.3
+     */
+    public void setTokenTable(WildcardTokenTable tokenTable) {
+        this.tokenTable = tokenTable;
+    }
+
     /**
      * Returns a new {@link WildcardPermission WildcardPermission} instance constructed based on the specified
-     * <tt>permissionString</tt>.
+     * <tt>permissionString</tt>.  If this resolver is {@link #isCompact() compact}, the instance will be a
+     * {@link CompactWildcardPermission CompactWildcardPermission}.
      *
      * @param permissionString the permission string to convert to a {@link Permission Permission} instance.
      * @return a new {@link WildcardPermission WildcardPermission} instance constructed based on the specified
      *         <tt>permissionString</tt>
      */
     public Permission resolvePermission(String permissionString) {
+        if (compact) {
+            WildcardTokenTable table = this.tokenTable;
+            if (table == null) {
+                throw new IllegalStateException("A WildcardTokenTable is required to resolve compact permissions.");
+            }
+            return new CompactWildcardPermission(permissionString, table);
+        }
         return new WildcardPermission(permissionString);
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe table that interns permission subpart tokens (such as {@code "newsletter"} or {@code "edit"}) and
+ * assigns each distinct token a small integer id.  {@link CompactWildcardPermission CompactWildcardPermission}s
+ * created with the same table share their token strings and compare each other by id only.
+ * <p/>
+ * The {@link WildcardPermission#WILDCARD_TOKEN wildcard token} is always assigned id {@link #WILDCARD_ID 0}, so a
+ * sorted array of token ids contains the wildcard if and only if its first element is {@code 0}.
+ * <p/>
+ * <b>Note:</b> tokens are never removed from a table.  If permission strings contain an unbounded set of values
+ * (such as instance ids, e.g. {@code newsletter:edit:12345}), the table will grow accordingly, so a table should be
+ * shared only across permissions drawn from a reasonably bounded vocabulary.
+ *
+ * @since 1.3
+ */
+public class WildcardTokenTable {
+
+    /**
+     * The id always assigned to the {@link WildcardPermission#WILDCARD_TOKEN wildcard token}.
+     */
+    public static final int WILDCARD_ID = 0;
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+    private final ConcurrentMap<String, Integer> ids;
+
+    /**
+     * Reverse lookup (id to token).  Only ever replaced by a larger copy while holding this table's monitor, and
+     * read without locking.
+     */
+    private volatile String[] tokens;
+    private volatile int size;
+
+    public WildcardTokenTable() {
+        this.ids = new ConcurrentHashMap<String, Integer>(DEFAULT_INITIAL_CAPACITY);
+        this.tokens = new String[DEFAULT_INITIAL_CAPACITY];
+        this.tokens[WILDCARD_ID] = WildcardPermission.WILDCARD_TOKEN;
+        this.ids.put(WildcardPermission.WILDCARD_TOKEN, WILDCARD_ID);
+        this.size = 1;
+    }
+
+    /**
+     * Returns the id of the specified token, assigning it a new id first if it has not been seen before.
+     *
+     * @param token the token to intern
+     * @return the id of the specified token.
+     */
+    public int intern(String token) {
+        Integer id = this.ids.get(token);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = this.ids.get(token);
+            if (id != null) {
+                return id;
+            }
+            int next = this.size;
+            String[] tokens = this.tokens;
+            if (next == tokens.length) {
+                String[] grown = new String[tokens.length * 2];
+                System.arraycopy(tokens, 0, grown, 0, tokens.length);
+                tokens = grown;
+            }
+            tokens[next] = token;
+            this.tokens = tokens;
+            this.size = next + 1;
+            //only publish the id once the reverse lookup can resolve it:
+            this.ids.put(token, next);
+            return next;
+        }
+    }
+
+    /**
+     * Returns the token previously assigned the specified id.
+     *
+     * @param id a token id returned from {@link #intern(String)}
+     * @return the token previously assigned the specified id.
+     * @throws IllegalArgumentException if the id was not assigned by this table.
+     */
+    public String getToken(int id) {
+        String[] tokens = this.tokens;
+        if (id < 0 || id >= this.size || id >= tokens.length) {
+            throw new IllegalArgumentException("Token id [" + id + "] was not assigned by this table.");
+        }
+        return tokens[id];
+    }
+
+    /**
+     * Returns the number of distinct tokens interned by this table, including the wildcard token.
+     *
+     * @return the number of distinct tokens interned by this table, including the wildcard token.
+     */
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,571 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe, in-memory {@link Cache Cache} that is bounded by a maximum number of entries and optionally by a
+ * maximum total {@link Weigher weight}, with optional time-to-live and time-to-idle expiration.
+ * <p/>
+ * Entries are stored in a {@link ConcurrentHashMap ConcurrentHashMap}, so reads never block.  When a write exceeds
+ * the cache's bounds, entries are evicted using the CLOCK (second-chance) approximation of least-recently-used
+ * eviction.  Unlike a {@link org.apache.shiro.util.SoftHashMap SoftHashMap}-backed cache, entries are never cleared
+ * all at once by the garbage collector, which avoids mass reloads when the JVM is under memory pressure.
+ * <h3>Admission</h3>
+ * If {@link #setAdmissionEnabled(boolean) admission} is enabled (the default), the access frequency of every key is
+ * tracked in a compact probabilistic sketch (TinyLFU).  When adding a new entry would require evicting a victim, the
+ * new entry is only retained if it has been requested at least as often as the victim; otherwise the new entry is
+ * discarded and the (more popular) victim is kept.  This prevents a burst of one-off lookups from flushing frequently
+ * used entries out of the cache.
+ * <h3>Expiration</h3>
+ * Expired entries are never returned.  They are removed lazily when accessed, when encountered during eviction, or
+ * when {@link #cleanUp()} is called.
+ * <h3>Loading</h3>
+ * Concurrent {@link #get(Object, CacheLoader) loads} of the same absent key are coalesced into a single load.
+ * <h3>Statistics</h3>
+ * Hit, miss, eviction and expiration counts are available for monitoring.
+ *
+ * @see BoundedCacheManager
+ * @since 1.3
+ */
+public class BoundedCache<K, V> implements LoadingCache<K, V> {
+
+    /**
+     * The default maximum number of entries, equal to {@code 10000}.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final String name;
+
+    private final ConcurrentMap<K, Entry<K, V>> map;
+    /**
+     * CLOCK ring of entries in insertion order.  May contain stale (replaced or removed) entries, which are skipped.
+     */
+    private final Queue<Entry<K, V>> clock;
+    private final AtomicInteger clockSize;
+    private final ReentrantLock evictionLock;
+    private final AtomicInteger size;
+    private final AtomicLong weight;
+
+    private volatile int maxEntries;
+    private volatile long maxWeight;
+    private volatile Weigher<? super K, ? super V> weigher;
+    private volatile long timeToLive;
+    private volatile long timeToIdle;
+    private volatile boolean admissionEnabled;
+    private volatile FrequencySketch sketch;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
+    private final AtomicLong expirationCount;
+
+    private final SingleFlight<K, V> singleFlight;
+
+    public BoundedCache(String name) {
+        this(name, DEFAULT_MAX_ENTRIES);
+    }
+
+    public BoundedCache(String name, int maxEntries) {
+        if (!StringUtils.hasText(name)) {
+            throw new IllegalArgumentException("Cache name cannot be null or empty.");
+        }
+        this.name = name;
+        this.map = new ConcurrentHashMap<K, Entry<K, V>>();
+        this.clock = new ConcurrentLinkedQueue<Entry<K, V>>();
+        this.clockSize = new AtomicInteger();
+        this.evictionLock = new ReentrantLock();
+        this.size = new AtomicInteger();
+        this.weight = new AtomicLong();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        this.expirationCount = new AtomicLong();
+        this.singleFlight = new SingleFlight<K, V>();
+        this.admissionEnabled = true;
+        setMaxEntries(maxEntries);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of entries retained by this cache.  The default value is
+     * {@link #DEFAULT_MAX_ENTRIES}.
+     *
+     * @return the maximum number of entries retained by this cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum number of entries retained by this cache.
+     *
+     * @param maxEntries the maximum number of entries retained by this cache.
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero.");
+        }
+        this.maxEntries = maxEntries;
+        this.sketch = new FrequencySketch(maxEntries);
+        evict(null);
+    }
+
+    /**
+     * Returns the maximum total {@link Weigher weight} of all entries retained by this cache, or {@code 0} if this
+     * cache is not bounded by weight.  The default value is {@code 0}.
+     *
+     * @return the maximum total weight of all entries retained by this cache, or {@code 0} if unbounded.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Sets the maximum total {@link Weigher weight} of all entries retained by this cache, or {@code 0} to not bound
+     * this cache by weight.  If no {@link #setWeigher(Weigher) weigher} is configured, every entry weighs {@code 1}.
+     *
+     * @param maxWeight the maximum total weight of all entries retained by this cache, or {@code 0} if unbounded.
+     */
+    public void setMaxWeight(long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight cannot be negative.");
+        }
+        this.maxWeight = maxWeight;
+        evict(null);
+    }
+
+    public Weigher<? super K, ? super V> getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * Sets the {@code Weigher} used to weigh entries added from now on.  If {@code null} (the default), every entry
+     * weighs {@code 1}.
+     *
+     * @param weigher the {@code Weigher} used to weigh new entries.
+     */
+    public void setWeigher(Weigher<? super K, ? super V> weigher) {
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the number of milliseconds an entry may remain in this cache after it was added, or {@code 0} if entries
+     * do not expire based on their age.  The default value is {@code 0}.
+     *
+     * @return the maximum age of an entry in milliseconds, or {@code 0} if entries do not expire based on their age.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Sets the number of milliseconds an entry may remain in this cache after it was added, or {@code 0} if entries
+     * should not expire based on their age.
+     *
+     * @param timeToLive the maximum age of an entry in milliseconds, or {@code 0} if entries should not expire
+     *                   based on their age.
+     */
+    public void setTimeToLive(long timeToLive) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("timeToLive cannot be negative.");
+        }
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the number of milliseconds an entry may remain in this cache without being read, or {@code 0} if entries
+     * do not expire when idle.  The default value is {@code 0}.
+     *
+     * @return the maximum idle time of an entry in milliseconds, or {@code 0} if entries do not expire when idle.
+     */
+    public long getTimeToIdle() {
+        return timeToIdle;
+    }
+
+    /**
+     * Sets the number of milliseconds an entry may remain in this cache without being read, or {@code 0} if entries
+     * should not expire when idle.
+     *
+     * @param timeToIdle the maximum idle time of an entry in milliseconds, or {@code 0} if entries should not expire
+     *                   when idle.
+     */
+    public void setTimeToIdle(long timeToIdle) {
+        if (timeToIdle < 0) {
+            throw new IllegalArgumentException("timeToIdle cannot be negative.");
+        }
+        this.timeToIdle = timeToIdle;
+    }
+
+    /**
+     * Returns {@code true} if frequency-based (TinyLFU) admission is applied when the cache is full, {@code false}
+     * if new entries always displace the least recently used entry.  The default value is {@code true}.
+     *
+     * @return {@code true} if frequency-based admission is applied when the cache is full, {@code false} otherwise.
+     */
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    public void setAdmissionEnabled(boolean admissionEnabled) {
+        this.admissionEnabled = admissionEnabled;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of entries removed (or rejected by admission) to stay within this cache's bounds.
+     *
+     * @return the number of entries removed (or rejected by admission) to stay within this cache's bounds.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * Returns the total weight of all entries currently in this cache.
+     *
+     * @return the total weight of all entries currently in this cache.
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public V get(K key) throws CacheException {
+        if (key == null) {
+            return null;
+        }
+        Entry<K, V> entry = map.get(key);
+        FrequencySketch sketch = this.sketch;
+        if (sketch != null && admissionEnabled) {
+            sketch.increment(key);
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        long now = currentTimeMillisIfExpiring();
+        if (isExpired(entry, now)) {
+            if (removeEntry(entry)) {
+                expirationCount.incrementAndGet();
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        entry.touch(now, timeToIdle > 0);
+        return entry.value;
+    }
+
+    public V get(K key, CacheLoader<? super K, ? extends V> loader) throws CacheException {
+        return singleFlight.get(this, key, loader);
+    }
+
+    public V put(K key, V value) throws CacheException {
+        if (key == null) {
+            throw new IllegalArgumentException("Cache keys cannot be null.");
+        }
+        if (value == null) {
+            return remove(key);
+        }
+        Weigher<? super K, ? super V> weigher = this.weigher;
+        int entryWeight = weigher != null ? weigher.weigh(key, value) : 1;
+        if (entryWeight < 0) {
+            throw new IllegalStateException("Weigher [" + weigher + "] returned a negative weight.");
+        }
+        Entry<K, V> entry = new Entry<K, V>(key, value, entryWeight, System.currentTimeMillis());
+        Entry<K, V> previous = map.put(key, entry);
+        weight.addAndGet(entryWeight);
+        if (previous != null) {
+            weight.addAndGet(-previous.weight);
+        } else {
+            size.incrementAndGet();
+        }
+        enqueue(entry);
+        if (previous != null) {
+            purgeStaleIfNecessary();
+        }
+        evict(entry);
+        return previous != null && !isExpired(previous, currentTimeMillisIfExpiring()) ? previous.value : null;
+    }
+
+    public V remove(K key) throws CacheException {
+        if (key == null) {
+            return null;
+        }
+        Entry<K, V> entry = map.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        size.decrementAndGet();
+        weight.addAndGet(-entry.weight);
+        purgeStaleIfNecessary();
+        return isExpired(entry, currentTimeMillisIfExpiring()) ? null : entry.value;
+    }
+
+    public void clear() throws CacheException {
+        for (K key : map.keySet()) {
+            remove(key);
+        }
+        purgeStaleIfNecessary();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public Set<K> keys() {
+        long now = currentTimeMillisIfExpiring();
+        Set<K> keys = new LinkedHashSet<K>();
+        for (Entry<K, V> entry : map.values()) {
+            if (!isExpired(entry, now)) {
+                keys.add(entry.key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    public Collection<V> values() {
+        long now = currentTimeMillisIfExpiring();
+        List<V> values = new ArrayList<V>();
+        for (Entry<K, V> entry : map.values()) {
+            if (!isExpired(entry, now)) {
+                values.add(entry.value);
+            }
+        }
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Removes all expired entries from this cache.  Expired entries are otherwise only removed when they are
+     * accessed or encountered during eviction, so this method may be called periodically to reclaim their memory
+     * sooner.
+     */
+    public void cleanUp() {
+        long now = currentTimeMillisIfExpiring();
+        if (now == 0) {
+            return;
+        }
+        for (Map.Entry<K, Entry<K, V>> mapEntry : map.entrySet()) {
+            Entry<K, V> entry = mapEntry.getValue();
+            if (isExpired(entry, now) && removeEntry(entry)) {
+                expirationCount.incrementAndGet();
+            }
+        }
+        purgeStaleIfNecessary();
+    }
+
+    /**
+     * Evicts entries until this cache is within its bounds again.  Only one thread evicts at a time; writers that
+     * find another thread already evicting return immediately and let it restore the bounds.
+     *
+     * @param candidate the entry just added (which is subject to admission), or {@code null}
+     */
+    private void evict(Entry<K, V> candidate) {
+        if (!isOverBounds() || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = currentTimeMillisIfExpiring();
+            //every entry gets at most one second chance per pass, so this loop always terminates:
+            while (isOverBounds()) {
+                Entry<K, V> victim = dequeue();
+                if (victim == null) {
+                    break;
+                }
+                if (map.get(victim.key) != victim) {
+                    //stale (replaced or removed) entry:
+                    continue;
+                }
+                if (isExpired(victim, now)) {
+                    if (removeEntry(victim)) {
+                        expirationCount.incrementAndGet();
+                    }
+                    continue;
+                }
+                if (victim.referenced) {
+                    victim.referenced = false;
+                    enqueue(victim);
+                    continue;
+                }
+                if (candidate != null && victim != candidate && admissionEnabled && !admit(candidate, victim)) {
+                    //the victim is more popular than the new entry - keep the victim and drop the candidate:
+                    enqueue(victim);
+                    victim = candidate;
+                }
+                candidate = null;
+                if (removeEntry(victim)) {
+                    evictionCount.incrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void enqueue(Entry<K, V> entry) {
+        clock.offer(entry);
+        clockSize.incrementAndGet();
+    }
+
+    private Entry<K, V> dequeue() {
+        Entry<K, V> entry = clock.poll();
+        if (entry != null) {
+            clockSize.decrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Removes replaced and removed entries from the CLOCK ring once they outnumber the live entries, so that a cache
+     * that is rarely full (and therefore rarely evicts) does not accumulate them.
+     */
+    private void purgeStaleIfNecessary() {
+        if (clockSize.get() <= (size.get() << 1) + 16 || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (Iterator<Entry<K, V>> i = clock.iterator(); i.hasNext(); ) {
+                Entry<K, V> entry = i.next();
+                if (map.get(entry.key) != entry) {
+                    i.remove();
+                    clockSize.decrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean admit(Entry<K, V> candidate, Entry<K, V> victim) {
+        FrequencySketch sketch = this.sketch;
+        return sketch == null || sketch.frequency(candidate.key) >= sketch.frequency(victim.key);
+    }
+
+    private boolean isOverBounds() {
+        long maxWeight = this.maxWeight;
+        return size.get() > maxEntries || (maxWeight > 0 && weight.get() > maxWeight);
+    }
+
+    private boolean removeEntry(Entry<K, V> entry) {
+        if (map.remove(entry.key, entry)) {
+            size.decrementAndGet();
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current time if entries can expire, or {@code 0} otherwise (which avoids the system call).
+     *
+     * @return the current time if entries can expire, or {@code 0} otherwise.
+     */
+    private long currentTimeMillisIfExpiring() {
+        return (timeToLive > 0 || timeToIdle > 0) ? System.currentTimeMillis() : 0;
+    }
+
+    private boolean isExpired(Entry<K, V> entry, long now) {
+        if (now == 0) {
+            return false;
+        }
+        long ttl = this.timeToLive;
+        if (ttl > 0 && now - entry.creationTime >= ttl) {
+            return true;
+        }
+        long tti = this.timeToIdle;
+        return tti > 0 && now - entry.lastAccessTime >= tti;
+    }
+
+    public String toString() {
+        return new StringBuilder("BoundedCache '")
+                .append(name).append("' (")
+                .append(size())
+                .append(" entries, hits=").append(getHitCount())
+                .append(", misses=").append(getMissCount())
+                .append(", evictions=").append(getEvictionCount())
+                .append(", expirations=").append(getExpirationCount())
+                .append(")")
+                .toString();
+    }
+
+    private static final class Entry<K, V> {
+
+        private final K key;
+        private final V value;
+        private final int weight;
+        private final long creationTime;
+        private volatile long lastAccessTime;
+        private volatile boolean referenced;
+
+        private Entry(K key, V value, int weight, long creationTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.creationTime = creationTime;
+            this.lastAccessTime = creationTime;
+        }
+
+        private void touch(long now, boolean trackAccessTime) {
+            //avoid volatile writes (and the associated cache line invalidation) where possible:
+            if (!referenced) {
+                referenced = true;
+            }
+            if (trackAccessTime && now != lastAccessTime) {
+                lastAccessTime = now;
+            }
+        }
+    }
+}
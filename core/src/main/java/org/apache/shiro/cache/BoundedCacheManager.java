@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * Memory-only {@link CacheManager CacheManager} implementation usable in production environments that creates
+ * {@link BoundedCache BoundedCache}s: concurrent caches bounded by a maximum number of entries (and optionally a maximum
+ * total weight), with frequency-based admission, optional time-to-live and time-to-idle expiration and hit, miss and
+ * eviction statistics.
+ * <p/>
+ * Unlike the {@link MemoryConstrainedCacheManager MemoryConstrainedCacheManager}, whose {@code SoftHashMap}-backed
+ * caches may be cleared by the garbage collector all at once under memory pressure, caches created by this manager
+ * only shed entries one at a time to stay within their configured bounds.
+ * <p/>
+ * The properties of this manager are applied to every cache it creates.  Individual caches may be reconfigured after
+ * creation by casting the result of {@link #getCache(String) getCache} to {@code BoundedCache}, or a separately
+ * configured {@code BoundedCache} may be assigned directly to the component that uses it (for example
+ * {@code AuthorizingRealm.setAuthorizationCache}).
+ * <p/>
+ * As with the {@code MemoryConstrainedCacheManager}, the caches do not offer any enterprise-level features such as
+ * cache coherency, failover or distribution.
+ * <h3>Sessions</h3>
+ * A bounded cache drops entries, so it must not be the system of record for sessions: an
+ * {@link org.apache.shiro.session.mgt.eis.EnterpriseCacheSessionDAO EnterpriseCacheSessionDAO} using this manager
+ * loses sessions - logging their users out - once more sessions are active than the cache holds.  Use a
+ * {@code SessionDAO} with its own storage instead, such as the
+ * {@link org.apache.shiro.session.mgt.eis.MemorySessionDAO MemorySessionDAO}.  To at least never reject brand-new
+ * sessions, a {@link org.apache.shiro.session.mgt.eis.CachingSessionDAO CachingSessionDAO} disables frequency-based
+ * admission on the active sessions cache it acquires from this manager, whatever its name.
+ *
+ * @since 1.3
+ */
+public class BoundedCacheManager extends AbstractCacheManager {
+
+    private int maxEntries = BoundedCache.DEFAULT_MAX_ENTRIES;
+    private long maxWeight = 0;
+    private Weigher weigher;
+    private long timeToLive = 0;
+    private long timeToIdle = 0;
+    private boolean admissionEnabled = true;
+
+    /**
+     * Returns the maximum number of entries retained by each created cache.  The default value is
+     * {@link BoundedCache#DEFAULT_MAX_ENTRIES}.
+     *
+     * @return the maximum number of entries retained by each created cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the maximum total weight of the entries retained by each created cache, or {@code 0} (the default) if
+     * caches are not bounded by weight.
+     *
+     * @return the maximum total weight of the entries retained by each created cache, or {@code 0} if unbounded.
+     * @see BoundedCache#setMaxWeight(long)
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public Weigher getWeigher() {
+        return weigher;
+    }
+
+    public void setWeigher(Weigher weigher) {
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the time-to-live in milliseconds of entries in each created cache, or {@code 0} (the default) if entries
+     * do not expire based on their age.
+     *
+     * @return the time-to-live in milliseconds of entries in each created cache, or {@code 0} for no expiration.
+     * @see BoundedCache#setTimeToLive(long)
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the time-to-idle in milliseconds of entries in each created cache, or {@code 0} (the default) if entries
+     * do not expire when idle.
+     *
+     * @return the time-to-idle in milliseconds of entries in each created cache, or {@code 0} for no expiration.
+     * @see BoundedCache#setTimeToIdle(long)
+     */
+    public long getTimeToIdle() {
+        return timeToIdle;
+    }
+
+    public void setTimeToIdle(long timeToIdle) {
+        this.timeToIdle = timeToIdle;
+    }
+
+    /**
+     * Returns whether frequency-based admission is enabled for each created cache.  The default value is
+     * {@code true}.
+     *
+     * @return whether frequency-based admission is enabled for each created cache.
+     * @see BoundedCache#setAdmissionEnabled(boolean)
+     */
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    public void setAdmissionEnabled(boolean admissionEnabled) {
+        this.admissionEnabled = admissionEnabled;
+    }
+
+    /**
+     * Returns a new {@link BoundedCache BoundedCache} configured with this manager's properties.
+     *
+     * @param name the name of the cache
+     * @return a new {@link BoundedCache BoundedCache} configured with this manager's properties.
+     */
+    @SuppressWarnings({"unchecked"})
+    @Override
+    protected Cache createCache(String name) throws CacheException {
+        BoundedCache<Object, Object> cache = new BoundedCache<Object, Object>(name, getMaxEntries());
+        cache.setMaxWeight(getMaxWeight());
+        cache.setWeigher(getWeigher());
+        cache.setTimeToLive(getTimeToLive());
+        cache.setTimeToIdle(getTimeToIdle());
+        cache.setAdmissionEnabled(isAdmissionEnabled());
+        return cache;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * Computes the value to be cached for a key that is not present in a {@link LoadingCache LoadingCache}.
+ *
+ * @see LoadingCache#get(Object, CacheLoader)
+ * @since 1.3
+ */
+public interface CacheLoader<K, V> {
+
+    /**
+     * Computes (for example, looks up from a data store) the value to be cached for the specified key.  A
+     * {@code null} return value indicates there is no value for the key; {@code null} values are never cached.
+     * <p/>
+     * Any {@code RuntimeException} or {@code Error} thrown by this method is propagated to the caller and to every
+     * other caller that was waiting for the same key to be loaded.
+     *
+     * @param key the key for which to compute the value
+     * @return the value to be cached for the specified key, or {@code null} if there is no such value.
+     */
+    V load(K key);
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * A probabilistic, compact estimate of how often keys have been accessed, used for TinyLFU-style cache admission.
+ * <p/>
+ * This is a Count-Min sketch of 4-bit counters: each key maps to one counter in each of four rows (all four rows are
+ * packed into the same {@code long}s), and the estimated frequency of a key is the minimum of its counters.  Once
+ * the number of recorded accesses reaches a sample size proportional to the cache's capacity, all counters are
+ * halved so that the sketch favors recent history.
+ * <p/>
+ * Updates are deliberately unsynchronized: concurrent increments may occasionally be lost, which only slightly
+ * reduces the accuracy of an estimate that is approximate by design, and every counter always stays within its
+ * 4-bit range.
+ *
+ * @since 1.3
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int SAMPLE_FACTOR = 10;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(8, ceilingPowerOfTwo(Math.max(1, maximumSize)));
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = (int) Math.min((long) SAMPLE_FACTOR * Math.max(1, maximumSize), Integer.MAX_VALUE);
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        if (x >= (1 << 30)) {
+            return 1 << 30;
+        }
+        int highest = Integer.highestOneBit(x);
+        return highest == x ? x : highest << 1;
+    }
+
+    /**
+     * Returns the estimated number of times the specified key has been accessed, between {@code 0} and {@code 15}.
+     *
+     * @param key the key to check
+     * @return the estimated number of times the specified key has been accessed.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the specified key.
+     *
+     * @param key the accessed key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        long value = table[i];
+        if ((value & mask) != mask) {
+            table[i] = value + (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter (and the number of additions), aging the recorded history.
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = Math.max(0, (additions >>> 1) - (count >>> 2));
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
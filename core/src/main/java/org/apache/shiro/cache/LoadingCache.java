@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * A {@link Cache Cache} that supports read-through loading of absent values, with at most one concurrent load per
+ * key.
+ * <p/>
+ * This is an optional extension of the {@code Cache} SPI: components that use a cache (such as
+ * {@link org.apache.shiro.realm.AuthorizingRealm AuthorizingRealm}) check whether the cache they acquired from a
+ * {@link CacheManager CacheManager} implements this interface and, if it does, use
+ * {@link #get(Object, CacheLoader) get(key, loader)} instead of a separate {@code get} followed by a {@code put}.
+ * This prevents a cache stampede: when a popular entry is absent (for example after it expired or the cache was
+ * cleared), only one caller computes its value and all concurrent callers for the same key wait for and share that
+ * result, instead of all of them querying the underlying data store at once.
+ *
+ * @see SingleFlight
+ * @since 1.3
+ */
+public interface LoadingCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns the value cached under the specified {@code key}, using the specified {@code loader} to compute and
+     * cache it first if it is absent.  If another caller is already loading the same key, this method waits for that
+     * load to complete and returns its result instead of invoking the {@code loader}.
+     *
+     * @param key    the key of the value to return
+     * @param loader the loader used to compute the value if it is absent
+     * @return the cached or loaded value, or {@code null} if the loader did not find a value.
+     * @throws CacheException if there is a problem accessing the underlying cache system or the calling thread is
+     *                        interrupted while waiting for another caller's load.  Exceptions thrown by the loader
+     *                        itself are propagated as-is.
+     */
+    V get(K key, CacheLoader<? super K, ? extends V> loader) throws CacheException;
+}
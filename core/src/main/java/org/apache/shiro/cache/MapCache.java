@@ -28,10 +28,13 @@ import java.util.Set;
 /**
  * A <code>MapCache</code> is a {@link Cache Cache} implementation that uses a backing {@link Map} instance to store
  * and retrieve cached data.
+ * <p/>
+ * As of 1.3, this class is also a {@link LoadingCache LoadingCache}: concurrent
+ * {@link #get(Object, CacheLoader) loads} of the same key are coalesced into a single load.
  *
  * @since 1.0
  */
-public class MapCache<K, V> implements Cache<K, V> {
+public class MapCache<K, V> implements LoadingCache<K, V> {
 
     /**
      * Backing instance.
@@ -43,6 +46,11 @@ public class MapCache<K, V> implements Cache<K, V> {
      */
     private final String name;
 
+    /**
+     * Coordinates concurrent loads of absent keys.
+     */
+    private final SingleFlight<K, V> singleFlight = new SingleFlight<K, V>();
+
     public MapCache(String name, Map<K, V> backingMap) {
         if (name == null) {
             throw new IllegalArgumentException("Cache name cannot be null.");
@@ -58,6 +66,10 @@ public class MapCache<K, V> implements Cache<K, V> {
         return map.get(key);
     }
 
+    public V get(K key, CacheLoader<? super K, ? extends V> loader) throws CacheException {
+        return singleFlight.get(this, key, loader);
+    }
+
     public V put(K key, V value) throws CacheException {
         return map.put(key, value);
     }
@@ -30,6 +30,9 @@ import org.apache.shiro.util.SoftHashMap;
  * cache coherency, optimistic locking, failover or other similar features.  For more enterprise features, consider
  * using a different {@code CacheManager} implementation backed by an enterprise-grade caching product (EhCache,
  * TerraCotta, Coherence, GigaSpaces, etc, etc).
+ * <p/>
+ * Note that the garbage collector may clear a {@code SoftHashMap} all at once under memory pressure.  If a predictable
+ * cache size is preferred, consider the {@link BoundedCacheManager BoundedCacheManager} instead.
  *
  * @since 1.0
  */
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coordinates the loads of a {@link LoadingCache LoadingCache} so that at most one load per key is in flight at any
+ * time.  {@code Cache} implementations can support the {@code LoadingCache} contract by delegating to an instance of
+ * this class:
+ * <pre>
+ * public V get(K key, CacheLoader&lt;? super K, ? extends V&gt; loader) {
+ *     return singleFlight.get(this, key, loader);
+ * }</pre>
+ * The first caller to miss a given key becomes its loader: it checks the cache once more, invokes the
+ * {@code CacheLoader} and caches any non-null result.  Callers that miss the same key while it is loading wait for and
+ * share that result (or exception).
+ *
+ * @since 1.3
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> loads = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    /**
+     * Returns the value cached under the specified {@code key} in the specified {@code cache}, loading and caching it
+     * first if it is absent, as described in {@link LoadingCache#get(Object, CacheLoader)}.
+     *
+     * @param cache  the cache to read from and populate
+     * @param key    the key of the value to return
+     * @param loader the loader used to compute the value if it is absent
+     * @return the cached or loaded value, or {@code null} if the loader did not find a value.
+     * @throws CacheException if there is a problem accessing the cache or the calling thread is interrupted while
+     *                        waiting for another caller's load.
+     */
+    public V get(final Cache<K, V> cache, final K key, final CacheLoader<? super K, ? extends V> loader)
+            throws CacheException {
+        if (key == null) {
+            return null;
+        }
+        V value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        FutureTask<V> load = loads.get(key);
+        if (load == null) {
+            FutureTask<V> task = new FutureTask<V>(new Callable<V>() {
+                public V call() {
+                    //another load may have completed between our cache miss and becoming the loader:
+                    V value = cache.get(key);
+                    if (value == null) {
+                        value = loader.load(key);
+                        if (value != null) {
+                            cache.put(key, value);
+                        }
+                    }
+                    return value;
+                }
+            });
+            load = loads.putIfAbsent(key, task);
+            if (load == null) {
+                load = task;
+                try {
+                    task.run();
+                } finally {
+                    loads.remove(key, task);
+                }
+            }
+        }
+        return await(load);
+    }
+
+    private V await(FutureTask<V> load) throws CacheException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while waiting for a concurrent cache load.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CacheException(cause);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+/**
+ * Calculates the relative weight of a cache entry, used by caches that bound their contents by total weight rather
+ * than (or in addition to) their number of entries, such as the {@link BoundedCache BoundedCache}.
+ *
+ * @see BoundedCache#setWeigher(Weigher)
+ * @since 1.3
+ */
+public interface Weigher<K, V> {
+
+    /**
+     * Returns the weight of the specified cache entry.  The weight of an entry is calculated once when it is added
+     * and must not be negative.
+     *
+     * @param key   the key of the entry being weighed
+     * @param value the value of the entry being weighed
+     * @return the weight of the specified cache entry.
+     */
+    int weigh(K key, V value);
+}
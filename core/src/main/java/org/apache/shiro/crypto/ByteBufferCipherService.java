@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CipherService} that can also encrypt and decrypt {@link ByteBuffer}s directly, without creating
+ * intermediate arrays for the result.
+ *
+ * @since 1.3
+ */
+public interface ByteBufferCipherService extends CipherService {
+
+    /**
+     * Encrypts the {@link ByteBuffer#remaining() remaining} bytes of the {@code plaintext} buffer via the specified
+     * cipher key, writing the encrypted representation into the {@code ciphertext} buffer starting at its current
+     * position.  Unlike {@link #encrypt(byte[], byte[]) the byte array variant}, no intermediate arrays are created
+     * for the result, so this method is well suited to encrypting directly into (possibly
+     * {@link ByteBuffer#isDirect() direct}) buffers used for NIO channel I/O.
+     * <p/>
+     * On success, the position of the {@code plaintext} buffer is advanced to its limit and the position of the
+     * {@code ciphertext} buffer is advanced by the number of bytes written.  On failure, neither position is changed.
+     * The {@code ciphertext} buffer must have enough space remaining for the encrypted data, which may exceed the
+     * plaintext by implementation-specific data such as an initialization vector, padding or an authentication tag.
+     *
+     * @param plaintext     the buffer supplying the data to encrypt
+     * @param ciphertext    the buffer receiving the encrypted data
+     * @param encryptionKey the cipher key used during encryption.
+     * @return the number of bytes written to the {@code ciphertext} buffer.
+     * @throws CryptoException if there is an error during encryption, including if the {@code ciphertext} buffer
+     *                         is too small.
+     */
+    int encrypt(ByteBuffer plaintext, ByteBuffer ciphertext, byte[] encryptionKey) throws CryptoException;
+
+    /**
+     * Decrypts the {@link ByteBuffer#remaining() remaining} bytes of the {@code ciphertext} buffer via the specified
+     * cipher key, writing the original (pre-encrypted) data into the {@code plaintext} buffer starting at its current
+     * position.  The remaining bytes must be exactly the data previously produced by an {@code encrypt} method.
+     * <p/>
+     * On success, the position of the {@code ciphertext} buffer is advanced to its limit and the position of the
+     * {@code plaintext} buffer is advanced by the number of bytes written.  On failure, neither position is changed.
+     * The {@code plaintext} buffer should have at least as many bytes remaining as the {@code ciphertext} buffer.
+     *
+     * @param ciphertext    the buffer supplying the previously encrypted data to decrypt
+     * @param plaintext     the buffer receiving the decrypted data
+     * @param decryptionKey the cipher key used during decryption.
+     * @return the number of bytes written to the {@code plaintext} buffer.
+     * @throws CryptoException if there is an error during decryption, including if the {@code plaintext} buffer is
+     *                         too small.
+     */
+    int decrypt(ByteBuffer ciphertext, ByteBuffer plaintext, byte[] decryptionKey) throws CryptoException;
+}
@@ -0,0 +1,819 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.crypto;
+
+import org.apache.shiro.util.ByteSource;
+import org.apache.shiro.util.Destroyable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code CipherService} for large payloads, which splits data into fixed-size chunks that are encrypted and
+ * authenticated independently with AES in {@link OperationMode#GCM GCM} mode.  Because chunks do not depend on each
+ * other, they are encrypted and decrypted in parallel, and any byte range of a stored ciphertext can be
+ * {@link #decrypt(FileChannel, long, long, OutputStream, byte[]) decrypted} without processing the data before it.
+ * <h2>Format</h2>
+ * The ciphertext starts with a header of {@value #HEADER_SIZE} bytes: a version byte, the chunk size in bytes (a
+ * 4 byte big-endian integer), a random 16 byte salt and a random 7 byte nonce prefix.  Each chunk of
+ * {@link #setChunkSize(int) chunkSize} plaintext bytes follows as ciphertext with a 16 byte authentication tag
+ * appended; only the last chunk may be shorter, and it is empty for empty payloads.
+ * <ul>
+ * <li>Every payload is encrypted with its own key, derived from the specified key and the salt via
+ * {@code HmacSHA256}, so nonces never repeat across payloads encrypted with the same key.</li>
+ * <li>The nonce of each chunk is the nonce prefix followed by the chunk index (4 bytes) and a flag marking the last
+ * chunk, so chunks cannot be reordered and truncating the ciphertext at a chunk boundary fails decryption.</li>
+ * <li>The header is authenticated with every chunk, so it cannot be modified either.</li>
+ * </ul>
+ * This format is not compatible with the output of other {@code CipherService} implementations, such as the
+ * {@link AesCipherService}, although keys generated by an {@code AesCipherService} can be used.
+ * <h2>Parallelism</h2>
+ * Chunks are processed by the configured {@link #setExecutorService(ExecutorService) executorService}, or by an
+ * internal pool of {@link #setThreads(int) threads} daemon threads that is created when first needed and shut down by
+ * {@link #destroy()}.  At most twice as many chunks as there are threads are held in memory by a streaming operation.
+ * Payloads consisting of a single chunk are processed by the calling thread.
+ * <p/>
+ * This service requires a JCA Provider supporting {@code AES/GCM/NoPadding}, which is standard as of Java 7.
+ *
+ * @since 1.3
+ */
+public class ChunkedCipherService implements ByteBufferCipherService, Destroyable {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedCipherService.class);
+
+    /**
+     * Default number of plaintext bytes per chunk, {@code 64} KB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Size of the header preceding the chunks.
+     */
+    public static final int HEADER_SIZE = 28;
+
+    /**
+     * Size of the authentication tag appended to each chunk.
+     */
+    public static final int TAG_SIZE = 16;
+
+    /**
+     * Maximum number of plaintext bytes per chunk, {@code 64} MB.  Ciphertexts whose header specifies a larger chunk
+     * size are rejected before any chunk is read, since the header is only authenticated along with the chunks.
+     */
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final byte VERSION = 1;
+    private static final int SALT_SIZE = 16;
+    private static final int NONCE_PREFIX_SIZE = 7;
+    private static final int NONCE_SIZE = 12;
+    private static final long MAX_CHUNKS = 1L << 32;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEY_DERIVATION_ALGORITHM = "HmacSHA256";
+
+    private static final AtomicInteger instanceCount = new AtomicInteger();
+
+    private int chunkSize;
+    private int threads;
+    private ExecutorService executorService;
+    private ExecutorService defaultExecutorService;
+    private SecureRandom secureRandom;
+
+    /**
+     * Cipher instances retained for reuse by the current thread.  Holds JDK types only, see
+     * {@link JcaCipherService}.
+     */
+    private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>();
+
+    public ChunkedCipherService() {
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns the number of plaintext bytes per chunk of newly encrypted payloads.  Decryption always uses the chunk
+     * size recorded in the payload header.  The default is {@code 64} KB.
+     *
+     * @return the number of plaintext bytes per chunk of newly encrypted payloads.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the number of plaintext bytes per chunk of newly encrypted payloads.  Larger chunks reduce the overhead of
+     * the authentication tags, smaller chunks make random access to small byte ranges cheaper.
+     *
+     * @param chunkSize the number of plaintext bytes per chunk of newly encrypted payloads.
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive or exceeds {@link #MAX_CHUNK_SIZE}.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be greater than zero and at most " + MAX_CHUNK_SIZE +
+                    ".");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of threads of the internal pool used when no
+     * {@link #getExecutorService() executorService} is configured.  It also limits the number of chunks held in
+     * memory by streaming operations.  Defaults to the number of available processors.
+     *
+     * @return the number of threads used to process chunks.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads of the internal pool used when no {@link #getExecutorService() executorService} is
+     * configured.  A value of {@code 1} processes all chunks in the calling thread.
+     *
+     * @param threads the number of threads used to process chunks.
+     * @throws IllegalArgumentException if {@code threads} is not positive.
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be greater than zero.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the executor processing chunks, or {@code null} if an internal pool of
+     * {@link #getThreads() threads} is used.
+     *
+     * @return the executor processing chunks, or {@code null} if an internal pool is used.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Sets the executor processing chunks.  The executor is not shut down by {@link #destroy()}.
+     *
+     * @param executorService the executor processing chunks, or {@code null} to use an internal pool.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns the source of randomness for salts and nonce prefixes.  If one is not configured, a default
+     * {@code SecureRandom} will be used.
+     *
+     * @return the source of randomness for salts and nonce prefixes.
+     */
+    public SecureRandom getSecureRandom() {
+        return secureRandom;
+    }
+
+    /**
+     * Sets the source of randomness for salts and nonce prefixes.
+     *
+     * @param secureRandom the source of randomness for salts and nonce prefixes.
+     */
+    public void setSecureRandom(SecureRandom secureRandom) {
+        this.secureRandom = secureRandom;
+    }
+
+    /**
+     * Shuts down the internal thread pool, if it was created.
+     */
+    public void destroy() {
+        ExecutorService service;
+        synchronized (this) {
+            service = this.defaultExecutorService;
+            this.defaultExecutorService = null;
+        }
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the ciphertext of a plaintext of the specified length.
+     *
+     * @param plaintextLength the plaintext length in bytes
+     * @return the number of bytes of the ciphertext of a plaintext of the specified length.
+     */
+    public long getCiphertextLength(long plaintextLength) {
+        return HEADER_SIZE + plaintextLength + chunkCount(plaintextLength, getChunkSize()) * TAG_SIZE;
+    }
+
+    /**
+     * Returns the length of the plaintext of the ciphertext stored in the specified channel, as accepted by
+     * {@link #decrypt(FileChannel, long, long, OutputStream, byte[])}.
+     *
+     * @param ciphertext the channel to read the ciphertext from
+     * @return the length of the plaintext of the ciphertext stored in the specified channel.
+     * @throws CryptoException if the ciphertext header cannot be read or is invalid.
+     */
+    public long getPlaintextLength(FileChannel ciphertext) throws CryptoException {
+        try {
+            ByteBuffer header = read(ciphertext, 0, HEADER_SIZE);
+            return plaintextLength(ciphertext.size() - HEADER_SIZE, readChunkSize(header));
+        } catch (IOException e) {
+            throw new CryptoException("Unable to read the ciphertext header.", e);
+        }
+    }
+
+    public ByteSource encrypt(byte[] raw, byte[] encryptionKey) throws CryptoException {
+        byte[] ciphertext = new byte[toArrayLength(getCiphertextLength(raw.length))];
+        encrypt(ByteBuffer.wrap(raw), ByteBuffer.wrap(ciphertext), encryptionKey);
+        return ByteSource.Util.bytes(ciphertext);
+    }
+
+    public ByteSource decrypt(byte[] encrypted, byte[] decryptionKey) throws CryptoException {
+        ByteBuffer in = ByteBuffer.wrap(encrypted);
+        byte[] plaintext = new byte[toArrayLength(plaintextLength(in))];
+        decrypt(in, ByteBuffer.wrap(plaintext), decryptionKey);
+        return ByteSource.Util.bytes(plaintext);
+    }
+
+    public int encrypt(ByteBuffer plaintext, ByteBuffer ciphertext, byte[] encryptionKey) throws CryptoException {
+        int length = plaintext.remaining();
+        long required = getCiphertextLength(length);
+        if (ciphertext.remaining() < required) {
+            throw new CryptoException("The ciphertext buffer has " + ciphertext.remaining() + " bytes remaining, but " +
+                    required + " bytes are required.");
+        }
+        Header header = newHeader(encryptionKey);
+
+        int in = plaintext.position();
+        int out = ciphertext.position();
+        ByteBuffer headerOut = ciphertext.duplicate();
+        headerOut.put(header.bytes);
+
+        int size = header.chunkSize;
+        long chunks = chunkCount(length, size);
+        Pipeline pipeline = new Pipeline(null, chunks == 1);
+        try {
+            for (long index = 0; index < chunks; index++) {
+                int offset = (int) (index * size);
+                int chunkLength = Math.min(size, length - offset);
+                ByteBuffer src = slice(plaintext, in + offset, chunkLength);
+                ByteBuffer dst = slice(ciphertext, out + HEADER_SIZE + (int) (index * (size + TAG_SIZE)),
+                        chunkLength + TAG_SIZE);
+                pipeline.submit(new BufferChunk(Cipher.ENCRYPT_MODE, header, index, index == chunks - 1, src, dst));
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            //buffer operations do not write to a stream:
+            throw new IllegalStateException(e);
+        } finally {
+            pipeline.cancel();
+        }
+
+        plaintext.position(plaintext.limit());
+        ciphertext.position(out + (int) required);
+        return (int) required;
+    }
+
+    public int decrypt(ByteBuffer ciphertext, ByteBuffer plaintext, byte[] decryptionKey) throws CryptoException {
+        long length = plaintextLength(ciphertext);
+        if (plaintext.remaining() < length) {
+            throw new CryptoException("The plaintext buffer has " + plaintext.remaining() + " bytes remaining, but " +
+                    length + " bytes are required.");
+        }
+        int in = ciphertext.position();
+        int out = plaintext.position();
+        byte[] headerBytes = new byte[HEADER_SIZE];
+        ciphertext.duplicate().get(headerBytes);
+        Header header = parseHeader(headerBytes, decryptionKey);
+
+        int size = header.chunkSize;
+        long chunks = chunkCount(length, size);
+        Pipeline pipeline = new Pipeline(null, chunks == 1);
+        try {
+            for (long index = 0; index < chunks; index++) {
+                int offset = (int) (index * size);
+                int chunkLength = (int) Math.min(size, length - offset);
+                ByteBuffer src = slice(ciphertext, in + HEADER_SIZE + (int) (index * (size + TAG_SIZE)),
+                        chunkLength + TAG_SIZE);
+                ByteBuffer dst = slice(plaintext, out + offset, chunkLength);
+                pipeline.submit(new BufferChunk(Cipher.DECRYPT_MODE, header, index, index == chunks - 1, src, dst));
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            //buffer operations do not write to a stream:
+            throw new IllegalStateException(e);
+        } finally {
+            pipeline.cancel();
+        }
+
+        ciphertext.position(ciphertext.limit());
+        plaintext.position(out + (int) length);
+        return (int) length;
+    }
+
+    public void encrypt(InputStream in, OutputStream out, byte[] encryptionKey) throws CryptoException {
+        Header header = newHeader(encryptionKey);
+        int size = header.chunkSize;
+        Pipeline pipeline = null;
+        try {
+            out.write(header.bytes);
+            byte[] current = readChunk(in, size);
+            for (long index = 0; ; index++) {
+                checkChunkIndex(index);
+                //read ahead to find out if the current chunk is the last one:
+                byte[] next = current.length < size ? null : readChunk(in, size);
+                boolean last = next == null || next.length == 0;
+                if (pipeline == null) {
+                    pipeline = new Pipeline(out, last);
+                }
+                pipeline.submit(new ArrayChunk(Cipher.ENCRYPT_MODE, header, index, last, current));
+                if (last) {
+                    break;
+                }
+                current = next;
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            if (pipeline != null) {
+                pipeline.cancel();
+            }
+        }
+    }
+
+    public void decrypt(InputStream in, OutputStream out, byte[] decryptionKey) throws CryptoException {
+        Pipeline pipeline = null;
+        try {
+            byte[] headerBytes = readChunk(in, HEADER_SIZE);
+            if (headerBytes.length < HEADER_SIZE) {
+                throw new CryptoException("Unable to read the ciphertext header from the InputStream.");
+            }
+            Header header = parseHeader(headerBytes, decryptionKey);
+            int size = header.chunkSize + TAG_SIZE;
+            byte[] current = readChunk(in, size);
+            for (long index = 0; ; index++) {
+                checkChunkIndex(index);
+                byte[] next = current.length < size ? null : readChunk(in, size);
+                boolean last = next == null || next.length == 0;
+                if (pipeline == null) {
+                    pipeline = new Pipeline(out, last);
+                }
+                pipeline.submit(new ArrayChunk(Cipher.DECRYPT_MODE, header, index, last, current));
+                if (last) {
+                    break;
+                }
+                current = next;
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            if (pipeline != null) {
+                pipeline.cancel();
+            }
+        }
+    }
+
+    /**
+     * Decrypts a range of the plaintext of the ciphertext stored in the specified channel, reading and authenticating
+     * only the chunks overlapping that range.  The ciphertext must occupy the entire channel, starting at position
+     * {@code 0}; the channel's position is not changed.
+     *
+     * @param ciphertext    the channel to read the ciphertext from
+     * @param offset        the offset in the plaintext of the first byte to decrypt
+     * @param length        the number of plaintext bytes to decrypt
+     * @param out           the stream to send the decrypted data
+     * @param decryptionKey the cipher key to use for decryption
+     * @throws IllegalArgumentException if the range exceeds the {@link #getPlaintextLength(FileChannel) plaintext}.
+     * @throws CryptoException          if there is any problem during decryption, including if any chunk in the range
+     *                                  fails authentication.
+     */
+    public void decrypt(FileChannel ciphertext, long offset, long length, OutputStream out, byte[] decryptionKey)
+            throws IllegalArgumentException, CryptoException {
+        Pipeline pipeline = null;
+        try {
+            ByteBuffer headerBytes = read(ciphertext, 0, HEADER_SIZE);
+            Header header = parseHeader(headerBytes.array(), decryptionKey);
+            long ciphertextLength = ciphertext.size();
+            long plaintextLength = plaintextLength(ciphertextLength - HEADER_SIZE, header.chunkSize);
+            if (offset < 0 || length < 0 || offset + length > plaintextLength) {
+                throw new IllegalArgumentException("Range [" + offset + ", " + (offset + length) + ") exceeds the " +
+                        "plaintext length " + plaintextLength + ".");
+            }
+            if (length == 0) {
+                return;
+            }
+
+            int size = header.chunkSize;
+            long lastChunk = chunkCount(plaintextLength, size) - 1;
+            long first = offset / size;
+            long last = (offset + length - 1) / size;
+            pipeline = new Pipeline(out, first == last);
+            for (long index = first; index <= last; index++) {
+                long position = HEADER_SIZE + index * (size + TAG_SIZE);
+                int chunkLength = (int) Math.min(size + TAG_SIZE, ciphertextLength - position);
+                byte[] chunk = read(ciphertext, position, chunkLength).array();
+                int from = index == first ? (int) (offset - index * size) : 0;
+                int to = index == last ? (int) (offset + length - index * size) : size;
+                pipeline.submit(new ArrayChunk(Cipher.DECRYPT_MODE, header, index, index == lastChunk, chunk,
+                        from, to));
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        } finally {
+            if (pipeline != null) {
+                pipeline.cancel();
+            }
+        }
+    }
+
+    private Header newHeader(byte[] key) {
+        SecureRandom random = getSecureRandom();
+        if (random == null) {
+            random = JcaCipherService.getDefaultSecureRandom();
+        }
+        byte[] bytes = new byte[HEADER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.put(VERSION);
+        buffer.putInt(getChunkSize());
+        byte[] saltAndNoncePrefix = new byte[SALT_SIZE + NONCE_PREFIX_SIZE];
+        random.nextBytes(saltAndNoncePrefix);
+        buffer.put(saltAndNoncePrefix);
+        return parseHeader(bytes, key);
+    }
+
+    private Header parseHeader(byte[] bytes, byte[] key) {
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("key argument cannot be null or empty.");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int chunkSize = readChunkSize(buffer);
+        byte[] salt = new byte[SALT_SIZE];
+        buffer.get(salt);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        buffer.get(noncePrefix);
+
+        byte[] derived;
+        try {
+            Mac mac = Mac.getInstance(KEY_DERIVATION_ALGORITHM);
+            mac.init(new SecretKeySpec(key, KEY_DERIVATION_ALGORITHM));
+            derived = mac.doFinal(salt);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException("Unable to derive the payload key.", e);
+        }
+        if (key.length > derived.length) {
+            throw new IllegalArgumentException("key argument cannot be longer than " + derived.length + " bytes.");
+        }
+        return new Header(bytes, chunkSize, new SecretKeySpec(derived, 0, key.length, "AES"), noncePrefix);
+    }
+
+    private static int readChunkSize(ByteBuffer header) {
+        if (header.remaining() < HEADER_SIZE) {
+            throw new CryptoException("Ciphertext is too short to contain a header.");
+        }
+        ByteBuffer buffer = header.duplicate();
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new CryptoException("Unsupported ciphertext version " + version + ".");
+        }
+        int chunkSize = buffer.getInt();
+        //checked before anything of that size is allocated, as the header is not authenticated yet:
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new CryptoException("Invalid chunk size " + chunkSize + " in ciphertext header.");
+        }
+        return chunkSize;
+    }
+
+    private static long plaintextLength(ByteBuffer ciphertext) {
+        return plaintextLength(ciphertext.remaining() - HEADER_SIZE, readChunkSize(ciphertext));
+    }
+
+    private static long plaintextLength(long bodyLength, int chunkSize) {
+        long encryptedChunkSize = (long) chunkSize + TAG_SIZE;
+        long chunks = (bodyLength + encryptedChunkSize - 1) / encryptedChunkSize;
+        if (chunks == 0 || bodyLength - (chunks - 1) * encryptedChunkSize < TAG_SIZE) {
+            throw new CryptoException("Ciphertext is truncated.");
+        }
+        return bodyLength - chunks * TAG_SIZE;
+    }
+
+    private static long chunkCount(long plaintextLength, int chunkSize) {
+        //empty payloads still have a (empty) last chunk:
+        return Math.max(1, (plaintextLength + chunkSize - 1) / chunkSize);
+    }
+
+    private static void checkChunkIndex(long index) {
+        if (index >= MAX_CHUNKS) {
+            throw new CryptoException("Payload exceeds the maximum of " + MAX_CHUNKS + " chunks.");
+        }
+    }
+
+    private static int toArrayLength(long length) {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Payload of " + length + " bytes does not fit a byte array.");
+        }
+        return (int) length;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(position + length);
+        slice.position(position);
+        return slice;
+    }
+
+    private static byte[] readChunk(InputStream in, int size) throws IOException {
+        byte[] chunk = new byte[size];
+        int read = 0;
+        while (read < size) {
+            int n = in.read(chunk, read, size - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        if (read == size) {
+            return chunk;
+        }
+        byte[] trimmed = new byte[read];
+        System.arraycopy(chunk, 0, trimmed, 0, read);
+        return trimmed;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new CryptoException("Ciphertext is truncated.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a cipher initialized to process the specified chunk.  The caller owns the cipher until it completed
+     * the chunk, after which it is reinitialized for the next chunk processed by the same thread.
+     */
+    private Cipher initCipher(int mode, Header header, long index, boolean last) throws GeneralSecurityException {
+        Cipher cipher = this.ciphers.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+            this.ciphers.set(cipher);
+        }
+        byte[] nonce = new byte[NONCE_SIZE];
+        System.arraycopy(header.noncePrefix, 0, nonce, 0, NONCE_PREFIX_SIZE);
+        nonce[NONCE_PREFIX_SIZE] = (byte) (index >>> 24);
+        nonce[NONCE_PREFIX_SIZE + 1] = (byte) (index >>> 16);
+        nonce[NONCE_PREFIX_SIZE + 2] = (byte) (index >>> 8);
+        nonce[NONCE_PREFIX_SIZE + 3] = (byte) index;
+        nonce[NONCE_SIZE - 1] = (byte) (last ? 1 : 0);
+        cipher.init(mode, header.key, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+        cipher.updateAAD(header.bytes);
+        return cipher;
+    }
+
+    private ExecutorService getRequiredExecutorService() {
+        ExecutorService service = getExecutorService();
+        if (service != null) {
+            return service;
+        }
+        synchronized (this) {
+            if (this.defaultExecutorService == null) {
+                final String threadName = "ChunkedCipherService-" + instanceCount.incrementAndGet() + "-";
+                this.defaultExecutorService = Executors.newFixedThreadPool(getThreads(), new ThreadFactory() {
+                    private int threadCount;
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName + (++threadCount));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return this.defaultExecutorService;
+        }
+    }
+
+    /**
+     * Parameters shared by all chunks of a payload.
+     */
+    private static final class Header {
+
+        private final byte[] bytes;
+        private final int chunkSize;
+        private final Key key;
+        private final byte[] noncePrefix;
+
+        private Header(byte[] bytes, int chunkSize, Key key, byte[] noncePrefix) {
+            this.bytes = bytes;
+            this.chunkSize = chunkSize;
+            this.key = key;
+            this.noncePrefix = noncePrefix;
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a chunk held in a byte array, returning the result, or the range {@code [from, to)} of the
+     * result.
+     */
+    private final class ArrayChunk implements Callable<byte[]> {
+
+        private final int mode;
+        private final Header header;
+        private final long index;
+        private final boolean last;
+        private final byte[] input;
+        private final int from;
+        private final int to;
+
+        private ArrayChunk(int mode, Header header, long index, boolean last, byte[] input) {
+            this(mode, header, index, last, input, 0, -1);
+        }
+
+        private ArrayChunk(int mode, Header header, long index, boolean last, byte[] input, int from, int to) {
+            this.mode = mode;
+            this.header = header;
+            this.index = index;
+            this.last = last;
+            this.input = input;
+            this.from = from;
+            this.to = to;
+        }
+
+        public byte[] call() throws GeneralSecurityException {
+            byte[] output;
+            try {
+                output = initCipher(mode, header, index, last).doFinal(input);
+            } catch (GeneralSecurityException e) {
+                ciphers.remove();
+                throw e;
+            }
+            if (to < 0 || (from == 0 && to == output.length)) {
+                return output;
+            }
+            byte[] range = new byte[to - from];
+            System.arraycopy(output, from, range, 0, range.length);
+            return range;
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a chunk between buffer regions.
+     */
+    private final class BufferChunk implements Callable<byte[]> {
+
+        private final int mode;
+        private final Header header;
+        private final long index;
+        private final boolean last;
+        private final ByteBuffer input;
+        private final ByteBuffer output;
+
+        private BufferChunk(int mode, Header header, long index, boolean last, ByteBuffer input, ByteBuffer output) {
+            this.mode = mode;
+            this.header = header;
+            this.index = index;
+            this.last = last;
+            this.input = input;
+            this.output = output;
+        }
+
+        public byte[] call() throws GeneralSecurityException {
+            try {
+                initCipher(mode, header, index, last).doFinal(input, output);
+            } catch (GeneralSecurityException e) {
+                ciphers.remove();
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Runs chunk operations concurrently while keeping a bounded number in flight, and writes their results to the
+     * output stream (if any) in submission order.
+     */
+    private final class Pipeline {
+
+        private final OutputStream out;
+        private final ExecutorService executor;
+        private final int window;
+        private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+        private volatile boolean cancelled;
+
+        private Pipeline(OutputStream out, boolean singleChunk) {
+            this.out = out;
+            int threads = getThreads();
+            this.executor = singleChunk || (threads == 1 && getExecutorService() == null) ?
+                    null : getRequiredExecutorService();
+            this.window = Math.max(2, threads * 2);
+        }
+
+        private void submit(final Callable<byte[]> operation) throws IOException {
+            Callable<byte[]> chunk = new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    //skip chunks that had not started when the pipeline was cancelled:
+                    return cancelled ? null : operation.call();
+                }
+            };
+            if (this.executor == null) {
+                FutureTask<byte[]> task = new FutureTask<byte[]>(chunk);
+                task.run();
+                this.pending.add(task);
+            } else {
+                this.pending.add(this.executor.submit(chunk));
+            }
+            while (this.pending.size() >= this.window) {
+                complete(this.pending.removeFirst());
+            }
+        }
+
+        private void finish() throws IOException {
+            while (!this.pending.isEmpty()) {
+                complete(this.pending.removeFirst());
+            }
+        }
+
+        private void complete(Future<byte[]> chunk) throws IOException {
+            byte[] result;
+            try {
+                result = chunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CryptoException("Interrupted while waiting for a chunk to be processed.", e);
+            } catch (ExecutionException e) {
+                throw new CryptoException("Unable to process chunk.", e.getCause());
+            }
+            if (this.out != null && result != null) {
+                this.out.write(result);
+            }
+        }
+
+        /**
+         * Cancels outstanding chunks after a failure and waits for those already running, so that none writes to the
+         * caller's buffers after the operation has failed; a no-op after {@link #finish()}.
+         */
+        private void cancel() {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            log.debug("Cancelling {} outstanding chunk operations.", this.pending.size());
+            this.cancelled = true;
+            boolean interrupted = false;
+            while (!this.pending.isEmpty()) {
+                Future<byte[]> chunk = this.pending.getFirst();
+                try {
+                    chunk.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                } catch (ExecutionException e) {
+                    //the operation has failed already:
+                } catch (CancellationException e) {
+                    //the executor cancelled the chunk:
+                }
+                this.pending.removeFirst();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -20,6 +20,8 @@ package org.apache.shiro.crypto;
 
 import org.apache.shiro.util.StringUtils;
 
+import java.security.spec.AlgorithmParameterSpec;
+
 /**
  * Base abstract class for block cipher algorithms.
  *
@@ -86,6 +88,12 @@ import org.apache.shiro.util.StringUtils;
  * initialization vectors by setting {@link #setGenerateInitializationVectors(boolean) generateInitializationVectors}
  * to {@code false}.  Abandoning initialization vectors significantly weakens encryption, so think twice before
  * disabling this feature.
+ * <h3>Authenticated Encryption</h3>
+ * The {@link OperationMode#GCM GCM} mode both encrypts and authenticates data, so tampered ciphertext is rejected
+ * during decryption without a separate MAC computation.  In this mode, the {@link #setPaddingScheme paddingScheme}
+ * attribute is ignored, since GCM never requires padding, and a 128 bit authentication tag is appended to the
+ * ciphertext.  Additional data that must be authenticated but not encrypted, such as the context a value is valid in,
+ * can be specified via {@link #encrypt(byte[], byte[], byte[])} and {@link #decrypt(byte[], byte[], byte[])}.
  *
  * <h3>Padding Scheme</h3>
  * Because block ciphers process messages in fixed-length blocks, if the final block in a message is not equal to the
@@ -136,6 +144,7 @@ public class DefaultBlockCipherService extends AbstractSymmetricCipherService {
 
     private static final String TRANSFORMATION_STRING_DELIMITER = "/";
     private static final int DEFAULT_STREAMING_BLOCK_SIZE = 8; //8 bits (1 byte)
+    private static final int GCM_TAG_SIZE = 128; //size in bits of the authentication tag appended in GCM mode
 
     private String modeName;
     private int blockSize; //size in bits (not bytes) - i.e. a blockSize of 8 equals 1 byte. negative or zero value = use system default
@@ -471,12 +480,44 @@ public class DefaultBlockCipherService extends AbstractSymmetricCipherService {
         if (blockSize > 0) {
             sb.append(blockSize);
         }
-        if (StringUtils.hasText(paddingSchemeName)) {
+        if (isModeAuthenticated(modeName)) {
+            //authenticated modes operate on arbitrary lengths, padding would only add overhead:
+            sb.append(TRANSFORMATION_STRING_DELIMITER).append(PaddingScheme.NONE.getTransformationName());
+        } else if (StringUtils.hasText(paddingSchemeName)) {
             sb.append(TRANSFORMATION_STRING_DELIMITER).append(paddingSchemeName);
         }
         return sb.toString();
     }
 
+    /**
+     * Returns {@code true} if the specified cipher operation mode name is an authenticated mode with first-class
+     * support by this class (currently only {@link OperationMode#GCM GCM}), {@code false} otherwise.
+     *
+     * @param modeName the raw text name of the mode of operation
+     * @return {@code true} if the specified cipher operation mode name is a supported authenticated mode,
+     *         {@code false} otherwise.
+     */
+    private boolean isModeAuthenticated(String modeName) {
+        return OperationMode.GCM.name().equalsIgnoreCase(modeName);
+    }
+
+    /**
+     * Overrides the parent implementation to return a {@code GCMParameterSpec} with a 128 bit authentication tag if
+     * the applicable mode is {@link OperationMode#GCM GCM}.
+     *
+     * @param iv        the initialization vector
+     * @param streaming if the cipher will be used for stream-based encryption or not.
+     * @return the JDK {@code AlgorithmParameterSpec} used to initialize a cipher.
+     * @since 1.3
+     */
+    @Override
+    protected AlgorithmParameterSpec createParameterSpec(byte[] iv, boolean streaming) {
+        if (isModeAuthenticated(streaming ? getStreamingModeName() : getModeName())) {
+            return GcmParameterSpecFactory.create(GCM_TAG_SIZE, iv);
+        }
+        return super.createParameterSpec(iv, streaming);
+    }
+
     /**
      * Returns {@code true} if the specified cipher operation mode name supports initialization vectors,
      * {@code false} otherwise.
@@ -528,4 +569,15 @@ public class DefaultBlockCipherService extends AbstractSymmetricCipherService {
         }
         return super.generateInitializationVector(streaming);
     }
+
+    /**
+     * Creates {@code GCMParameterSpec} instances.  Kept in its own class so that the Java 7 {@code GCMParameterSpec}
+     * is only loaded when GCM is actually used, which keeps this class usable on earlier JDKs.
+     */
+    private static final class GcmParameterSpecFactory {
+
+        private static AlgorithmParameterSpec create(int tagSize, byte[] iv) {
+            return new javax.crypto.spec.GCMParameterSpec(tagSize, iv);
+        }
+    }
 }
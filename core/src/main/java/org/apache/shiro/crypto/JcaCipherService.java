@@ -29,9 +29,12 @@ import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.Key;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Abstract {@code CipherService} implementation utilizing Java's JCA APIs.
@@ -63,10 +66,21 @@ import java.security.spec.AlgorithmParameterSpec;
  * vectors are always specified as a byte array, so ensure that if you set this property, that the value is a multiple
  * of {@code 8} to ensure that the IV can be correctly represented as a byte array (the
  * {@link #setInitializationVectorSize(int) setInitializationVectorSize} mutator method enforces this).
+ * <h2>Cipher Instance Reuse</h2>
+ * Acquiring a JDK {@link javax.crypto.Cipher Cipher} via {@code Cipher.getInstance} requires a provider lookup and is
+ * comparatively expensive for the short payloads typically encrypted by Shiro (such as rememberMe cookies).  Because
+ * {@code Cipher} instances are not thread-safe, but are fully reset each time they are initialized, this
+ * implementation retains one instance per transformation string for each thread and re-initializes it with the key
+ * and initialization vector of every operation.  A retained instance is only reused after the operation using it
+ * completed successfully; instances involved in a failed operation are discarded.
+ * <p/>
+ * If a JCA provider's ciphers cannot be safely re-initialized, this behavior can be disabled by setting the
+ * {@link #setCipherCachingEnabled(boolean) cipherCachingEnabled} property to {@code false}, in which case a new
+ * {@code Cipher} instance is created for every operation.
  *
  * @since 1.0
  */
-public abstract class JcaCipherService implements CipherService {
+public abstract class JcaCipherService implements ByteBufferCipherService {
 
     /**
      * Internal private log instance.
@@ -111,6 +125,15 @@ public abstract class JcaCipherService implements CipherService {
 
     private SecureRandom secureRandom;
 
+    private boolean cipherCachingEnabled;
+
+    /**
+     * Cipher instances retained for reuse by the current thread, keyed by transformation string.  The map only holds
+     * JDK types, so it does not pin the application's class loader to pooled threads.
+     */
+    private final ThreadLocal<Map<String, javax.crypto.Cipher>> ciphers =
+            new ThreadLocal<Map<String, javax.crypto.Cipher>>();
+
     /**
      * Creates a new {@code JcaCipherService} instance which will use the specified cipher {@code algorithmName}
      * for all encryption, decryption, and key operations.  Also, the following defaults are set:
@@ -131,6 +154,7 @@ public abstract class JcaCipherService implements CipherService {
         this.initializationVectorSize = DEFAULT_KEY_SIZE; //default to same size as the key size (a common algorithm practice)
         this.streamingBufferSize = DEFAULT_STREAMING_BUFFER_SIZE;
         this.generateInitializationVectors = true;
+        this.cipherCachingEnabled = true;
     }
 
     /**
@@ -249,6 +273,33 @@ public abstract class JcaCipherService implements CipherService {
         this.secureRandom = secureRandom;
     }
 
+    /**
+     * Returns {@code true} if JDK {@code Cipher} instances are retained per thread and re-initialized for subsequent
+     * operations, {@code false} if a new instance is created for every operation.  The default is {@code true}.
+     *
+     * @return {@code true} if JDK {@code Cipher} instances are retained per thread and re-initialized for subsequent
+     *         operations, {@code false} if a new instance is created for every operation.
+     * @since 1.3
+     */
+    public boolean isCipherCachingEnabled() {
+        return cipherCachingEnabled;
+    }
+
+    /**
+     * Sets whether JDK {@code Cipher} instances are retained per thread and re-initialized for subsequent
+     * operations ({@code true}, the default) or a new instance is created for every operation ({@code false}).
+     *
+     * @param cipherCachingEnabled whether JDK {@code Cipher} instances are retained per thread and re-initialized for
+     *                             subsequent operations.
+     * @since 1.3
+     */
+    public void setCipherCachingEnabled(boolean cipherCachingEnabled) {
+        this.cipherCachingEnabled = cipherCachingEnabled;
+        if (!cipherCachingEnabled) {
+            this.ciphers.remove();
+        }
+    }
+
     protected static SecureRandom getDefaultSecureRandom() {
         try {
             return java.security.SecureRandom.getInstance(RANDOM_NUM_GENERATOR_ALGORITHM_NAME);
@@ -300,56 +351,101 @@ public abstract class JcaCipherService implements CipherService {
         return ivBytes;
     }
 
-    public ByteSource encrypt(byte[] plaintext, byte[] key) {
-        byte[] ivBytes = null;
-        boolean generate = isGenerateInitializationVectors(false);
-        if (generate) {
-            ivBytes = generateInitializationVector(false);
-            if (ivBytes == null || ivBytes.length == 0) {
-                throw new IllegalStateException("Initialization vector generation is enabled - generated vector" +
-                        "cannot be null or empty.");
-            }
+    /**
+     * Returns a newly generated initialization vector if initialization vectors are
+     * {@link #isGenerateInitializationVectors(boolean) generated} for the specified kind of operation, {@code null}
+     * otherwise.
+     *
+     * @param streaming whether or not the initialization vector is for a streaming operation
+     * @return a newly generated initialization vector, or {@code null} if none should be used.
+     */
+    private byte[] initializationVector(boolean streaming) {
+        if (!isGenerateInitializationVectors(streaming)) {
+            return null;
+        }
+        byte[] ivBytes = generateInitializationVector(streaming);
+        if (ivBytes == null || ivBytes.length == 0) {
+            throw new IllegalStateException("Initialization vector generation is enabled - generated vector" +
+                    "cannot be null or empty.");
         }
-        return encrypt(plaintext, key, ivBytes, generate);
+        return ivBytes;
     }
 
-    private ByteSource encrypt(byte[] plaintext, byte[] key, byte[] iv, boolean prependIv) throws CryptoException {
-
-        final int MODE = javax.crypto.Cipher.ENCRYPT_MODE;
-
-        byte[] output;
-
-        if (prependIv && iv != null && iv.length > 0) {
-
-            byte[] encrypted = crypt(plaintext, key, iv, MODE);
-
-            output = new byte[iv.length + encrypted.length];
+    public ByteSource encrypt(byte[] plaintext, byte[] key) {
+        return encrypt(plaintext, key, (byte[]) null);
+    }
 
-            //now copy the iv bytes + encrypted bytes into one output array:
+    /**
+     * Encrypts data via the specified cipher key, authenticating the specified additional data along with it.  The
+     * additional data is not part of the returned ciphertext, but the exact same additional data must be supplied to
+     * {@link #decrypt(byte[], byte[], byte[]) decrypt} or decryption will fail.  It is typically used to bind
+     * ciphertext to its context, for example to the name of the cookie carrying it.
+     * <p/>
+     * Additional data requires an authenticated {@link OperationMode operation mode}, such as
+     * {@link OperationMode#GCM GCM}.
+     *
+     * @param plaintext      the data to encrypt
+     * @param key            the cipher key used during encryption.
+     * @param additionalData the additional data to authenticate, or {@code null} if there is none.
+     * @return a byte source with the encrypted representation of the specified raw data.
+     * @throws CryptoException if there is an error during encryption, or if additional data is specified and the
+     *                         operation mode does not support it.
+     * @since 1.3
+     */
+    public ByteSource encrypt(byte[] plaintext, byte[] key, byte[] additionalData) throws CryptoException {
+        byte[] iv = initializationVector(false);
+        int ivLength = iv != null ? iv.length : 0;
 
-            // iv bytes:
-            System.arraycopy(iv, 0, output, 0, iv.length);
+        javax.crypto.Cipher cipher = initCipher(javax.crypto.Cipher.ENCRYPT_MODE, key, iv, additionalData, false);
 
-            // + encrypted bytes:
-            System.arraycopy(encrypted, 0, output, iv.length, encrypted.length);
-        } else {
-            output = crypt(plaintext, key, iv, MODE);
+        byte[] output;
+        try {
+            //write the iv bytes and the encrypted bytes into one output array, without an intermediate copy:
+            output = new byte[ivLength + cipher.getOutputSize(plaintext.length)];
+            if (ivLength > 0) {
+                System.arraycopy(iv, 0, output, 0, ivLength);
+            }
+            int encryptedLength = cipher.doFinal(plaintext, 0, plaintext.length, output, ivLength);
+            if (ivLength + encryptedLength < output.length) {
+                byte[] trimmed = new byte[ivLength + encryptedLength];
+                System.arraycopy(output, 0, trimmed, 0, trimmed.length);
+                output = trimmed;
+            }
+        } catch (Exception e) {
+            String msg = "Unable to execute 'doFinal' with cipher instance [" + cipher + "].";
+            throw new CryptoException(msg, e);
         }
+        releaseCipher(cipher);
 
         if (log.isTraceEnabled()) {
-            log.trace("Incoming plaintext of size " + (plaintext != null ? plaintext.length : 0) + ".  Ciphertext " +
-                    "byte array is size " + (output != null ? output.length : 0));
+            log.trace("Incoming plaintext of size " + plaintext.length + ".  Ciphertext " +
+                    "byte array is size " + output.length);
         }
 
         return ByteSource.Util.bytes(output);
     }
 
     public ByteSource decrypt(byte[] ciphertext, byte[] key) throws CryptoException {
+        return decrypt(ciphertext, key, (byte[]) null);
+    }
 
-        byte[] encrypted = ciphertext;
+    /**
+     * Decrypts data previously {@link #encrypt(byte[], byte[], byte[]) encrypted} with additional authenticated
+     * data.  The additional data must be identical to the data specified during encryption.
+     *
+     * @param ciphertext     the previously encrypted data to decrypt
+     * @param key            the cipher key used during decryption.
+     * @param additionalData the additional data specified during encryption, or {@code null} if there was none.
+     * @return a byte source representing the original form of the specified encrypted data.
+     * @throws CryptoException if there is an error during decryption, including if the ciphertext or additional data
+     *                         fail authentication.
+     * @since 1.3
+     */
+    public ByteSource decrypt(byte[] ciphertext, byte[] key, byte[] additionalData) throws CryptoException {
 
         //No IV, check if we need to read the IV from the stream:
         byte[] iv = null;
+        int offset = 0;
 
         if (isGenerateInitializationVectors(false)) {
             try {
@@ -359,8 +455,7 @@ public abstract class JcaCipherService implements CipherService {
                 // 'initializationVectorSize' attribute.
                 // - the remaining bytes in the method argument (arg.length - N) is the real cipher text.
 
-                //So we need to chunk the method argument into its constituent parts to find the IV and then use
-                //the IV to decrypt the real ciphertext:
+                //So we need to extract the IV and then decrypt the real ciphertext that follows it in place:
 
                 int ivSize = getInitializationVectorSize();
                 int ivByteSize = ivSize / BITS_PER_BYTE;
@@ -368,29 +463,116 @@ public abstract class JcaCipherService implements CipherService {
                 //now we know how large the iv is, so extract the iv bytes:
                 iv = new byte[ivByteSize];
                 System.arraycopy(ciphertext, 0, iv, 0, ivByteSize);
-
-                //remaining data is the actual encrypted ciphertext.  Isolate it:
-                int encryptedSize = ciphertext.length - ivByteSize;
-                encrypted = new byte[encryptedSize];
-                System.arraycopy(ciphertext, ivByteSize, encrypted, 0, encryptedSize);
+                offset = ivByteSize;
             } catch (Exception e) {
                 String msg = "Unable to correctly extract the Initialization Vector or ciphertext.";
                 throw new CryptoException(msg, e);
             }
         }
 
-        return decrypt(encrypted, key, iv);
-    }
-
-    private ByteSource decrypt(byte[] ciphertext, byte[] key, byte[] iv) throws CryptoException {
+        int length = ciphertext != null ? ciphertext.length - offset : 0;
         if (log.isTraceEnabled()) {
-            log.trace("Attempting to decrypt incoming byte array of length " +
-                    (ciphertext != null ? ciphertext.length : 0));
+            log.trace("Attempting to decrypt incoming byte array of length " + length);
         }
-        byte[] decrypted = crypt(ciphertext, key, iv, javax.crypto.Cipher.DECRYPT_MODE);
+
+        javax.crypto.Cipher cipher = initCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv, additionalData, false);
+        byte[] decrypted = crypt(cipher, ciphertext, offset, length);
+        releaseCipher(cipher);
         return decrypted == null ? null : ByteSource.Util.bytes(decrypted);
     }
 
+    public int encrypt(ByteBuffer plaintext, ByteBuffer ciphertext, byte[] key) throws CryptoException {
+        return encrypt(plaintext, ciphertext, key, null);
+    }
+
+    /**
+     * Encrypts the remaining bytes of the {@code plaintext} buffer into the {@code ciphertext} buffer, authenticating
+     * the specified additional data along with it.  See {@link #encrypt(byte[], byte[], byte[])} for the semantics
+     * of the additional data and {@link #encrypt(ByteBuffer, ByteBuffer, byte[])} for the semantics of the buffers.
+     *
+     * @param plaintext      the buffer supplying the data to encrypt
+     * @param ciphertext     the buffer receiving the encrypted data
+     * @param key            the cipher key used during encryption.
+     * @param additionalData the additional data to authenticate, or {@code null} if there is none.
+     * @return the number of bytes written to the {@code ciphertext} buffer.
+     * @throws CryptoException if there is an error during encryption, including if the {@code ciphertext} buffer is
+     *                         too small.
+     * @since 1.3
+     */
+    public int encrypt(ByteBuffer plaintext, ByteBuffer ciphertext, byte[] key, byte[] additionalData)
+            throws CryptoException {
+        byte[] iv = initializationVector(false);
+
+        javax.crypto.Cipher cipher = initCipher(javax.crypto.Cipher.ENCRYPT_MODE, key, iv, additionalData, false);
+
+        int plaintextPosition = plaintext.position();
+        int ciphertextPosition = ciphertext.position();
+        try {
+            if (iv != null) {
+                ciphertext.put(iv);
+            }
+            cipher.doFinal(plaintext, ciphertext);
+        } catch (Exception e) {
+            plaintext.position(plaintextPosition);
+            ciphertext.position(ciphertextPosition);
+            String msg = "Unable to execute 'doFinal' with cipher instance [" + cipher + "].";
+            throw new CryptoException(msg, e);
+        }
+        releaseCipher(cipher);
+        return ciphertext.position() - ciphertextPosition;
+    }
+
+    public int decrypt(ByteBuffer ciphertext, ByteBuffer plaintext, byte[] key) throws CryptoException {
+        return decrypt(ciphertext, plaintext, key, null);
+    }
+
+    /**
+     * Decrypts the remaining bytes of the {@code ciphertext} buffer into the {@code plaintext} buffer, where the
+     * ciphertext was {@link #encrypt(ByteBuffer, ByteBuffer, byte[], byte[]) encrypted} with additional authenticated
+     * data.  The additional data must be identical to the data specified during encryption.
+     *
+     * @param ciphertext     the buffer supplying the data to decrypt
+     * @param plaintext      the buffer receiving the decrypted data
+     * @param key            the cipher key used during decryption.
+     * @param additionalData the additional data specified during encryption, or {@code null} if there was none.
+     * @return the number of bytes written to the {@code plaintext} buffer.
+     * @throws CryptoException if there is an error during decryption, including if the {@code plaintext} buffer is
+     *                         too small or if the ciphertext or additional data fail authentication.
+     * @since 1.3
+     */
+    public int decrypt(ByteBuffer ciphertext, ByteBuffer plaintext, byte[] key, byte[] additionalData)
+            throws CryptoException {
+        int ciphertextPosition = ciphertext.position();
+        int plaintextPosition = plaintext.position();
+
+        byte[] iv = null;
+        if (isGenerateInitializationVectors(false)) {
+            int ivByteSize = getInitializationVectorSize() / BITS_PER_BYTE;
+            if (ciphertext.remaining() < ivByteSize) {
+                throw new CryptoException("Unable to read initialization vector bytes from the ciphertext buffer.  " +
+                        "This is required when initialization vectors are autogenerated during an encryption " +
+                        "operation.");
+            }
+            iv = new byte[ivByteSize];
+            for (int i = 0; i < ivByteSize; i++) {
+                iv[i] = ciphertext.get(ciphertextPosition + i);
+            }
+        }
+
+        javax.crypto.Cipher cipher = initCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv, additionalData, false);
+        try {
+            ciphertext.position(ciphertextPosition + (iv != null ? iv.length : 0));
+            cipher.doFinal(ciphertext, plaintext);
+        } catch (Exception e) {
+            ciphertext.position(ciphertextPosition);
+            plaintext.position(plaintextPosition);
+            String msg = "Unable to execute 'doFinal' with cipher instance [" + cipher + "].";
+            throw new CryptoException(msg, e);
+        }
+        releaseCipher(cipher);
+        return plaintext.position() - plaintextPosition;
+    }
+
     /**
      * Returns a new {@link javax.crypto.Cipher Cipher} instance to use for encryption/decryption operations.  The
      * Cipher's {@code transformationString} for the {@code Cipher}.{@link javax.crypto.Cipher#getInstance getInstance}
@@ -416,47 +598,64 @@ public abstract class JcaCipherService implements CipherService {
     }
 
     /**
-     * Functions as follows:
-     * <ol>
-     * <li>Creates a {@link #newCipherInstance(boolean) new JDK cipher instance}</li>
-     * <li>Converts the specified key bytes into an {@link #getAlgorithmName() algorithm}-compatible JDK
-     * {@link Key key} instance</li>
-     * <li>{@link #init(javax.crypto.Cipher, int, java.security.Key, AlgorithmParameterSpec, SecureRandom) Initializes}
-     * the JDK cipher instance with the JDK key</li>
-     * <li>Calls the {@link #crypt(javax.crypto.Cipher, byte[]) crypt(cipher,bytes)} method to either encrypt or
-     * decrypt the data based on the specified Cipher behavior mode
-     * ({@link javax.crypto.Cipher#ENCRYPT_MODE Cipher.ENCRYPT_MODE} or
-     * {@link javax.crypto.Cipher#DECRYPT_MODE Cipher.DECRYPT_MODE})</li>
-     * </ol>
+     * Returns a {@link javax.crypto.Cipher Cipher} instance for the current
+     * {@link #getTransformationString(boolean) transformation string}: one previously
+     * {@link #releaseCipher(javax.crypto.Cipher) released} by the current thread if available, otherwise a
+     * {@link #newCipherInstance(boolean) new instance}.  An acquired instance is owned by the caller until released,
+     * so nested operations on the same thread never share an instance.
      *
-     * @param bytes the bytes to crypt
-     * @param key   the key to use to perform the encryption or decryption.
-     * @param iv    the initialization vector to use for the crypt operation (optional, may be {@code null}).
-     * @param mode  the JDK Cipher behavior mode (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
-     * @return the resulting crypted byte array
-     * @throws IllegalArgumentException if {@code bytes} are null or empty.
-     * @throws CryptoException          if Cipher initialization or the crypt operation fails
-     */
-    private byte[] crypt(byte[] bytes, byte[] key, byte[] iv, int mode) throws IllegalArgumentException, CryptoException {
-        if (key == null || key.length == 0) {
-            throw new IllegalArgumentException("key argument cannot be null or empty.");
+     * @param streaming {@code true} if the cipher instance will be used as a stream cipher, {@code false} if it will be
+     *                  used as a block cipher.
+     * @return an uninitialized or previously used JDK {@code Cipher} instance, which must be initialized before use.
+     * @throws CryptoException if a new Cipher instance cannot be constructed.
+     */
+    private javax.crypto.Cipher acquireCipher(boolean streaming) throws CryptoException {
+        if (isCipherCachingEnabled()) {
+            Map<String, javax.crypto.Cipher> cached = this.ciphers.get();
+            if (cached != null) {
+                javax.crypto.Cipher cipher = cached.remove(getTransformationString(streaming));
+                if (cipher != null) {
+                    return cipher;
+                }
+            }
+        }
+        return newCipherInstance(streaming);
+    }
+
+    /**
+     * Retains the specified cipher for reuse by the current thread.  Must only be called after an operation using the
+     * cipher completed successfully, so that the cipher is not left in an inconsistent state; its next
+     * {@code init} call resets it entirely.
+     *
+     * @param cipher the cipher to retain for reuse.
+     */
+    private void releaseCipher(javax.crypto.Cipher cipher) {
+        if (!isCipherCachingEnabled()) {
+            return;
+        }
+        Map<String, javax.crypto.Cipher> cached = this.ciphers.get();
+        if (cached == null) {
+            cached = new HashMap<String, javax.crypto.Cipher>();
+            this.ciphers.set(cached);
         }
-        javax.crypto.Cipher cipher = initNewCipher(mode, key, iv, false);
-        return crypt(cipher, bytes);
+        //Cipher.getAlgorithm() is the transformation string the instance was created with:
+        cached.put(cipher.getAlgorithm(), cipher);
     }
 
     /**
-     * Calls the {@link javax.crypto.Cipher#doFinal(byte[]) doFinal(bytes)} method, propagating any exception that
-     * might arise in an {@link CryptoException}
+     * Calls the {@link javax.crypto.Cipher#doFinal(byte[], int, int) doFinal(bytes, offset, length)} method,
+     * propagating any exception that might arise in an {@link CryptoException}
      *
      * @param cipher the JDK Cipher to finalize (perform the actual cryption)
      * @param bytes  the bytes to crypt
+     * @param offset the offset in {@code bytes} where the input starts
+     * @param length the input length
      * @return the resulting crypted byte array.
      * @throws CryptoException if there is an illegal block size or bad padding
      */
-    private byte[] crypt(javax.crypto.Cipher cipher, byte[] bytes) throws CryptoException {
+    private byte[] crypt(javax.crypto.Cipher cipher, byte[] bytes, int offset, int length) throws CryptoException {
         try {
-            return cipher.doFinal(bytes);
+            return cipher.doFinal(bytes, offset, length);
         } catch (Exception e) {
             String msg = "Unable to execute 'doFinal' with cipher instance [" + cipher + "].";
             throw new CryptoException(msg, e);
@@ -498,16 +697,8 @@ public abstract class JcaCipherService implements CipherService {
 
 
     public void encrypt(InputStream in, OutputStream out, byte[] key) throws CryptoException {
-        byte[] iv = null;
-        boolean generate = isGenerateInitializationVectors(true);
-        if (generate) {
-            iv = generateInitializationVector(true);
-            if (iv == null || iv.length == 0) {
-                throw new IllegalStateException("Initialization vector generation is enabled - generated vector" +
-                        "cannot be null or empty.");
-            }
-        }
-        encrypt(in, out, key, iv, generate);
+        byte[] iv = initializationVector(true);
+        encrypt(in, out, key, iv, iv != null);
     }
 
     private void encrypt(InputStream in, OutputStream out, byte[] key, byte[] iv, boolean prependIv) throws CryptoException {
@@ -568,7 +759,7 @@ public abstract class JcaCipherService implements CipherService {
             throw new NullPointerException("OutputStream argument cannot be null.");
         }
 
-        javax.crypto.Cipher cipher = initNewCipher(cryptMode, keyBytes, iv, true);
+        javax.crypto.Cipher cipher = initCipher(cryptMode, keyBytes, iv, null, true);
 
         CipherInputStream cis = new CipherInputStream(in, cipher);
 
@@ -583,19 +774,65 @@ public abstract class JcaCipherService implements CipherService {
         } catch (IOException e) {
             throw new CryptoException(e);
         }
+        //the stream was read to the end, so doFinal has been called on the cipher:
+        releaseCipher(cipher);
     }
 
-    private javax.crypto.Cipher initNewCipher(int jcaCipherMode, byte[] key, byte[] iv, boolean streaming)
-            throws CryptoException {
+    /**
+     * Returns the JDK {@code AlgorithmParameterSpec} used to initialize a cipher with the specified initialization
+     * vector.  This default implementation returns an {@link IvParameterSpec IvParameterSpec}.  Subclasses supporting
+     * operation modes that take additional parameters, such as the authentication tag length of
+     * {@link OperationMode#GCM GCM}, can override this method.
+     *
+     * @param iv        the initialization vector, never {@code null} or empty.
+     * @param streaming if the cipher will be used for stream-based encryption or not.
+     * @return the JDK {@code AlgorithmParameterSpec} used to initialize a cipher.
+     * @since 1.3
+     */
+    protected AlgorithmParameterSpec createParameterSpec(byte[] iv, boolean streaming) {
+        return new IvParameterSpec(iv);
+    }
 
-        javax.crypto.Cipher cipher = newCipherInstance(streaming);
+    /**
+     * {@link #acquireCipher(boolean) Acquires} a JDK cipher instance,
+     * {@link #init(javax.crypto.Cipher, int, java.security.Key, AlgorithmParameterSpec, SecureRandom) initializes}
+     * it with an {@link #getAlgorithmName() algorithm}-compatible JDK {@link Key key} created from the specified key
+     * bytes and supplies the additional authenticated data, if any.  The caller must
+     * {@link #releaseCipher(javax.crypto.Cipher) release} the cipher once the operation completed successfully.
+     *
+     * @param jcaCipherMode  the JDK Cipher behavior mode (Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE).
+     * @param key            the key to use to perform the encryption or decryption.
+     * @param iv             the initialization vector to use for the crypt operation (optional, may be {@code null}).
+     * @param additionalData the additional authenticated data (optional, may be {@code null}).
+     * @param streaming      if the cipher will be used for stream-based encryption or not.
+     * @return the initialized cipher
+     * @throws IllegalArgumentException if {@code key} is null or empty.
+     * @throws CryptoException          if Cipher initialization fails
+     */
+    private javax.crypto.Cipher initCipher(int jcaCipherMode, byte[] key, byte[] iv, byte[] additionalData,
+                                           boolean streaming) throws IllegalArgumentException, CryptoException {
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("key argument cannot be null or empty.");
+        }
+
+        javax.crypto.Cipher cipher = acquireCipher(streaming);
         java.security.Key jdkKey = new SecretKeySpec(key, getAlgorithmName());
-        IvParameterSpec ivSpec = null;
+        AlgorithmParameterSpec spec = null;
         if (iv != null && iv.length > 0) {
-            ivSpec = new IvParameterSpec(iv);
+            spec = createParameterSpec(iv, streaming);
         }
 
-        init(cipher, jcaCipherMode, jdkKey, ivSpec, getSecureRandom());
+        init(cipher, jcaCipherMode, jdkKey, spec, getSecureRandom());
+
+        if (additionalData != null && additionalData.length > 0) {
+            try {
+                cipher.updateAAD(additionalData);
+            } catch (Exception e) {
+                String msg = "Unable to supply additional authenticated data to cipher instance [" + cipher + "].  " +
+                        "Additional data requires an authenticated operation mode, such as GCM.";
+                throw new CryptoException(msg, e);
+            }
+        }
 
         return cipher;
     }
@@ -98,12 +98,19 @@ public enum OperationMode {
     ECB,
 
     /**
-     * <a href="http://en.wikipedia.org/wiki/GCM_mode">Galois/Counter</a> mode<b>*</b> - for block ciphers with 128
-     * bit block-size only.
+     * <a href="http://en.wikipedia.org/wiki/GCM_mode">Galois/Counter</a> mode - for block ciphers with 128
+     * bit block-size only, defined in <a href="http://csrc.nist.gov/publications/nistpubs/800-38D/SP-800-38D.pdf">NIST
+     * SP 800-38D</a>.  GCM is an authenticated mode:  it encrypts and authenticates data in a single pass, so that
+     * tampered ciphertext fails decryption without the need for a separate MAC.  It can also authenticate additional
+     * data that is not encrypted (see {@link JcaCipherService#encrypt(byte[], byte[], byte[])}).
      * <p/>
-     * <b>*THIS IS A NON-STANDARD MODE</b>. It is not guaranteed to be supported across JDK installations.  You must
-     * ensure you have a JCA Provider that can support this cipher operation mode.
-     * <a href="http://www.bouncycastle.org">Bouncy Castle</a> <em>may</em> be one such provider.
+     * Shiro {@link DefaultBlockCipherService}s never apply a padding scheme in this mode and append a 128 bit
+     * authentication tag to the ciphertext.
+     * <p/>
+     * This is a standard JDK operation mode as of Java 7.  Earlier JDKs require a JCA Provider that supports it, such
+     * as <a href="http://www.bouncycastle.org">Bouncy Castle</a>.
+     *
+     * @since 1.3
      */
     GCM,
 
@@ -0,0 +1,565 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Serializer implementation that encodes Shiro's own types in a compact binary format instead of using Java
+ * serialization, avoiding class descriptors and reflective field access for the objects Shiro stores most often:
+ * {@link SimpleSession}s, {@link SimplePrincipalCollection}s and the values typically found in them.
+ * <p/>
+ * The format is schema-aware: {@code SimpleSession} and {@code SimplePrincipalCollection} instances are written
+ * field by field, timestamps and other numbers as variable-length integers, and every string (including realm names
+ * and attribute keys) only once per serialized object, with repeated occurrences referring back to the first.
+ * {@code String}s, {@code Integer}s, {@code Long}s, {@code Boolean}s, {@code Date}s, {@code byte[]}s and
+ * {@code ArrayList}, {@code HashSet}, {@code LinkedHashSet}, {@code HashMap} and {@code LinkedHashMap} collections of
+ * such values are encoded natively as well.  Application types can be encoded by
+ * {@link #addCodec(BinaryTypeCodec) registering} a {@link BinaryTypeCodec BinaryTypeCodec}.  Any other value is
+ * encoded with Java serialization, exactly as by the {@link DefaultSerializer DefaultSerializer}.
+ * <p/>
+ * To ease migrating from the {@code DefaultSerializer}, this serializer also deserializes bytes that were produced by
+ * Java serialization.
+ * <p/>
+ * This implementation is thread-safe once its codecs have been registered.
+ *
+ * @param <T> The type of the object being serialized and deserialized.
+ * @since 1.3
+ */
+public class BinarySerializer<T> implements Serializer<T> {
+
+    private static final byte MAGIC = (byte) 0xB5;
+    private static final byte VERSION = 1;
+
+    //The first two bytes written by an ObjectOutputStream:
+    private static final byte JAVA_MAGIC_0 = (byte) 0xAC;
+    private static final byte JAVA_MAGIC_1 = (byte) 0xED;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte STRING = 3;
+    private static final byte STRING_REF = 4;
+    private static final byte INTEGER = 5;
+    private static final byte LONG = 6;
+    private static final byte DATE = 7;
+    private static final byte BYTES = 8;
+    private static final byte ARRAY_LIST = 9;
+    private static final byte HASH_SET = 10;
+    private static final byte LINKED_HASH_SET = 11;
+    private static final byte HASH_MAP = 12;
+    private static final byte LINKED_HASH_MAP = 13;
+    private static final byte SIMPLE_SESSION = 14;
+    private static final byte PRINCIPAL_COLLECTION = 15;
+    private static final byte CODEC = 16;
+    private static final byte JAVA = 17;
+
+    private final DefaultSerializer<Object> javaSerializer = new DefaultSerializer<Object>();
+
+    private final ConcurrentMap<String, BinaryTypeCodec<?>> codecs = new ConcurrentHashMap<String, BinaryTypeCodec<?>>();
+
+    /**
+     * Registers a codec for an application type, replacing any codec previously registered for the same type.
+     *
+     * @param codec the codec to register.
+     */
+    public void addCodec(BinaryTypeCodec<?> codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("codec argument cannot be null.");
+        }
+        codecs.put(codec.getType().getName(), codec);
+    }
+
+    /**
+     * Registers the specified codecs, as by {@link #addCodec(BinaryTypeCodec) addCodec}, for example when configured
+     * via INI.
+     *
+     * @param codecs the codecs to register.
+     */
+    public void setCodecs(Collection<BinaryTypeCodec<?>> codecs) {
+        if (codecs != null) {
+            for (BinaryTypeCodec<?> codec : codecs) {
+                addCodec(codec);
+            }
+        }
+    }
+
+    /**
+     * Returns the registered codecs.
+     *
+     * @return the registered codecs.
+     */
+    public Collection<BinaryTypeCodec<?>> getCodecs() {
+        return codecs.values();
+    }
+
+    public byte[] serialize(T o) throws SerializationException {
+        if (o == null) {
+            String msg = "argument cannot be null.";
+            throw new IllegalArgumentException(msg);
+        }
+        Writer writer = new Writer();
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        try {
+            writer.writeValue(o);
+        } catch (IOException e) {
+            String msg = "Unable to serialize object [" + o + "].";
+            throw new SerializationException(msg, e);
+        }
+        return writer.toByteArray();
+    }
+
+    public T deserialize(byte[] serialized) throws SerializationException {
+        if (serialized == null) {
+            String msg = "argument cannot be null.";
+            throw new IllegalArgumentException(msg);
+        }
+        if (serialized.length >= 2 && serialized[0] == JAVA_MAGIC_0 && serialized[1] == JAVA_MAGIC_1) {
+            @SuppressWarnings({"unchecked"})
+            T deserialized = (T) javaSerializer.deserialize(serialized);
+            return deserialized;
+        }
+        if (serialized.length < 2 || serialized[0] != MAGIC) {
+            throw new SerializationException("Argument byte array was not produced by a BinarySerializer.");
+        }
+        if (serialized[1] != VERSION) {
+            throw new SerializationException("Unsupported BinarySerializer format version " + serialized[1] + ".");
+        }
+        Reader reader = new Reader(serialized, 2);
+        try {
+            @SuppressWarnings({"unchecked"})
+            T deserialized = (T) reader.readValue();
+            if (reader.position != serialized.length) {
+                throw new IOException("Unexpected trailing bytes.");
+            }
+            return deserialized;
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            String msg = "Unable to deserialize argument byte array.";
+            throw new SerializationException(msg, e);
+        }
+    }
+
+    private static byte[] toUtf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported.", e);
+        }
+    }
+
+    private static String fromUtf8(byte[] bytes, int offset, int length) {
+        try {
+            return new String(bytes, offset, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported.", e);
+        }
+    }
+
+    /**
+     * Writes values to a growable byte array, remembering the strings written so far.
+     */
+    private class Writer {
+
+        private byte[] buffer = new byte[256];
+        private int position;
+        private Map<String, Integer> strings;
+
+        private void ensureCapacity(int additional) {
+            if (position + additional > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, position + additional)];
+                System.arraycopy(buffer, 0, grown, 0, position);
+                buffer = grown;
+            }
+        }
+
+        private void writeByte(byte b) {
+            ensureCapacity(1);
+            buffer[position++] = b;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeSignedVarLong(long value) {
+            //zig-zag encoding, so that small negative values are short as well:
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeString(String s) {
+            if (strings == null) {
+                strings = new HashMap<String, Integer>();
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeByte(STRING_REF);
+                writeVarLong(index);
+            } else {
+                strings.put(s, strings.size());
+                writeByte(STRING);
+                writeBytes(toUtf8(s));
+            }
+        }
+
+        private void writeDate(Date date) {
+            if (date == null) {
+                writeByte(NULL);
+            } else {
+                writeByte(DATE);
+                writeSignedVarLong(date.getTime());
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writeByte(NULL);
+                return;
+            }
+            Class<?> type = value.getClass();
+            if (type == String.class) {
+                writeString((String) value);
+            } else if (type == Boolean.class) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (type == Integer.class) {
+                writeByte(INTEGER);
+                writeSignedVarLong((Integer) value);
+            } else if (type == Long.class) {
+                writeByte(LONG);
+                writeSignedVarLong((Long) value);
+            } else if (type == Date.class) {
+                writeDate((Date) value);
+            } else if (type == byte[].class) {
+                writeByte(BYTES);
+                writeBytes((byte[]) value);
+            } else if (type == ArrayList.class) {
+                writeCollection(ARRAY_LIST, (Collection<?>) value);
+            } else if (type == HashSet.class) {
+                writeCollection(HASH_SET, (Collection<?>) value);
+            } else if (type == LinkedHashSet.class) {
+                writeCollection(LINKED_HASH_SET, (Collection<?>) value);
+            } else if (type == HashMap.class) {
+                writeMap(HASH_MAP, (Map<?, ?>) value);
+            } else if (type == LinkedHashMap.class) {
+                writeMap(LINKED_HASH_MAP, (Map<?, ?>) value);
+            } else if (type == SimpleSession.class) {
+                writeSession((SimpleSession) value);
+            } else if (type == SimplePrincipalCollection.class) {
+                writePrincipals((SimplePrincipalCollection) value);
+            } else {
+                @SuppressWarnings({"unchecked"})
+                BinaryTypeCodec<Object> codec = (BinaryTypeCodec<Object>) codecs.get(type.getName());
+                if (codec != null && codec.getType() == type) {
+                    writeCodecValue(codec, value);
+                } else {
+                    writeByte(JAVA);
+                    writeBytes(javaSerializer.serialize(value));
+                }
+            }
+        }
+
+        private void writeCollection(byte tag, Collection<?> collection) throws IOException {
+            writeByte(tag);
+            writeVarLong(collection.size());
+            for (Object element : collection) {
+                writeValue(element);
+            }
+        }
+
+        private void writeMap(byte tag, Map<?, ?> map) throws IOException {
+            writeByte(tag);
+            writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeSession(SimpleSession session) throws IOException {
+            writeByte(SIMPLE_SESSION);
+            writeValue(session.getId());
+            writeDate(session.getStartTimestamp());
+            writeDate(session.getStopTimestamp());
+            writeDate(session.getLastAccessTime());
+            writeSignedVarLong(session.getTimeout());
+            writeByte(session.isExpired() ? TRUE : FALSE);
+            writeValue(session.getHost());
+            writeValue(session.getAttributes());
+        }
+
+        private void writePrincipals(SimplePrincipalCollection principals) throws IOException {
+            writeByte(PRINCIPAL_COLLECTION);
+            Collection<String> realmNames = principals.getRealmNames();
+            writeVarLong(realmNames.size());
+            for (String realmName : realmNames) {
+                writeValue(realmName);
+                Collection<?> fromRealm = principals.fromRealm(realmName);
+                writeVarLong(fromRealm.size());
+                for (Object principal : fromRealm) {
+                    writeValue(principal);
+                }
+            }
+        }
+
+        private void writeCodecValue(BinaryTypeCodec<Object> codec, Object value) throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(baos);
+            codec.write(value, out);
+            out.flush();
+            writeByte(CODEC);
+            writeString(codec.getType().getName());
+            writeBytes(baos.toByteArray());
+        }
+
+        private byte[] toByteArray() {
+            byte[] bytes = new byte[position];
+            System.arraycopy(buffer, 0, bytes, 0, position);
+            return bytes;
+        }
+    }
+
+    /**
+     * Reads values written by a {@link Writer}, rejecting lengths that exceed the remaining input.
+     */
+    private class Reader {
+
+        private final byte[] buffer;
+        private int position;
+        private List<String> strings;
+
+        private Reader(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private byte readByte() throws IOException {
+            if (position >= buffer.length) {
+                throw new IOException("Unexpected end of input.");
+            }
+            return buffer[position++];
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer.");
+        }
+
+        private long readSignedVarLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a length or count, each element of which takes at least one byte.
+         */
+        private int readLength() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > buffer.length - position) {
+                throw new IOException("Invalid length " + length + ".");
+            }
+            return (int) length;
+        }
+
+        private byte[] readBytes() throws IOException {
+            int length = readLength();
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, position, bytes, 0, length);
+            position += length;
+            return bytes;
+        }
+
+        private String readString(byte tag) throws IOException {
+            if (strings == null) {
+                strings = new ArrayList<String>();
+            }
+            if (tag == STRING_REF) {
+                long index = readVarLong();
+                if (index < 0 || index >= strings.size()) {
+                    throw new IOException("Invalid string reference " + index + ".");
+                }
+                return strings.get((int) index);
+            }
+            int length = readLength();
+            String s = fromUtf8(buffer, position, length);
+            position += length;
+            strings.add(s);
+            return s;
+        }
+
+        private Date readDate() throws IOException {
+            Object value = readValue();
+            if (value != null && !(value instanceof Date)) {
+                throw new IOException("Expected a date but found " + value.getClass().getName() + ".");
+            }
+            return (Date) value;
+        }
+
+        private Object readValue() throws IOException {
+            byte tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case STRING:
+                case STRING_REF:
+                    return readString(tag);
+                case INTEGER:
+                    return (int) readSignedVarLong();
+                case LONG:
+                    return readSignedVarLong();
+                case DATE:
+                    return new Date(readSignedVarLong());
+                case BYTES:
+                    return readBytes();
+                case ARRAY_LIST: {
+                    int size = readLength();
+                    return readCollection(new ArrayList<Object>(size), size);
+                }
+                case HASH_SET: {
+                    int size = readLength();
+                    return readCollection(new HashSet<Object>(size * 4 / 3 + 1), size);
+                }
+                case LINKED_HASH_SET: {
+                    int size = readLength();
+                    return readCollection(new LinkedHashSet<Object>(size * 4 / 3 + 1), size);
+                }
+                case HASH_MAP: {
+                    int size = readLength();
+                    return readMap(new HashMap<Object, Object>(size * 4 / 3 + 1), size);
+                }
+                case LINKED_HASH_MAP: {
+                    int size = readLength();
+                    return readMap(new LinkedHashMap<Object, Object>(size * 4 / 3 + 1), size);
+                }
+                case SIMPLE_SESSION:
+                    return readSession();
+                case PRINCIPAL_COLLECTION:
+                    return readPrincipals();
+                case CODEC:
+                    return readCodecValue();
+                case JAVA:
+                    return javaSerializer.deserialize(readBytes());
+                default:
+                    throw new IOException("Unknown type tag " + tag + ".");
+            }
+        }
+
+        private Collection<Object> readCollection(Collection<Object> collection, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                collection.add(readValue());
+            }
+            return collection;
+        }
+
+        private Map<Object, Object> readMap(Map<Object, Object> map, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                Object key = readValue();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        @SuppressWarnings({"unchecked"})
+        private SimpleSession readSession() throws IOException {
+            SimpleSession session = new SimpleSession();
+            session.setId((Serializable) readValue());
+            session.setStartTimestamp(readDate());
+            session.setStopTimestamp(readDate());
+            session.setLastAccessTime(readDate());
+            session.setTimeout(readSignedVarLong());
+            session.setExpired(readByte() == TRUE);
+            session.setHost((String) readValue());
+            session.setAttributes((Map<Object, Object>) readValue());
+            //a deserialized session has no pending changes:
+            session.clearDelta();
+            return session;
+        }
+
+        private SimplePrincipalCollection readPrincipals() throws IOException {
+            SimplePrincipalCollection principals = new SimplePrincipalCollection();
+            int realms = readLength();
+            for (int i = 0; i < realms; i++) {
+                String realmName = (String) readValue();
+                int size = readLength();
+                List<Object> fromRealm = new ArrayList<Object>(size);
+                readCollection(fromRealm, size);
+                principals.addAll(fromRealm, realmName);
+            }
+            return principals;
+        }
+
+        private Object readCodecValue() throws IOException {
+            byte tag = readByte();
+            if (tag != STRING && tag != STRING_REF) {
+                throw new IOException("Expected a type name but found type tag " + tag + ".");
+            }
+            String typeName = readString(tag);
+            BinaryTypeCodec<?> codec = codecs.get(typeName);
+            if (codec == null) {
+                throw new IOException("No BinaryTypeCodec is registered for type [" + typeName + "].");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBytes()));
+            return codec.read(in);
+        }
+    }
+}
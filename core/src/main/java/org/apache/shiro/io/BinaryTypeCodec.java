@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes instances of an application type for the {@link BinarySerializer BinarySerializer}, so that frequently
+ * stored types, such as session attribute values, do not need to fall back to Java serialization.
+ * <p/>
+ * Encoded values are tagged with the {@link Class#getName() name} of the codec's {@link #getType() type}, so a codec
+ * for the same type must be registered wherever the bytes are deserialized.
+ *
+ * @param <T> the type encoded by this codec.
+ * @see BinarySerializer#addCodec(BinaryTypeCodec)
+ * @since 1.3
+ */
+public interface BinaryTypeCodec<T> {
+
+    /**
+     * Returns the type encoded by this codec.  Only instances of exactly this class are passed to the codec;
+     * instances of subclasses are encoded by other codecs or by Java serialization.
+     *
+     * @return the type encoded by this codec.
+     */
+    Class<T> getType();
+
+    /**
+     * Writes the specified value.
+     *
+     * @param value the value to write, never {@code null}
+     * @param out   the output to write the value to
+     * @throws IOException if the value cannot be written
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value previously written by {@link #write(Object, DataOutput) write}.
+     *
+     * @param in the input to read the value from
+     * @return the value read
+     * @throws IOException if the value cannot be read
+     */
+    T read(DataInput in) throws IOException;
+}
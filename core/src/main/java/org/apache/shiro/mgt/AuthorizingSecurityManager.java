@@ -20,11 +20,14 @@ package org.apache.shiro.mgt;
 
 import org.apache.shiro.authz.AuthorizationException;
 import org.apache.shiro.authz.Authorizer;
+import org.apache.shiro.authz.BatchAuthorizer;
 import org.apache.shiro.authz.ModularRealmAuthorizer;
 import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.PermissionMapper;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.util.LifecycleUtils;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -44,7 +47,7 @@ import java.util.List;
  *
  * @since 0.9
  */
-public abstract class AuthorizingSecurityManager extends AuthenticatingSecurityManager {
+public abstract class AuthorizingSecurityManager extends AuthenticatingSecurityManager implements BatchAuthorizer {
 
     /**
      * The wrapped instance to which all of this <tt>SecurityManager</tt> authorization calls are delegated.
@@ -125,6 +128,29 @@ public abstract class AuthorizingSecurityManager extends AuthenticatingSecurityM
         return this.authorizer.isPermitted(principals, permissions);
     }
 
+    /**
+     * Delegates to the wrapped {@link #getAuthorizer() authorizer} if it is a {@link BatchAuthorizer BatchAuthorizer},
+     * otherwise checks each item individually.
+     *
+     * @since 1.3
+     */
+    public <T> BitSet filterPermitted(PrincipalCollection principals, Collection<T> items,
+                                      PermissionMapper<? super T> mapper) {
+        if (this.authorizer instanceof BatchAuthorizer) {
+            return ((BatchAuthorizer) this.authorizer).filterPermitted(principals, items, mapper);
+        }
+        BitSet permitted = new BitSet(items.size());
+        int i = 0;
+        for (T item : items) {
+            Permission permission = mapper.getPermission(item);
+            if (permission != null && this.authorizer.isPermitted(principals, permission)) {
+                permitted.set(i);
+            }
+            i++;
+        }
+        return permitted;
+    }
+
     public boolean isPermittedAll(PrincipalCollection principals, String... permissions) {
         return this.authorizer.isPermittedAll(principals, permissions);
     }
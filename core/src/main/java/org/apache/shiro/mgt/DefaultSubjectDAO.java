@@ -155,6 +155,11 @@ public class DefaultSubjectDAO implements SubjectDAO {
      * {@link org.apache.shiro.subject.Subject#getSession() session}.  The session can be retrieved at a later time
      * (typically from a {@link org.apache.shiro.session.mgt.SessionManager SessionManager} to be used to recreate
      * the {@code Subject} instance.
+     * <p/>
+     * The session is only written if its state differs from the subject's.  If the session is a
+     * {@link org.apache.shiro.session.mgt.DelegatingSession DelegatingSession} that caches attributes (as web sessions
+     * do by default), the session attributes compared here were already read when the subject was
+     * created, so saving a subject whose state was restored from its session causes no session I/O at all.
      *
      * @param subject the subject for which state will be persisted to its session.
      */
@@ -193,7 +198,8 @@ public class DefaultSubjectDAO implements SubjectDAO {
                 }
                 // otherwise both are null or empty - no need to update the session
             } else {
-                if (!currentPrincipals.equals(existingPrincipals)) {
+                //the principals are usually the very instance restored from the session:
+                if (currentPrincipals != existingPrincipals && !currentPrincipals.equals(existingPrincipals)) {
                     session.setAttribute(DefaultSubjectContext.PRINCIPALS_SESSION_KEY, currentPrincipals);
                 }
                 // otherwise they're the same - no need to update the session
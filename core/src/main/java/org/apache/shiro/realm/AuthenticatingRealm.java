@@ -23,13 +23,17 @@ import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authc.credential.SimpleCredentialsMatcher;
 import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheLoader;
 import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.cache.LoadingCache;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.util.CollectionUtils;
 import org.apache.shiro.util.Initializable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -130,6 +134,12 @@ public abstract class AuthenticatingRealm extends CachingRealm implements Initia
 
     private Cache<Object, AuthenticationInfo> authenticationCache;
 
+    /**
+     * The loaders of in-flight authentication cache loads, keyed by cache key.
+     */
+    private final ConcurrentMap<Object, AuthenticationInfoLoader> authenticationLoaders =
+            new ConcurrentHashMap<Object, AuthenticationInfoLoader>();
+
     private boolean authenticationCachingEnabled;
     private String authenticationCacheName;
 
@@ -493,6 +503,42 @@ public abstract class AuthenticatingRealm extends CachingRealm implements Initia
         return info;
     }
 
+    /**
+     * Returns the AuthenticationInfo for the specified token from the specified loading cache, calling
+     * {@link #doGetAuthenticationInfo(org.apache.shiro.authc.AuthenticationToken)} at most once for all concurrent
+     * attempts with the same {@link #getAuthenticationCacheKey(org.apache.shiro.authc.AuthenticationToken) cache key}.
+     * <p/>
+     * Concurrent attempts share a single loader, so those that waited for the lookup also share results that are not
+     * cached: {@code null} for an unknown account, and info for which caching is
+     * {@link #isAuthenticationCachingEnabled(AuthenticationToken, AuthenticationInfo) disabled}.
+     *
+     * @param token the token submitted during the authentication attempt.
+     * @param cache the loading authentication cache
+     * @return the cached or looked up AuthenticationInfo, or {@code null} if the account could not be found.
+     */
+    private AuthenticationInfo loadAuthenticationInfo(AuthenticationToken token,
+                                                      LoadingCache<Object, AuthenticationInfo> cache) {
+        Object key = getAuthenticationCacheKey(token);
+        if (key == null) {
+            return doGetAuthenticationInfo(token);
+        }
+        AuthenticationInfoLoader loader = new AuthenticationInfoLoader(token);
+        AuthenticationInfoLoader existing = this.authenticationLoaders.putIfAbsent(key, loader);
+        try {
+            AuthenticationInfo info = cache.get(key, existing != null ? existing : loader);
+            if (info == null) {
+                AuthenticationInfoLoader used = existing != null ? existing : loader;
+                //not loaded if the concurrent attempt found the info cached after all:
+                info = used.loaded ? used.uncached : doGetAuthenticationInfo(token);
+            }
+            return info;
+        } finally {
+            if (existing == null) {
+                this.authenticationLoaders.remove(key, loader);
+            }
+        }
+    }
+
     /**
      * Caches the specified info if authentication caching
      * {@link #isAuthenticationCachingEnabled(org.apache.shiro.authc.AuthenticationToken, org.apache.shiro.authc.AuthenticationInfo) isEnabled}
@@ -546,7 +592,9 @@ public abstract class AuthenticatingRealm extends CachingRealm implements Initia
      * {@link #doGetAuthenticationInfo(org.apache.shiro.authc.AuthenticationToken)} method to perform the actual
      * lookup.  If authentication caching is enabled and possible, any returned info object will be
      * {@link #cacheAuthenticationInfoIfPossible(org.apache.shiro.authc.AuthenticationToken, org.apache.shiro.authc.AuthenticationInfo) cached}
-     * to be used in future authentication attempts.</li>
+     * to be used in future authentication attempts.  If the authentication cache is a
+     * {@link LoadingCache LoadingCache}, concurrent lookups for the same cache key are coalesced into a single
+     * {@code doGetAuthenticationInfo} call.</li>
      * <li>If an AuthenticationInfo instance is not found in the cache or by lookup, {@code null} is returned to
      * indicate an account cannot be found.</li>
      * <li>If an AuthenticationInfo instance is found (either cached or via lookup), ensure the submitted
@@ -562,16 +610,22 @@ public abstract class AuthenticatingRealm extends CachingRealm implements Initia
      */
     public final AuthenticationInfo getAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
 
-        AuthenticationInfo info = getCachedAuthenticationInfo(token);
-        if (info == null) {
-            //otherwise not cached, perform the lookup:
-            info = doGetAuthenticationInfo(token);
-            log.debug("Looked up AuthenticationInfo [{}] from doGetAuthenticationInfo", info);
-            if (token != null && info != null) {
-                cacheAuthenticationInfoIfPossible(token, info);
-            }
+        AuthenticationInfo info;
+        Cache<Object, AuthenticationInfo> cache = getAvailableAuthenticationCache();
+        if (token != null && cache instanceof LoadingCache) {
+            info = loadAuthenticationInfo(token, (LoadingCache<Object, AuthenticationInfo>) cache);
         } else {
-            log.debug("Using cached authentication info [{}] to perform credentials matching.", info);
+            info = getCachedAuthenticationInfo(token);
+            if (info == null) {
+                //otherwise not cached, perform the lookup:
+                info = doGetAuthenticationInfo(token);
+                log.debug("Looked up AuthenticationInfo [{}] from doGetAuthenticationInfo", info);
+                if (token != null && info != null) {
+                    cacheAuthenticationInfoIfPossible(token, info);
+                }
+            } else {
+                log.debug("Using cached authentication info [{}] to perform credentials matching.", info);
+            }
         }
 
         if (info != null) {
@@ -705,4 +759,32 @@ public abstract class AuthenticatingRealm extends CachingRealm implements Initia
      */
     protected abstract AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException;
 
+    /**
+     * Looks up the AuthenticationInfo for a token on behalf of all concurrent attempts with the same cache key, and
+     * remembers the result if it is not returned to the cache, so the attempts that waited for it can use it too.
+     */
+    private final class AuthenticationInfoLoader implements CacheLoader<Object, AuthenticationInfo> {
+
+        private final AuthenticationToken token;
+        private volatile AuthenticationInfo uncached;
+        private volatile boolean loaded;
+
+        private AuthenticationInfoLoader(AuthenticationToken token) {
+            this.token = token;
+        }
+
+        public AuthenticationInfo load(Object key) {
+            AuthenticationInfo info = doGetAuthenticationInfo(token);
+            log.debug("Looked up AuthenticationInfo [{}] from doGetAuthenticationInfo", info);
+            if (info != null && !isAuthenticationCachingEnabled(token, info)) {
+                log.debug("AuthenticationInfo caching is disabled for info [{}].  Submitted token: [{}].", info, token);
+                this.uncached = info;
+                info = null;
+            } else {
+                this.uncached = null;
+            }
+            this.loaded = true;
+            return info;
+        }
+    }
 }
@@ -22,14 +22,28 @@ import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authz.*;
 import org.apache.shiro.authz.permission.*;
 import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheLoader;
 import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.cache.LoadingCache;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.util.CollectionUtils;
+import org.apache.shiro.util.Destroyable;
 import org.apache.shiro.util.Initializable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -53,7 +67,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @since 0.2
  */
 public abstract class AuthorizingRealm extends AuthenticatingRealm
-        implements Authorizer, Initializable, PermissionResolverAware, RolePermissionResolverAware {
+        implements Authorizer, BatchAuthorizer, Initializable, Destroyable, PermissionResolverAware,
+        RolePermissionResolverAware {
 
     //TODO - complete JavaDoc
 
@@ -83,6 +98,32 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
 
     private RolePermissionResolver permissionRoleResolver;
 
+    /**
+     * Compiled {@link PermissionIndex PermissionIndex}es for cached AuthorizationInfo instances, keyed weakly by
+     * AuthorizationInfo identity so an index is discarded once its AuthorizationInfo is no longer referenced.
+     */
+    private boolean permissionIndexingEnabled;
+    private final ConcurrentMap<Object, PermissionIndex> permissionIndexes;
+    private final ReferenceQueue<AuthorizationInfo> permissionIndexQueue;
+
+    /**
+     * Refresh-ahead support: the time each cached AuthorizationInfo instance was loaded (keyed weakly by identity,
+     * like the permission indexes above) and a marker for each cache key currently being refreshed.
+     */
+    private long authorizationRefreshAheadTime;
+    private long authorizationMaxAge;
+    private Executor authorizationRefreshExecutor;
+    private ExecutorService defaultAuthorizationRefreshExecutor;
+    private final ConcurrentMap<Object, Long> authorizationLoadTimes;
+    private final ReferenceQueue<AuthorizationInfo> authorizationLoadTimeQueue;
+    private final ConcurrentMap<Object, Object> authorizationRefreshes;
+
+    /**
+     * Whether a subclass overrides {@link #isPermitted(PrincipalCollection, Permission)}, determined on first use by
+     * {@link #filterPermitted(PrincipalCollection, Collection, PermissionMapper)}.
+     */
+    private volatile Boolean permittedCheckOverridden;
+
     /*-------------------------------------------
     |         C O N S T R U C T O R S           |
     ============================================*/
@@ -105,7 +146,14 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         if (matcher != null) setCredentialsMatcher(matcher);
 
         this.authorizationCachingEnabled = true;
-        this.permissionResolver = new WildcardPermissionResolver();
+        //WildcardPermissions are immutable, so the same instance can be safely reused for equal strings:
+        this.permissionResolver = new CachingPermissionResolver(new WildcardPermissionResolver());
+        this.permissionIndexingEnabled = true;
+        this.permissionIndexes = new ConcurrentHashMap<Object, PermissionIndex>();
+        this.permissionIndexQueue = new ReferenceQueue<AuthorizationInfo>();
+        this.authorizationLoadTimes = new ConcurrentHashMap<Object, Long>();
+        this.authorizationLoadTimeQueue = new ReferenceQueue<AuthorizationInfo>();
+        this.authorizationRefreshes = new ConcurrentHashMap<Object, Object>();
 
         int instanceNumber = INSTANCE_COUNT.getAndIncrement();
         this.authorizationCacheName = getClass().getName() + DEFAULT_AUTHORIZATION_CACHE_SUFFIX;
@@ -173,13 +221,37 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         }
     }
 
+    /**
+     * Returns the resolver used to convert permission strings into {@link Permission} instances.  The default is a
+     * {@link CachingPermissionResolver CachingPermissionResolver} wrapping a
+     * {@link WildcardPermissionResolver WildcardPermissionResolver}; the latter's
+     * {@link WildcardPermissionResolver#setCompact(boolean) compact} property is exposed by the former, so compact
+     * permissions can be enabled in INI with {@code realm.permissionResolver.compact = true}.
+     *
+     * @return the resolver used to convert permission strings into {@code Permission} instances.
+     */
     public PermissionResolver getPermissionResolver() {
         return permissionResolver;
     }
 
+    /**
+     * Sets the resolver used to convert permission strings into {@link Permission} instances.  The specified resolver
+     * is used as-is and is <em>not</em> wrapped in a {@link CachingPermissionResolver CachingPermissionResolver}, as
+     * caching is only safe for resolvers that return immutable permissions.  To cache the permissions of a custom
+     * resolver that does, wrap it explicitly, e.g. in INI:
+     * <pre>
+     * customResolver = com.company.CustomPermissionResolver
+     * cachingResolver = org.apache.shiro.authz.permission.CachingPermissionResolver
+     * cachingResolver.delegate = $customResolver
+     * realm.permissionResolver = $cachingResolver</pre>
+     *
+     * @param permissionResolver the resolver used to convert permission strings into {@code Permission} instances.
+     */
     public void setPermissionResolver(PermissionResolver permissionResolver) {
         if (permissionResolver == null) throw new IllegalArgumentException("Null PermissionResolver is not allowed");
         this.permissionResolver = permissionResolver;
+        //previously compiled indexes were resolved with the old resolver:
+        this.permissionIndexes.clear();
     }
 
     public RolePermissionResolver getRolePermissionResolver() {
@@ -188,6 +260,150 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
 
     public void setRolePermissionResolver(RolePermissionResolver permissionRoleResolver) {
         this.permissionRoleResolver = permissionRoleResolver;
+        //previously compiled indexes were resolved with the old resolver:
+        this.permissionIndexes.clear();
+    }
+
+    /**
+     * Returns {@code true} if the permissions of cached {@link AuthorizationInfo} instances should be compiled into a
+     * {@link PermissionIndex PermissionIndex} that is reused for all permission checks against that
+     * {@code AuthorizationInfo}, {@code false} if every permission check should resolve and scan all of the
+     * account's permissions.
+     * <p/>
+     * Indexes are only built when {@link #isAuthorizationCachingEnabled() authorization caching} is in effect, since
+     * otherwise every {@code AuthorizationInfo} instance is only used for a single check.  An index is kept for as
+     * long as its {@code AuthorizationInfo} instance is referenced (e.g. by the authorization cache).  If a cached
+     * {@code AuthorizationInfo} is modified in place, the
+     * {@link #clearCachedAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) clearCachedAuthorizationInfo}
+     * method must be called for the changes to be seen, as is already required for cached data.
+     * <p/>
+     * The default value is {@code true}.
+     *
+     * @return {@code true} if the permissions of cached {@code AuthorizationInfo} instances should be indexed,
+     *         {@code false} otherwise.
+     * @since 1.3
+     */
+    public boolean isPermissionIndexingEnabled() {
+        return permissionIndexingEnabled;
+    }
+
+    /**
+     * Sets whether or not the permissions of cached {@link AuthorizationInfo} instances should be compiled into a
+     * reusable {@link PermissionIndex PermissionIndex}.  See {@link #isPermissionIndexingEnabled()} for more.
+     * <p/>
+     * The default value is {@code true}.
+     *
+     * @param permissionIndexingEnabled whether or not the permissions of cached {@code AuthorizationInfo} instances
+     *                                  should be indexed.
+     * @since 1.3
+     */
+    public void setPermissionIndexingEnabled(boolean permissionIndexingEnabled) {
+        this.permissionIndexingEnabled = permissionIndexingEnabled;
+        if (!permissionIndexingEnabled) {
+            this.permissionIndexes.clear();
+        }
+    }
+
+    /**
+     * Returns the age, in milliseconds, after which a cached {@link AuthorizationInfo} is reloaded in the background
+     * the next time it is accessed, or {@code 0} if refresh-ahead is disabled.
+     * <p/>
+     * When refresh-ahead is enabled and a cached {@code AuthorizationInfo} is at least this old, the cached
+     * (stale) instance is still returned immediately, and a call to
+     * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) doGetAuthorizationInfo} is
+     * submitted to the {@link #getAuthorizationRefreshExecutor() authorizationRefreshExecutor} to replace the cached
+     * instance.  This keeps data store latency off the request path for frequently used accounts.  Stale instances
+     * are never returned once they are older than the {@link #getAuthorizationMaxAge() authorizationMaxAge}.
+     * <p/>
+     * Ages are tracked per cached {@code AuthorizationInfo} instance, from the time this realm loaded it (or, for
+     * instances put in the cache by some other party, from the time this realm first saw it).  Caches that return a
+     * new copy on every read therefore never trigger a refresh.  The authorization cache's own expiration, if any,
+     * should be longer than the {@code authorizationMaxAge} for stale instances to remain available.
+     * <p/>
+     * Refresh-ahead only applies if {@link #isAuthorizationCachingEnabled() authorization caching} is in effect.  The
+     * default value is {@code 0} (disabled).
+     *
+     * @return the age, in milliseconds, after which a cached {@code AuthorizationInfo} is reloaded in the background,
+     *         or {@code 0} if refresh-ahead is disabled.
+     * @since 1.3
+     */
+    public long getAuthorizationRefreshAheadTime() {
+        return authorizationRefreshAheadTime;
+    }
+
+    /**
+     * Sets the age, in milliseconds, after which a cached {@link AuthorizationInfo} is reloaded in the background the
+     * next time it is accessed.  A value of {@code 0} or less disables refresh-ahead.  See
+     * {@link #getAuthorizationRefreshAheadTime()} for more.
+     *
+     * @param authorizationRefreshAheadTime the age, in milliseconds, after which a cached {@code AuthorizationInfo}
+     *                                      is reloaded in the background.
+     * @since 1.3
+     */
+    public void setAuthorizationRefreshAheadTime(long authorizationRefreshAheadTime) {
+        this.authorizationRefreshAheadTime = authorizationRefreshAheadTime;
+    }
+
+    /**
+     * Returns the maximum age, in milliseconds, of a cached {@link AuthorizationInfo} that may be returned while it is
+     * being {@link #getAuthorizationRefreshAheadTime() refreshed ahead}, or {@code 0} if there is no such limit.
+     * <p/>
+     * A cached {@code AuthorizationInfo} older than this is discarded and synchronously reloaded, exactly as if it
+     * had not been cached, which bounds how long stale authorization data can be used when the background refreshes
+     * are failing or falling behind.  This value is only used when refresh-ahead is enabled.
+     * <p/>
+     * The default value is {@code 0} (stale instances are returned for as long as they remain in the cache).
+     *
+     * @return the maximum age, in milliseconds, of a cached {@code AuthorizationInfo} that may be returned, or
+     *         {@code 0} if there is no limit.
+     * @since 1.3
+     */
+    public long getAuthorizationMaxAge() {
+        return authorizationMaxAge;
+    }
+
+    /**
+     * Sets the maximum age, in milliseconds, of a cached {@link AuthorizationInfo} that may be returned while it is
+     * being refreshed ahead.  A value of {@code 0} or less means there is no limit.  See
+     * {@link #getAuthorizationMaxAge()} for more.
+     *
+     * @param authorizationMaxAge the maximum age, in milliseconds, of a cached {@code AuthorizationInfo} that may be
+     *                            returned.
+     * @since 1.3
+     */
+    public void setAuthorizationMaxAge(long authorizationMaxAge) {
+        this.authorizationMaxAge = authorizationMaxAge;
+    }
+
+    /**
+     * Returns the {@code Executor} used to reload cached {@link AuthorizationInfo} instances in the background when
+     * {@link #getAuthorizationRefreshAheadTime() refresh-ahead} is enabled.
+     * <p/>
+     * If not configured, a single daemon thread is created on first use, and stopped when this realm is
+     * {@link #destroy() destroyed}.  An explicitly configured {@code Executor} is never shut down by this realm.
+     *
+     * @return the {@code Executor} used to reload cached {@code AuthorizationInfo} instances in the background, or
+     *         {@code null} if the default executor will be used.
+     * @since 1.3
+     */
+    public Executor getAuthorizationRefreshExecutor() {
+        return authorizationRefreshExecutor;
+    }
+
+    /**
+     * Sets the {@code Executor} used to reload cached {@link AuthorizationInfo} instances in the background when
+     * {@link #getAuthorizationRefreshAheadTime() refresh-ahead} is enabled.
+     *
+     * @param authorizationRefreshExecutor the {@code Executor} used to reload cached {@code AuthorizationInfo}
+     *                                     instances in the background.
+     * @since 1.3
+     */
+    public void setAuthorizationRefreshExecutor(Executor authorizationRefreshExecutor) {
+        this.authorizationRefreshExecutor = authorizationRefreshExecutor;
+    }
+
+    private boolean isAuthorizationRefreshAheadEnabled() {
+        return this.authorizationRefreshAheadTime > 0;
     }
 
     /*--------------------------------------------
@@ -220,6 +436,24 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         getAvailableAuthorizationCache();
     }
 
+    /**
+     * Stops the default {@link #getAuthorizationRefreshExecutor() authorizationRefreshExecutor} if one was created.
+     * <p/>
+     * If overriding in a subclass, be sure to call {@code super.destroy()} to ensure this behavior is maintained.
+     *
+     * @since 1.3
+     */
+    public void destroy() {
+        ExecutorService executor;
+        synchronized (this.authorizationRefreshes) {
+            executor = this.defaultAuthorizationRefreshExecutor;
+            this.defaultAuthorizationRefreshExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     protected void afterCacheManagerSet() {
         super.afterCacheManagerSet();
         //trigger obtaining the authorization cache if possible
@@ -292,7 +526,11 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
      * {@code AuthorizationInfo} immediately.  If caching is disabled, or there is a cache miss, the authorization
      * info will be looked up from the underlying data store via the
      * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection)} method, which must be implemented
-     * by subclasses.
+     * by subclasses.  If the authorization cache is a {@link LoadingCache LoadingCache}, concurrent cache misses for
+     * the same principals are coalesced into a single {@code doGetAuthorizationInfo} call.
+     * <p/>
+     * If {@link #setAuthorizationRefreshAheadTime(long) refresh-ahead} is enabled, cached instances older than the
+     * refresh-ahead time are still returned, but are reloaded in the background so subsequent calls see fresh data.
      * <h4>Changed Data</h4>
      * If caching is enabled and if any authorization data for an account is changed at
      * runtime, such as adding or removing roles and/or permissions, the subclass implementation should clear the
@@ -307,7 +545,7 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
      * @return the authorization information for the account associated with the specified {@code principals},
      *         or {@code null} if no account could be found.
      */
-    protected AuthorizationInfo getAuthorizationInfo(PrincipalCollection principals) {
+    protected AuthorizationInfo getAuthorizationInfo(final PrincipalCollection principals) {
 
         if (principals == null) {
             return null;
@@ -320,6 +558,12 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         }
 
         Cache<Object, AuthorizationInfo> cache = getAvailableAuthorizationCache();
+        if (cache != null && isAuthorizationRefreshAheadEnabled()) {
+            return getAuthorizationInfoRefreshingAhead(principals, cache);
+        }
+        if (cache instanceof LoadingCache) {
+            return loadAuthorizationInfo(principals, (LoadingCache<Object, AuthorizationInfo>) cache);
+        }
         if (cache != null) {
             if (log.isTraceEnabled()) {
                 log.trace("Attempting to retrieve the AuthorizationInfo from cache.");
@@ -352,6 +596,146 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         return info;
     }
 
+    /**
+     * Reads through the specified loading cache - concurrent misses for the same principals only call
+     * {@link #doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) doGetAuthorizationInfo} once.
+     */
+    private AuthorizationInfo loadAuthorizationInfo(final PrincipalCollection principals,
+                                                    LoadingCache<Object, AuthorizationInfo> cache) {
+        Object key = getAuthorizationCacheKey(principals);
+        return cache.get(key, new CacheLoader<Object, AuthorizationInfo>() {
+            public AuthorizationInfo load(Object key) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Loading and caching authorization info for principals: [" + principals + "].");
+                }
+                AuthorizationInfo info = doGetAuthorizationInfo(principals);
+                if (info != null && isAuthorizationRefreshAheadEnabled()) {
+                    recordLoadTime(info, System.currentTimeMillis());
+                }
+                return info;
+            }
+        });
+    }
+
+    /**
+     * Returns the cached AuthorizationInfo for the specified principals, scheduling a background refresh if it is
+     * older than the {@link #getAuthorizationRefreshAheadTime() authorizationRefreshAheadTime}, or loading it
+     * synchronously if it is absent or older than the {@link #getAuthorizationMaxAge() authorizationMaxAge}.
+     */
+    private AuthorizationInfo getAuthorizationInfoRefreshingAhead(PrincipalCollection principals,
+                                                                  Cache<Object, AuthorizationInfo> cache) {
+        Object key = getAuthorizationCacheKey(principals);
+        AuthorizationInfo info = cache.get(key);
+        if (info != null) {
+            long now = System.currentTimeMillis();
+            long age = now - recordLoadTime(info, now);
+            long maxAge = getAuthorizationMaxAge();
+            if (maxAge <= 0 || age < maxAge) {
+                if (age >= getAuthorizationRefreshAheadTime()) {
+                    refreshAuthorizationInfo(key, principals, cache);
+                }
+                return info;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Cached AuthorizationInfo for principals [" + principals + "] is " + age +
+                        " ms old, exceeding the maximum age of " + maxAge + " ms.  Reloading.");
+            }
+            cache.remove(key);
+        }
+
+        if (cache instanceof LoadingCache) {
+            return loadAuthorizationInfo(principals, (LoadingCache<Object, AuthorizationInfo>) cache);
+        }
+        info = doGetAuthorizationInfo(principals);
+        if (info != null) {
+            recordLoadTime(info, System.currentTimeMillis());
+            cache.put(key, info);
+        }
+        return info;
+    }
+
+    /**
+     * Returns the time the specified AuthorizationInfo instance was loaded, first recording the specified time if its
+     * load time is not yet known.
+     */
+    private long recordLoadTime(AuthorizationInfo info, long time) {
+        Long loaded = this.authorizationLoadTimes.get(new AuthorizationInfoKey(info));
+        if (loaded == null) {
+            expungeStaleEntries(this.authorizationLoadTimeQueue, this.authorizationLoadTimes);
+            loaded = time;
+            Long existing = this.authorizationLoadTimes.putIfAbsent(
+                    new AuthorizationInfoReference(info, this.authorizationLoadTimeQueue), loaded);
+            if (existing != null) {
+                loaded = existing;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Submits a background reload of the AuthorizationInfo cached under the specified key, unless one is already in
+     * progress.  The reloaded instance is only cached if the entry was not
+     * {@link #clearCachedAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection) cleared} in the meantime.
+     */
+    private void refreshAuthorizationInfo(final Object key, final PrincipalCollection principals,
+                                          final Cache<Object, AuthorizationInfo> cache) {
+        final Object refresh = new Object();
+        if (this.authorizationRefreshes.putIfAbsent(key, refresh) != null) {
+            return;
+        }
+        Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    AuthorizationInfo info = doGetAuthorizationInfo(principals);
+                    synchronized (refresh) {
+                        if (authorizationRefreshes.remove(key, refresh)) {
+                            if (info != null) {
+                                recordLoadTime(info, System.currentTimeMillis());
+                                cache.put(key, info);
+                            } else {
+                                cache.remove(key);
+                            }
+                        }
+                    }
+                    if (log.isTraceEnabled()) {
+                        log.trace("Refreshed cached authorization info for principals [" + principals + "].");
+                    }
+                } catch (Throwable t) {
+                    log.warn("Unable to refresh cached authorization info for principals [" + principals + "].  " +
+                            "The cached authorization info will be used until the next attempt.", t);
+                } finally {
+                    authorizationRefreshes.remove(key, refresh);
+                }
+            }
+        };
+        try {
+            getRequiredAuthorizationRefreshExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            this.authorizationRefreshes.remove(key, refresh);
+            log.debug("Authorization refresh executor rejected the refresh of principals [{}].", principals);
+        }
+    }
+
+    private Executor getRequiredAuthorizationRefreshExecutor() {
+        Executor executor = getAuthorizationRefreshExecutor();
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (this.authorizationRefreshes) {
+            if (this.defaultAuthorizationRefreshExecutor == null) {
+                final String threadName = getName() + " authorization refresh";
+                this.defaultAuthorizationRefreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return this.defaultAuthorizationRefreshExecutor;
+        }
+    }
+
     protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
         return principals;
     }
@@ -383,7 +767,17 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         //cache instance will be non-null if caching is enabled:
         if (cache != null) {
             Object key = getAuthorizationCacheKey(principals);
-            cache.remove(key);
+            Object refresh = this.authorizationRefreshes.remove(key);
+            if (refresh != null) {
+                //wait for an in-flight refresh that is already publishing its result, so it can't outlive this call:
+                synchronized (refresh) {
+                    log.trace("Cancelled authorization refresh for principals [{}].", principals);
+                }
+            }
+            AuthorizationInfo removed = cache.remove(key);
+            if (removed != null) {
+                this.permissionIndexes.remove(new AuthorizationInfoKey(removed));
+            }
         }
     }
 
@@ -452,6 +846,34 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         return perms;
     }
 
+    /**
+     * Returns the compiled {@link PermissionIndex PermissionIndex} for the specified (cached) AuthorizationInfo,
+     * compiling and retaining it first if necessary.
+     *
+     * @param info the AuthorizationInfo for which to return the compiled permissions
+     * @return the compiled {@code PermissionIndex} for the specified AuthorizationInfo.
+     */
+    private PermissionIndex getPermissionIndex(AuthorizationInfo info) {
+        PermissionIndex index = this.permissionIndexes.get(new AuthorizationInfoKey(info));
+        if (index == null) {
+            expungeStaleEntries(this.permissionIndexQueue, this.permissionIndexes);
+            index = new PermissionIndex(getPermissions(info));
+            PermissionIndex existing = this.permissionIndexes.putIfAbsent(
+                    new AuthorizationInfoReference(info, this.permissionIndexQueue), index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    private static void expungeStaleEntries(ReferenceQueue<AuthorizationInfo> queue, Map<Object, ?> map) {
+        Reference<? extends AuthorizationInfo> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+
     public boolean isPermitted(PrincipalCollection principals, String permission) {
         Permission p = getPermissionResolver().resolvePermission(permission);
         return isPermitted(principals, p);
@@ -463,6 +885,9 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
     }
 
     private boolean isPermitted(Permission permission, AuthorizationInfo info) {
+        if (info != null && isPermissionIndexingEnabled() && getAvailableAuthorizationCache() != null) {
+            return getPermissionIndex(info).implies(permission);
+        }
         Collection<Permission> perms = getPermissions(info);
         if (perms != null && !perms.isEmpty()) {
             for (Permission perm : perms) {
@@ -474,6 +899,88 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         return false;
     }
 
+    /**
+     * Looks up the {@link AuthorizationInfo} for the specified principals once and checks every item against it.
+     * <p/>
+     * If {@link #isPermissionIndexingEnabled() permission indexing} is enabled, the account's permissions are
+     * compiled into a {@link PermissionIndex PermissionIndex} for the checks (the cached index is reused if
+     * authorization caching is in effect), otherwise they are resolved once and scanned for each item.
+     * <p/>
+     * If a subclass overrides {@link #isPermitted(PrincipalCollection, Permission)}, that method is called for each
+     * item instead, so that its checks are not bypassed.
+     *
+     * @since 1.3
+     */
+    public <T> BitSet filterPermitted(PrincipalCollection principals, Collection<T> items,
+                                      PermissionMapper<? super T> mapper) {
+        BitSet permitted = new BitSet(items.size());
+        if (items.isEmpty()) {
+            return permitted;
+        }
+        if (isPermittedCheckOverridden()) {
+            int i = 0;
+            for (T item : items) {
+                Permission permission = mapper.getPermission(item);
+                if (permission != null && isPermitted(principals, permission)) {
+                    permitted.set(i);
+                }
+                i++;
+            }
+            return permitted;
+        }
+        AuthorizationInfo info = getAuthorizationInfo(principals);
+        if (info == null) {
+            return permitted;
+        }
+
+        PermissionIndex index = null;
+        Collection<Permission> perms = null;
+        if (!isPermissionIndexingEnabled()) {
+            perms = getPermissions(info);
+        } else if (getAvailableAuthorizationCache() != null) {
+            index = getPermissionIndex(info);
+        } else {
+            //compiling is worth it even for a single batch:
+            index = new PermissionIndex(getPermissions(info));
+        }
+
+        int i = 0;
+        for (T item : items) {
+            Permission permission = mapper.getPermission(item);
+            if (permission != null) {
+                if (index != null) {
+                    if (index.implies(permission)) {
+                        permitted.set(i);
+                    }
+                } else {
+                    for (Permission perm : perms) {
+                        if (perm.implies(permission)) {
+                            permitted.set(i);
+                            break;
+                        }
+                    }
+                }
+            }
+            i++;
+        }
+        return permitted;
+    }
+
+    private boolean isPermittedCheckOverridden() {
+        Boolean overridden = this.permittedCheckOverridden;
+        if (overridden == null) {
+            try {
+                Method method = getClass().getMethod("isPermitted", PrincipalCollection.class, Permission.class);
+                overridden = method.getDeclaringClass() != AuthorizingRealm.class;
+            } catch (NoSuchMethodException e) {
+                //not possible, the method is public:
+                overridden = Boolean.TRUE;
+            }
+            this.permittedCheckOverridden = overridden;
+        }
+        return overridden;
+    }
+
     public boolean[] isPermitted(PrincipalCollection subjectIdentifier, String... permissions) {
         List<Permission> perms = new ArrayList<Permission>(permissions.length);
         for (String permString : permissions) {
@@ -660,4 +1167,57 @@ public abstract class AuthorizingRealm extends AuthenticatingRealm
         super.doClearCache(principals);
         clearCachedAuthorizationInfo(principals);
     }
+
+    /**
+     * Weak, identity-based map key for an AuthorizationInfo's compiled {@link PermissionIndex PermissionIndex} or
+     * load time.
+     */
+    private static final class AuthorizationInfoReference extends WeakReference<AuthorizationInfo> {
+
+        private final int hashCode;
+
+        private AuthorizationInfoReference(AuthorizationInfo info, ReferenceQueue<AuthorizationInfo> queue) {
+            super(info, queue);
+            this.hashCode = System.identityHashCode(info);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o instanceof AuthorizationInfoReference) {
+                Object info = get();
+                return info != null && info == ((AuthorizationInfoReference) o).get();
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Transient (strong) lookup key matching the {@link AuthorizationInfoReference} of the same AuthorizationInfo.
+     */
+    private static final class AuthorizationInfoKey {
+
+        private final AuthorizationInfo info;
+
+        private AuthorizationInfoKey(AuthorizationInfo info) {
+            this.info = info;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof AuthorizationInfoReference && ((AuthorizationInfoReference) o).get() == info;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(info);
+        }
+    }
 }
@@ -181,6 +181,7 @@ public class PropertiesRealm extends TextConfigurationRealm implements Destroyab
             }
         } finally {
             scheduler = null;
+            super.destroy();
         }
     }
 
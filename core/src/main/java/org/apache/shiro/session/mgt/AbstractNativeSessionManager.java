@@ -21,15 +21,24 @@ import org.apache.shiro.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Abstract implementation supporting the {@link NativeSessionManager NativeSessionManager} interface, supporting
  * {@link SessionListener SessionListener}s and application of the
  * {@link #getGlobalSessionTimeout() globalSessionTimeout}.
+ * <p/>
+ * Session {@link #touch(SessionKey) touches} may optionally be coalesced, so that not every touch results in a write
+ * to the underlying data store.  See {@link #setSessionTouchGranularity(long)} for more.
  *
  * @since 1.0
  */
@@ -39,8 +48,22 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
 
     private Collection<SessionListener> listeners;
 
+    private long sessionTouchGranularity;
+
+    /**
+     * Sessions touched since their last access time was last written, keyed by session id.
+     */
+    private final ConcurrentMap<Serializable, TouchState> touches;
+
+    /**
+     * The earliest time at which a touch may write the deferred touches whose coalescing window has elapsed.
+     */
+    private final AtomicLong nextTouchFlushTime;
+
     public AbstractNativeSessionManager() {
         this.listeners = new ArrayList<SessionListener>();
+        this.touches = new ConcurrentHashMap<Serializable, TouchState>();
+        this.nextTouchFlushTime = new AtomicLong();
     }
 
     public void setSessionListeners(Collection<SessionListener> listeners) {
@@ -52,6 +75,49 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
         return this.listeners;
     }
 
+    /**
+     * Returns the minimum time in milliseconds a session's last access time must advance before a
+     * {@link #touch(SessionKey) touch} is written to the underlying data store, or {@code 0} if every touch is written
+     * immediately.  The default value is {@code 0}.
+     *
+     * @return the minimum time in milliseconds a session's last access time must advance before a touch is written.
+     * @since 1.3
+     */
+    public long getSessionTouchGranularity() {
+        return sessionTouchGranularity;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds a session's last access time must advance before a
+     * {@link #touch(SessionKey) touch} is written to the underlying data store, or {@code 0} (the default) to write
+     * every touch immediately.
+     * <p/>
+     * Touching a session usually happens on every request, so with a persistent data store, writing every touch can
+     * easily dominate the cost of session management.  When a granularity is set, a touch that advances the
+     * session's last access time by less than the granularity since it was last written is only remembered in
+     * memory.  Remembered touches are applied whenever the session is looked up through this manager (so it will not
+     * expire prematurely).  They are written once the granularity has elapsed since the session's last access time
+     * was last written, by the next touch of <em>any</em> session (at most one such batch per granularity period), so
+     * the last touch of a session that is no longer used is written as well.  All remembered touches are also
+     * written by {@link #flushSessionTouches()}, which is called before each session validation run.  All other
+     * session changes (attributes, timeout, stopping) are still written immediately.
+     * <p/>
+     * The value stored in the data store may therefore lag behind the actual last access time by up to about twice
+     * the granularity while sessions are being touched (or until the next validation run otherwise), so it should be
+     * small relative to the session timeout, e.g. a minute for a 30 minute timeout.  Only
+     * {@link SimpleSession SimpleSession}s are coalesced.
+     *
+     * @param sessionTouchGranularity the minimum time in milliseconds a session's last access time must advance
+     *                                before a touch is written, or {@code 0} to write every touch.
+     * @since 1.3
+     */
+    public void setSessionTouchGranularity(long sessionTouchGranularity) {
+        if (sessionTouchGranularity < 0) {
+            throw new IllegalArgumentException("sessionTouchGranularity cannot be negative.");
+        }
+        this.sessionTouchGranularity = sessionTouchGranularity;
+    }
+
     public Session start(SessionContext context) {
         Session session = createSession(context);
         applyGlobalSessionTimeout(session);
@@ -186,8 +252,156 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
 
     public void touch(SessionKey key) throws InvalidSessionException {
         Session s = lookupRequiredSession(key);
+        Date previous = s.getLastAccessTime();
         s.touch();
-        onChange(s);
+        if (!deferTouch(s, previous)) {
+            onChange(s);
+        }
+        flushElapsedSessionTouches();
+    }
+
+    /**
+     * Writes the deferred touches whose {@link #getSessionTouchGranularity() sessionTouchGranularity} has elapsed
+     * since they were last written, at most once per granularity period, so they are not held back until the next
+     * validation run.
+     */
+    private void flushElapsedSessionTouches() {
+        long granularity = getSessionTouchGranularity();
+        if (granularity <= 0 || this.touches.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long next = this.nextTouchFlushTime.get();
+        //only one thread flushes per period:
+        if (now >= next && this.nextTouchFlushTime.compareAndSet(next, now + granularity)) {
+            flushSessionTouches(now - granularity);
+        }
+    }
+
+    /**
+     * Remembers the touch of the specified session instead of writing it, if it advances the last access time by less
+     * than the {@link #getSessionTouchGranularity() sessionTouchGranularity} since it was last written.
+     *
+     * @param s        the session that was just touched
+     * @param previous the session's last access time before it was touched
+     * @return {@code true} if the touch was deferred, {@code false} if it must be written.
+     */
+    private boolean deferTouch(Session s, Date previous) {
+        long granularity = getSessionTouchGranularity();
+        if (granularity <= 0 || !(s instanceof SimpleSession) || previous == null || s.getId() == null) {
+            return false;
+        }
+        long accessed = s.getLastAccessTime().getTime();
+        TouchState state = this.touches.get(s.getId());
+        if (state == null) {
+            //the last access time of a session that was not touched since the last flush is the one last written:
+            state = new TouchState(previous.getTime());
+            TouchState existing = this.touches.putIfAbsent(s.getId(), state);
+            if (existing != null) {
+                state = existing;
+            }
+        }
+        synchronized (state) {
+            if (accessed - state.written < granularity) {
+                state.pending = Math.max(state.pending, accessed);
+                return true;
+            }
+            state.written = Math.max(state.written, accessed);
+            return false;
+        }
+    }
+
+    /**
+     * Applies any touch of the specified session that has not been written yet, so that its last access time reflects
+     * all touches made through this manager.  Called whenever a session is looked up.
+     *
+     * @param s the session looked up from the underlying data store
+     * @since 1.3
+     */
+    void applyDeferredTouch(Session s) {
+        if (!(s instanceof SimpleSession) || s.getId() == null) {
+            return;
+        }
+        TouchState state = this.touches.get(s.getId());
+        if (state == null) {
+            return;
+        }
+        long pending;
+        synchronized (state) {
+            pending = state.pending;
+        }
+        SimpleSession ss = (SimpleSession) s;
+        Date lastAccessTime = ss.getLastAccessTime();
+        if (lastAccessTime == null || lastAccessTime.getTime() < pending) {
+            ss.setLastAccessTime(new Date(pending));
+        }
+    }
+
+    /**
+     * Discards any touch of the specified session that has not been written yet.
+     *
+     * @param s the session that was stopped or expired
+     */
+    void discardDeferredTouch(Session s) {
+        if (s.getId() != null) {
+            this.touches.remove(s.getId());
+        }
+    }
+
+    /**
+     * Writes all session touches that were deferred due to the
+     * {@link #getSessionTouchGranularity() sessionTouchGranularity} to the underlying data store.  This is called
+     * automatically before sessions are validated, and may be called at any other time (for example at shutdown).
+     *
+     * @since 1.3
+     */
+    public void flushSessionTouches() {
+        flushSessionTouches(Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes the deferred touches of the sessions whose last access time was last written at or before the specified
+     * time.
+     *
+     * @param writtenBefore the latest last written access time of the sessions whose deferred touches are written
+     */
+    private void flushSessionTouches(long writtenBefore) {
+        int flushed = 0;
+        for (Iterator<Map.Entry<Serializable, TouchState>> it = this.touches.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Serializable, TouchState> entry = it.next();
+            TouchState state = entry.getValue();
+            long pending;
+            synchronized (state) {
+                pending = state.pending;
+                if (pending <= state.written) {
+                    //not touched since the last flush - stop tracking it until it is touched again:
+                    it.remove();
+                    continue;
+                }
+                if (state.written > writtenBefore) {
+                    continue;
+                }
+            }
+            Session s;
+            try {
+                //the lookup applies the deferred touch:
+                s = lookupSession(new DefaultSessionKey(entry.getKey()));
+            } catch (InvalidSessionException e) {
+                s = null;
+            }
+            if (s == null) {
+                this.touches.remove(entry.getKey(), state);
+                continue;
+            }
+            onChange(s);
+            flushed++;
+            synchronized (state) {
+                state.written = Math.max(state.written, pending);
+            }
+        }
+        if (flushed > 0 && log.isDebugEnabled()) {
+            log.debug("Flushed deferred touches of [" + flushed + "] sessions.");
+        }
     }
 
     public String getHost(SessionKey key) {
@@ -240,6 +454,7 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
             log.debug("Stopping session with id [" + session.getId() + "]");
         }
         session.stop();
+        discardDeferredTouch(session);
         onStop(session, key);
         notifyStop(session);
         afterStopped(session);
@@ -263,4 +478,18 @@ public abstract class AbstractNativeSessionManager extends AbstractSessionManage
 
     protected void onChange(Session s) {
     }
+
+    /**
+     * The last written and latest deferred last access times of a touched session.
+     */
+    private static final class TouchState {
+
+        private long written;
+        private long pending;
+
+        private TouchState(long written) {
+            this.written = written;
+            this.pending = written;
+        }
+    }
 }
@@ -28,7 +28,13 @@ import org.apache.shiro.util.LifecycleUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -37,7 +43,7 @@ import java.util.Collection;
  * @since 0.1
  */
 public abstract class AbstractValidatingSessionManager extends AbstractNativeSessionManager
-        implements ValidatingSessionManager, Destroyable {
+        implements ParallelValidatingSessionManager, Destroyable {
 
     //TODO - complete JavaDoc
 
@@ -117,6 +123,7 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
 
         Session s = retrieveSession(key);
         if (s != null) {
+            applyDeferredTouch(s);
             validate(s, key);
         }
         return s;
@@ -152,6 +159,7 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
 
     protected void onExpiration(Session s, ExpiredSessionException ese, SessionKey key) {
         log.trace("Session with id [{}] has expired.", s.getId());
+        discardDeferredTouch(s);
         onExpiration(s);
         notifyExpiration(s);
         afterExpired(s);
@@ -170,6 +178,7 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
             return;
         }
         log.trace("Session with id [{}] is invalid.", s.getId());
+        discardDeferredTouch(s);
         onStop(s);
         notifyStop(s);
         afterStopped(s);
@@ -254,6 +263,11 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
     }
 
     public void destroy() {
+        try {
+            flushSessionTouches();
+        } catch (Exception e) {
+            log.warn("Unable to flush deferred session touches.  Ignoring (shutting down)...", e);
+        }
         disableSessionValidation();
     }
 
@@ -265,29 +279,21 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
             log.info("Validating all active sessions...");
         }
 
-        int invalidCount = 0;
+        //ensure sessions are validated against (and the data store reflects) their actual last access times:
+        flushSessionTouches();
 
-        Collection<Session> activeSessions = getActiveSessions();
+        ValidationRun run = new ValidationRun();
+
+        Collection<Session> activeSessions = getSessionsToValidate();
 
         if (activeSessions != null && !activeSessions.isEmpty()) {
             for (Session s : activeSessions) {
-                try {
-                    //simulate a lookup key to satisfy the method signature.
-                    //this could probably stand to be cleaned up in future versions:
-                    SessionKey key = new DefaultSessionKey(s.getId());
-                    validate(s, key);
-                } catch (InvalidSessionException e) {
-                    if (log.isDebugEnabled()) {
-                        boolean expired = (e instanceof ExpiredSessionException);
-                        String msg = "Invalidated session with id [" + s.getId() + "]" +
-                                (expired ? " (expired)" : " (stopped)");
-                        log.debug(msg);
-                    }
-                    invalidCount++;
-                }
+                run.validate(s);
             }
         }
 
+        int invalidCount = run.expired.get() + run.stopped.get();
+
         if (log.isInfoEnabled()) {
             String msg = "Finished session validation.";
             if (invalidCount > 0) {
@@ -299,5 +305,130 @@ public abstract class AbstractValidatingSessionManager extends AbstractNativeSes
         }
     }
 
+    /**
+     * @see ParallelValidatingSessionManager#validateSessions(java.util.concurrent.Executor, int, int)
+     * @since 1.3
+     */
+    public SessionValidationStatistics validateSessions(Executor executor, int shardSize, int maxPendingShards) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor argument cannot be null.");
+        }
+        if (shardSize < 1 || maxPendingShards < 1) {
+            throw new IllegalArgumentException("shardSize and maxPendingShards must be greater than zero.");
+        }
+        if (log.isInfoEnabled()) {
+            log.info("Validating all active sessions in shards of [" + shardSize + "]...");
+        }
+
+        flushSessionTouches();
+
+        final ValidationRun run = new ValidationRun();
+        final Semaphore pending = new Semaphore(maxPendingShards);
+        try {
+            Collection<Session> activeSessions = getSessionsToValidate();
+            if (activeSessions != null) {
+                List<Session> shard = new ArrayList<Session>(Math.min(shardSize, activeSessions.size()));
+                for (Session s : activeSessions) {
+                    shard.add(s);
+                    if (shard.size() == shardSize) {
+                        submitShard(executor, shard, run, pending);
+                        shard = new ArrayList<Session>(shardSize);
+                    }
+                }
+                if (!shard.isEmpty()) {
+                    submitShard(executor, shard, run, pending);
+                }
+            }
+            //wait for all submitted shards to complete:
+            pending.acquire(maxPendingShards);
+            pending.release(maxPendingShards);
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while validating sessions.  Returning early.");
+            Thread.currentThread().interrupt();
+        }
+
+        SessionValidationStatistics statistics = run.toStatistics();
+        if (log.isInfoEnabled()) {
+            log.info("Finished session validation: " + statistics + ".");
+        }
+        return statistics;
+    }
+
+    private void submitShard(Executor executor, final List<Session> shard, final ValidationRun run,
+                             final Semaphore pending) throws InterruptedException {
+        //back-pressure - wait until fewer than maxPendingShards are in flight:
+        pending.acquire();
+        Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    for (Session s : shard) {
+                        try {
+                            run.validate(s);
+                        } catch (RuntimeException e) {
+                            run.failed.incrementAndGet();
+                            log.warn("Unable to validate session with id [" + s.getId() + "].  Continuing...", e);
+                        }
+                    }
+                } finally {
+                    pending.release();
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
     protected abstract Collection<Session> getActiveSessions();
+
+    /**
+     * Returns the sessions to visit during {@link #validateSessions() validation}.  Every active session that may
+     * have expired or been stopped must be included.  The default implementation returns all
+     * {@link #getActiveSessions() active sessions}; subclasses may narrow this down if they can determine which
+     * sessions may have expired more efficiently.
+     *
+     * @return the sessions to visit during validation.
+     * @since 1.3
+     */
+    protected Collection<Session> getSessionsToValidate() {
+        return getActiveSessions();
+    }
+
+    /**
+     * Counts the outcomes of a single validation run, which may span multiple threads.
+     */
+    private final class ValidationRun {
+
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger scanned = new AtomicInteger();
+        private final AtomicInteger expired = new AtomicInteger();
+        private final AtomicInteger stopped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private void validate(Session s) {
+            scanned.incrementAndGet();
+            try {
+                //simulate a lookup key to satisfy the method signature.
+                //this could probably stand to be cleaned up in future versions:
+                SessionKey key = new DefaultSessionKey(s.getId());
+                applyDeferredTouch(s);
+                AbstractValidatingSessionManager.this.validate(s, key);
+            } catch (InvalidSessionException e) {
+                boolean expired = (e instanceof ExpiredSessionException);
+                (expired ? this.expired : this.stopped).incrementAndGet();
+                if (log.isDebugEnabled()) {
+                    String msg = "Invalidated session with id [" + s.getId() + "]" +
+                            (expired ? " (expired)" : " (stopped)");
+                    log.debug(msg);
+                }
+            }
+        }
+
+        private SessionValidationStatistics toStatistics() {
+            return new SessionValidationStatistics(startTime, System.currentTimeMillis() - startTime, scanned.get(),
+                    expired.get(), stopped.get(), failed.get());
+        }
+    }
 }
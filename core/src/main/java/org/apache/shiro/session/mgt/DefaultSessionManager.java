@@ -22,8 +22,11 @@ import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.cache.CacheManagerAware;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.eis.DeltaSessionDAO;
+import org.apache.shiro.session.mgt.eis.ExpiryIndexedSessionDAO;
 import org.apache.shiro.session.mgt.eis.MemorySessionDAO;
 import org.apache.shiro.session.mgt.eis.SessionDAO;
+import org.apache.shiro.util.LifecycleUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -175,6 +178,10 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
             log.debug("Creating new EIS record for new session instance [" + session + "]");
         }
         sessionDAO.create(session);
+        if (session instanceof SimpleSession) {
+            //the session was just written in its entirety:
+            ((SimpleSession) session).clearDelta();
+        }
     }
 
     @Override
@@ -208,8 +215,33 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
         }
     }
 
+    /**
+     * Persists the changed session.  If the session is a {@link SimpleSession SimpleSession} and the
+     * {@code SessionDAO} is a {@link DeltaSessionDAO DeltaSessionDAO} that {@link DeltaSessionDAO#isDeltaSupported()
+     * supports deltas}, only the session's {@link SimpleSession#takeDelta() changes} are passed on to be written,
+     * otherwise the entire session is {@link SessionDAO#update(org.apache.shiro.session.Session) updated}.
+     *
+     * @param session the session that changed.
+     */
     protected void onChange(Session session) {
-        sessionDAO.update(session);
+        if (session instanceof SimpleSession) {
+            SimpleSession ss = (SimpleSession) session;
+            if (sessionDAO instanceof DeltaSessionDAO && ((DeltaSessionDAO) sessionDAO).isDeltaSupported()) {
+                //taken atomically, as cached sessions may be changed by concurrent requests:
+                SessionDelta delta = ss.takeDelta();
+                try {
+                    ((DeltaSessionDAO) sessionDAO).updateDelta(session, delta);
+                } catch (RuntimeException e) {
+                    ss.restoreDelta(delta);
+                    throw e;
+                }
+            } else {
+                ss.clearDelta();
+                sessionDAO.update(session);
+            }
+        } else {
+            sessionDAO.update(session);
+        }
     }
 
     protected Session retrieveSession(SessionKey sessionKey) throws UnknownSessionException {
@@ -245,4 +277,33 @@ public class DefaultSessionManager extends AbstractValidatingSessionManager impl
         return active != null ? active : Collections.<Session>emptySet();
     }
 
+    /**
+     * Returns the {@link ExpiryIndexedSessionDAO#getExpirationCandidates() expiration candidates} if the
+     * {@code SessionDAO} is an {@link ExpiryIndexedSessionDAO ExpiryIndexedSessionDAO}, so that validation only
+     * visits sessions that may have expired, or all {@link #getActiveSessions() active sessions} otherwise.
+     *
+     * @return the sessions to visit during validation.
+     * @since 1.3
+     */
+    @Override
+    protected Collection<Session> getSessionsToValidate() {
+        if (sessionDAO instanceof ExpiryIndexedSessionDAO) {
+            Collection<Session> candidates = ((ExpiryIndexedSessionDAO) sessionDAO).getExpirationCandidates();
+            return candidates != null ? candidates : Collections.<Session>emptySet();
+        }
+        return getActiveSessions();
+    }
+
+    /**
+     * Flushes deferred session touches and stops session validation, then destroys the {@code SessionDAO} if it is
+     * {@link org.apache.shiro.util.Destroyable Destroyable}, so that persistent DAOs can release their resources.
+     *
+     * @since 1.3
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        LifecycleUtils.destroy(sessionDAO);
+    }
+
 }
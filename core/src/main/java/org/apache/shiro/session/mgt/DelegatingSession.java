@@ -24,6 +24,8 @@ import org.apache.shiro.session.Session;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A DelegatingSession is a client-tier representation of a server side
@@ -37,6 +39,12 @@ import java.util.Date;
  * <p>Of course, if used in-process with a NativeSessionManager business POJO, as might be the case in a
  * web-based application where the web classes and server-side business pojos exist in the same
  * JVM, a remote method call will not be incurred.
+ * <p/>
+ * A {@code DelegatingSession} that is only used for the duration of a single request may also
+ * {@link #DelegatingSession(NativeSessionManager, SessionKey, boolean) cache attributes}: every attribute is then
+ * only read from the {@code NativeSessionManager} once, and attribute changes are written through to it.  Changes
+ * made concurrently through other {@code DelegatingSession} instances are not visible to a caching instance once it
+ * has read the attribute.
  *
  * @since 0.1
  */
@@ -44,12 +52,22 @@ public class DelegatingSession implements Session, Serializable {
 
     //TODO - complete JavaDoc
 
+    /**
+     * Marks attributes known to be absent, as the cache does not accept {@code null} values.
+     */
+    private static final Object ABSENT = new Object();
+
     private final SessionKey key;
 
     //cached fields to avoid a server-side method call if out-of-process:
     private Date startTimestamp = null;
     private String host = null;
 
+    /**
+     * The attributes read or written so far, or {@code null} if attributes are not cached.
+     */
+    private final transient Map<Object, Object> attributes;
+
     /**
      * Handle to the target NativeSessionManager that will support the delegate calls.
      */
@@ -57,6 +75,19 @@ public class DelegatingSession implements Session, Serializable {
 
 
     public DelegatingSession(NativeSessionManager sessionManager, SessionKey key) {
+        this(sessionManager, key, false);
+    }
+
+    /**
+     * Creates a new {@code DelegatingSession} that optionally caches the session's attributes for its lifetime, which
+     * should then be limited to a single request.
+     *
+     * @param sessionManager  the session manager that will support the delegate calls
+     * @param key             the key of the session
+     * @param cacheAttributes whether attributes are only read once from the session manager
+     * @since 1.3
+     */
+    public DelegatingSession(NativeSessionManager sessionManager, SessionKey key, boolean cacheAttributes) {
         if (sessionManager == null) {
             throw new IllegalArgumentException("sessionManager argument cannot be null.");
         }
@@ -71,6 +102,7 @@ public class DelegatingSession implements Session, Serializable {
         }
         this.sessionManager = sessionManager;
         this.key = key;
+        this.attributes = cacheAttributes ? new ConcurrentHashMap<Object, Object>() : null;
     }
 
     /**
@@ -125,6 +157,9 @@ public class DelegatingSession implements Session, Serializable {
      */
     public void stop() throws InvalidSessionException {
         sessionManager.stop(key);
+        if (attributes != null) {
+            attributes.clear();
+        }
     }
 
     /**
@@ -138,7 +173,15 @@ public class DelegatingSession implements Session, Serializable {
      * @see org.apache.shiro.session.Session#getAttribute(Object key)
      */
     public Object getAttribute(Object attributeKey) throws InvalidSessionException {
-        return sessionManager.getAttribute(this.key, attributeKey);
+        if (attributes == null) {
+            return sessionManager.getAttribute(this.key, attributeKey);
+        }
+        Object value = attributes.get(attributeKey);
+        if (value == null) {
+            value = sessionManager.getAttribute(this.key, attributeKey);
+            attributes.put(attributeKey, value != null ? value : ABSENT);
+        }
+        return value != ABSENT ? value : null;
     }
 
     /**
@@ -149,6 +192,9 @@ public class DelegatingSession implements Session, Serializable {
             removeAttribute(attributeKey);
         } else {
             sessionManager.setAttribute(this.key, attributeKey, value);
+            if (attributes != null) {
+                attributes.put(attributeKey, value);
+            }
         }
     }
 
@@ -156,6 +202,10 @@ public class DelegatingSession implements Session, Serializable {
      * @see Session#removeAttribute(Object key)
      */
     public Object removeAttribute(Object attributeKey) throws InvalidSessionException {
-        return sessionManager.removeAttribute(this.key, attributeKey);
+        Object removed = sessionManager.removeAttribute(this.key, attributeKey);
+        if (attributes != null) {
+            attributes.put(attributeKey, ABSENT);
+        }
+        return removed;
     }
 }
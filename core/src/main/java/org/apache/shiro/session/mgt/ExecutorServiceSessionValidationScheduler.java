@@ -18,6 +18,7 @@
  */
 package org.apache.shiro.session.mgt;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -31,6 +32,13 @@ import org.slf4j.LoggerFactory;
  * SessionValidationScheduler implementation that uses a
  * {@link ScheduledExecutorService} to call {@link ValidatingSessionManager#validateSessions()} every
  * <em>{@link #getInterval interval}</em> milliseconds.
+ * <p/>
+ * If more than one {@link #setThreads(int) thread} is configured and the session manager is a
+ * {@link ParallelValidatingSessionManager ParallelValidatingSessionManager} (as all of Shiro's native session managers
+ * are), sessions are validated in shards of {@link #getShardSize() shardSize} sessions by a pool of
+ * {@link #getThreads() threads} worker threads, and the metrics of the most recent run are available via
+ * {@link #getLastValidationStatistics()}.  Otherwise {@code validateSessions()} is called as before, so subclasses of
+ * the session manager that override it keep working.
  *
  * @since 0.9
  */
@@ -46,6 +54,16 @@ public class ExecutorServiceSessionValidationScheduler implements SessionValidat
     private long interval = DefaultSessionManager.DEFAULT_SESSION_VALIDATION_INTERVAL;
     private boolean enabled = false;
 
+    /**
+     * The default number of sessions validated as a single unit of work, equal to {@code 1000}.
+     */
+    public static final int DEFAULT_SHARD_SIZE = 1000;
+
+    private int threads = 1;
+    private int shardSize = DEFAULT_SHARD_SIZE;
+    private ExecutorService workers;
+    private volatile SessionValidationStatistics lastValidationStatistics;
+
     public ExecutorServiceSessionValidationScheduler() {
         super();
     }
@@ -74,6 +92,69 @@ public class ExecutorServiceSessionValidationScheduler implements SessionValidat
         return this.enabled;
     }
 
+    /**
+     * Returns the number of threads validating sessions concurrently.  The default value is {@code 1}, in which case
+     * sessions are validated by the scheduling thread itself.
+     *
+     * @return the number of threads validating sessions concurrently.
+     * @since 1.3
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads validating sessions concurrently.  Values greater than {@code 1} only take effect
+     * if the session manager is a {@link ParallelValidatingSessionManager ParallelValidatingSessionManager}, and
+     * must be set before validation is {@link #enableSessionValidation() enabled}.
+     *
+     * @param threads the number of threads validating sessions concurrently.
+     * @since 1.3
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than zero.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of sessions validated as a single unit of work.  The default value is
+     * {@link #DEFAULT_SHARD_SIZE}.
+     *
+     * @return the number of sessions validated as a single unit of work.
+     * @since 1.3
+     */
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    /**
+     * Sets the number of sessions validated as a single unit of work.  At most two shards per
+     * {@link #getThreads() thread} are pending at any time.
+     *
+     * @param shardSize the number of sessions validated as a single unit of work.
+     * @since 1.3
+     */
+    public void setShardSize(int shardSize) {
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("shardSize must be greater than zero.");
+        }
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * Returns the metrics of the most recently completed parallel validation run, or {@code null} if no such run has
+     * completed yet, because only one {@link #getThreads() thread} is configured or the session manager is not a
+     * {@link ParallelValidatingSessionManager ParallelValidatingSessionManager}.
+     *
+     * @return the metrics of the most recently completed validation run, or {@code null}.
+     * @since 1.3
+     */
+    public SessionValidationStatistics getLastValidationStatistics() {
+        return lastValidationStatistics;
+    }
+
     /**
      * Creates a single thread {@link ScheduledExecutorService} to validate sessions at fixed intervals 
      * and enables this scheduler. The executor is created as a daemon thread to allow JVM to shut down
@@ -89,6 +170,15 @@ public class ExecutorServiceSessionValidationScheduler implements SessionValidat
 	            return thread;  
                 }  
             });                  
+            if (this.threads > 1) {
+                this.workers = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
             this.service.scheduleAtFixedRate(this, interval, interval, TimeUnit.MILLISECONDS);
             this.enabled = true;
         }
@@ -98,6 +188,16 @@ public class ExecutorServiceSessionValidationScheduler implements SessionValidat
         if (log.isDebugEnabled()) {
             log.debug("Executing session validation...");
         }
+        ExecutorService workers = this.workers;
+        if (workers != null && this.sessionManager instanceof ParallelValidatingSessionManager) {
+            SessionValidationStatistics statistics = ((ParallelValidatingSessionManager) this.sessionManager)
+                    .validateSessions(workers, shardSize, threads * 2);
+            this.lastValidationStatistics = statistics;
+            if (log.isDebugEnabled()) {
+                log.debug("Session validation completed successfully: " + statistics + ".");
+            }
+            return;
+        }
         long startTime = System.currentTimeMillis();
         this.sessionManager.validateSessions();
         long stopTime = System.currentTimeMillis();
@@ -108,6 +208,10 @@ public class ExecutorServiceSessionValidationScheduler implements SessionValidat
 
     public void disableSessionValidation() {
         this.service.shutdownNow();
+        if (this.workers != null) {
+            this.workers.shutdownNow();
+            this.workers = null;
+        }
         this.enabled = false;
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link ValidatingSessionManager ValidatingSessionManager} that can split session validation into shards that
+ * are validated concurrently.
+ *
+ * @since 1.3
+ */
+public interface ParallelValidatingSessionManager extends ValidatingSessionManager {
+
+    /**
+     * Validates all sessions that may be invalid, like {@link #validateSessions()}, but splits them into shards of
+     * {@code shardSize} sessions that are validated by the specified {@code executor}.  At most
+     * {@code maxPendingShards} shards are submitted to the executor at any time; the calling thread waits for a shard
+     * to complete before submitting more, so the sessions being validated are never all held in memory at once.  If
+     * the executor rejects a shard, it is validated by the calling thread.
+     * <p/>
+     * This method returns once all shards have been validated, or early if the calling thread is interrupted.
+     * Unlike {@link #validateSessions()}, an unexpected error validating one session does not abort the run; it is
+     * logged and counted as a {@link SessionValidationStatistics#getFailedCount() failure}.
+     * <p/>
+     * Note that since sessions are validated concurrently, {@link org.apache.shiro.session.SessionListener
+     * SessionListener}s may be notified concurrently as well.
+     *
+     * @param executor         the executor used to validate shards
+     * @param shardSize        the number of sessions in each shard
+     * @param maxPendingShards the maximum number of shards submitted to the executor and not yet completed
+     * @return the metrics of this validation run.
+     * @throws IllegalArgumentException if the executor is {@code null}, or the shard size or maximum number of pending
+     *                                  shards is less than {@code 1}.
+     */
+    SessionValidationStatistics validateSessions(Executor executor, int shardSize, int maxPendingShards);
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes made to a {@link SimpleSession SimpleSession} since it was last persisted, allowing a
+ * {@link org.apache.shiro.session.mgt.eis.DeltaSessionDAO DeltaSessionDAO} to write only what changed instead of the
+ * entire session.
+ * <p/>
+ * A delta distinguishes between the session's <em>state</em> (id, timestamps, timeout, expired flag and host), which
+ * is small and is reported as a whole via {@link #isStateChanged()}, and its attributes, which may be large and are
+ * reported individually.
+ * <p/>
+ * Instances are immutable snapshots obtained from {@link SimpleSession#getDelta()}.
+ *
+ * @since 1.3
+ */
+public class SessionDelta implements Serializable {
+
+    private final boolean stateChanged;
+    private final boolean attributesReplaced;
+    private final Map<Object, Object> changedAttributes;
+    private final Set<Object> removedAttributeKeys;
+
+    public SessionDelta(boolean stateChanged, boolean attributesReplaced, Map<Object, Object> changedAttributes,
+                        Set<Object> removedAttributeKeys) {
+        this.stateChanged = stateChanged;
+        this.attributesReplaced = attributesReplaced;
+        this.changedAttributes = changedAttributes != null ?
+                Collections.unmodifiableMap(changedAttributes) : Collections.<Object, Object>emptyMap();
+        this.removedAttributeKeys = removedAttributeKeys != null ?
+                Collections.unmodifiableSet(removedAttributeKeys) : Collections.<Object>emptySet();
+    }
+
+    /**
+     * Returns {@code true} if any of the session's non-attribute state (id, start or stop timestamp, last access time,
+     * timeout, expired flag or host) changed, {@code false} otherwise.
+     *
+     * @return {@code true} if any of the session's non-attribute state changed, {@code false} otherwise.
+     */
+    public boolean isStateChanged() {
+        return stateChanged;
+    }
+
+    /**
+     * Returns {@code true} if the session's entire attribute map was replaced (via
+     * {@link SimpleSession#setAttributes(java.util.Map) setAttributes}), in which case all attributes must be
+     * rewritten and the {@link #getChangedAttributes() changed} and {@link #getRemovedAttributeKeys() removed}
+     * attributes are not meaningful.
+     *
+     * @return {@code true} if the session's entire attribute map was replaced, {@code false} otherwise.
+     */
+    public boolean isAttributesReplaced() {
+        return attributesReplaced;
+    }
+
+    /**
+     * Returns the attributes that were set, keyed by attribute key, with their current values.
+     *
+     * @return the attributes that were set, keyed by attribute key, with their current values.
+     */
+    public Map<Object, Object> getChangedAttributes() {
+        return changedAttributes;
+    }
+
+    /**
+     * Returns the keys of the attributes that were removed.
+     *
+     * @return the keys of the attributes that were removed.
+     */
+    public Set<Object> getRemovedAttributeKeys() {
+        return removedAttributeKeys;
+    }
+
+    /**
+     * Returns {@code true} if nothing changed, {@code false} otherwise.
+     *
+     * @return {@code true} if nothing changed, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return !stateChanged && !attributesReplaced && changedAttributes.isEmpty() && removedAttributeKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[stateChanged=" + stateChanged + ", attributesReplaced=" +
+                attributesReplaced + ", changedAttributes=" + changedAttributes.keySet() + ", removedAttributeKeys=" +
+                removedAttributeKeys + "]";
+    }
+}
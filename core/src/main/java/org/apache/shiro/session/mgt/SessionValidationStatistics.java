@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Metrics of a single session validation run, as returned by
+ * {@link ParallelValidatingSessionManager#validateSessions(java.util.concurrent.Executor, int, int)}.
+ *
+ * @since 1.3
+ */
+public class SessionValidationStatistics implements Serializable {
+
+    private final long startTime;
+    private final long duration;
+    private final int scannedCount;
+    private final int expiredCount;
+    private final int stoppedCount;
+    private final int failedCount;
+
+    public SessionValidationStatistics(long startTime, long duration, int scannedCount, int expiredCount,
+                                       int stoppedCount, int failedCount) {
+        this.startTime = startTime;
+        this.duration = duration;
+        this.scannedCount = scannedCount;
+        this.expiredCount = expiredCount;
+        this.stoppedCount = stoppedCount;
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * Returns the time the run started.
+     *
+     * @return the time the run started.
+     */
+    public Date getStartTime() {
+        return new Date(startTime);
+    }
+
+    /**
+     * Returns how long the run took, in milliseconds.
+     *
+     * @return how long the run took, in milliseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the number of sessions that were validated.
+     *
+     * @return the number of sessions that were validated.
+     */
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    /**
+     * Returns the number of sessions found to have expired.
+     *
+     * @return the number of sessions found to have expired.
+     */
+    public int getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Returns the number of sessions found to have been stopped (invalid for reasons other than expiration).
+     *
+     * @return the number of sessions found to have been stopped.
+     */
+    public int getStoppedCount() {
+        return stoppedCount;
+    }
+
+    /**
+     * Returns the number of sessions that could not be validated due to an unexpected error.
+     *
+     * @return the number of sessions that could not be validated due to an unexpected error.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "scanned [" + scannedCount + "] sessions in [" + duration + "] ms, [" + expiredCount + "] expired, [" +
+                stoppedCount + "] stopped, [" + failedCount + "] failed";
+    }
+}
@@ -36,6 +36,11 @@ import java.util.*;
 /**
  * Simple {@link org.apache.shiro.session.Session} JavaBeans-compatible POJO implementation, intended to be used on the
  * business/server tier.
+ * <p/>
+ * Changes made through this class's methods are tracked until {@link #clearDelta() cleared}, so that a
+ * {@link org.apache.shiro.session.mgt.eis.DeltaSessionDAO DeltaSessionDAO} may persist only what changed (see
+ * {@link #getDelta()}).  Attribute values mutated in place, or changes made directly to the map returned by
+ * {@link #getAttributes()}, are not tracked unless the attribute is set again.
  *
  * @since 0.1
  */
@@ -92,6 +97,11 @@ public class SimpleSession implements ValidatingSession, Serializable {
     private transient String host;
     private transient Map<Object, Object> attributes;
 
+    //change tracking - not serialized (a deserialized session has no changes yet):
+    private transient boolean stateChanged;
+    private transient boolean attributesReplaced;
+    private transient Set<Object> changedAttributeKeys;
+
     public SimpleSession() {
         this.timeout = DefaultSessionManager.DEFAULT_GLOBAL_SESSION_TIMEOUT; //TODO - remove concrete reference to DefaultSessionManager
         this.startTimestamp = new Date();
@@ -109,6 +119,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setId(Serializable id) {
         this.id = id;
+        markStateChanged();
     }
 
     public Date getStartTimestamp() {
@@ -117,6 +128,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setStartTimestamp(Date startTimestamp) {
         this.startTimestamp = startTimestamp;
+        markStateChanged();
     }
 
     /**
@@ -142,6 +154,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setStopTimestamp(Date stopTimestamp) {
         this.stopTimestamp = stopTimestamp;
+        markStateChanged();
     }
 
     public Date getLastAccessTime() {
@@ -150,6 +163,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setLastAccessTime(Date lastAccessTime) {
         this.lastAccessTime = lastAccessTime;
+        markStateChanged();
     }
 
     /**
@@ -164,6 +178,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setExpired(boolean expired) {
         this.expired = expired;
+        markStateChanged();
     }
 
     public long getTimeout() {
@@ -172,6 +187,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setTimeout(long timeout) {
         this.timeout = timeout;
+        markStateChanged();
     }
 
     public String getHost() {
@@ -180,6 +196,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setHost(String host) {
         this.host = host;
+        markStateChanged();
     }
 
     public Map<Object, Object> getAttributes() {
@@ -188,15 +205,18 @@ public class SimpleSession implements ValidatingSession, Serializable {
 
     public void setAttributes(Map<Object, Object> attributes) {
         this.attributes = attributes;
+        markAttributesReplaced();
     }
 
     public void touch() {
         this.lastAccessTime = new Date();
+        markStateChanged();
     }
 
     public void stop() {
         if (this.stopTimestamp == null) {
             this.stopTimestamp = new Date();
+            markStateChanged();
         }
     }
 
@@ -207,6 +227,116 @@ public class SimpleSession implements ValidatingSession, Serializable {
     protected void expire() {
         stop();
         this.expired = true;
+        markStateChanged();
+    }
+
+    /**
+     * Returns {@code true} if this session changed since it was created, deserialized or its changes were last
+     * {@link #clearDelta() cleared}, {@code false} otherwise.
+     *
+     * @return {@code true} if this session has untracked changes, {@code false} otherwise.
+     * @since 1.3
+     */
+    public synchronized boolean isChanged() {
+        return this.stateChanged || this.attributesReplaced || !CollectionUtils.isEmpty(this.changedAttributeKeys);
+    }
+
+    /**
+     * Returns the changes made to this session since it was created, deserialized or its changes were last
+     * {@link #clearDelta() cleared}.  Use {@link #takeDelta()} instead if the session may be changed concurrently
+     * while the returned changes are persisted.
+     *
+     * @return the changes made to this session since they were last cleared.
+     * @since 1.3
+     */
+    public synchronized SessionDelta getDelta() {
+        Map<Object, Object> changed = null;
+        Set<Object> removed = null;
+        if (!this.attributesReplaced && !CollectionUtils.isEmpty(this.changedAttributeKeys)) {
+            Map<Object, Object> attributes = getAttributes();
+            for (Object key : this.changedAttributeKeys) {
+                if (attributes != null && attributes.containsKey(key)) {
+                    if (changed == null) {
+                        changed = new HashMap<Object, Object>();
+                    }
+                    changed.put(key, attributes.get(key));
+                } else {
+                    if (removed == null) {
+                        removed = new HashSet<Object>();
+                    }
+                    removed.add(key);
+                }
+            }
+        }
+        return new SessionDelta(this.stateChanged, this.attributesReplaced, changed, removed);
+    }
+
+    /**
+     * Returns the changes made to this session since they were last cleared and clears them in a single atomic
+     * step, so that changes made concurrently by other threads are either part of the returned delta or tracked for
+     * the next one, but never lost.
+     *
+     * @return the changes made to this session since they were last cleared.
+     * @since 1.3
+     */
+    public synchronized SessionDelta takeDelta() {
+        SessionDelta delta = getDelta();
+        clearDelta();
+        return delta;
+    }
+
+    /**
+     * Tracks the specified changes again, typically because a {@link #takeDelta() taken} delta could not be
+     * persisted.
+     *
+     * @param delta the changes to track again.
+     * @since 1.3
+     */
+    synchronized void restoreDelta(SessionDelta delta) {
+        this.stateChanged |= delta.isStateChanged();
+        if (delta.isAttributesReplaced()) {
+            this.attributesReplaced = true;
+            this.changedAttributeKeys = null;
+        } else {
+            for (Object key : delta.getChangedAttributes().keySet()) {
+                attributeChanged(key);
+            }
+            for (Object key : delta.getRemovedAttributeKeys()) {
+                attributeChanged(key);
+            }
+        }
+    }
+
+    /**
+     * Forgets all tracked changes, typically called once they have been persisted.  Session DAOs that build
+     * {@code SimpleSession} instances via their setters (rather than by deserialization) should call this method
+     * before returning them, so the first delta does not include the entire session.
+     *
+     * @since 1.3
+     */
+    public synchronized void clearDelta() {
+        this.stateChanged = false;
+        this.attributesReplaced = false;
+        this.changedAttributeKeys = null;
+    }
+
+    private synchronized void markStateChanged() {
+        this.stateChanged = true;
+    }
+
+    private synchronized void markAttributesReplaced() {
+        this.attributesReplaced = true;
+    }
+
+    private synchronized void attributeChanged(Object key) {
+        if (this.attributesReplaced) {
+            //all attributes will be written anyway
+            return;
+        }
+        if (this.changedAttributeKeys == null) {
+            this.changedAttributeKeys = new HashSet<Object>();
+        }
+        this.changedAttributeKeys.add(key);
     }
 
     /**
@@ -297,7 +427,12 @@ public class SimpleSession implements ValidatingSession, Serializable {
         Map<Object, Object> attributes = getAttributes();
         if (attributes == null) {
             attributes = new HashMap<Object, Object>();
-            setAttributes(attributes);
+            //an empty map replaces nothing, so don't flag the attributes as replaced:
+            synchronized (this) {
+                boolean replaced = this.attributesReplaced;
+                setAttributes(attributes);
+                this.attributesReplaced = replaced;
+            }
         }
         return attributes;
     }
@@ -323,6 +458,7 @@ public class SimpleSession implements ValidatingSession, Serializable {
             removeAttribute(key);
         } else {
             getAttributesLazy().put(key, value);
+            attributeChanged(key);
         }
     }
 
@@ -331,7 +467,11 @@ public class SimpleSession implements ValidatingSession, Serializable {
         if (attributes == null) {
             return null;
         } else {
-            return attributes.remove(key);
+            Object removed = attributes.remove(key);
+            if (removed != null) {
+                attributeChanged(key);
+            }
+            return removed;
         }
     }
 
@@ -18,16 +18,20 @@
  */
 package org.apache.shiro.session.mgt.eis;
 
+import org.apache.shiro.cache.BoundedCache;
 import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.cache.CacheManagerAware;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
 import org.apache.shiro.session.mgt.ValidatingSession;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * An CachingSessionDAO is a SessionDAO that provides a transparent caching layer between the components that
@@ -42,10 +46,23 @@ import java.util.Collections;
  * All {@code SessionDAO} methods are implemented by this class to employ
  * caching behavior and delegates the actual EIS operations to respective do* methods to be implemented by
  * subclasses (doCreate, doRead, etc).
+ * <p/>
+ * Subclasses that can persist individual session changes may override
+ * {@link #doUpdateDelta(org.apache.shiro.session.Session, org.apache.shiro.session.mgt.SessionDelta) doUpdateDelta}
+ * and {@link #isDeltaSupported() isDeltaSupported}; by default, the entire session is
+ * {@link #doUpdate(org.apache.shiro.session.Session) updated}.
+ * <p/>
+ * Cached sessions may be indexed by their expiration time in a {@link SessionExpiryIndex SessionExpiryIndex}, so
+ * that session validation only visits the sessions that may have expired.  Since only sessions created, read or
+ * updated through this instance are indexed, this is disabled by default: sessions stored by other nodes of a
+ * distributed cache, or by this node before a restart, would never be expired.  Subclasses whose index is complete,
+ * because they own all sessions or rebuild the index on startup, enable it.
+ * See {@link #setExpiryIndex(SessionExpiryIndex)}.
  *
  * @since 0.2
  */
-public abstract class CachingSessionDAO extends AbstractSessionDAO implements CacheManagerAware {
+public abstract class CachingSessionDAO extends AbstractSessionDAO implements DeltaSessionDAO, ExpiryIndexedSessionDAO,
+        CacheManagerAware {
 
     /**
      * The default active sessions cache name, equal to {@code shiro-activeSessionCache}.
@@ -67,6 +84,11 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      */
     private String activeSessionsCacheName = ACTIVE_SESSION_CACHE_NAME;
 
+    /**
+     * The index of cached sessions by expiration time, or {@code null} if sessions are not indexed.
+     */
+    private SessionExpiryIndex expiryIndex;
+
     /**
      * Default no-arg constructor.
      */
@@ -114,6 +136,36 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
         this.activeSessionsCacheName = activeSessionsCacheName;
     }
 
+    /**
+     * Returns the index of cached sessions by expiration time used to find the
+     * {@link #getExpirationCandidates() sessions that may have expired}, or {@code null} if sessions are not indexed.
+     * The default is {@code null}, so all {@link #getActiveSessions() active sessions} are validated.
+     *
+     * @return the index of cached sessions by expiration time, or {@code null} if sessions are not indexed.
+     * @since 1.3
+     */
+    public SessionExpiryIndex getExpiryIndex() {
+        return expiryIndex;
+    }
+
+    /**
+     * Sets the index of cached sessions by expiration time used to find the
+     * {@link #getExpirationCandidates() sessions that may have expired}, or {@code null} to not index sessions, in
+     * which case all active sessions are considered candidates.  This should only be set before any session is
+     * cached.
+     * <p/>
+     * <b>Note:</b> only sessions created, read or updated through this instance are indexed.  Do not set an index
+     * if sessions are shared with other nodes, e.g. through a distributed cache, or outlive this instance in the EIS
+     * tier, unless the subclass rebuilds the index on startup: sessions missing from the index are never validated,
+     * and so are never expired or deleted.
+     *
+     * @param expiryIndex the index of cached sessions by expiration time, or {@code null} to not index sessions.
+     * @since 1.3
+     */
+    public void setExpiryIndex(SessionExpiryIndex expiryIndex) {
+        this.expiryIndex = expiryIndex;
+    }
+
     /**
      * Returns the cache instance to use for storing active sessions.  If one is not available (it is {@code null}),
      * it will be {@link CacheManager#getCache(String) acquired} from the {@link #setCacheManager configured}
@@ -160,6 +212,8 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      * cache returned is that resulting from the following call:
      * <pre>       String name = {@link #getActiveSessionsCacheName() getActiveSessionsCacheName()};
      * cacheManager.getCache(name);</pre>
+     * If that cache is a {@link BoundedCache BoundedCache}, its frequency-based
+     * {@link BoundedCache#setAdmissionEnabled(boolean) admission} is disabled, so that new sessions are never rejected.
      *
      * @return a cache instance used to store active sessions, or {@code null} if the {@code CacheManager} has
      *         not been set.
@@ -170,6 +224,9 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
         if (mgr != null) {
             String name = getActiveSessionsCacheName();
             cache = mgr.getCache(name);
+            if (cache instanceof BoundedCache) {
+                ((BoundedCache) cache).setAdmissionEnabled(false);
+            }
         }
         return cache;
     }
@@ -228,6 +285,11 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
         if (session == null || sessionId == null) {
             return;
         }
+        //indexed even if there is no cache, e.g. for subclasses that keep all sessions themselves:
+        SessionExpiryIndex index = getExpiryIndex();
+        if (index != null) {
+            index.update(session);
+        }
         Cache<Serializable, Session> cache = getActiveSessionsCacheLazy();
         if (cache == null) {
             return;
@@ -275,6 +337,39 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      */
     public void update(Session session) throws UnknownSessionException {
         doUpdate(session);
+        cacheUpdated(session);
+    }
+
+    /**
+     * Updates the changed state of the given session to the EIS by first delegating to
+     * {@link #doUpdateDelta(org.apache.shiro.session.Session, org.apache.shiro.session.mgt.SessionDelta) doUpdateDelta},
+     * and then caches (or uncaches) the session exactly like {@link #update(org.apache.shiro.session.Session) update}.
+     *
+     * @param session the session object to update in the EIS.
+     * @param delta   the changes made to the session since it was last persisted.
+     * @throws UnknownSessionException if no existing EIS session record exists with the
+     *                                 identifier of {@link Session#getId() session.getId()}
+     * @since 1.3
+     */
+    public void updateDelta(Session session, SessionDelta delta) throws UnknownSessionException {
+        doUpdateDelta(session, delta);
+        cacheUpdated(session);
+    }
+
+    /**
+     * Returns {@code false} always: the default
+     * {@link #doUpdateDelta(org.apache.shiro.session.Session, org.apache.shiro.session.mgt.SessionDelta) doUpdateDelta}
+     * implementation updates the entire session.  Subclasses that override {@code doUpdateDelta} should override
+     * this method to return {@code true}.
+     *
+     * @return {@code false} always.
+     * @since 1.3
+     */
+    public boolean isDeltaSupported() {
+        return false;
+    }
+
+    private void cacheUpdated(Session session) {
         if (session instanceof ValidatingSession) {
             if (((ValidatingSession) session).isValid()) {
                 cache(session, session.getId());
@@ -293,6 +388,20 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
      */
     protected abstract void doUpdate(Session session);
 
+    /**
+     * Subclass implementation hook to persist only the specified changes of the {@code Session} to the underlying
+     * EIS.  The default implementation simply calls {@link #doUpdate(org.apache.shiro.session.Session) doUpdate} to
+     * persist the entire session; subclasses that can write individual attributes should override this method and
+     * {@link #isDeltaSupported() isDeltaSupported}.
+     *
+     * @param session the session object whose changes will be propagated to the EIS.
+     * @param delta   the changes made to the session since it was last persisted.
+     * @since 1.3
+     */
+    protected void doUpdateDelta(Session session, SessionDelta delta) {
+        doUpdate(session);
+    }
+
     /**
      * Removes the specified session from any cache and then permanently deletes the session from the EIS by
      * delegating to {@link #doDelete}.
@@ -328,6 +437,10 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
         if (cache != null) {
             cache.remove(id);
         }
+        SessionExpiryIndex index = getExpiryIndex();
+        if (index != null) {
+            index.remove(id);
+        }
     }
 
     /**
@@ -347,4 +460,34 @@ public abstract class CachingSessionDAO extends AbstractSessionDAO implements Ca
             return Collections.emptySet();
         }
     }
+
+    /**
+     * Returns the sessions that may have expired according to the {@link #getExpiryIndex() expiryIndex}, or
+     * all {@link #getActiveSessions() active sessions} if sessions are not indexed.  Indexed sessions that are no
+     * longer cached are {@link #doReadSession(java.io.Serializable) read} from the EIS tier, and removed from the
+     * index if they no longer exist there either.
+     *
+     * @return the sessions that may have expired by now.
+     * @since 1.3
+     */
+    public Collection<Session> getExpirationCandidates() {
+        SessionExpiryIndex index = getExpiryIndex();
+        if (index == null) {
+            return getActiveSessions();
+        }
+        Collection<Serializable> ids = index.getExpirationCandidates(System.currentTimeMillis());
+        List<Session> candidates = new ArrayList<Session>(ids.size());
+        for (Serializable id : ids) {
+            Session session = getCachedSession(id);
+            if (session == null) {
+                session = doReadSession(id);
+            }
+            if (session != null) {
+                candidates.add(session);
+            } else {
+                index.remove(id);
+            }
+        }
+        return candidates;
+    }
 }
@@ -0,0 +1,751 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
+import org.apache.shiro.session.mgt.SimpleSession;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A memory-based {@code SessionDAO} that, unlike the {@link MemorySessionDAO MemorySessionDAO}, does not retain
+ * {@link Session Session} objects but stores each session as a compact record, allowing a single node to hold many
+ * times more sessions in the same amount of heap.
+ * <p/>
+ * Sessions are spread across a fixed number of <em>stripes</em>, each guarded by its own read/write lock.  Within a
+ * stripe, session state is kept in parallel primitive arrays (timestamps and timeouts as {@code long}s, flags as
+ * {@code byte}s) indexed by an open-addressing hash table of {@code int}s, so a session costs no {@code Date}s,
+ * boxed values or map entries.  Session ids in the canonical {@link UUID#toString() UUID string} format, such as
+ * those created by the default {@link JavaUuidSessionIdGenerator JavaUuidSessionIdGenerator}, as well as
+ * {@link UUID UUID} ids, are stored as two {@code long}s.  Other ids are stored as-is.  Attributes are stored as a
+ * flat array of keys and values, and sessions without attributes do not allocate one at all.  Deleted records are
+ * recycled through a free list, so deletion is a constant time operation.
+ * <p/>
+ * Each {@link #readSession(java.io.Serializable) read} materializes a new {@link SimpleSession SimpleSession} from the
+ * stored record, and changes to it must be {@link #update(Session) written back} like with any other persistent
+ * {@code SessionDAO}.  The attributes of a materialized session are a view of the stored array that is only copied
+ * into a {@code HashMap} once they are changed or iterated, so reads and updates of sessions whose attributes are
+ * only looked up by key do not copy them.  This implementation is a {@link DeltaSessionDAO DeltaSessionDAO}, so updates that do not
+ * change any attribute (such as those caused by session touches) only overwrite the record's primitive fields.  It is
+ * also an {@link ExpiryIndexedSessionDAO ExpiryIndexedSessionDAO}: finding the sessions that may have expired is a
+ * scan of the stored timestamps that only materializes the sessions found.
+ * <p/>
+ * <b>Note:</b> the full state of {@link SimpleSession SimpleSession}s is retained.  For other {@code Session}
+ * implementations, only the state available via the {@code Session} interface is retained, so their
+ * stop timestamp and expired flag are lost.  Attribute keys and values are retained by reference and are not copied.
+ * <p/>
+ * This implementation is thread-safe.
+ *
+ * @see MemorySessionDAO
+ * @since 1.3
+ */
+public class CompactMemorySessionDAO extends AbstractSessionDAO
+        implements DeltaSessionDAO, ExpiryIndexedSessionDAO {
+
+    /**
+     * The default number of lock stripes, equal to {@code 16}.
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * The maximum number of lock stripes, equal to {@code 256}.
+     */
+    public static final int MAX_CONCURRENCY_LEVEL = 256;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //record flags:
+    private static final byte IN_USE = 1;
+    private static final byte UUID_STRING_ID = 1 << 1;
+    private static final byte UUID_ID = 1 << 2;
+    private static final byte STOPPED = 1 << 3;
+    private static final byte EXPIRED = 1 << 4;
+
+    private final Stripe[] stripes;
+
+    public CompactMemorySessionDAO() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new instance with the specified number of lock stripes, which is rounded up to a power of two and
+     * capped at {@link #MAX_CONCURRENCY_LEVEL}.
+     *
+     * @param concurrencyLevel the estimated number of threads concurrently accessing sessions
+     */
+    public CompactMemorySessionDAO(int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel must be greater than zero.");
+        }
+        int count = 1;
+        while (count < concurrencyLevel && count < MAX_CONCURRENCY_LEVEL) {
+            count <<= 1;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Returns the number of lock stripes.
+     *
+     * @return the number of lock stripes.
+     */
+    public int getConcurrencyLevel() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns the number of stored sessions.
+     *
+     * @return the number of stored sessions.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            Lock lock = stripe.lock.readLock();
+            lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(Key key) {
+        return stripes[(key.hash >>> 24) & (stripes.length - 1)];
+    }
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        store(session);
+        return sessionId;
+    }
+
+    protected Session doReadSession(Serializable sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        Key key = new Key(sessionId);
+        Stripe stripe = stripeFor(key);
+        Lock lock = stripe.lock.readLock();
+        lock.lock();
+        try {
+            int slot = stripe.find(key);
+            return slot < 0 ? null : stripe.materialize(slot, sessionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void update(Session session) throws UnknownSessionException {
+        store(session);
+    }
+
+    /**
+     * Stores the record of the specified session, replacing any previous record with the same id.
+     *
+     * @param session the session to store
+     */
+    private void store(Session session) {
+        Serializable id = session.getId();
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        Key key = new Key(id);
+        Object[] attributes = toArray(session);
+        Stripe stripe = stripeFor(key);
+        Lock lock = stripe.lock.writeLock();
+        lock.lock();
+        try {
+            int slot = stripe.find(key);
+            if (slot < 0) {
+                slot = stripe.insert(key);
+            }
+            stripe.writeState(slot, session);
+            stripe.attributes[slot] = attributes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true}, as only the changes of a session are written.
+     *
+     * @return {@code true}
+     */
+    public boolean isDeltaSupported() {
+        return true;
+    }
+
+    /**
+     * Overwrites the state of the stored record and only applies the changed attributes to it, instead of replacing
+     * the record's attributes as a whole.  If no record exists for the session, the entire session is stored.
+     *
+     * @param session the session to update
+     * @param delta   the changes made to the session since it was last persisted
+     */
+    public void updateDelta(Session session, SessionDelta delta) throws UnknownSessionException {
+        if (delta.isAttributesReplaced()) {
+            store(session);
+            return;
+        }
+        Serializable id = session.getId();
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        Key key = new Key(id);
+        Stripe stripe = stripeFor(key);
+        Lock lock = stripe.lock.writeLock();
+        lock.lock();
+        try {
+            int slot = stripe.find(key);
+            if (slot >= 0) {
+                if (delta.isStateChanged()) {
+                    stripe.writeState(slot, session);
+                }
+                Map<Object, Object> changed = delta.getChangedAttributes();
+                Collection<Object> removed = delta.getRemovedAttributeKeys();
+                if (!changed.isEmpty() || !removed.isEmpty()) {
+                    Map<Object, Object> attributes = toMap(stripe.attributes[slot]);
+                    attributes.putAll(changed);
+                    for (Object removedKey : removed) {
+                        attributes.remove(removedKey);
+                    }
+                    stripe.attributes[slot] = toArray(attributes);
+                }
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        store(session);
+    }
+
+    public void delete(Session session) {
+        if (session == null) {
+            throw new NullPointerException("session argument cannot be null.");
+        }
+        Serializable id = session.getId();
+        if (id == null) {
+            return;
+        }
+        Key key = new Key(id);
+        Stripe stripe = stripeFor(key);
+        Lock lock = stripe.lock.writeLock();
+        lock.lock();
+        try {
+            stripe.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Collection<Session> getActiveSessions() {
+        List<Session> sessions = new ArrayList<Session>();
+        for (Stripe stripe : stripes) {
+            Lock lock = stripe.lock.readLock();
+            lock.lock();
+            try {
+                for (int slot = 0; slot < stripe.used; slot++) {
+                    if ((stripe.flags[slot] & IN_USE) != 0) {
+                        sessions.add(stripe.materialize(slot, null));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (sessions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection(sessions);
+    }
+
+    /**
+     * Returns the stored sessions that are stopped, expired or timed out according to their stored last access time
+     * and timeout.  Only the returned sessions are materialized.
+     *
+     * @return the active sessions that may have expired by now.
+     */
+    public Collection<Session> getExpirationCandidates() {
+        long now = System.currentTimeMillis();
+        List<Session> candidates = new ArrayList<Session>();
+        for (Stripe stripe : stripes) {
+            Lock lock = stripe.lock.readLock();
+            lock.lock();
+            try {
+                for (int slot = 0; slot < stripe.used; slot++) {
+                    byte flags = stripe.flags[slot];
+                    if ((flags & IN_USE) == 0) {
+                        continue;
+                    }
+                    long timeout = stripe.timeouts[slot];
+                    if ((flags & (STOPPED | EXPIRED)) != 0 ||
+                            (timeout >= 0 && stripe.lastAccessTimes[slot] < now - timeout)) {
+                        candidates.add(stripe.materialize(slot, null));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return candidates;
+    }
+
+    private static Object[] toArray(Session session) {
+        if (session instanceof SimpleSession) {
+            return toArray(((SimpleSession) session).getAttributes());
+        }
+        Collection<Object> keys = session.getAttributeKeys();
+        if (keys == null || keys.isEmpty()) {
+            return null;
+        }
+        Object[] array = new Object[keys.size() * 2];
+        int i = 0;
+        for (Object key : keys) {
+            array[i++] = key;
+            array[i++] = session.getAttribute(key);
+        }
+        return array;
+    }
+
+    private static Object[] toArray(Map<Object, Object> attributes) {
+        if (attributes instanceof AttributeMap) {
+            Object[] array = ((AttributeMap) attributes).array;
+            if (array != null) {
+                //still the unchanged stored array, which is never modified in place:
+                return array;
+            }
+        }
+        if (attributes == null || attributes.isEmpty()) {
+            return null;
+        }
+        Object[] array = new Object[attributes.size() * 2];
+        int i = 0;
+        for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+            array[i++] = entry.getKey();
+            array[i++] = entry.getValue();
+        }
+        return array;
+    }
+
+    private static Map<Object, Object> toMap(Object[] array) {
+        Map<Object, Object> map = new HashMap<Object, Object>(array == null ? 16 : array.length);
+        if (array != null) {
+            for (int i = 0; i < array.length; i += 2) {
+                map.put(array[i], array[i + 1]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * The attributes of a materialized session: a read-only view of the stored key/value array until the attributes
+     * are changed or iterated, at which point they are copied into a {@code HashMap}.  Like a {@code HashMap}, this
+     * class is not thread-safe.
+     */
+    private static final class AttributeMap extends AbstractMap<Object, Object> implements Serializable {
+
+        /**
+         * The stored array, or {@code null} once the attributes have been copied.
+         */
+        private Object[] array;
+        private Map<Object, Object> map;
+
+        private AttributeMap(Object[] array) {
+            this.array = array;
+        }
+
+        private Map<Object, Object> map() {
+            if (array != null) {
+                map = toMap(array);
+                array = null;
+            }
+            return map;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                Object k = array[i];
+                if (k == key || (k != null && k.equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int size() {
+            return array != null ? array.length / 2 : map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return array != null ? indexOf(key) >= 0 : map.containsKey(key);
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (array == null) {
+                return map.get(key);
+            }
+            int i = indexOf(key);
+            return i >= 0 ? array[i + 1] : null;
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            return map().put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return map().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map().clear();
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return map().entrySet();
+        }
+
+        /**
+         * Serializes the attributes as a plain {@code HashMap}, so deserializing them does not depend on this class.
+         *
+         * @return the attributes as a {@code HashMap}.
+         */
+        private Object writeReplace() {
+            return map();
+        }
+    }
+
+    /**
+     * A session id, decomposed into two {@code long}s if it is a {@link UUID UUID} or a canonical UUID string.
+     */
+    private static final class Key {
+
+        private final Serializable id;
+        private final byte type;
+        private final long mostSigBits;
+        private final long leastSigBits;
+        private final int hash;
+
+        private Key(Serializable id) {
+            this.id = id;
+            if (id instanceof UUID) {
+                UUID uuid = (UUID) id;
+                this.type = UUID_ID;
+                this.mostSigBits = uuid.getMostSignificantBits();
+                this.leastSigBits = uuid.getLeastSignificantBits();
+            } else if (id instanceof String && isCanonicalUuid((String) id)) {
+                String s = (String) id;
+                this.type = UUID_STRING_ID;
+                this.mostSigBits = (parseHex(s, 0, 8) << 32) | (parseHex(s, 9, 13) << 16) | parseHex(s, 14, 18);
+                this.leastSigBits = (parseHex(s, 19, 23) << 48) | parseHex(s, 24, 36);
+            } else {
+                this.type = 0;
+                this.mostSigBits = 0;
+                this.leastSigBits = 0;
+            }
+            long bits = mostSigBits ^ leastSigBits;
+            this.hash = mix(this.type == 0 ? id.hashCode() : (int) (bits ^ (bits >>> 32)));
+        }
+
+        /**
+         * Returns {@code true} if the specified string is exactly what {@link UUID#toString()} would return for some
+         * UUID, so the id can be restored from its bits without loss.
+         */
+        private static boolean isCanonicalUuid(String s) {
+            if (s.length() != 36) {
+                return false;
+            }
+            for (int i = 0; i < 36; i++) {
+                char c = s.charAt(i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long parseHex(String s, int begin, int end) {
+            long value = 0;
+            for (int i = begin; i < end; i++) {
+                char c = s.charAt(i);
+                value = (value << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+            }
+            return value;
+        }
+
+        private static int mix(int h) {
+            //murmur3 finalizer, so both the high (stripe) and low (table) bits are well distributed:
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+
+    /**
+     * A lock-guarded partition of the session records.
+     */
+    private static final class Stripe {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /**
+         * Open-addressing (linear probing) hash table of record slot + 1, with {@code 0} denoting an empty entry.
+         */
+        private int[] table = new int[INITIAL_CAPACITY * 2];
+
+        //records, by slot:
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private byte[] flags = new byte[INITIAL_CAPACITY];
+        private long[] mostSigBits = new long[INITIAL_CAPACITY];
+        private long[] leastSigBits = new long[INITIAL_CAPACITY];
+        private Serializable[] ids = new Serializable[INITIAL_CAPACITY];
+        private long[] startTimestamps = new long[INITIAL_CAPACITY];
+        private long[] stopTimestamps = new long[INITIAL_CAPACITY];
+        private long[] lastAccessTimes = new long[INITIAL_CAPACITY];
+        private long[] timeouts = new long[INITIAL_CAPACITY];
+        private String[] hosts = new String[INITIAL_CAPACITY];
+        private Object[][] attributes = new Object[INITIAL_CAPACITY][];
+
+        /**
+         * Free slots below {@link #used}, linked through this array and headed by {@link #freeHead}.
+         */
+        private int[] nextFree = new int[INITIAL_CAPACITY];
+        private int freeHead = -1;
+
+        /**
+         * The number of slots ever used (the high-water mark).
+         */
+        private int used;
+        private int size;
+
+        private boolean matches(int slot, Key key) {
+            if (hashes[slot] != key.hash || (flags[slot] & (UUID_ID | UUID_STRING_ID)) != key.type) {
+                return false;
+            }
+            if (key.type == 0) {
+                return ids[slot].equals(key.id);
+            }
+            return mostSigBits[slot] == key.mostSigBits && leastSigBits[slot] == key.leastSigBits;
+        }
+
+        private int find(Key key) {
+            int mask = table.length - 1;
+            for (int i = key.hash & mask; ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (matches(entry - 1, key)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private int insert(Key key) {
+            int slot;
+            if (freeHead >= 0) {
+                slot = freeHead;
+                freeHead = nextFree[slot];
+            } else {
+                if (used == hashes.length) {
+                    growRecords();
+                }
+                slot = used++;
+            }
+            hashes[slot] = key.hash;
+            flags[slot] = (byte) (IN_USE | key.type);
+            mostSigBits[slot] = key.mostSigBits;
+            leastSigBits[slot] = key.leastSigBits;
+            ids[slot] = key.type == 0 ? key.id : null;
+            if (++size * 2 > table.length) {
+                rehash(table.length * 2);
+            } else {
+                place(slot);
+            }
+            return slot;
+        }
+
+        private void place(int slot) {
+            int mask = table.length - 1;
+            int i = hashes[slot] & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = slot + 1;
+        }
+
+        private void remove(Key key) {
+            int mask = table.length - 1;
+            int i = key.hash & mask;
+            for (; ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == 0) {
+                    return;
+                }
+                if (matches(entry - 1, key)) {
+                    break;
+                }
+            }
+            int slot = table[i] - 1;
+            //backward shift deletion, so no tombstones are needed:
+            for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+                int home = hashes[table[j] - 1] & mask;
+                if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                    table[i] = table[j];
+                    i = j;
+                }
+            }
+            table[i] = 0;
+
+            flags[slot] = 0;
+            ids[slot] = null;
+            hosts[slot] = null;
+            attributes[slot] = null;
+            nextFree[slot] = freeHead;
+            freeHead = slot;
+            size--;
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            for (int slot = 0; slot < used; slot++) {
+                if ((flags[slot] & IN_USE) != 0) {
+                    place(slot);
+                }
+            }
+        }
+
+        private void growRecords() {
+            int capacity = hashes.length * 2;
+            hashes = copy(hashes, new int[capacity]);
+            flags = copy(flags, new byte[capacity]);
+            mostSigBits = copy(mostSigBits, new long[capacity]);
+            leastSigBits = copy(leastSigBits, new long[capacity]);
+            ids = copy(ids, new Serializable[capacity]);
+            startTimestamps = copy(startTimestamps, new long[capacity]);
+            stopTimestamps = copy(stopTimestamps, new long[capacity]);
+            lastAccessTimes = copy(lastAccessTimes, new long[capacity]);
+            timeouts = copy(timeouts, new long[capacity]);
+            hosts = copy(hosts, new String[capacity]);
+            attributes = copy(attributes, new Object[capacity][]);
+            nextFree = copy(nextFree, new int[capacity]);
+        }
+
+        private static <T> T copy(T source, T target) {
+            System.arraycopy(source, 0, target, 0, Array.getLength(source));
+            return target;
+        }
+
+        private void writeState(int slot, Session session) {
+            byte f = (byte) (flags[slot] & (IN_USE | UUID_ID | UUID_STRING_ID));
+            startTimestamps[slot] = toMillis(session.getStartTimestamp());
+            lastAccessTimes[slot] = toMillis(session.getLastAccessTime());
+            timeouts[slot] = session.getTimeout();
+            hosts[slot] = session.getHost();
+            if (session instanceof SimpleSession) {
+                SimpleSession ss = (SimpleSession) session;
+                Date stop = ss.getStopTimestamp();
+                if (stop != null) {
+                    f |= STOPPED;
+                    stopTimestamps[slot] = stop.getTime();
+                }
+                if (ss.isExpired()) {
+                    f |= EXPIRED;
+                }
+            }
+            flags[slot] = f;
+        }
+
+        private static long toMillis(Date date) {
+            return date != null ? date.getTime() : 0;
+        }
+
+        /**
+         * Creates a new session from the record in the specified slot.
+         *
+         * @param slot the slot of the record
+         * @param id   the id of the session if known, or {@code null} to restore it from the record
+         * @return a new session reflecting the stored state.
+         */
+        private SimpleSession materialize(int slot, Serializable id) {
+            byte f = flags[slot];
+            if (id == null) {
+                if ((f & UUID_ID) != 0) {
+                    id = new UUID(mostSigBits[slot], leastSigBits[slot]);
+                } else if ((f & UUID_STRING_ID) != 0) {
+                    id = new UUID(mostSigBits[slot], leastSigBits[slot]).toString();
+                } else {
+                    id = ids[slot];
+                }
+            }
+            SimpleSession session = new SimpleSession();
+            session.setId(id);
+            session.setStartTimestamp(new Date(startTimestamps[slot]));
+            session.setLastAccessTime(new Date(lastAccessTimes[slot]));
+            if ((f & STOPPED) != 0) {
+                session.setStopTimestamp(new Date(stopTimestamps[slot]));
+            }
+            session.setExpired((f & EXPIRED) != 0);
+            session.setTimeout(timeouts[slot]);
+            session.setHost(hosts[slot]);
+            Object[] array = attributes[slot];
+            if (array != null) {
+                session.setAttributes(new AttributeMap(array));
+            }
+            //the new session reflects the stored record, so it has no changes to persist yet:
+            session.clearDelta();
+            return session;
+        }
+    }
+}
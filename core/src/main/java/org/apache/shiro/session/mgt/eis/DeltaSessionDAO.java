@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
+
+/**
+ * A {@link SessionDAO SessionDAO} that can persist only the changes made to a session, rather than the entire
+ * session.  This can vastly reduce the amount of data written when sessions carry large attributes but each request
+ * only changes a few of them.
+ * <p/>
+ * The {@link org.apache.shiro.session.mgt.DefaultSessionManager DefaultSessionManager} calls
+ * {@link #updateDelta(Session, SessionDelta) updateDelta} instead of {@link #update(Session) update} for
+ * {@link org.apache.shiro.session.mgt.SimpleSession SimpleSession}s when its {@code SessionDAO} implements this
+ * interface and {@link #isDeltaSupported() supports deltas}.
+ *
+ * @since 1.3
+ */
+public interface DeltaSessionDAO extends SessionDAO {
+
+    /**
+     * Persists the specified changes of a previously created session.  The {@code session} argument reflects the
+     * complete, current state of the session, so implementations may always fall back to writing the entire session
+     * (for example if the {@code delta} {@link SessionDelta#isAttributesReplaced() replaced all attributes}).
+     *
+     * @param session the session to update
+     * @param delta   the changes made to the session since it was last persisted
+     * @throws UnknownSessionException if no existing EIS session record exists with the identifier of
+     *                                 {@link Session#getId() session.getId()}
+     */
+    void updateDelta(Session session, SessionDelta delta) throws UnknownSessionException;
+
+    /**
+     * Returns {@code true} if {@link #updateDelta(Session, SessionDelta) updateDelta} writes only the changes of a
+     * session, {@code false} if it would write the entire session anyway, in which case callers should simply
+     * {@link #update(Session) update} the session without building a delta.
+     *
+     * @return {@code true} if this DAO persists only the changes of a session, {@code false} otherwise.
+     */
+    boolean isDeltaSupported();
+}
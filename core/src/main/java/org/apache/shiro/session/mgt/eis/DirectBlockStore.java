@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores byte arrays outside of the Java heap, in fixed-size blocks carved out of direct {@link ByteBuffer} slabs
+ * that are allocated on demand up to a maximum capacity.
+ * <p/>
+ * A stored array is identified by a <em>handle</em>: an {@code int[]} holding the array's length followed by the
+ * numbers of the blocks it occupies.  Because every block has the same size, freed blocks can be reused by any later
+ * array and the store does not fragment.
+ * <p/>
+ * This class is <em>not</em> thread-safe; callers must guard reads against concurrent writes and frees.
+ *
+ * @since 1.3
+ */
+final class DirectBlockStore {
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int maxBlocks;
+
+    private ByteBuffer[] slabs;
+    private int slabCount;
+
+    /**
+     * The number of blocks ever handed out (the high-water mark).
+     */
+    private int allocatedBlocks;
+    private int[] freeBlocks;
+    private int freeCount;
+
+    DirectBlockStore(long maxMemory, int slabSize, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be greater than zero.");
+        }
+        if (slabSize < blockSize) {
+            throw new IllegalArgumentException("slabSize must not be less than blockSize.");
+        }
+        if (maxMemory < slabSize) {
+            throw new IllegalArgumentException("maxMemory must not be less than slabSize.");
+        }
+        this.blockSize = blockSize;
+        this.blocksPerSlab = slabSize / blockSize;
+        int maxSlabs = (int) Math.min(Integer.MAX_VALUE / blocksPerSlab, maxMemory / ((long) blocksPerSlab * blockSize));
+        this.maxBlocks = maxSlabs * blocksPerSlab;
+        this.slabs = new ByteBuffer[Math.min(maxSlabs, 16)];
+        this.freeBlocks = new int[64];
+    }
+
+    /**
+     * Returns the number of bytes of direct memory that may be allocated by this store.
+     *
+     * @return the number of bytes of direct memory that may be allocated by this store.
+     */
+    long getCapacity() {
+        return (long) maxBlocks * blockSize;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory currently allocated by this store.
+     *
+     * @return the number of bytes of direct memory currently allocated by this store.
+     */
+    long getAllocatedMemory() {
+        return (long) slabCount * blocksPerSlab * blockSize;
+    }
+
+    /**
+     * Returns the number of bytes occupied by stored arrays, including unused space in their last blocks.
+     *
+     * @return the number of bytes occupied by stored arrays.
+     */
+    long getUsedMemory() {
+        return (long) (allocatedBlocks - freeCount) * blockSize;
+    }
+
+    /**
+     * Copies the specified array into free blocks, first freeing the blocks of a previously stored array that it
+     * replaces.  If there are not enough free blocks left, nothing is freed and the previous array remains intact.
+     *
+     * @param previous the handle of the array being replaced, or {@code null} if none
+     * @param data     the array to store
+     * @return the handle of the stored array, or {@code null} if there are not enough free blocks left.
+     */
+    int[] write(int[] previous, byte[] data) {
+        int count = (data.length + blockSize - 1) / blockSize;
+        int reclaimable = previous != null ? previous.length - 1 : 0;
+        if (count > freeCount + reclaimable + maxBlocks - allocatedBlocks) {
+            return null;
+        }
+        if (previous != null) {
+            free(previous);
+        }
+        int[] handle = new int[count + 1];
+        handle[0] = data.length;
+        int offset = 0;
+        for (int i = 1; i <= count; i++) {
+            int block = allocate();
+            handle[i] = block;
+            int length = Math.min(blockSize, data.length - offset);
+            ByteBuffer buffer = position(block);
+            buffer.put(data, offset, length);
+            offset += length;
+        }
+        return handle;
+    }
+
+    /**
+     * Returns a copy of the array stored under the specified handle.
+     *
+     * @param handle a handle returned by {@link #write(int[], byte[])} that has not been freed
+     * @return a copy of the stored array.
+     */
+    byte[] read(int[] handle) {
+        byte[] data = new byte[handle[0]];
+        int offset = 0;
+        for (int i = 1; i < handle.length; i++) {
+            int length = Math.min(blockSize, data.length - offset);
+            position(handle[i]).get(data, offset, length);
+            offset += length;
+        }
+        return data;
+    }
+
+    /**
+     * Returns the blocks of the array stored under the specified handle to the free list.
+     *
+     * @param handle a handle returned by {@link #write(int[], byte[])} that has not been freed yet
+     */
+    void free(int[] handle) {
+        int count = handle.length - 1;
+        if (freeCount + count > freeBlocks.length) {
+            int[] grown = new int[Math.max(freeBlocks.length * 2, freeCount + count)];
+            System.arraycopy(freeBlocks, 0, grown, 0, freeCount);
+            freeBlocks = grown;
+        }
+        System.arraycopy(handle, 1, freeBlocks, freeCount, count);
+        freeCount += count;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeBlocks[--freeCount];
+        }
+        int block = allocatedBlocks++;
+        if (block / blocksPerSlab == slabCount) {
+            if (slabCount == slabs.length) {
+                ByteBuffer[] grown = new ByteBuffer[slabs.length * 2];
+                System.arraycopy(slabs, 0, grown, 0, slabCount);
+                slabs = grown;
+            }
+            slabs[slabCount++] = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+        }
+        return block;
+    }
+
+    /**
+     * Returns a new view of the slab containing the specified block, positioned at the start of the block.  A new
+     * view is used for every access so that concurrent reads do not interfere with each other.
+     */
+    private ByteBuffer position(int block) {
+        ByteBuffer buffer = slabs[block / blocksPerSlab].duplicate();
+        buffer.position((block % blocksPerSlab) * blockSize);
+        return buffer;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+
+import java.util.Collection;
+
+/**
+ * A {@link SessionDAO SessionDAO} that indexes its sessions by expiration time, so that session validation only
+ * needs to visit the sessions that may have expired instead of all {@link #getActiveSessions() active sessions}.
+ *
+ * @see SessionExpiryIndex
+ * @since 1.3
+ */
+public interface ExpiryIndexedSessionDAO extends SessionDAO {
+
+    /**
+     * Returns the active sessions that may have expired by now.  The returned collection must contain every active
+     * session that has expired, but may also contain sessions that have not (yet) expired; callers are expected to
+     * validate each returned session.
+     *
+     * @return the active sessions that may have expired by now.
+     */
+    Collection<Session> getExpirationCandidates();
+}
@@ -0,0 +1,862 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.cache.BoundedCache;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.io.DefaultSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+import org.apache.shiro.util.Destroyable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link CachingSessionDAO CachingSessionDAO} that persists sessions to a local append-only log file, so that
+ * sessions survive application restarts on a single node without an external data store.
+ * <h2>Log Format</h2>
+ * Every change is appended to the {@link #setPath(String) log file} as a checksummed record: the serialized session
+ * for creations and updates, or a tombstone for deletions.  Records also carry the session's id and expiration time,
+ * so that on startup the in-memory index of record positions and the {@link #getExpiryIndex() expiry index} are
+ * rebuilt by scanning the log without deserializing any session.  A partially written (torn) record at the end of the
+ * log, as left behind by a crash, fails its checksum and is truncated during recovery.
+ * <h2>Durability</h2>
+ * Appends are written to the operating system immediately, but only forced to disk every
+ * {@link #setSyncInterval(long) syncInterval} milliseconds by a background thread, so that many changes share a
+ * single {@code fsync}.  A crash of the machine (not just the JVM) may therefore lose the changes of the last sync
+ * interval.  A {@code syncInterval} of {@code 0} forces every append to disk before returning.
+ * <h2>Reads and Compaction</h2>
+ * Sessions are read from a read-only memory mapping of the log, and recently used sessions are additionally kept as
+ * objects in the {@link #getActiveSessionsCache() active sessions cache}: if no
+ * {@link #setCacheManager(org.apache.shiro.cache.CacheManager) CacheManager} is configured, a
+ * {@link BoundedCache BoundedCache} of at most {@link #setHotSetSize(int) hotSetSize} sessions.  Since updates
+ * append new records, the background thread periodically compacts the log by rewriting only the current record of
+ * every session once obsolete records exceed {@link #setCompactionThreshold(double) compactionThreshold} of the log.
+ * Session access blocks while the log is being compacted.
+ * <p/>
+ * The log is opened on first use and must be closed by {@link #destroy() destroying} this DAO, which the
+ * {@link org.apache.shiro.session.mgt.DefaultSessionManager DefaultSessionManager} does when it is destroyed.  A log
+ * file must only be used by a single {@code FileSessionDAO} at a time.
+ *
+ * @see OffHeapSessionDAO
+ * @since 1.3
+ */
+public class FileSessionDAO extends CachingSessionDAO implements Destroyable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSessionDAO.class);
+
+    /**
+     * The default interval between forcing appended records to disk, equal to one second.
+     */
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    /**
+     * The default fraction of obsolete records that triggers compaction, equal to {@code 0.5}.
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    /**
+     * The default size a log must reach before it is compacted, equal to 1 MB.
+     */
+    public static final long DEFAULT_MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    /**
+     * The default maximum number of sessions kept on-heap if no {@code CacheManager} is configured, equal to
+     * {@code 10000}.
+     */
+    public static final int DEFAULT_HOT_SET_SIZE = 10000;
+
+    private static final byte[] MAGIC = {'S', 'H', 'I', 'R', 'O', 'S', 'E', 'S'};
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = MAGIC.length + 4;
+
+    /**
+     * Every record starts with the length of its body and the CRC32 checksum of its body.
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    /**
+     * A record body starts with its type, the session's expiration time, the id's encoding and the id's length.
+     */
+    private static final int BODY_HEADER_SIZE = 1 + 8 + 1 + 4;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final byte STRING_ID = 1;
+    private static final byte SERIALIZED_ID = 2;
+
+    private String path;
+    private Serializer<Session> serializer;
+    private final Serializer<Serializable> idSerializer;
+    private long syncInterval;
+    private double compactionThreshold;
+    private long minCompactionSize;
+    private int hotSetSize;
+
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * The position of the current record of every stored session.  Only modified while holding the write lock.
+     */
+    private final ConcurrentMap<Serializable, Record> records;
+
+    //guarded by lock:
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    private long writePosition;
+    private long liveBytes;
+
+    private volatile boolean open;
+    private volatile boolean dirty;
+    private ScheduledExecutorService maintenance;
+
+    public FileSessionDAO() {
+        this.serializer = new DefaultSerializer<Session>();
+        this.idSerializer = new DefaultSerializer<Serializable>();
+        this.syncInterval = DEFAULT_SYNC_INTERVAL;
+        this.compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        this.minCompactionSize = DEFAULT_MIN_COMPACTION_SIZE;
+        this.hotSetSize = DEFAULT_HOT_SET_SIZE;
+        this.lock = new ReentrantReadWriteLock();
+        this.records = new ConcurrentHashMap<Serializable, Record>();
+        setExpiryIndex(new SessionExpiryIndex());
+    }
+
+    public FileSessionDAO(String path) {
+        this();
+        setPath(path);
+    }
+
+    /**
+     * Returns the path of the log file sessions are persisted to.
+     *
+     * @return the path of the log file sessions are persisted to.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Sets the path of the log file sessions are persisted to.  The file is created if it does not exist.  This must
+     * be set before the first session is accessed.
+     *
+     * @param path the path of the log file sessions are persisted to.
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the {@code Serializer} used to convert sessions to and from bytes.  The default is a
+     * {@link DefaultSerializer DefaultSerializer}.
+     *
+     * @return the {@code Serializer} used to convert sessions to and from bytes.
+     */
+    public Serializer<Session> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets the {@code Serializer} used to convert sessions to and from bytes.  It must be able to read sessions
+     * written to the log by the previously configured serializer.
+     *
+     * @param serializer the {@code Serializer} used to convert sessions to and from bytes.
+     */
+    public void setSerializer(Serializer<Session> serializer) {
+        if (serializer == null) {
+            throw new IllegalArgumentException("serializer argument cannot be null.");
+        }
+        this.serializer = serializer;
+    }
+
+    /**
+     * Returns the interval in milliseconds between forcing appended records to disk.  The default value is
+     * {@link #DEFAULT_SYNC_INTERVAL} (one second).
+     *
+     * @return the interval in milliseconds between forcing appended records to disk.
+     */
+    public long getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds between forcing appended records to disk, {@code 0} to force every record
+     * to disk before returning, or a negative value to leave writing to disk to the operating system.  This must be
+     * set before the first session is accessed.
+     *
+     * @param syncInterval the interval in milliseconds between forcing appended records to disk.
+     */
+    public void setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Returns the fraction of the log occupied by obsolete records above which the log is compacted.  The default
+     * value is {@link #DEFAULT_COMPACTION_THRESHOLD}.
+     *
+     * @return the fraction of the log occupied by obsolete records above which the log is compacted.
+     */
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the fraction of the log occupied by obsolete records above which the log is compacted, between {@code 0}
+     * and {@code 1}.  A value of {@code 1} disables automatic compaction.
+     *
+     * @param compactionThreshold the fraction of obsolete records above which the log is compacted.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (compactionThreshold < 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("compactionThreshold must be between 0 and 1.");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Returns the size in bytes the log must reach before it is compacted.  The default value is
+     * {@link #DEFAULT_MIN_COMPACTION_SIZE} (1 MB).
+     *
+     * @return the size in bytes the log must reach before it is compacted.
+     */
+    public long getMinCompactionSize() {
+        return minCompactionSize;
+    }
+
+    /**
+     * Sets the size in bytes the log must reach before it is compacted.
+     *
+     * @param minCompactionSize the size in bytes the log must reach before it is compacted.
+     */
+    public void setMinCompactionSize(long minCompactionSize) {
+        this.minCompactionSize = minCompactionSize;
+    }
+
+    /**
+     * Returns the maximum number of recently used sessions kept on-heap if no
+     * {@link #setCacheManager(org.apache.shiro.cache.CacheManager) CacheManager} is configured.  The default value
+     * is {@link #DEFAULT_HOT_SET_SIZE}.
+     *
+     * @return the maximum number of recently used sessions kept on-heap.
+     */
+    public int getHotSetSize() {
+        return hotSetSize;
+    }
+
+    /**
+     * Sets the maximum number of recently used sessions kept on-heap if no
+     * {@link #setCacheManager(org.apache.shiro.cache.CacheManager) CacheManager} is configured.  A value of
+     * {@code 0} disables the hot set, so every read deserializes the session.
+     *
+     * @param hotSetSize the maximum number of recently used sessions kept on-heap.
+     */
+    public void setHotSetSize(int hotSetSize) {
+        if (hotSetSize < 0) {
+            throw new IllegalArgumentException("hotSetSize cannot be negative.");
+        }
+        this.hotSetSize = hotSetSize;
+    }
+
+    /**
+     * Returns the number of persisted sessions.
+     *
+     * @return the number of persisted sessions.
+     */
+    public int size() {
+        ensureOpen();
+        return records.size();
+    }
+
+    /**
+     * Returns the current size of the log file in bytes.
+     *
+     * @return the current size of the log file in bytes.
+     */
+    public long getLogSize() {
+        ensureOpen();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return writePosition;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a {@link BoundedCache BoundedCache} of at most {@link #getHotSetSize() hotSetSize} sessions if no
+     * {@code CacheManager} is configured, or the {@code CacheManager}'s cache otherwise.
+     *
+     * @return the cache of recently used sessions, or {@code null} if the hot set is disabled.
+     */
+    @Override
+    protected Cache<Serializable, Session> createActiveSessionsCache() {
+        if (getCacheManager() != null) {
+            return super.createActiveSessionsCache();
+        }
+        if (hotSetSize == 0) {
+            return null;
+        }
+        BoundedCache<Serializable, Session> cache =
+                new BoundedCache<Serializable, Session>(getActiveSessionsCacheName(), hotSetSize);
+        //newly created sessions are the most likely to be used next:
+        cache.setAdmissionEnabled(false);
+        return cache;
+    }
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        put(session);
+        return sessionId;
+    }
+
+    protected Session doReadSession(Serializable sessionId) {
+        ensureOpen();
+        ByteBuffer body;
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Record record = records.get(sessionId);
+            if (record == null) {
+                return null;
+            }
+            body = readBody(record);
+        } catch (IOException e) {
+            throw new SessionException("Unable to read session with id [" + sessionId + "] from " + path, e);
+        } finally {
+            readLock.unlock();
+        }
+        int idLength = body.getInt(BODY_HEADER_SIZE - 4);
+        body.position(BODY_HEADER_SIZE + idLength);
+        byte[] serialized = new byte[body.remaining()];
+        body.get(serialized);
+        return serializer.deserialize(serialized);
+    }
+
+    protected void doUpdate(Session session) {
+        put(session);
+    }
+
+    protected void doDelete(Session session) {
+        Serializable id = session.getId();
+        if (id == null || !records.containsKey(id)) {
+            return;
+        }
+        append(DELETE, id, -1, null);
+    }
+
+    /**
+     * Returns all persisted sessions, using the on-heap instances of recently used sessions and deserializing the
+     * others.
+     *
+     * @return all persisted sessions.
+     */
+    @Override
+    public Collection<Session> getActiveSessions() {
+        ensureOpen();
+        List<Session> sessions = new ArrayList<Session>(records.size());
+        for (Serializable id : records.keySet()) {
+            Session session = getCachedSession(id);
+            if (session == null) {
+                session = doReadSession(id);
+            }
+            if (session != null) {
+                sessions.add(session);
+            }
+        }
+        if (sessions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection(sessions);
+    }
+
+    /**
+     * Opens (and recovers) the log if necessary, so that the {@link #getExpiryIndex() expiry index} contains the
+     * persisted sessions before it is consulted.
+     *
+     * @return the sessions that may have expired.
+     */
+    @Override
+    public Collection<Session> getExpirationCandidates() {
+        ensureOpen();
+        return super.getExpirationCandidates();
+    }
+
+    private void put(Session session) {
+        Serializable id = session.getId();
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        SessionExpiryIndex index = getExpiryIndex();
+        long expiration = index != null ? index.getExpirationTime(session) : -1;
+        append(PUT, id, expiration, serializer.serialize(session));
+    }
+
+    private void append(byte type, Serializable id, long expiration, byte[] serialized) {
+        ensureOpen();
+        //encode outside of the lock:
+        byte idEncoding;
+        byte[] idBytes;
+        if (id instanceof String) {
+            idEncoding = STRING_ID;
+            idBytes = toUtf8((String) id);
+        } else {
+            idEncoding = SERIALIZED_ID;
+            idBytes = idSerializer.serialize(id);
+        }
+        int bodyLength = BODY_HEADER_SIZE + idBytes.length + (serialized != null ? serialized.length : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);
+        buffer.put(type).putLong(expiration).put(idEncoding).putInt(idBytes.length).put(idBytes);
+        if (serialized != null) {
+            buffer.put(serialized);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long position = writePosition;
+            write(channel, buffer, position);
+            writePosition += buffer.limit();
+            if (syncInterval == 0) {
+                channel.force(false);
+            } else {
+                dirty = true;
+            }
+            apply(type, id, expiration, new Record(position, buffer.limit()));
+        } catch (IOException e) {
+            throw new SessionException("Unable to write session with id [" + id + "] to " + path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Updates the in-memory indexes with a record appended to or recovered from the log.
+     */
+    private void apply(byte type, Serializable id, long expiration, Record record) {
+        Record previous;
+        if (type == PUT) {
+            previous = records.put(id, record);
+            liveBytes += record.length;
+        } else {
+            previous = records.remove(id);
+        }
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        SessionExpiryIndex index = getExpiryIndex();
+        if (index != null) {
+            index.update(id, type == PUT ? expiration : -1);
+        }
+    }
+
+    private ByteBuffer readBody(Record record) throws IOException {
+        int bodyLength = record.length - RECORD_HEADER_SIZE;
+        long bodyPosition = record.position + RECORD_HEADER_SIZE;
+        if (mapping != null && bodyPosition + bodyLength <= mapping.capacity()) {
+            ByteBuffer body = mapping.duplicate();
+            body.position((int) bodyPosition);
+            body.limit((int) bodyPosition + bodyLength);
+            return body.slice();
+        }
+        //not (yet) mapped:
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        while (body.hasRemaining()) {
+            if (channel.read(body, bodyPosition + body.position()) < 0) {
+                throw new EOFException("Unexpected end of log.");
+            }
+        }
+        body.flip();
+        return body;
+    }
+
+    /**
+     * Maps the log for reading, up to its current end.  Must be called while holding the write lock.
+     */
+    private void remap() throws IOException {
+        long size = Math.min(writePosition, Integer.MAX_VALUE);
+        if (mapping == null || mapping.capacity() < size) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private void ensureOpen() {
+        if (open) {
+            return;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (!open) {
+                if (path == null) {
+                    throw new IllegalStateException("The path of the session log file has not been set.");
+                }
+                try {
+                    openLog();
+                } catch (IOException e) {
+                    closeLog();
+                    throw new SessionException("Unable to open session log " + path, e);
+                }
+                startMaintenance();
+                open = true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void openLog() throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        records.clear();
+        liveBytes = 0;
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.put(MAGIC).putInt(VERSION).flip();
+            write(channel, header, 0);
+            channel.force(true);
+            writePosition = FILE_HEADER_SIZE;
+        } else {
+            writePosition = recover();
+        }
+        remap();
+    }
+
+    /**
+     * Rebuilds the in-memory indexes by scanning the log, and truncates a trailing partially written record.
+     *
+     * @return the position after the last valid record.
+     */
+    private long recover() throws IOException {
+        long start = System.currentTimeMillis();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        int version = in.readInt();
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException(path + " is not a session log.");
+            }
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported session log version " + version + " in " + path + ".");
+        }
+        long size = channel.size();
+        long position = FILE_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        byte[] body = new byte[1024];
+        while (position + RECORD_HEADER_SIZE <= size) {
+            int bodyLength = in.readInt();
+            int checksum = in.readInt();
+            if (bodyLength < BODY_HEADER_SIZE || position + RECORD_HEADER_SIZE + bodyLength > size) {
+                break;
+            }
+            if (body.length < bodyLength) {
+                body = new byte[Math.max(bodyLength, body.length * 2)];
+            }
+            in.readFully(body, 0, bodyLength);
+            crc.reset();
+            crc.update(body, 0, bodyLength);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(body, 0, bodyLength);
+            byte type = buffer.get();
+            long expiration = buffer.getLong();
+            byte idEncoding = buffer.get();
+            byte[] idBytes = new byte[buffer.getInt()];
+            buffer.get(idBytes);
+            Serializable id = idEncoding == STRING_ID ? fromUtf8(idBytes) : idSerializer.deserialize(idBytes);
+            int length = RECORD_HEADER_SIZE + bodyLength;
+            apply(type, id, expiration, new Record(position, length));
+            position += length;
+        }
+        if (position < size) {
+            log.warn("Truncating {} bytes of incomplete or corrupt records at the end of session log {}.",
+                    size - position, path);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        if (log.isInfoEnabled()) {
+            log.info("Recovered {} sessions from session log {} in {} ms.",
+                    new Object[]{records.size(), path, System.currentTimeMillis() - start});
+        }
+        return position;
+    }
+
+    /**
+     * Rewrites the log so that it only contains the current record of every persisted session.  This is usually
+     * done automatically once obsolete records exceed the {@link #getCompactionThreshold() compactionThreshold}.
+     */
+    public void compact() {
+        ensureOpen();
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            doCompact();
+        } catch (IOException e) {
+            throw new SessionException("Unable to compact session log " + path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void doCompact() throws IOException {
+        long start = System.currentTimeMillis();
+        long previousSize = writePosition;
+        File target = new File(path);
+        File temp = new File(path + ".compact");
+        RandomAccessFile compacted = new RandomAccessFile(temp, "rw");
+        Map<Serializable, Record> moved = new HashMap<Serializable, Record>(records.size() * 4 / 3 + 1);
+        boolean written = false;
+        try {
+            FileChannel out = compacted.getChannel();
+            out.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.put(MAGIC).putInt(VERSION).flip();
+            write(out, header, 0);
+            long position = FILE_HEADER_SIZE;
+            out.position(position);
+            for (Map.Entry<Serializable, Record> entry : records.entrySet()) {
+                Record record = entry.getValue();
+                long transferred = 0;
+                while (transferred < record.length) {
+                    transferred += channel.transferTo(record.position + transferred, record.length - transferred, out);
+                }
+                moved.put(entry.getKey(), new Record(position, record.length));
+                position += record.length;
+            }
+            out.force(true);
+            written = true;
+        } finally {
+            compacted.close();
+            if (!written && !temp.delete()) {
+                log.warn("Unable to delete incomplete compacted session log {}", temp);
+            }
+        }
+        //the mapping and channel must be released first, or the rename fails on some platforms (e.g. Windows):
+        closeLog();
+        boolean replaced = temp.renameTo(target) || (target.delete() && temp.renameTo(target));
+        //if the old log was deleted but could not be replaced, the compacted log is the only copy left:
+        File current = replaced || target.exists() ? target : temp;
+        try {
+            file = new RandomAccessFile(current, "rw");
+        } catch (IOException e) {
+            //reopened and recovered on next use:
+            open = false;
+            throw e;
+        }
+        channel = file.getChannel();
+        if (current == target && !replaced) {
+            //the old log is intact and still described by the in-memory indexes:
+            remap();
+            if (!temp.delete()) {
+                log.warn("Unable to delete compacted session log {}", temp);
+            }
+            throw new IOException("Unable to replace " + target + " with " + temp + ", keeping the uncompacted log.");
+        }
+        records.putAll(moved);
+        writePosition = channel.size();
+        liveBytes = writePosition - FILE_HEADER_SIZE;
+        dirty = false;
+        remap();
+        if (current != target) {
+            throw new IOException("Unable to replace " + target + " with " + temp + ", which is used from now on. " +
+                    "Rename it to " + target + " before this DAO is used again after a restart.");
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Compacted session log {} from {} to {} bytes in {} ms.",
+                    new Object[]{path, previousSize, writePosition, System.currentTimeMillis() - start});
+        }
+    }
+
+    private boolean isCompactionNeeded() {
+        return writePosition >= minCompactionSize && compactionThreshold < 1 &&
+                writePosition - FILE_HEADER_SIZE - liveBytes > compactionThreshold * writePosition;
+    }
+
+    private void startMaintenance() {
+        if (maintenance != null) {
+            //left over from a log that failed and was reopened:
+            maintenance.shutdown();
+        }
+        long interval = syncInterval > 0 ? syncInterval : DEFAULT_SYNC_INTERVAL;
+        maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FileSessionDAO-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        maintenance.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    maintain();
+                } catch (Throwable t) {
+                    log.warn("Unable to sync or compact session log " + path, t);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forces appended records to disk, remaps the log and compacts it if necessary.
+     */
+    private void maintain() throws IOException {
+        FileChannel current;
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            current = channel;
+        } finally {
+            readLock.unlock();
+        }
+        if (current != null && syncInterval > 0 && dirty) {
+            //force outside of the lock, so appends are not blocked while the disk catches up:
+            dirty = false;
+            current.force(false);
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (channel != null) {
+                if (isCompactionNeeded()) {
+                    doCompact();
+                } else {
+                    remap();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Forces all records to disk and closes the log.  The log is reopened (and recovered) if this DAO is used again.
+     */
+    public void destroy() {
+        ScheduledExecutorService service = maintenance;
+        if (service != null) {
+            service.shutdownNow();
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            maintenance = null;
+            if (channel != null) {
+                try {
+                    channel.force(true);
+                } catch (IOException e) {
+                    log.warn("Unable to sync session log " + path, e);
+                }
+            }
+            closeLog();
+            open = false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void closeLog() {
+        mapping = null;
+        channel = null;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("Unable to close session log " + path, e);
+            }
+            file = null;
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static byte[] toUtf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported.", e);
+        }
+    }
+
+    private static String fromUtf8(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported.", e);
+        }
+    }
+
+    /**
+     * The position and total length of a record in the log.
+     */
+    private static final class Record {
+
+        private final long position;
+        private final int length;
+
+        private Record(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
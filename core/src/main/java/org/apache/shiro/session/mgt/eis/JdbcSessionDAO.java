@@ -0,0 +1,908 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.io.DefaultSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SessionDelta;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.session.mgt.ValidatingSession;
+import org.apache.shiro.util.Destroyable;
+import org.apache.shiro.util.JdbcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code SessionDAO} that stores sessions in a relational database via JDBC.  The default statements assume the
+ * following schema, but can be overridden by setting the statement properties to match any other table, as long as
+ * the parameters and result columns keep the documented order:
+ * <pre>
+ * create table sessions (
+ *     id varchar(64) primary key,
+ *     start_timestamp bigint not null,
+ *     last_access_time bigint not null,
+ *     timeout bigint not null,
+ *     expires_at bigint not null,
+ *     stop_timestamp bigint,
+ *     expired boolean not null,
+ *     host varchar(255),
+ *     attributes varbinary(65535)
+ * );
+ * create index sessions_expires_at on sessions (expires_at);</pre>
+ * Session state is stored in individual columns, and only the attributes are stored in binary form using the
+ * {@link #setAttributesSerializer(Serializer) attributesSerializer}.  Session ids are stored as strings, so the
+ * {@link #setSessionIdGenerator(SessionIdGenerator) SessionIdGenerator} must generate ids that are equal to the
+ * {@code String} they are read back as, which is the case for the default one.
+ * <h2>Batched Touches</h2>
+ * This is a {@link DeltaSessionDAO DeltaSessionDAO}: changes that leave the attributes alone and the session valid
+ * (which, in practice, are {@link Session#touch() touches}) only update the last access time and timeout, and are not
+ * written immediately.  Instead, the latest such change of every session is queued and written in JDBC batches by a
+ * background thread every {@link #setFlushInterval(long) flushInterval} milliseconds, so that many requests share a
+ * single round trip and commit.  Queued changes are applied to sessions read in the meantime, and cannot overwrite a
+ * more recent last access time written by another node.  A {@code flushInterval} of {@code 0} writes every change
+ * immediately.  Queued changes are lost if the JVM terminates without this DAO being {@link #destroy() destroyed},
+ * which the {@link org.apache.shiro.session.mgt.DefaultSessionManager DefaultSessionManager} does when it is
+ * destroyed.
+ * <h2>Validation</h2>
+ * This is also an {@link ExpiryIndexedSessionDAO ExpiryIndexedSessionDAO}: every row stores the time the session
+ * will expire if it is not accessed again, so session validation {@link #getExpirationCandidates() queries} the
+ * index on that column instead of loading the entire table.  {@link #getActiveSessions()} reads the table in
+ * batches while it is being iterated instead of materializing it.
+ *
+ * @since 1.3
+ */
+public class JdbcSessionDAO extends AbstractSessionDAO implements DeltaSessionDAO, ExpiryIndexedSessionDAO,
+        Destroyable {
+
+    /**
+     * The default statement used to create a session, with the parameters {@code id, start_timestamp,
+     * last_access_time, timeout, expires_at, stop_timestamp, expired, host, attributes}.
+     */
+    protected static final String DEFAULT_INSERT_STATEMENT = "insert into sessions (id, start_timestamp, " +
+            "last_access_time, timeout, expires_at, stop_timestamp, expired, host, attributes) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * The default query used to read a session by its id, returning the columns {@code id, start_timestamp,
+     * last_access_time, timeout, stop_timestamp, expired, host, attributes}.
+     */
+    protected static final String DEFAULT_SELECT_QUERY = "select id, start_timestamp, last_access_time, timeout, " +
+            "stop_timestamp, expired, host, attributes from sessions where id = ?";
+
+    /**
+     * The default statement used to write an entire session, with the parameters {@code start_timestamp,
+     * last_access_time, timeout, expires_at, stop_timestamp, expired, host, attributes, id}.
+     */
+    protected static final String DEFAULT_UPDATE_STATEMENT = "update sessions set start_timestamp = ?, " +
+            "last_access_time = ?, timeout = ?, expires_at = ?, stop_timestamp = ?, expired = ?, host = ?, " +
+            "attributes = ? where id = ?";
+
+    /**
+     * The default statement used to write the state of a session, but not its attributes, with the parameters
+     * {@code start_timestamp, last_access_time, timeout, expires_at, stop_timestamp, expired, host, id}.
+     */
+    protected static final String DEFAULT_UPDATE_STATE_STATEMENT = "update sessions set start_timestamp = ?, " +
+            "last_access_time = ?, timeout = ?, expires_at = ?, stop_timestamp = ?, expired = ?, host = ? " +
+            "where id = ?";
+
+    /**
+     * The default statement used to write batched touches, with the parameters {@code last_access_time, timeout,
+     * expires_at, id, last_access_time}.  The last parameter prevents overwriting a more recent access.
+     */
+    protected static final String DEFAULT_TOUCH_STATEMENT = "update sessions set last_access_time = ?, " +
+            "timeout = ?, expires_at = ? where id = ? and last_access_time <= ?";
+
+    /**
+     * The default statement used to delete a session, with the parameter {@code id}.
+     */
+    protected static final String DEFAULT_DELETE_STATEMENT = "delete from sessions where id = ?";
+
+    /**
+     * The default query used to find sessions that may have expired, with the parameter {@code expires_at} and
+     * returning the same columns as the {@link #DEFAULT_SELECT_QUERY select query}.
+     */
+    protected static final String DEFAULT_EXPIRED_QUERY = "select id, start_timestamp, last_access_time, timeout, " +
+            "stop_timestamp, expired, host, attributes from sessions where expires_at <= ?";
+
+    /**
+     * The default query used to iterate all sessions in batches, with the parameter {@code id} of the last session of
+     * the previous batch (or an empty string), returning the same columns as the
+     * {@link #DEFAULT_SELECT_QUERY select query} ordered by {@code id}.
+     */
+    protected static final String DEFAULT_ALL_QUERY = "select id, start_timestamp, last_access_time, timeout, " +
+            "stop_timestamp, expired, host, attributes from sessions where id > ? order by id";
+
+    /**
+     * The default query used to count all sessions.
+     */
+    protected static final String DEFAULT_COUNT_QUERY = "select count(*) from sessions";
+
+    /**
+     * The default interval between writing batched touches, equal to one second.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * The default maximum number of statements sent to the database in a single batch, equal to {@code 100}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * The default number of sessions read per query while iterating all sessions, equal to {@code 100}.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionDAO.class);
+
+    protected DataSource dataSource;
+
+    protected String insertStatement = DEFAULT_INSERT_STATEMENT;
+
+    protected String selectQuery = DEFAULT_SELECT_QUERY;
+
+    protected String updateStatement = DEFAULT_UPDATE_STATEMENT;
+
+    protected String updateStateStatement = DEFAULT_UPDATE_STATE_STATEMENT;
+
+    protected String touchStatement = DEFAULT_TOUCH_STATEMENT;
+
+    protected String deleteStatement = DEFAULT_DELETE_STATEMENT;
+
+    protected String expiredQuery = DEFAULT_EXPIRED_QUERY;
+
+    protected String allQuery = DEFAULT_ALL_QUERY;
+
+    protected String countQuery = DEFAULT_COUNT_QUERY;
+
+    private Serializer<Map<Object, Object>> attributesSerializer = new DefaultSerializer<Map<Object, Object>>();
+
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * The latest queued touch of every session, keyed by the session id string.
+     */
+    private final ConcurrentMap<String, Touch> pendingTouches = new ConcurrentHashMap<String, Touch>();
+
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Sets the datasource that should be used to retrieve connections used by this DAO.
+     *
+     * @param dataSource the SQL data source.
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Overrides the default statement used to create a session.
+     *
+     * @param insertStatement the statement used to create a session.
+     * @see #DEFAULT_INSERT_STATEMENT
+     */
+    public void setInsertStatement(String insertStatement) {
+        this.insertStatement = insertStatement;
+    }
+
+    /**
+     * Overrides the default query used to read a session by its id.
+     *
+     * @param selectQuery the query used to read a session.
+     * @see #DEFAULT_SELECT_QUERY
+     */
+    public void setSelectQuery(String selectQuery) {
+        this.selectQuery = selectQuery;
+    }
+
+    /**
+     * Overrides the default statement used to write an entire session.
+     *
+     * @param updateStatement the statement used to write an entire session.
+     * @see #DEFAULT_UPDATE_STATEMENT
+     */
+    public void setUpdateStatement(String updateStatement) {
+        this.updateStatement = updateStatement;
+    }
+
+    /**
+     * Overrides the default statement used to write the state of a session without its attributes.
+     *
+     * @param updateStateStatement the statement used to write the state of a session.
+     * @see #DEFAULT_UPDATE_STATE_STATEMENT
+     */
+    public void setUpdateStateStatement(String updateStateStatement) {
+        this.updateStateStatement = updateStateStatement;
+    }
+
+    /**
+     * Overrides the default statement used to write batched touches.
+     *
+     * @param touchStatement the statement used to write batched touches.
+     * @see #DEFAULT_TOUCH_STATEMENT
+     */
+    public void setTouchStatement(String touchStatement) {
+        this.touchStatement = touchStatement;
+    }
+
+    /**
+     * Overrides the default statement used to delete a session.
+     *
+     * @param deleteStatement the statement used to delete a session.
+     * @see #DEFAULT_DELETE_STATEMENT
+     */
+    public void setDeleteStatement(String deleteStatement) {
+        this.deleteStatement = deleteStatement;
+    }
+
+    /**
+     * Overrides the default query used to find sessions that may have expired.  To avoid scanning the table, the
+     * expiration column should be indexed.
+     *
+     * @param expiredQuery the query used to find sessions that may have expired.
+     * @see #DEFAULT_EXPIRED_QUERY
+     */
+    public void setExpiredQuery(String expiredQuery) {
+        this.expiredQuery = expiredQuery;
+    }
+
+    /**
+     * Overrides the default query used to iterate all sessions in batches.  The query must only return sessions whose
+     * id is greater than its single parameter, ordered by id.
+     *
+     * @param allQuery the query used to iterate all sessions.
+     * @see #DEFAULT_ALL_QUERY
+     */
+    public void setAllQuery(String allQuery) {
+        this.allQuery = allQuery;
+    }
+
+    /**
+     * Overrides the default query used to count all sessions.
+     *
+     * @param countQuery the query used to count all sessions.
+     * @see #DEFAULT_COUNT_QUERY
+     */
+    public void setCountQuery(String countQuery) {
+        this.countQuery = countQuery;
+    }
+
+    /**
+     * Returns the {@code Serializer} used to convert session attributes to and from bytes.  The default is a
+     * {@link DefaultSerializer DefaultSerializer}.
+     *
+     * @return the {@code Serializer} used to convert session attributes to and from bytes.
+     */
+    public Serializer<Map<Object, Object>> getAttributesSerializer() {
+        return attributesSerializer;
+    }
+
+    /**
+     * Sets the {@code Serializer} used to convert session attributes to and from bytes.
+     *
+     * @param attributesSerializer the {@code Serializer} used to convert session attributes to and from bytes.
+     */
+    public void setAttributesSerializer(Serializer<Map<Object, Object>> attributesSerializer) {
+        if (attributesSerializer == null) {
+            throw new IllegalArgumentException("attributesSerializer argument cannot be null.");
+        }
+        this.attributesSerializer = attributesSerializer;
+    }
+
+    /**
+     * Returns the interval in milliseconds between writing batched touches.  The default value is
+     * {@link #DEFAULT_FLUSH_INTERVAL} (one second).
+     *
+     * @return the interval in milliseconds between writing batched touches.
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds between writing batched touches, or {@code 0} to write every touch
+     * immediately.  This must be set before the first session is updated.
+     *
+     * @param flushInterval the interval in milliseconds between writing batched touches.
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException("flushInterval cannot be negative.");
+        }
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Returns the maximum number of statements sent to the database in a single batch.  The default value is
+     * {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @return the maximum number of statements sent to the database in a single batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of statements sent to the database in a single batch.
+     *
+     * @param batchSize the maximum number of statements sent to the database in a single batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than zero.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the number of sessions read per query while iterating all sessions.  The default value is
+     * {@link #DEFAULT_FETCH_SIZE}.
+     *
+     * @return the number of sessions read per query while iterating all sessions.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of sessions read per query while iterating all sessions.  Each batch is read with its own
+     * connection, which is released before the sessions are returned.
+     *
+     * @param fetchSize the number of sessions read per query while iterating all sessions.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the number of touches waiting to be written.
+     *
+     * @return the number of touches waiting to be written.
+     */
+    public int getPendingTouchCount() {
+        return pendingTouches.size();
+    }
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        Connection conn = null;
+        PreparedStatement ps = null;
+        try {
+            conn = dataSource.getConnection();
+            ps = conn.prepareStatement(insertStatement);
+            setId(ps, 1, sessionId);
+            setState(ps, 2, session);
+            ps.setBytes(9, serializeAttributes(session));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new SessionException("Unable to create session with id [" + sessionId + "]", e);
+        } finally {
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+        return sessionId;
+    }
+
+    protected Session doReadSession(Serializable sessionId) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = dataSource.getConnection();
+            ps = conn.prepareStatement(selectQuery);
+            setId(ps, 1, sessionId);
+            rs = ps.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            SimpleSession session = toSession(rs);
+            //use the requested instance, as it may not be a String:
+            session.setId(sessionId);
+            session.clearDelta();
+            return session;
+        } catch (SQLException e) {
+            throw new SessionException("Unable to read session with id [" + sessionId + "]", e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    public void update(Session session) throws UnknownSessionException {
+        writeSession(session, true);
+    }
+
+    /**
+     * Returns {@code true}, as only the changes of a session are written.
+     *
+     * @return {@code true}
+     */
+    public boolean isDeltaSupported() {
+        return true;
+    }
+
+    /**
+     * Writes the changes of the specified session.  Changes to the attributes are written immediately with the
+     * rest of the session, as are changes to sessions that are no longer valid, so that stopped and expired sessions
+     * are never resurrected.  All other changes are queued as touches and written in batches.
+     *
+     * @param session the session to update
+     * @param delta   the changes made to the session since it was last persisted
+     * @throws UnknownSessionException if the session does not exist
+     */
+    public void updateDelta(Session session, SessionDelta delta) throws UnknownSessionException {
+        if (delta.isEmpty()) {
+            return;
+        }
+        boolean attributesChanged = delta.isAttributesReplaced() || !delta.getChangedAttributes().isEmpty() ||
+                !delta.getRemovedAttributeKeys().isEmpty();
+        if (attributesChanged) {
+            writeSession(session, true);
+        } else if (flushInterval > 0 && isValid(session)) {
+            queueTouch(session);
+        } else {
+            writeSession(session, false);
+        }
+    }
+
+    private void writeSession(Session session, boolean attributes) throws UnknownSessionException {
+        Serializable id = session.getId();
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        //the touch, if any, is superseded:
+        pendingTouches.remove(id.toString());
+        byte[] serialized = attributes ? serializeAttributes(session) : null;
+        Connection conn = null;
+        PreparedStatement ps = null;
+        int updated;
+        try {
+            conn = dataSource.getConnection();
+            if (attributes) {
+                ps = conn.prepareStatement(updateStatement);
+                setState(ps, 1, session);
+                ps.setBytes(8, serialized);
+                setId(ps, 9, id);
+            } else {
+                ps = conn.prepareStatement(updateStateStatement);
+                setState(ps, 1, session);
+                setId(ps, 8, id);
+            }
+            updated = ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new SessionException("Unable to update session with id [" + id + "]", e);
+        } finally {
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+        if (updated == 0) {
+            throw new UnknownSessionException("There is no session with id [" + id + "]");
+        }
+    }
+
+    private void queueTouch(Session session) {
+        Date lastAccessTime = session.getLastAccessTime();
+        long time = lastAccessTime != null ? lastAccessTime.getTime() : 0;
+        pendingTouches.put(session.getId().toString(), new Touch(time, session.getTimeout()));
+        ensureFlusher();
+    }
+
+    public void delete(Session session) {
+        if (session == null) {
+            throw new NullPointerException("session argument cannot be null.");
+        }
+        Serializable id = session.getId();
+        if (id == null) {
+            return;
+        }
+        pendingTouches.remove(id.toString());
+        Connection conn = null;
+        PreparedStatement ps = null;
+        try {
+            conn = dataSource.getConnection();
+            ps = conn.prepareStatement(deleteStatement);
+            setId(ps, 1, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new SessionException("Unable to delete session with id [" + id + "]", e);
+        } finally {
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Returns a view of all stored sessions that queries the database every time it is iterated, reading
+     * {@link #getFetchSize() fetchSize} sessions at a time in order of their ids.  No database connection is held
+     * between reads, so iterations may be abandoned at any time.
+     *
+     * @return a view of all stored sessions that is read in batches.
+     */
+    public Collection<Session> getActiveSessions() {
+        return new AbstractCollection<Session>() {
+            public Iterator<Session> iterator() {
+                return new SessionIterator();
+            }
+
+            public int size() {
+                return count();
+            }
+        };
+    }
+
+    /**
+     * Writes all queued touches, then returns the sessions whose stored expiration time has passed, using the
+     * index on the expiration column.
+     *
+     * @return the sessions that may have expired by now.
+     */
+    public Collection<Session> getExpirationCandidates() {
+        flush();
+        List<Session> candidates = new ArrayList<Session>();
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = dataSource.getConnection();
+            ps = conn.prepareStatement(expiredQuery);
+            ps.setLong(1, System.currentTimeMillis());
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                SimpleSession session = toSession(rs);
+                session.clearDelta();
+                candidates.add(session);
+            }
+        } catch (SQLException e) {
+            throw new SessionException("Unable to query expired sessions", e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+        return candidates;
+    }
+
+    /**
+     * Writes all queued touches in batches of at most {@link #getBatchSize() batchSize} statements.  This is
+     * called periodically by a background thread, but may also be called directly.
+     */
+    public void flush() {
+        if (pendingTouches.isEmpty()) {
+            return;
+        }
+        synchronized (flushLock) {
+            Map<String, Touch> flushed = new HashMap<String, Touch>(pendingTouches);
+            if (flushed.isEmpty()) {
+                return;
+            }
+            Connection conn = null;
+            PreparedStatement ps = null;
+            boolean autoCommit = true;
+            try {
+                conn = dataSource.getConnection();
+                autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                //a single statement for all touches:
+                ps = conn.prepareStatement(touchStatement);
+                int batched = 0;
+                for (Map.Entry<String, Touch> entry : flushed.entrySet()) {
+                    Touch touch = entry.getValue();
+                    ps.setLong(1, touch.lastAccessTime);
+                    ps.setLong(2, touch.timeout);
+                    ps.setLong(3, getExpirationTime(touch.lastAccessTime, touch.timeout));
+                    ps.setString(4, entry.getKey());
+                    ps.setLong(5, touch.lastAccessTime);
+                    ps.addBatch();
+                    if (++batched == batchSize) {
+                        ps.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    ps.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                rollback(conn);
+                throw new SessionException("Unable to write " + flushed.size() + " session touches", e);
+            } finally {
+                JdbcUtils.closeStatement(ps);
+                restoreAutoCommit(conn, autoCommit);
+                JdbcUtils.closeConnection(conn);
+            }
+            //only forget touches once they are visible in the database, and keep those that were replaced since:
+            for (Map.Entry<String, Touch> entry : flushed.entrySet()) {
+                pendingTouches.remove(entry.getKey(), entry.getValue());
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("Wrote {} session touches.", flushed.size());
+            }
+        }
+    }
+
+    /**
+     * Writes all queued touches and stops the background thread.
+     */
+    public void destroy() {
+        ScheduledExecutorService service;
+        synchronized (this) {
+            service = flusher;
+            flusher = null;
+        }
+        if (service != null) {
+            service.shutdown();
+        }
+        flush();
+    }
+
+    private synchronized void ensureFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "JdbcSessionDAO-flusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flush();
+                } catch (Throwable t) {
+                    log.warn("Unable to write session touches.  They will be retried.", t);
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private int count() {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = dataSource.getConnection();
+            ps = conn.prepareStatement(countQuery);
+            rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new SessionException("Unable to count sessions", e);
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Builds a session from the current row, applying its queued touch, if any.  The columns are expected in the
+     * order of the {@link #DEFAULT_SELECT_QUERY select query}.
+     */
+    private SimpleSession toSession(ResultSet rs) throws SQLException {
+        SimpleSession session = new SimpleSession();
+        String id = rs.getString(1);
+        session.setId(id);
+        session.setStartTimestamp(new Date(rs.getLong(2)));
+        session.setLastAccessTime(new Date(rs.getLong(3)));
+        session.setTimeout(rs.getLong(4));
+        long stopTimestamp = rs.getLong(5);
+        if (!rs.wasNull()) {
+            session.setStopTimestamp(new Date(stopTimestamp));
+        }
+        session.setExpired(rs.getBoolean(6));
+        session.setHost(rs.getString(7));
+        byte[] attributes = rs.getBytes(8);
+        if (attributes != null) {
+            session.setAttributes(attributesSerializer.deserialize(attributes));
+        }
+        Touch touch = pendingTouches.get(id);
+        if (touch != null && touch.lastAccessTime >= session.getLastAccessTime().getTime()) {
+            session.setLastAccessTime(new Date(touch.lastAccessTime));
+            session.setTimeout(touch.timeout);
+        }
+        return session;
+    }
+
+    /**
+     * Sets the {@code start_timestamp, last_access_time, timeout, expires_at, stop_timestamp, expired, host}
+     * parameters, starting at the specified index.
+     */
+    private void setState(PreparedStatement ps, int index, Session session) throws SQLException {
+        Date startTimestamp = session.getStartTimestamp();
+        Date lastAccessTime = session.getLastAccessTime();
+        long lastAccess = lastAccessTime != null ? lastAccessTime.getTime() : 0;
+        Date stopTimestamp = null;
+        boolean expired = false;
+        if (session instanceof SimpleSession) {
+            stopTimestamp = ((SimpleSession) session).getStopTimestamp();
+            expired = ((SimpleSession) session).isExpired();
+        }
+        ps.setLong(index, startTimestamp != null ? startTimestamp.getTime() : 0);
+        ps.setLong(index + 1, lastAccess);
+        ps.setLong(index + 2, session.getTimeout());
+        //invalid sessions are immediately due for validation, which deletes them:
+        ps.setLong(index + 3, isValid(session) ? getExpirationTime(lastAccess, session.getTimeout()) : 0);
+        if (stopTimestamp != null) {
+            ps.setLong(index + 4, stopTimestamp.getTime());
+        } else {
+            ps.setNull(index + 4, Types.BIGINT);
+        }
+        ps.setBoolean(index + 5, expired);
+        ps.setString(index + 6, session.getHost());
+    }
+
+    private void setId(PreparedStatement ps, int index, Serializable id) throws SQLException {
+        ps.setString(index, id.toString());
+    }
+
+    private byte[] serializeAttributes(Session session) {
+        Map<Object, Object> attributes;
+        if (session instanceof SimpleSession) {
+            attributes = ((SimpleSession) session).getAttributes();
+        } else {
+            attributes = new HashMap<Object, Object>();
+            for (Object key : session.getAttributeKeys()) {
+                attributes.put(key, session.getAttribute(key));
+            }
+        }
+        if (attributes == null || attributes.isEmpty()) {
+            return null;
+        }
+        return attributesSerializer.serialize(attributes);
+    }
+
+    private static boolean isValid(Session session) {
+        return !(session instanceof ValidatingSession) || ((ValidatingSession) session).isValid();
+    }
+
+    /**
+     * Returns the time the session will expire if it is not accessed again, or {@code Long.MAX_VALUE} if it never
+     * expires.
+     */
+    private static long getExpirationTime(long lastAccessTime, long timeout) {
+        return timeout < 0 ? Long.MAX_VALUE : lastAccessTime + timeout;
+    }
+
+    private static void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                log.debug("Unable to roll back session touches.", e);
+            }
+        }
+    }
+
+    private static void restoreAutoCommit(Connection conn, boolean autoCommit) {
+        if (conn != null) {
+            try {
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                log.debug("Unable to restore auto-commit mode.", e);
+            }
+        }
+    }
+
+    /**
+     * A queued change of a session's last access time and timeout.
+     */
+    private static final class Touch {
+
+        private final long lastAccessTime;
+        private final long timeout;
+
+        private Touch(long lastAccessTime, long timeout) {
+            this.lastAccessTime = lastAccessTime;
+            this.timeout = timeout;
+        }
+    }
+
+    /**
+     * Reads sessions in batches of {@link #fetchSize} while being iterated, each with its own connection.
+     */
+    private class SessionIterator implements Iterator<Session> {
+
+        private final LinkedList<Session> batch = new LinkedList<Session>();
+        private String lastId = "";
+        private boolean exhausted;
+
+        public boolean hasNext() {
+            if (batch.isEmpty() && !exhausted) {
+                read();
+            }
+            return !batch.isEmpty();
+        }
+
+        private void read() {
+            int size = Math.max(fetchSize, 1);
+            Connection conn = null;
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+                conn = dataSource.getConnection();
+                ps = conn.prepareStatement(allQuery);
+                ps.setMaxRows(size);
+                ps.setFetchSize(size);
+                ps.setString(1, lastId);
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    SimpleSession session = toSession(rs);
+                    session.clearDelta();
+                    batch.add(session);
+                }
+            } catch (SQLException e) {
+                throw new SessionException("Unable to read sessions", e);
+            } finally {
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(ps);
+                JdbcUtils.closeConnection(conn);
+            }
+            exhausted = batch.size() < size;
+            if (!batch.isEmpty()) {
+                lastId = batch.getLast().getId().toString();
+            }
+        }
+
+        public Session next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.removeFirst();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Sessions can only be removed by deleting them.");
+        }
+    }
+}
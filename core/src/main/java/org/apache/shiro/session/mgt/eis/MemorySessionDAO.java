@@ -25,8 +25,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -49,24 +51,57 @@ import java.util.concurrent.ConcurrentMap;
  * cache implementations that would expunge entries due to TTL settings, resulting in Sessions that would be randomly
  * (and permanently) lost.  The Shiro 1.0 release refactored this implementation to be 100% memory-based (without
  * {@code Cache} usage to avoid this problem.
+ * <h2>Session Validation</h2>
+ * Sessions are indexed by their expiration time in a {@link SessionExpiryIndex SessionExpiryIndex}, so that session
+ * validation only visits the sessions that may have expired.  See {@link #setExpiryIndex(SessionExpiryIndex)}.
  *
  * @see CachingSessionDAO
  * @since 0.1
  */
-public class MemorySessionDAO extends AbstractSessionDAO {
+public class MemorySessionDAO extends AbstractSessionDAO implements ExpiryIndexedSessionDAO {
 
     private static final Logger log = LoggerFactory.getLogger(MemorySessionDAO.class);
 
     private ConcurrentMap<Serializable, Session> sessions;
 
+    private SessionExpiryIndex expiryIndex;
+
     public MemorySessionDAO() {
         this.sessions = new ConcurrentHashMap<Serializable, Session>();
+        this.expiryIndex = new SessionExpiryIndex();
+    }
+
+    /**
+     * Returns the index of sessions by expiration time used to find the
+     * {@link #getExpirationCandidates() sessions that may have expired}, or {@code null} if sessions are not indexed.
+     * The default is a {@link SessionExpiryIndex SessionExpiryIndex} with the
+     * {@link SessionExpiryIndex#DEFAULT_GRANULARITY default granularity}.
+     *
+     * @return the index of sessions by expiration time, or {@code null} if sessions are not indexed.
+     * @since 1.3
+     */
+    public SessionExpiryIndex getExpiryIndex() {
+        return expiryIndex;
+    }
+
+    /**
+     * Sets the index of sessions by expiration time used to find the
+     * {@link #getExpirationCandidates() sessions that may have expired}, or {@code null} to not index sessions, in
+     * which case all active sessions are considered candidates.  This should only be set before any session is
+     * created.
+     *
+     * @param expiryIndex the index of sessions by expiration time, or {@code null} to not index sessions.
+     * @since 1.3
+     */
+    public void setExpiryIndex(SessionExpiryIndex expiryIndex) {
+        this.expiryIndex = expiryIndex;
     }
 
     protected Serializable doCreate(Session session) {
         Serializable sessionId = generateSessionId(session);
         assignSessionId(session, sessionId);
         storeSession(sessionId, session);
+        index(session);
         return sessionId;
     }
 
@@ -83,6 +118,14 @@ public class MemorySessionDAO extends AbstractSessionDAO {
 
     public void update(Session session) throws UnknownSessionException {
         storeSession(session.getId(), session);
+        index(session);
+    }
+
+    private void index(Session session) {
+        SessionExpiryIndex index = getExpiryIndex();
+        if (index != null) {
+            index.update(session);
+        }
     }
 
     public void delete(Session session) {
@@ -92,6 +135,10 @@ public class MemorySessionDAO extends AbstractSessionDAO {
         Serializable id = session.getId();
         if (id != null) {
             sessions.remove(id);
+            SessionExpiryIndex index = getExpiryIndex();
+            if (index != null) {
+                index.remove(id);
+            }
         }
     }
 
@@ -104,4 +151,29 @@ public class MemorySessionDAO extends AbstractSessionDAO {
         }
     }
 
+    /**
+     * Returns the sessions that may have expired according to the {@link #getExpiryIndex() expiryIndex}, or all
+     * {@link #getActiveSessions() active sessions} if sessions are not indexed.
+     *
+     * @return the active sessions that may have expired by now.
+     * @since 1.3
+     */
+    public Collection<Session> getExpirationCandidates() {
+        SessionExpiryIndex index = getExpiryIndex();
+        if (index == null) {
+            return getActiveSessions();
+        }
+        Collection<Serializable> ids = index.getExpirationCandidates(System.currentTimeMillis());
+        List<Session> candidates = new ArrayList<Session>(ids.size());
+        for (Serializable id : ids) {
+            Session session = sessions.get(id);
+            if (session != null) {
+                candidates.add(session);
+            } else {
+                index.remove(id);
+            }
+        }
+        return candidates;
+    }
+
 }
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.cache.BoundedCache;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.io.DefaultSerializer;
+import org.apache.shiro.io.Serializer;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link CachingSessionDAO CachingSessionDAO} that stores serialized sessions outside of the Java heap, in direct
+ * {@link java.nio.ByteBuffer ByteBuffer} slabs, so that large session populations neither count against the heap nor
+ * lengthen garbage collection pauses.
+ * <p/>
+ * Sessions are serialized with the configured {@link #setSerializer(org.apache.shiro.io.Serializer) serializer}
+ * (standard Java serialization by default) and copied into fixed-size blocks of off-heap memory.  Only a small
+ * on-heap index of block numbers is kept per session.  Slabs are allocated on demand, up to
+ * {@link #setMaxMemory(long) maxMemory} bytes, and the blocks of updated or deleted sessions are reused.
+ * <h2>Hot Set</h2>
+ * Recently used sessions are additionally kept as objects in the {@link #getActiveSessionsCache() active sessions
+ * cache} inherited from {@code CachingSessionDAO}, so they are not deserialized on every access.  If no
+ * {@link #setCacheManager(org.apache.shiro.cache.CacheManager) CacheManager} is configured, a
+ * {@link BoundedCache BoundedCache} of at most {@link #setHotSetSize(int) hotSetSize} sessions is used.  Unlike with
+ * other {@code CachingSessionDAO}s, a session evicted from the cache is not lost; it is simply read from off-heap
+ * memory again.
+ * <p/>
+ * <b>Note:</b> off-heap memory is limited by the JVM's {@code -XX:MaxDirectMemorySize} setting, which must be at
+ * least {@link #getMaxMemory() maxMemory}.  Sessions are not persisted across restarts.
+ * <p/>
+ * Since all sessions are stored by this instance, they are {@link #setExpiryIndex(SessionExpiryIndex) indexed} by
+ * expiration time by default.
+ *
+ * @see MemorySessionDAO
+ * @since 1.3
+ */
+public class OffHeapSessionDAO extends CachingSessionDAO {
+
+    /**
+     * The default maximum amount of off-heap memory, equal to 256 MB.
+     */
+    public static final long DEFAULT_MAX_MEMORY = 256L * 1024 * 1024;
+
+    /**
+     * The default size of each off-heap slab, equal to 16 MB.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default size of the blocks sessions are stored in, equal to {@code 512} bytes.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 512;
+
+    /**
+     * The default maximum number of sessions kept on-heap if no {@code CacheManager} is configured, equal to
+     * {@code 10000}.
+     */
+    public static final int DEFAULT_HOT_SET_SIZE = 10000;
+
+    private Serializer<Session> serializer;
+    private long maxMemory;
+    private int slabSize;
+    private int blockSize;
+    private int hotSetSize;
+
+    /**
+     * The block store, created when the first session is stored.  Guarded by {@link #lock}.
+     */
+    private DirectBlockStore store;
+
+    /**
+     * The handle of each stored session in the {@link #store}.  Only modified while holding the write lock.
+     */
+    private final ConcurrentMap<Serializable, int[]> handles;
+    private final ReentrantReadWriteLock lock;
+
+    public OffHeapSessionDAO() {
+        this.serializer = new DefaultSerializer<Session>();
+        this.maxMemory = DEFAULT_MAX_MEMORY;
+        this.slabSize = DEFAULT_SLAB_SIZE;
+        this.blockSize = DEFAULT_BLOCK_SIZE;
+        this.hotSetSize = DEFAULT_HOT_SET_SIZE;
+        this.handles = new ConcurrentHashMap<Serializable, int[]>();
+        this.lock = new ReentrantReadWriteLock();
+        setExpiryIndex(new SessionExpiryIndex());
+    }
+
+    /**
+     * Returns the {@code Serializer} used to convert sessions to and from bytes.  The default is a
+     * {@link DefaultSerializer DefaultSerializer}.
+     *
+     * @return the {@code Serializer} used to convert sessions to and from bytes.
+     */
+    public Serializer<Session> getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * Sets the {@code Serializer} used to convert sessions to and from bytes.  This should only be set before any
+     * session is created.
+     *
+     * @param serializer the {@code Serializer} used to convert sessions to and from bytes.
+     */
+    public void setSerializer(Serializer<Session> serializer) {
+        if (serializer == null) {
+            throw new IllegalArgumentException("serializer argument cannot be null.");
+        }
+        this.serializer = serializer;
+    }
+
+    /**
+     * Returns the maximum number of bytes of off-heap memory used to store sessions.  The default value is
+     * {@link #DEFAULT_MAX_MEMORY} (256 MB).
+     *
+     * @return the maximum number of bytes of off-heap memory used to store sessions.
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Sets the maximum number of bytes of off-heap memory used to store sessions.  Creating or updating a session
+     * fails with a {@link SessionException SessionException} once this limit is reached.  This should only be set
+     * before any session is created.
+     *
+     * @param maxMemory the maximum number of bytes of off-heap memory used to store sessions.
+     */
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated at a time.  The default value is
+     * {@link #DEFAULT_SLAB_SIZE} (16 MB).
+     *
+     * @return the number of bytes of off-heap memory allocated at a time.
+     */
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Sets the number of bytes of off-heap memory allocated at a time.  This should only be set before any session
+     * is created.
+     *
+     * @param slabSize the number of bytes of off-heap memory allocated at a time.
+     */
+    public void setSlabSize(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Returns the size in bytes of the blocks serialized sessions are stored in.  The default value is
+     * {@link #DEFAULT_BLOCK_SIZE} (512 bytes).
+     *
+     * @return the size in bytes of the blocks serialized sessions are stored in.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Sets the size in bytes of the blocks serialized sessions are stored in.  Smaller blocks waste less memory per
+     * session, larger blocks require fewer copies per session.  This should only be set before any session is
+     * created.
+     *
+     * @param blockSize the size in bytes of the blocks serialized sessions are stored in.
+     */
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the maximum number of recently used sessions kept on-heap if no
+     * {@link #setCacheManager(org.apache.shiro.cache.CacheManager) CacheManager} is configured.  The default value
+     * is {@link #DEFAULT_HOT_SET_SIZE}.
+     *
+     * @return the maximum number of recently used sessions kept on-heap.
+     */
+    public int getHotSetSize() {
+        return hotSetSize;
+    }
+
+    /**
+     * Sets the maximum number of recently used sessions kept on-heap if no
+     * {@link #setCacheManager(org.apache.shiro.cache.CacheManager) CacheManager} is configured.  A value of
+     * {@code 0} disables the hot set, so every read deserializes the session.
+     *
+     * @param hotSetSize the maximum number of recently used sessions kept on-heap.
+     */
+    public void setHotSetSize(int hotSetSize) {
+        if (hotSetSize < 0) {
+            throw new IllegalArgumentException("hotSetSize cannot be negative.");
+        }
+        this.hotSetSize = hotSetSize;
+    }
+
+    /**
+     * Returns the number of stored sessions.
+     *
+     * @return the number of stored sessions.
+     */
+    public int size() {
+        return handles.size();
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory currently allocated.
+     *
+     * @return the number of bytes of off-heap memory currently allocated.
+     */
+    public long getAllocatedMemory() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return store != null ? store.getAllocatedMemory() : 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory occupied by stored sessions.
+     *
+     * @return the number of bytes of off-heap memory occupied by stored sessions.
+     */
+    public long getUsedMemory() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return store != null ? store.getUsedMemory() : 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a {@link BoundedCache BoundedCache} of at most {@link #getHotSetSize() hotSetSize} sessions if no
+     * {@code CacheManager} is configured, or the {@code CacheManager}'s cache otherwise.
+     *
+     * @return the cache of recently used sessions, or {@code null} if the hot set is disabled.
+     */
+    @Override
+    protected Cache<Serializable, Session> createActiveSessionsCache() {
+        CacheManager mgr = getCacheManager();
+        if (mgr != null) {
+            return super.createActiveSessionsCache();
+        }
+        if (hotSetSize == 0) {
+            return null;
+        }
+        BoundedCache<Serializable, Session> cache =
+                new BoundedCache<Serializable, Session>(getActiveSessionsCacheName(), hotSetSize);
+        //newly created sessions are the most likely to be used next:
+        cache.setAdmissionEnabled(false);
+        return cache;
+    }
+
+    protected Serializable doCreate(Session session) {
+        Serializable sessionId = generateSessionId(session);
+        assignSessionId(session, sessionId);
+        store(session);
+        return sessionId;
+    }
+
+    protected Session doReadSession(Serializable sessionId) {
+        byte[] serialized;
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int[] handle = handles.get(sessionId);
+            if (handle == null) {
+                return null;
+            }
+            serialized = store.read(handle);
+        } finally {
+            readLock.unlock();
+        }
+        return serializer.deserialize(serialized);
+    }
+
+    protected void doUpdate(Session session) {
+        store(session);
+    }
+
+    protected void doDelete(Session session) {
+        Serializable id = session.getId();
+        if (id == null) {
+            return;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int[] handle = handles.remove(id);
+            if (handle != null) {
+                store.free(handle);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void store(Session session) {
+        Serializable id = session.getId();
+        if (id == null) {
+            throw new NullPointerException("id argument cannot be null.");
+        }
+        //serialize outside of the lock:
+        byte[] serialized = serializer.serialize(session);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (store == null) {
+                store = new DirectBlockStore(maxMemory, slabSize, blockSize);
+            }
+            //the new state may reuse the previous state's blocks:
+            int[] handle = store.write(handles.get(id), serialized);
+            if (handle == null) {
+                String msg = "Unable to store session with id [" + id + "]: off-heap session memory is exhausted " +
+                        "(maxMemory = " + maxMemory + " bytes).";
+                throw new SessionException(msg);
+            }
+            handles.put(id, handle);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns all stored sessions, using the on-heap instances of recently used sessions and deserializing the
+     * others.
+     *
+     * @return all stored sessions.
+     */
+    @Override
+    public Collection<Session> getActiveSessions() {
+        List<Session> sessions = new ArrayList<Session>(handles.size());
+        for (Serializable id : handles.keySet()) {
+            Session session = getCachedSession(id);
+            if (session == null) {
+                session = doReadSession(id);
+            }
+            if (session != null) {
+                sessions.add(session);
+            }
+        }
+        if (sessions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection(sessions);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.ValidatingSession;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index of session ids by the time the sessions will expire ({@code lastAccessTime + timeout}), allowing session
+ * validation to only visit the sessions that may actually have expired instead of every active session.
+ * <p/>
+ * Expiration times are grouped into buckets of {@link #getGranularity() granularity} milliseconds.  A session is only
+ * moved to another bucket when its expiration time crosses a bucket boundary, so the frequent
+ * {@link #update(Session) updates} caused by session touches are usually a single lock-free map lookup.
+ * Sessions that never expire (with a negative timeout) or that are no longer
+ * {@link ValidatingSession#isValid() valid} are not indexed.
+ * <p/>
+ * This implementation is thread-safe.
+ *
+ * @see ExpiryIndexedSessionDAO
+ * @since 1.3
+ */
+public class SessionExpiryIndex {
+
+    /**
+     * The default bucket granularity, equal to one minute.
+     */
+    public static final long DEFAULT_GRANULARITY = 60 * 1000;
+
+    private final long granularity;
+
+    /**
+     * The bucket each indexed session id is currently in.
+     */
+    private final ConcurrentMap<Serializable, Long> buckets;
+
+    /**
+     * The session ids in each bucket, ordered by bucket.  Guarded by itself.
+     */
+    private final TreeMap<Long, Set<Serializable>> queue;
+
+    public SessionExpiryIndex() {
+        this(DEFAULT_GRANULARITY);
+    }
+
+    public SessionExpiryIndex(long granularity) {
+        if (granularity <= 0) {
+            throw new IllegalArgumentException("granularity must be greater than zero.");
+        }
+        this.granularity = granularity;
+        this.buckets = new ConcurrentHashMap<Serializable, Long>();
+        this.queue = new TreeMap<Long, Set<Serializable>>();
+    }
+
+    /**
+     * Returns the granularity in milliseconds by which expiration times are grouped.
+     *
+     * @return the granularity in milliseconds by which expiration times are grouped.
+     */
+    public long getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Indexes the specified session by its current expiration time, or removes it from the index if it never
+     * expires or is no longer valid.
+     *
+     * @param session the session that was created or changed
+     */
+    public void update(Session session) {
+        Serializable id = session.getId();
+        if (id == null) {
+            return;
+        }
+        update(id, getExpirationTime(session));
+    }
+
+    /**
+     * Indexes the session with the specified id by the specified expiration time, or removes it from the index if
+     * the expiration time is negative.  This allows sessions to be indexed without being materialized, for example
+     * by {@code SessionDAO}s that store expiration times alongside serialized sessions.
+     *
+     * @param sessionId  the id of the session that was created or changed
+     * @param expiration the time in milliseconds at which the session expires if it is not accessed again, as
+     *                   returned by {@link #getExpirationTime(Session)}, or {@code -1} to remove the session
+     */
+    public void update(Serializable sessionId, long expiration) {
+        if (expiration < 0) {
+            remove(sessionId);
+            return;
+        }
+        Long bucket = expiration / this.granularity;
+        if (bucket.equals(this.buckets.get(sessionId))) {
+            return;
+        }
+        synchronized (this.queue) {
+            Long previous = this.buckets.put(sessionId, bucket);
+            if (previous != null) {
+                removeFromBucket(previous, sessionId);
+            }
+            Set<Serializable> ids = this.queue.get(bucket);
+            if (ids == null) {
+                ids = new HashSet<Serializable>();
+                this.queue.put(bucket, ids);
+            }
+            ids.add(sessionId);
+        }
+    }
+
+    /**
+     * Removes the session with the specified id from the index.
+     *
+     * @param sessionId the id of the session that was deleted or invalidated
+     */
+    public void remove(Serializable sessionId) {
+        if (sessionId == null || !this.buckets.containsKey(sessionId)) {
+            return;
+        }
+        synchronized (this.queue) {
+            Long bucket = this.buckets.remove(sessionId);
+            if (bucket != null) {
+                removeFromBucket(bucket, sessionId);
+            }
+        }
+    }
+
+    private void removeFromBucket(Long bucket, Serializable id) {
+        Set<Serializable> ids = this.queue.get(bucket);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            this.queue.remove(bucket);
+        }
+    }
+
+    /**
+     * Returns the ids of all indexed sessions that may have expired at the specified time, i.e. whose expiration
+     * time is in a bucket at or before the specified time's bucket.  Sessions remain indexed until they are
+     * {@link #update(Session) updated} or {@link #remove(Serializable) removed}.
+     *
+     * @param time the time in milliseconds at which sessions may have expired
+     * @return the ids of all indexed sessions that may have expired at the specified time.
+     */
+    public Collection<Serializable> getExpirationCandidates(long time) {
+        Collection<Serializable> candidates = new ArrayList<Serializable>();
+        synchronized (this.queue) {
+            SortedMap<Long, Set<Serializable>> due = this.queue.headMap(time / this.granularity + 1);
+            for (Set<Serializable> ids : due.values()) {
+                candidates.addAll(ids);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the number of indexed sessions.
+     *
+     * @return the number of indexed sessions.
+     */
+    public int size() {
+        return this.buckets.size();
+    }
+
+    /**
+     * Removes all sessions from the index.
+     */
+    public void clear() {
+        synchronized (this.queue) {
+            this.buckets.clear();
+            this.queue.clear();
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds at which the specified session will expire if it is not accessed again, or
+     * {@code -1} if it never expires or is already invalid.
+     *
+     * @param session the session
+     * @return the time at which the specified session will expire, or {@code -1} if it never expires.
+     */
+    protected long getExpirationTime(Session session) {
+        if (session instanceof ValidatingSession && !((ValidatingSession) session).isValid()) {
+            return -1;
+        }
+        long timeout = session.getTimeout();
+        if (timeout < 0) {
+            return -1;
+        }
+        Date lastAccessTime = session.getLastAccessTime();
+        //a session without a last access time is considered expired (validation will decide):
+        return lastAccessTime != null ? lastAccessTime.getTime() + timeout : 0;
+    }
+}
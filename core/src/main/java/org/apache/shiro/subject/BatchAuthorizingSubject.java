@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.subject;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.PermissionMapper;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A {@link Subject} that can check a large number of permissions at once, for example to filter a result list down
+ * to the rows the Subject may see.  It is implemented by the
+ * {@link org.apache.shiro.subject.support.DelegatingSubject DelegatingSubject}, so callers can test for it with
+ * {@code instanceof} and fall back to {@link #isPermitted(Permission)} per object for other {@code Subject}s.
+ *
+ * @see org.apache.shiro.authz.BatchAuthorizer
+ * @since 1.3
+ */
+public interface BatchAuthorizingSubject extends Subject {
+
+    /**
+     * Checks which of the specified objects this Subject may access and returns a bit set in which bit {@code i} is
+     * set if and only if this Subject is permitted the {@link PermissionMapper#getPermission permission} of the
+     * {@code i}th object (in iteration order).
+     * <p/>
+     * This is a performance-enhancing method for filtering large lists (e.g. row-level security): the Subject's
+     * authorization data is looked up once for the whole collection instead of once per object, as would be the case
+     * with an {@link #isPermitted(Permission)} call per object.  Objects for which the mapper returns {@code null} are
+     * never permitted.
+     *
+     * @param items  the objects to check
+     * @param mapper maps each object to the permission required to access it
+     * @param <T>    the type of the objects being checked
+     * @return a bit set with a set bit at the index of each permitted object.
+     */
+    <T> BitSet filterPermitted(Collection<T> items, PermissionMapper<? super T> mapper);
+}
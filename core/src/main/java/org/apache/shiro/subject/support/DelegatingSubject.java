@@ -22,7 +22,9 @@ import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.HostAuthenticationToken;
 import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.BatchAuthorizer;
 import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.PermissionMapper;
 import org.apache.shiro.authz.UnauthenticatedException;
 import org.apache.shiro.mgt.SecurityManager;
 import org.apache.shiro.session.InvalidSessionException;
@@ -31,6 +33,7 @@ import org.apache.shiro.session.Session;
 import org.apache.shiro.session.SessionException;
 import org.apache.shiro.session.mgt.DefaultSessionContext;
 import org.apache.shiro.session.mgt.SessionContext;
+import org.apache.shiro.subject.BatchAuthorizingSubject;
 import org.apache.shiro.subject.ExecutionException;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
@@ -39,6 +42,7 @@ import org.apache.shiro.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -68,7 +72,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
  *
  * @since 0.1
  */
-public class DelegatingSubject implements Subject {
+public class DelegatingSubject implements BatchAuthorizingSubject {
 
     private static final Logger log = LoggerFactory.getLogger(DelegatingSubject.class);
 
@@ -186,6 +190,25 @@ public class DelegatingSubject implements Subject {
         return hasPrincipals() && securityManager.isPermittedAll(getPrincipals(), permissions);
     }
 
+    public <T> BitSet filterPermitted(Collection<T> items, PermissionMapper<? super T> mapper) {
+        if (!hasPrincipals()) {
+            return new BitSet();
+        }
+        if (securityManager instanceof BatchAuthorizer) {
+            return ((BatchAuthorizer) securityManager).filterPermitted(getPrincipals(), items, mapper);
+        }
+        BitSet permitted = new BitSet(items.size());
+        int i = 0;
+        for (T item : items) {
+            Permission permission = mapper.getPermission(item);
+            if (permission != null && securityManager.isPermitted(getPrincipals(), permission)) {
+                permitted.set(i);
+            }
+            i++;
+        }
+        return permitted;
+    }
+
     protected void assertAuthzCheckPossible() throws AuthorizationException {
         if (!hasPrincipals()) {
             String msg = "This subject is anonymous - it does not have any identifying principals and " +
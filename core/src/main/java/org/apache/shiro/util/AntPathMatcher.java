@@ -77,6 +77,16 @@ public class AntPathMatcher implements PatternMatcher {
         this.pathSeparator = (pathSeparator != null ? pathSeparator : DEFAULT_PATH_SEPARATOR);
     }
 
+    /**
+     * Returns the path separator used for pattern parsing.  Default is "/", as in Ant.
+     *
+     * @return the path separator used for pattern parsing.
+     * @since 1.3
+     */
+    public String getPathSeparator() {
+        return this.pathSeparator;
+    }
+
 
     public boolean isPattern(String path) {
         return (path.indexOf('*') != -1 || path.indexOf('?') != -1);
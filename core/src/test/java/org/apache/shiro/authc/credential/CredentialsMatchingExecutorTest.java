@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authc.credential;
+
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.crypto.SecureRandomNumberGenerator;
+import org.apache.shiro.crypto.hash.Sha256Hash;
+import org.apache.shiro.util.ByteSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link CredentialsMatchingExecutor} class.
+ *
+ * @since 1.3
+ */
+public class CredentialsMatchingExecutorTest {
+
+    private CredentialsMatchingExecutor executor;
+    private ExecutorService callers;
+    private CountDownLatch blocker;
+
+    @Before
+    public void setUp() {
+        executor = new CredentialsMatchingExecutor();
+        executor.setThreads(1);
+        callers = Executors.newCachedThreadPool();
+        blocker = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        blocker.countDown();
+        callers.shutdownNow();
+        executor.destroy();
+    }
+
+    /**
+     * Submits a match from another thread, returning once it is queued or running.
+     */
+    private Future<String> submit(final String source, final Callable<String> match) throws InterruptedException {
+        int queued = executor.getQueueSize() + executor.getActiveCount();
+        Future<String> future = callers.submit(new Callable<String>() {
+            public String call() {
+                return executor.execute(source, match);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getQueueSize() + executor.getActiveCount() == queued && !future.isDone()) {
+            assertTrue("Match was not submitted in time.", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private Callable<String> blocking(final String result) {
+        return new Callable<String>() {
+            public String call() throws InterruptedException {
+                blocker.await();
+                return result;
+            }
+        };
+    }
+
+    private void assertRejected(String source) {
+        try {
+            executor.execute(source, blocking("rejected"));
+            fail("Match should have been rejected.");
+        } catch (CredentialsMatchingRejectedException expected) {
+        }
+    }
+
+    @Test
+    public void testExecute() {
+        assertEquals("result", executor.execute("10.0.0.1", new Callable<String>() {
+            public String call() {
+                return "result";
+            }
+        }));
+        try {
+            executor.execute((String) null, new Callable<String>() {
+                public String call() {
+                    throw new IllegalStateException("propagated");
+                }
+            });
+            fail("Runtime exceptions should be propagated.");
+        } catch (IllegalStateException expected) {
+            assertEquals("propagated", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testQueueLimit() throws Exception {
+        executor.setMaxQueueSize(2);
+        Future<String> running = submit("a", blocking("a"));
+        Future<String> queued1 = submit("b", blocking("b"));
+        Future<String> queued2 = submit("c", blocking("c"));
+        assertEquals(2, executor.getQueueSize());
+        assertEquals(1, executor.getActiveCount());
+
+        assertRejected("d");
+        assertEquals(1, executor.getRejectedCount());
+
+        blocker.countDown();
+        assertEquals("a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("b", queued1.get(5, TimeUnit.SECONDS));
+        assertEquals("c", queued2.get(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void testPerSourceLimit() throws Exception {
+        executor.setMaxPendingPerSource(2);
+        submit("attacker", blocking("1"));
+        submit("attacker", blocking("2"));
+        assertRejected("attacker");
+        Future<String> other = submit("user", blocking("user"));
+        blocker.countDown();
+        assertEquals("user", other.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSourcesTakeTurns() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        submit("attacker", blocking("first"));
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (String source : new String[]{"attacker", "attacker", "attacker", "user"}) {
+            final String name = source + futures.size();
+            futures.add(submit(source, new Callable<String>() {
+                public String call() {
+                    order.add(name);
+                    return name;
+                }
+            }));
+        }
+        blocker.countDown();
+        for (Future<String> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals("attacker0", order.get(0));
+        assertEquals("user3", order.get(1));
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        executor.setMaxWaitTime(50);
+        submit("a", blocking("a"));
+        assertRejected("b");
+        assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void testHashedCredentialsMatcher() {
+        HashedCredentialsMatcher matcher = new HashedCredentialsMatcher(Sha256Hash.ALGORITHM_NAME);
+        matcher.setHashIterations(1024);
+        matcher.setMatchingExecutor(executor);
+        ByteSource salt = new SecureRandomNumberGenerator().nextBytes();
+        Object hashedPassword = new Sha256Hash("password", salt, 1024);
+        SimpleAuthenticationInfo account = new SimpleAuthenticationInfo("username", hashedPassword, salt, "realm");
+
+        assertTrue(matcher.doCredentialsMatch(new UsernamePasswordToken("username", "password", false, "10.0.0.1"),
+                account));
+        assertFalse(matcher.doCredentialsMatch(new UsernamePasswordToken("username", "wrong"), account));
+        assertEquals(2, executor.getCompletedCount());
+        assertTrue(executor.getAverageExecutionTime() > 0);
+    }
+
+    @Test
+    public void testPasswordMatcher() {
+        PasswordMatcher matcher = new PasswordMatcher();
+        matcher.setMatchingExecutor(executor);
+        String encrypted = new DefaultPasswordService().encryptPassword("password");
+        SimpleAuthenticationInfo account = new SimpleAuthenticationInfo("username", encrypted, "realm");
+
+        assertTrue(matcher.doCredentialsMatch(new UsernamePasswordToken("username", "password"), account));
+        assertFalse(matcher.doCredentialsMatch(new UsernamePasswordToken("username", "wrong"), account));
+    }
+}
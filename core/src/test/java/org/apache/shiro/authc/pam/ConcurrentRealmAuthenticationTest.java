@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authc.pam;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.realm.Realm;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ModularRealmAuthenticator} multi-realm attempts with a
+ * {@link ModularRealmAuthenticator#setRealmExecutor realmExecutor} and for strategy short-circuiting.
+ *
+ * @since 1.3
+ */
+public class ConcurrentRealmAuthenticationTest {
+
+    private static final AuthenticationToken TOKEN = new UsernamePasswordToken("jsmith", "secret");
+
+    private ExecutorService executor;
+    private ModularRealmAuthenticator authenticator;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        authenticator = new ModularRealmAuthenticator();
+        authenticator.setRealmExecutor(executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAtLeastOneSuccessfulAggregatesAllRealms() {
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("realm1", true, 50));
+        realms.add(new TestRealm("realm2", true, 0));
+        realms.add(new TestRealm("realm3", false, 0));
+        authenticator.setRealms(realms);
+
+        AuthenticationInfo info = authenticator.authenticate(TOKEN);
+        assertEquals(2, info.getPrincipals().getRealmNames().size());
+    }
+
+    @Test
+    public void testFirstSuccessfulShortCircuits() {
+        FirstSuccessfulStrategy strategy = new FirstSuccessfulStrategy();
+        strategy.setStopAfterFirstSuccess(true);
+        authenticator.setAuthenticationStrategy(strategy);
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("fast", true, 0));
+        realms.add(new TestRealm("slow", true, 10000));
+        authenticator.setRealms(realms);
+
+        long start = System.currentTimeMillis();
+        AuthenticationInfo info = authenticator.authenticate(TOKEN);
+        //the slow realm is not waited for:
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals("fast", info.getPrincipals().getRealmNames().iterator().next());
+    }
+
+    @Test
+    public void testFirstSuccessfulReturnsFastestSuccess() {
+        FirstSuccessfulStrategy strategy = new FirstSuccessfulStrategy();
+        strategy.setStopAfterFirstSuccess(true);
+        authenticator.setAuthenticationStrategy(strategy);
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("slow", true, 10000));
+        realms.add(new TestRealm("missing", false, 0));
+        realms.add(new TestRealm("fast", true, 50));
+        authenticator.setRealms(realms);
+
+        long start = System.currentTimeMillis();
+        AuthenticationInfo info = authenticator.authenticate(TOKEN);
+        //the slow realm earlier in iteration order is not waited for:
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals("fast", info.getPrincipals().getRealmNames().iterator().next());
+    }
+
+    @Test
+    public void testFirstSuccessfulRealmTimeout() {
+        FirstSuccessfulStrategy strategy = new FirstSuccessfulStrategy();
+        strategy.setStopAfterFirstSuccess(true);
+        authenticator.setAuthenticationStrategy(strategy);
+        authenticator.setRealmTimeout(50);
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("slow", true, 10000));
+        realms.add(new TestRealm("missing", false, 0));
+        authenticator.setRealms(realms);
+
+        long start = System.currentTimeMillis();
+        try {
+            authenticator.authenticate(TOKEN);
+            fail("Authentication should fail when no realm finds the account in time.");
+        } catch (AuthenticationException expected) {
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testRealmsConsultedConcurrently() {
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("realm1", false, 1000));
+        realms.add(new TestRealm("realm2", true, 1000));
+        authenticator.setRealms(realms);
+
+        long start = System.currentTimeMillis();
+        AuthenticationInfo info = authenticator.authenticate(TOKEN);
+        assertTrue(System.currentTimeMillis() - start < 1900);
+        assertEquals("realm2", info.getPrincipals().getRealmNames().iterator().next());
+    }
+
+    @Test
+    public void testFirstSuccessfulShortCircuitsSerially() {
+        FirstSuccessfulStrategy strategy = new FirstSuccessfulStrategy();
+        strategy.setStopAfterFirstSuccess(true);
+        authenticator.setAuthenticationStrategy(strategy);
+        authenticator.setRealmExecutor(null);
+        TestRealm first = new TestRealm("first", true, 0);
+        TestRealm second = new TestRealm("second", true, 0);
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(first);
+        realms.add(second);
+        authenticator.setRealms(realms);
+
+        AuthenticationInfo info = authenticator.authenticate(TOKEN);
+        assertEquals("first", info.getPrincipals().getRealmNames().iterator().next());
+        assertEquals(1, first.attempts.get());
+        assertEquals(0, second.attempts.get());
+    }
+
+    @Test
+    public void testRealmTimeout() {
+        authenticator.setAuthenticationStrategy(new AllSuccessfulStrategy());
+        authenticator.setRealmTimeout(50);
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("slow", true, 10000));
+        realms.add(new TestRealm("fast", true, 0));
+        authenticator.setRealms(realms);
+
+        try {
+            authenticator.authenticate(TOKEN);
+            fail("A realm that does not respond in time must fail an AllSuccessfulStrategy attempt.");
+        } catch (AuthenticationException expected) {
+        }
+    }
+
+    @Test
+    public void testNoSuccessfulRealm() {
+        List<Realm> realms = new ArrayList<Realm>();
+        realms.add(new TestRealm("realm1", false, 0));
+        realms.add(new TestRealm("realm2", false, 10));
+        authenticator.setRealms(realms);
+
+        try {
+            authenticator.authenticate(TOKEN);
+            fail("Authentication should fail when no realm finds the account.");
+        } catch (AuthenticationException expected) {
+        }
+    }
+
+    private static class TestRealm implements Realm {
+
+        private final String name;
+        private final boolean found;
+        private final long delay;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private TestRealm(String name, boolean found, long delay) {
+            this.name = name;
+            this.found = found;
+            this.delay = delay;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean supports(AuthenticationToken token) {
+            return true;
+        }
+
+        public AuthenticationInfo getAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+            attempts.incrementAndGet();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return found ? new SimpleAuthenticationInfo(token.getPrincipal(), token.getCredentials(), name) : null;
+        }
+    }
+}
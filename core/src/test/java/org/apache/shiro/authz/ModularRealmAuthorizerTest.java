@@ -18,10 +18,16 @@
  */
 package org.apache.shiro.authz;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Assert;
 
@@ -29,9 +35,11 @@ import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authz.permission.RolePermissionResolver;
+import org.apache.shiro.authz.permission.WildcardPermission;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.realm.Realm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.junit.Test;
 
 public class ModularRealmAuthorizerTest
@@ -95,6 +103,149 @@ public class ModularRealmAuthorizerTest
         
     }
     
+    @Test
+    public void testConcurrentRealmChecks()
+    {
+        Collection<Realm> realms = new ArrayList<Realm>();
+        realms.add( new FixedAuthorizingRealm( false, 0 ) );
+        realms.add( new FixedAuthorizingRealm( true, 0 ) );
+
+        ModularRealmAuthorizer modRealmAuthz = new ModularRealmAuthorizer( realms );
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            modRealmAuthz.setRealmExecutor( executor );
+            assertTrue( modRealmAuthz.isPermitted( null, "foo:bar" ) );
+            assertTrue( modRealmAuthz.hasRole( null, "admin" ) );
+            assertTrue( modRealmAuthz.isPermittedAll( null, "foo:bar", "foo:baz" ) );
+
+            // a slow realm does not delay a grant from a faster one:
+            realms.clear();
+            realms.add( new FixedAuthorizingRealm( true, 10000 ) );
+            realms.add( new FixedAuthorizingRealm( true, 0 ) );
+            long start = System.currentTimeMillis();
+            assertTrue( modRealmAuthz.isPermitted( null, "foo:bar" ) );
+            assertTrue( System.currentTimeMillis() - start < 5000 );
+
+            // realms that do not respond in time do not grant the check:
+            realms.clear();
+            realms.add( new FixedAuthorizingRealm( true, 10000 ) );
+            realms.add( new FixedAuthorizingRealm( false, 0 ) );
+            modRealmAuthz.setRealmTimeout( 50 );
+            assertFalse( modRealmAuthz.isPermitted( null, "foo:bar" ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFilterPermitted()
+    {
+        Collection<Realm> realms = new ArrayList<Realm>();
+        realms.add( new PermissionsRealm( "document:read:1" ) );
+        realms.add( new PermissionsRealm( "document:*:4" ) );
+
+        ModularRealmAuthorizer modRealmAuthz = new ModularRealmAuthorizer( realms );
+        List<String> ids = Arrays.asList( "1", "2", "3", "4" );
+        PrincipalCollection principals = new SimplePrincipalCollection( "jsmith", "test" );
+        BitSet permitted = modRealmAuthz.filterPermitted( principals, ids, new PermissionMapper<String>()
+        {
+            public Permission getPermission( String id )
+            {
+                return new WildcardPermission( "document:read:" + id );
+            }
+        } );
+
+        BitSet expected = new BitSet();
+        expected.set( 0 );
+        expected.set( 3 );
+        Assert.assertEquals( expected, permitted );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void testConcurrentRealmCheckFailure()
+    {
+        Collection<Realm> realms = new ArrayList<Realm>();
+        realms.add( new FixedAuthorizingRealm( false, 0 ) );
+        realms.add( new FixedAuthorizingRealm( false, 0 )
+        {
+            public boolean isPermitted( PrincipalCollection principals, String permission )
+            {
+                throw new IllegalStateException();
+            }
+        } );
+
+        ModularRealmAuthorizer modRealmAuthz = new ModularRealmAuthorizer( realms );
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            modRealmAuthz.setRealmExecutor( executor );
+            modRealmAuthz.isPermitted( null, "foo:bar" );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    class PermissionsRealm extends MockAuthorizingRealm
+    {
+        private final String permission;
+
+        PermissionsRealm( String permission )
+        {
+            this.permission = permission;
+        }
+
+        @Override
+        protected AuthorizationInfo doGetAuthorizationInfo( PrincipalCollection principals )
+        {
+            SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+            info.addStringPermission( permission );
+            return info;
+        }
+    }
+
+    class FixedAuthorizingRealm extends MockAuthorizingRealm
+    {
+        private final boolean granted;
+        private final long delay;
+
+        FixedAuthorizingRealm( boolean granted, long delay )
+        {
+            this.granted = granted;
+            this.delay = delay;
+        }
+
+        private boolean answer()
+        {
+            if ( delay > 0 )
+            {
+                try
+                {
+                    Thread.sleep( delay );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return granted;
+        }
+
+        public boolean isPermitted( PrincipalCollection principals, String permission )
+        {
+            return answer();
+        }
+
+        public boolean hasRole( PrincipalCollection principals, String roleIdentifier )
+        {
+            return answer();
+        }
+    }
+
     class MockAuthorizingRealm extends AuthorizingRealm
     {
 
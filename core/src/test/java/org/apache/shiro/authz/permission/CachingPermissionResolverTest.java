@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.config.ReflectionBuilder;
+import org.apache.shiro.realm.SimpleAccountRealm;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link CachingPermissionResolver} class.
+ *
+ * @since 1.3
+ */
+public class CachingPermissionResolverTest {
+
+    @Test
+    public void testMemoizes() {
+        CachingPermissionResolver resolver = new CachingPermissionResolver();
+        Permission p1 = resolver.resolvePermission("newsletter:edit");
+        Permission p2 = resolver.resolvePermission("newsletter:edit");
+        assertSame(p1, p2);
+        assertEquals(new WildcardPermission("newsletter:edit"), p1);
+        assertEquals(1, resolver.getMissCount());
+        assertEquals(1, resolver.getHitCount());
+        assertEquals(1, resolver.size());
+
+        resolver.clear();
+        assertEquals(0, resolver.size());
+        assertNotSame(p1, resolver.resolvePermission("newsletter:edit"));
+    }
+
+    @Test
+    public void testBounded() {
+        CachingPermissionResolver resolver = new CachingPermissionResolver(new WildcardPermissionResolver(), 10);
+        Permission hot = resolver.resolvePermission("hot");
+        for (int i = 0; i < 100; i++) {
+            resolver.resolvePermission("perm:" + i);
+            //keep the hot permission referenced so it survives eviction:
+            assertSame(hot, resolver.resolvePermission("hot"));
+        }
+        assertTrue(resolver.size() <= 10);
+        assertEquals(91, resolver.getEvictionCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        CachingPermissionResolver resolver = new CachingPermissionResolver(new WildcardPermissionResolver(), 0);
+        assertNotSame(resolver.resolvePermission("foo"), resolver.resolvePermission("foo"));
+        assertEquals(0, resolver.size());
+        assertEquals(2, resolver.getMissCount());
+    }
+
+    @Test
+    public void testCompact() {
+        CachingPermissionResolver resolver = new CachingPermissionResolver();
+        assertFalse(resolver.isCompact());
+        resolver.resolvePermission("newsletter:edit");
+
+        //configured through the realm, as in INI:
+        Map<String, String> defs = new LinkedHashMap<String, String>();
+        defs.put("realm", SimpleAccountRealm.class.getName());
+        defs.put("realm.permissionResolver.compact", "true");
+        SimpleAccountRealm realm = (SimpleAccountRealm) new ReflectionBuilder().buildObjects(defs).get("realm");
+        CachingPermissionResolver configured = (CachingPermissionResolver) realm.getPermissionResolver();
+        assertTrue(configured.isCompact());
+        assertTrue(((WildcardPermissionResolver) configured.getDelegate()).isCompact());
+
+        resolver.setCompact(true);
+        assertEquals(0, resolver.size());
+        assertTrue(resolver.resolvePermission("newsletter:edit") instanceof CompactWildcardPermission);
+    }
+
+    @Test
+    public void testSizeConsistentWithConcurrentClear() throws Exception {
+        final CachingPermissionResolver resolver = new CachingPermissionResolver();
+        final int keys = 50;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        resolver.resolvePermission("domain:action:" + ((i + offset) % keys));
+                        if (offset == 0 && i % 100 == 0) {
+                            resolver.clear();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //every permission counted by size() must actually be cached, and vice versa:
+        int size = resolver.size();
+        long hits = resolver.getHitCount();
+        for (int i = 0; i < keys; i++) {
+            resolver.resolvePermission("domain:action:" + i);
+        }
+        assertEquals(size, resolver.getHitCount() - hits);
+        assertEquals(keys, resolver.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompactRequiresWildcardDelegate() {
+        new CachingPermissionResolver(new PermissionResolver() {
+            public Permission resolvePermission(String permissionString) {
+                return new AllPermission();
+            }
+        }).setCompact(true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPermissionNotCached() {
+        new CachingPermissionResolver().resolvePermission("::");
+    }
+}
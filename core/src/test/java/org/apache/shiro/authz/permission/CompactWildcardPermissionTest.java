@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link CompactWildcardPermission} class.
+ *
+ * @since 1.3
+ */
+public class CompactWildcardPermissionTest {
+
+    private static final String[] PERMISSIONS = {
+            "something", "SOMETHING", "else", "*", "newsletter:view,edit", "newsletter:edit,view", "newsletter:*",
+            "newsletter:*:13", "newsletter:view:13", "newsletter:view,edit:12,13", "*:view", "printer:print:*:*",
+            "printer:print", "printer:print:lp7200:tray1", "printer", "printer:*,print", "a:,b"
+    };
+
+    @Test
+    public void testSameSemanticsAsWildcardPermission() {
+        WildcardTokenTable table = new WildcardTokenTable();
+        for (String granted : PERMISSIONS) {
+            WildcardPermission wp = new WildcardPermission(granted);
+            CompactWildcardPermission cwp = new CompactWildcardPermission(granted, table);
+            for (String checked : PERMISSIONS) {
+                WildcardPermission other = new WildcardPermission(checked);
+                CompactWildcardPermission compactOther = new CompactWildcardPermission(checked, table);
+                boolean expected = wp.implies(other);
+                String msg = "[" + granted + "] implies [" + checked + "]";
+                assertEquals(msg, expected, cwp.implies(compactOther));
+                assertEquals(msg, expected, cwp.implies(other));
+                assertEquals(msg, expected, wp.implies(compactOther));
+                assertEquals(msg, expected, cwp.implies(new CompactWildcardPermission(checked, new WildcardTokenTable())));
+            }
+        }
+    }
+
+    @Test
+    public void testCaseSensitive() {
+        WildcardTokenTable table = new WildcardTokenTable();
+        CompactWildcardPermission p1 = new CompactWildcardPermission("BLAHBLAH", true, table);
+        CompactWildcardPermission p2 = new CompactWildcardPermission("bLAHBLAH", true, table);
+        assertFalse(p1.implies(p2));
+        assertFalse(p2.implies(p1));
+        assertTrue(new CompactWildcardPermission("BLAHBLAH", table).implies(
+                new CompactWildcardPermission("bLAHBLAH", table)));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        WildcardTokenTable table = new WildcardTokenTable();
+        CompactWildcardPermission p1 = new CompactWildcardPermission("newsletter:view,edit", table);
+        CompactWildcardPermission p2 = new CompactWildcardPermission("newsletter:edit,view", table);
+        CompactWildcardPermission p3 = new CompactWildcardPermission("newsletter:edit,view", new WildcardTokenTable());
+        assertEquals(p1, p2);
+        assertEquals(p1, p3);
+        assertEquals(p1.hashCode(), p2.hashCode());
+        assertEquals(p1.hashCode(), p3.hashCode());
+        assertEquals(new WildcardPermission("newsletter:view,edit").hashCode(), p1.hashCode());
+        assertFalse(p1.equals(new CompactWildcardPermission("newsletter:view", table)));
+
+        //symmetric with regular permissions:
+        WildcardPermission wp = new WildcardPermission("newsletter:edit,view");
+        assertEquals(p1, wp);
+        assertEquals(wp, p1);
+        assertFalse(new WildcardPermission("newsletter:view").equals(p1));
+        //materialized once for mixed comparisons:
+        assertSame(p1.getParts(), p1.getParts());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        CompactWildcardPermission cwp = new CompactWildcardPermission("Newsletter:view,edit:,13", new WildcardTokenTable());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(cwp);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        Object deserialized = ois.readObject();
+
+        assertTrue(deserialized instanceof WildcardPermission);
+        assertEquals(new WildcardPermission("newsletter:view,edit:,13"), deserialized);
+    }
+
+    @Test
+    public void testResolver() {
+        WildcardPermissionResolver resolver = new WildcardPermissionResolver();
+        assertFalse(resolver.resolvePermission("foo:bar") instanceof CompactWildcardPermission);
+        resolver.setCompact(true);
+        assertNotNull(resolver.getTokenTable());
+        CompactWildcardPermission p = (CompactWildcardPermission) resolver.resolvePermission("foo:bar");
+        assertSame(resolver.getTokenTable(), p.getTokenTable());
+        assertTrue(resolver.resolvePermission("foo:*").implies(p));
+    }
+}
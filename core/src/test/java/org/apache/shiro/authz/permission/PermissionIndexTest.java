@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.authz.permission;
+
+import org.apache.shiro.authz.Permission;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link PermissionIndex} class.
+ *
+ * @since 1.3
+ */
+public class PermissionIndexTest {
+
+    private static final String[] GRANTED = {
+            "printer:print:lp7200",
+            "newsletter:view,edit",
+            "newsletter:*:13",
+            "*:view",
+            "user:edit:*:*",
+            "document",
+            "report:read,write:a,b"
+    };
+
+    private static final String[] CHECKED = {
+            "printer:print:lp7200", "printer:print:epsoncolor", "printer:print", "printer",
+            "newsletter:view", "newsletter:edit", "newsletter:view,edit", "newsletter:create", "newsletter:create:13",
+            "newsletter:create:14", "anything:view", "anything:view:1", "anything:edit",
+            "user:edit", "user:edit:1", "user:edit:1:2", "user:edit:1:2:3", "user:view:1",
+            "document", "document:read:1", "documents", "*",
+            "report:read:a", "report:read,write:b", "report:read,write:a,b,c", "report:delete:a"
+    };
+
+    private static boolean linearImplies(List<Permission> granted, Permission p) {
+        for (Permission perm : granted) {
+            if (perm.implies(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testEquivalentToLinearScan() {
+        List<Permission> granted = new ArrayList<Permission>();
+        for (String s : GRANTED) {
+            granted.add(new WildcardPermission(s));
+        }
+        PermissionIndex index = new PermissionIndex(granted);
+        assertEquals(GRANTED.length, index.size());
+
+        for (String s : CHECKED) {
+            WildcardPermission p = new WildcardPermission(s);
+            assertEquals("Mismatch checking [" + s + "]", linearImplies(granted, p), index.implies(p));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        PermissionIndex index = new PermissionIndex(null);
+        assertTrue(index.isEmpty());
+        assertFalse(index.implies(new WildcardPermission("foo")));
+
+        index = new PermissionIndex(Collections.<Permission>emptySet());
+        assertTrue(index.isEmpty());
+        assertFalse(index.implies(new AllPermission()));
+    }
+
+    @Test
+    public void testNonWildcardPermissions() {
+        Permission custom = new Permission() {
+            public boolean implies(Permission p) {
+                return p instanceof AllPermission;
+            }
+        };
+        PermissionIndex index = new PermissionIndex(Arrays.asList(custom, new WildcardPermission("foo:bar")));
+        assertTrue(index.implies(new AllPermission()));
+        assertTrue(index.implies(new WildcardPermission("foo:bar")));
+        assertFalse(index.implies(new WildcardPermission("foo:baz")));
+
+        index = new PermissionIndex(Arrays.<Permission>asList(new AllPermission()));
+        assertTrue(index.implies(new WildcardPermission("foo:baz")));
+    }
+
+    @Test
+    public void testOverriddenImplies() {
+        Permission restricted = new WildcardPermission("foo:*") {
+            @Override
+            public boolean implies(Permission p) {
+                return false;
+            }
+        };
+        PermissionIndex index = new PermissionIndex(Arrays.asList(restricted));
+        assertFalse(index.implies(new WildcardPermission("foo:bar")));
+    }
+
+    @Test
+    public void testCompactPartsNotRetained() throws Exception {
+        WildcardTokenTable table = new WildcardTokenTable();
+        CompactWildcardPermission granted = new CompactWildcardPermission("newsletter:view,edit", table);
+        CompactWildcardPermission checked = new CompactWildcardPermission("newsletter:edit", table);
+        PermissionIndex index = new PermissionIndex(Arrays.asList(granted));
+        assertTrue(index.implies(checked));
+        assertTrue(index.implies(new WildcardPermission("newsletter:view")));
+
+        Field parts = CompactWildcardPermission.class.getDeclaredField("parts");
+        parts.setAccessible(true);
+        assertNull(parts.get(granted));
+        assertNull(parts.get(checked));
+    }
+}
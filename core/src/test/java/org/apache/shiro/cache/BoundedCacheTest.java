@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.session.mgt.eis.EnterpriseCacheSessionDAO;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link BoundedCache} class.
+ *
+ * @since 1.3
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void testGetPutRemove() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        assertNull(cache.get("foo"));
+        assertNull(cache.put("foo", "bar"));
+        assertEquals("bar", cache.get("foo"));
+        assertEquals("bar", cache.put("foo", "baz"));
+        assertEquals(1, cache.size());
+        assertTrue(cache.keys().contains("foo"));
+        assertTrue(cache.values().contains("baz"));
+        assertEquals("baz", cache.remove("foo"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>("test", 10);
+        cache.setAdmissionEnabled(false);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(90, cache.getEvictionCount());
+        //least recently added entries are evicted first:
+        assertNull(cache.get(0));
+        assertEquals("value99", cache.get(99));
+    }
+
+    @Test
+    public void testAdmissionKeepsFrequentlyUsedEntries() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot" + i, "value");
+            for (int j = 0; j < 5; j++) {
+                cache.get("hot" + i);
+            }
+        }
+        //a scan of one-off keys must not flush out the popular entries:
+        for (int i = 0; i < 100; i++) {
+            cache.put("cold" + i, "value");
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value", cache.get("hot" + i));
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testMaxWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        cache.setAdmissionEnabled(false);
+        cache.setMaxWeight(10);
+        cache.setWeigher(new Weigher<String, String>() {
+            public int weigh(String key, String value) {
+                return value.length();
+            }
+        });
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        assertEquals(8, cache.getWeight());
+        cache.put("c", "1234");
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.getWeight());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testTimeToLive() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        cache.setTimeToLive(50);
+        cache.put("foo", "bar");
+        assertEquals("bar", cache.get("foo"));
+        Thread.sleep(100);
+        assertTrue(cache.keys().isEmpty());
+        assertNull(cache.get("foo"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testTimeToIdle() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        cache.setTimeToIdle(50);
+        cache.put("foo", "bar");
+        cache.put("baz", "bar");
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(20);
+            assertEquals("bar", cache.get("foo"));
+        }
+        Thread.sleep(60);
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testManager() {
+        BoundedCacheManager manager = new BoundedCacheManager();
+        manager.setMaxEntries(5);
+        manager.setTimeToLive(1000);
+        Cache<String, String> cache = manager.getCache("test");
+        assertTrue(cache instanceof BoundedCache);
+        assertSame(cache, manager.getCache("test"));
+        assertEquals(5, ((BoundedCache) cache).getMaxEntries());
+        assertEquals(1000, ((BoundedCache) cache).getTimeToLive());
+        assertTrue(((BoundedCache) cache).isAdmissionEnabled());
+
+        //new sessions must never be rejected, whatever the name of the active sessions cache:
+        EnterpriseCacheSessionDAO dao = new EnterpriseCacheSessionDAO();
+        dao.setActiveSessionsCacheName("sessions");
+        dao.setCacheManager(manager);
+        dao.create(new SimpleSession());
+        assertFalse(((BoundedCache) manager.getCache("sessions")).isAdmissionEnabled());
+    }
+}
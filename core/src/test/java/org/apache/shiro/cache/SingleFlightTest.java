@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.cache;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link SingleFlight} class and the {@link LoadingCache} implementations that use it.
+ *
+ * @since 1.3
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testLoadsAndCaches() {
+        LoadingCache<String, String> cache = new MapCache<String, String>("test", new HashMap<String, String>());
+        final AtomicInteger loads = new AtomicInteger();
+        CacheLoader<String, String> loader = new CacheLoader<String, String>() {
+            public String load(String key) {
+                loads.incrementAndGet();
+                return key.toUpperCase();
+            }
+        };
+        assertEquals("FOO", cache.get("foo", loader));
+        assertEquals("FOO", cache.get("foo", loader));
+        assertEquals("FOO", cache.get("foo"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testNullNotCached() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        final AtomicInteger loads = new AtomicInteger();
+        CacheLoader<String, String> loader = new CacheLoader<String, String>() {
+            public String load(String key) {
+                loads.incrementAndGet();
+                return null;
+            }
+        };
+        assertNull(cache.get("foo", loader));
+        assertNull(cache.get("foo", loader));
+        assertEquals(0, cache.size());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testExceptionPropagated() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        try {
+            cache.get("foo", new CacheLoader<String, String>() {
+                public String load(String key) {
+                    throw new IllegalStateException("boom");
+                }
+            });
+            fail("Loader exception should have been propagated.");
+        } catch (IllegalStateException expected) {
+            assertEquals("boom", expected.getMessage());
+        }
+        //a failed load is not remembered:
+        assertEquals("bar", cache.get("foo", new CacheLoader<String, String>() {
+            public String load(String key) {
+                return "bar";
+            }
+        }));
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        final BoundedCache<String, String> cache = new BoundedCache<String, String>("test");
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CacheLoader<String, String> loader = new CacheLoader<String, String>() {
+            public String load(String key) {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "value";
+            }
+        };
+
+        int threadCount = 8;
+        final String[] results = new String[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    results[index] = cache.get("key", loader);
+                }
+            });
+            threads[i].start();
+        }
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        //give the remaining threads a chance to join the in-flight load:
+        Thread.sleep(50);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(1, loads.get());
+        for (String result : results) {
+            assertEquals("value", result);
+        }
+    }
+}
@@ -25,9 +25,12 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 /**
  * Test class for the AesCipherService class.
@@ -76,4 +79,113 @@ public class AesCipherServiceTest {
             assertTrue(Arrays.equals(plaintext, decrypted));
         }
     }
+
+    @Test
+    public void testCipherReuse() {
+        AesCipherService aes = new AesCipherService();
+        byte[] key = aes.generateNewKey().getEncoded();
+        byte[] otherKey = aes.generateNewKey().getEncoded();
+        byte[] plaintext = CodecSupport.toBytes(PLAINTEXTS[1]);
+
+        ByteSource ciphertext = aes.encrypt(plaintext, key);
+        ByteSource otherCiphertext = aes.encrypt(plaintext, otherKey);
+        assertTrue(Arrays.equals(plaintext, aes.decrypt(ciphertext.getBytes(), key).getBytes()));
+        assertTrue(Arrays.equals(plaintext, aes.decrypt(otherCiphertext.getBytes(), otherKey).getBytes()));
+
+        //a failed operation must not affect subsequent ones:
+        byte[] truncated = new byte[ciphertext.getBytes().length - 1];
+        System.arraycopy(ciphertext.getBytes(), 0, truncated, 0, truncated.length);
+        try {
+            aes.decrypt(truncated, key);
+            fail("Truncated ciphertext should not decrypt.");
+        } catch (CryptoException expected) {
+        }
+        assertTrue(Arrays.equals(plaintext, aes.decrypt(ciphertext.getBytes(), key).getBytes()));
+
+        //a changed transformation must not reuse the previous cipher:
+        aes.setMode(OperationMode.CTR);
+        aes.setPaddingScheme(PaddingScheme.NONE);
+        ByteSource ctrCiphertext = aes.encrypt(plaintext, key);
+        assertTrue(ctrCiphertext.getBytes().length == plaintext.length + 16);
+        assertTrue(Arrays.equals(plaintext, aes.decrypt(ctrCiphertext.getBytes(), key).getBytes()));
+
+        aes.setCipherCachingEnabled(false);
+        assertTrue(Arrays.equals(plaintext, aes.decrypt(aes.encrypt(plaintext, key).getBytes(), key).getBytes()));
+    }
+
+    @Test
+    public void testGcm() {
+        AesCipherService aes = new AesCipherService();
+        aes.setMode(OperationMode.GCM);
+        byte[] key = aes.generateNewKey().getEncoded();
+        byte[] aad = CodecSupport.toBytes("rememberMe");
+
+        for (String plain : PLAINTEXTS) {
+            byte[] plaintext = CodecSupport.toBytes(plain);
+            byte[] ciphertext = aes.encrypt(plaintext, key).getBytes();
+            //iv + unpadded ciphertext + tag:
+            assertEquals(16 + plaintext.length + 16, ciphertext.length);
+            assertTrue(Arrays.equals(plaintext, aes.decrypt(ciphertext, key).getBytes()));
+
+            ciphertext[20] ^= 1;
+            try {
+                aes.decrypt(ciphertext, key);
+                fail("Tampered ciphertext should fail authentication.");
+            } catch (CryptoException expected) {
+            }
+
+            ciphertext = aes.encrypt(plaintext, key, aad).getBytes();
+            assertTrue(Arrays.equals(plaintext, aes.decrypt(ciphertext, key, aad).getBytes()));
+            try {
+                aes.decrypt(ciphertext, key, CodecSupport.toBytes("session"));
+                fail("Ciphertext should fail authentication with different additional data.");
+            } catch (CryptoException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testByteBufferOperations() {
+        AesCipherService aes = new AesCipherService();
+        byte[] key = aes.generateNewKey().getEncoded();
+        byte[] plaintext = CodecSupport.toBytes(PLAINTEXTS[1]);
+
+        for (OperationMode mode : new OperationMode[]{OperationMode.CBC, OperationMode.GCM}) {
+            aes.setMode(mode);
+            for (boolean direct : new boolean[]{false, true}) {
+                ByteBuffer in = ByteBuffer.wrap(plaintext);
+                ByteBuffer encrypted = direct ? ByteBuffer.allocateDirect(256) : ByteBuffer.allocate(256);
+                encrypted.position(3);
+                int written = aes.encrypt(in, encrypted, key);
+                assertEquals(0, in.remaining());
+                assertEquals(3 + written, encrypted.position());
+
+                //byte array and buffer representations are interchangeable:
+                byte[] ciphertext = new byte[written];
+                encrypted.flip();
+                encrypted.position(3);
+                encrypted.duplicate().get(ciphertext);
+                assertTrue(Arrays.equals(plaintext, aes.decrypt(ciphertext, key).getBytes()));
+
+                ByteBuffer decrypted = direct ? ByteBuffer.allocateDirect(256) : ByteBuffer.allocate(256);
+                assertEquals(plaintext.length, aes.decrypt(encrypted, decrypted, key));
+                assertEquals(0, encrypted.remaining());
+                byte[] result = new byte[plaintext.length];
+                decrypted.flip();
+                decrypted.get(result);
+                assertTrue(Arrays.equals(plaintext, result));
+            }
+
+            //a failed operation leaves the buffers untouched:
+            ByteBuffer in = ByteBuffer.wrap(plaintext);
+            ByteBuffer tooSmall = ByteBuffer.allocate(plaintext.length);
+            try {
+                aes.encrypt(in, tooSmall, key);
+                fail("Encrypting into a buffer that is too small should fail.");
+            } catch (CryptoException expected) {
+            }
+            assertEquals(0, in.position());
+            assertEquals(0, tooSmall.position());
+        }
+    }
 }
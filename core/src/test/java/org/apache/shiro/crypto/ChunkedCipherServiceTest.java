@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.crypto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link ChunkedCipherService} class.
+ *
+ * @since 1.3
+ */
+public class ChunkedCipherServiceTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private ChunkedCipherService service;
+    private byte[] key;
+
+    @Before
+    public void setUp() {
+        service = new ChunkedCipherService();
+        service.setChunkSize(CHUNK_SIZE);
+        service.setThreads(4);
+        key = new AesCipherService().generateNewKey().getEncoded();
+    }
+
+    @After
+    public void tearDown() {
+        service.destroy();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] encryptStream(byte[] plaintext) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.encrypt(new ByteArrayInputStream(plaintext), out, key);
+        return out.toByteArray();
+    }
+
+    private byte[] decryptStream(byte[] ciphertext) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.decrypt(new ByteArrayInputStream(ciphertext), out, key);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrips() {
+        for (int length : new int[]{0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 20 * CHUNK_SIZE + 7}) {
+            byte[] plaintext = randomBytes(length);
+
+            byte[] streamed = encryptStream(plaintext);
+            assertEquals(service.getCiphertextLength(length), streamed.length);
+            byte[] buffered = service.encrypt(plaintext, key).getBytes();
+            assertEquals(streamed.length, buffered.length);
+
+            //both representations are interchangeable:
+            assertArrayEquals(plaintext, decryptStream(streamed));
+            assertArrayEquals(plaintext, decryptStream(buffered));
+            assertArrayEquals(plaintext, service.decrypt(streamed, key).getBytes());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(length);
+            assertEquals(length, service.decrypt(ByteBuffer.wrap(buffered), direct, key));
+            byte[] decrypted = new byte[length];
+            direct.flip();
+            direct.get(decrypted);
+            assertArrayEquals(plaintext, decrypted);
+        }
+    }
+
+    @Test
+    public void testSequential() {
+        service.setThreads(1);
+        byte[] plaintext = randomBytes(5 * CHUNK_SIZE);
+        assertArrayEquals(plaintext, decryptStream(encryptStream(plaintext)));
+    }
+
+    @Test
+    public void testTampering() {
+        byte[] ciphertext = encryptStream(randomBytes(3 * CHUNK_SIZE));
+        int encryptedChunkSize = CHUNK_SIZE + ChunkedCipherService.TAG_SIZE;
+
+        //truncated at a chunk boundary:
+        byte[] truncated = new byte[ChunkedCipherService.HEADER_SIZE + 2 * encryptedChunkSize];
+        System.arraycopy(ciphertext, 0, truncated, 0, truncated.length);
+        assertRejected(truncated);
+
+        //reordered chunks:
+        byte[] reordered = ciphertext.clone();
+        System.arraycopy(ciphertext, ChunkedCipherService.HEADER_SIZE, reordered,
+                ChunkedCipherService.HEADER_SIZE + encryptedChunkSize, encryptedChunkSize);
+        System.arraycopy(ciphertext, ChunkedCipherService.HEADER_SIZE + encryptedChunkSize, reordered,
+                ChunkedCipherService.HEADER_SIZE, encryptedChunkSize);
+        assertRejected(reordered);
+
+        //modified header:
+        byte[] modified = ciphertext.clone();
+        modified[10] ^= 1;
+        assertRejected(modified);
+
+        //modified chunk:
+        modified = ciphertext.clone();
+        modified[modified.length - 100] ^= 1;
+        assertRejected(modified);
+
+        //chunk size too large to be allocated:
+        modified = ciphertext.clone();
+        ByteBuffer.wrap(modified, 1, 4).putInt(Integer.MAX_VALUE);
+        assertRejected(modified);
+    }
+
+    @Test
+    public void testFailedDecryptionStopsWriting() throws InterruptedException {
+        byte[] ciphertext = service.encrypt(randomBytes(200 * CHUNK_SIZE), key).getBytes();
+        ciphertext[ChunkedCipherService.HEADER_SIZE] ^= 1;
+        ByteBuffer plaintext = ByteBuffer.allocate(200 * CHUNK_SIZE);
+        try {
+            service.decrypt(ByteBuffer.wrap(ciphertext), plaintext, key);
+            fail("Tampered ciphertext should be rejected.");
+        } catch (CryptoException expected) {
+        }
+        //no chunk is still running and writing to the buffer:
+        byte[] snapshot = plaintext.array().clone();
+        Thread.sleep(50);
+        assertArrayEquals(snapshot, plaintext.array());
+    }
+
+    private void assertRejected(byte[] ciphertext) {
+        try {
+            decryptStream(ciphertext);
+            fail("Tampered ciphertext should be rejected.");
+        } catch (CryptoException expected) {
+        }
+        try {
+            service.decrypt(ciphertext, key);
+            fail("Tampered ciphertext should be rejected.");
+        } catch (CryptoException expected) {
+        }
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        byte[] plaintext = randomBytes(10 * CHUNK_SIZE + 100);
+        File file = File.createTempFile("chunked", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                service.encrypt(new ByteArrayInputStream(plaintext), out, key);
+            } finally {
+                out.close();
+            }
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                assertEquals(plaintext.length, service.getPlaintextLength(channel));
+                long[][] ranges = {{0, 0}, {0, 1}, {5, 10}, {CHUNK_SIZE - 3, 6}, {3 * CHUNK_SIZE, CHUNK_SIZE},
+                        {2 * CHUNK_SIZE + 1, 5 * CHUNK_SIZE}, {10 * CHUNK_SIZE + 50, 50}, {0, plaintext.length}};
+                for (long[] range : ranges) {
+                    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+                    service.decrypt(channel, range[0], range[1], decrypted, key);
+                    byte[] expected = new byte[(int) range[1]];
+                    System.arraycopy(plaintext, (int) range[0], expected, 0, expected.length);
+                    assertArrayEquals(expected, decrypted.toByteArray());
+                }
+                try {
+                    service.decrypt(channel, plaintext.length - 1, 2, new ByteArrayOutputStream(), key);
+                    fail("Ranges exceeding the plaintext should be rejected.");
+                } catch (IllegalArgumentException expected) {
+                }
+            } finally {
+                raf.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testBufferTooSmall() {
+        byte[] plaintext = randomBytes(CHUNK_SIZE);
+        ByteBuffer in = ByteBuffer.wrap(plaintext);
+        ByteBuffer out = ByteBuffer.allocate(CHUNK_SIZE);
+        try {
+            service.encrypt(in, out, key);
+            fail("Encrypting into a buffer that is too small should fail.");
+        } catch (CryptoException expected) {
+        }
+        assertEquals(0, in.position());
+        assertEquals(0, out.position());
+        assertFalse(Arrays.equals(plaintext, service.encrypt(plaintext, key).getBytes()));
+    }
+}
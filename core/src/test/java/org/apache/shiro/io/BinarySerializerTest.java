@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.io;
+
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link BinarySerializer} class.
+ *
+ * @since 1.3
+ */
+public class BinarySerializerTest {
+
+    private static SimplePrincipalCollection newPrincipals() {
+        SimplePrincipalCollection principals = new SimplePrincipalCollection();
+        principals.add("jsmith", "ldapRealm");
+        principals.add(12345L, "ldapRealm");
+        principals.add("jsmith@example.com", "jdbcRealm");
+        return principals;
+    }
+
+    private static SimpleSession newSession() {
+        SimpleSession session = new SimpleSession("192.168.1.1");
+        session.setId("0f6d5b3e-4b7f-4d4b-9f3a-1c2b3d4e5f60");
+        session.setTimeout(30 * 60 * 1000);
+        session.setAttribute("principals", newPrincipals());
+        session.setAttribute("authenticated", Boolean.TRUE);
+        session.setAttribute("count", 42);
+        session.setAttribute("created", new Date(1234567890L));
+        session.setAttribute("roles", new ArrayList<String>(Arrays.asList("admin", "user")));
+        return session;
+    }
+
+    @Test
+    public void testSessionRoundTrip() {
+        BinarySerializer<SimpleSession> serializer = new BinarySerializer<SimpleSession>();
+        SimpleSession session = newSession();
+        session.stop();
+        SimpleSession read = serializer.deserialize(serializer.serialize(session));
+        assertEquals(session.getId(), read.getId());
+        assertEquals(session.getStartTimestamp(), read.getStartTimestamp());
+        assertEquals(session.getStopTimestamp(), read.getStopTimestamp());
+        assertEquals(session.getLastAccessTime(), read.getLastAccessTime());
+        assertEquals(session.getTimeout(), read.getTimeout());
+        assertEquals(session.getHost(), read.getHost());
+        assertEquals(session.getAttributes(), read.getAttributes());
+        assertFalse(read.isChanged());
+    }
+
+    @Test
+    public void testPrincipalsRoundTrip() {
+        BinarySerializer<PrincipalCollection> serializer = new BinarySerializer<PrincipalCollection>();
+        SimplePrincipalCollection principals = newPrincipals();
+        PrincipalCollection read = serializer.deserialize(serializer.serialize(principals));
+        assertEquals(principals, read);
+        assertEquals("jsmith", read.getPrimaryPrincipal());
+        assertEquals(principals.getRealmNames(), read.getRealmNames());
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() {
+        SimpleSession session = newSession();
+        int binary = new BinarySerializer<SimpleSession>().serialize(session).length;
+        int java = new DefaultSerializer<SimpleSession>().serialize(session).length;
+        assertTrue("binary: " + binary + ", java: " + java, binary * 2 < java);
+    }
+
+    @Test
+    public void testJavaSerializationFallback() {
+        BinarySerializer<Object> serializer = new BinarySerializer<Object>();
+        TreeMap<String, Object> map = new TreeMap<String, Object>();
+        map.put("locale", Locale.CANADA);
+        List<Object> list = new ArrayList<Object>();
+        list.add(map);
+        list.add(null);
+        list.add(-1L);
+        assertEquals(list, serializer.deserialize(serializer.serialize(list)));
+    }
+
+    @Test
+    public void testDeserializesJavaSerialization() {
+        SimplePrincipalCollection principals = newPrincipals();
+        byte[] serialized = new DefaultSerializer<PrincipalCollection>().serialize(principals);
+        assertEquals(principals, new BinarySerializer<PrincipalCollection>().deserialize(serialized));
+    }
+
+    @Test
+    public void testCodec() {
+        BinarySerializer<Object> serializer = new BinarySerializer<Object>();
+        serializer.addCodec(new BinaryTypeCodec<Locale>() {
+            public Class<Locale> getType() {
+                return Locale.class;
+            }
+
+            public void write(Locale value, DataOutput out) throws IOException {
+                out.writeUTF(value.getLanguage());
+                out.writeUTF(value.getCountry());
+            }
+
+            public Locale read(DataInput in) throws IOException {
+                return new Locale(in.readUTF(), in.readUTF());
+            }
+        });
+        byte[] serialized = serializer.serialize(Locale.CANADA);
+        assertTrue(serialized.length < new DefaultSerializer<Object>().serialize(Locale.CANADA).length);
+        assertEquals(Locale.CANADA, serializer.deserialize(serialized));
+
+        try {
+            new BinarySerializer<Object>().deserialize(serialized);
+            fail("Values written by a codec cannot be read without it.");
+        } catch (SerializationException expected) {
+        }
+    }
+
+    @Test
+    public void testCorruptInput() {
+        BinarySerializer<SimpleSession> serializer = new BinarySerializer<SimpleSession>();
+        byte[] serialized = serializer.serialize(newSession());
+        byte[] truncated = new byte[serialized.length / 2];
+        System.arraycopy(serialized, 0, truncated, 0, truncated.length);
+        try {
+            serializer.deserialize(truncated);
+            fail("Truncated input should be rejected.");
+        } catch (SerializationException expected) {
+        }
+        try {
+            serializer.deserialize(new byte[]{1, 2, 3});
+            fail("Foreign input should be rejected.");
+        } catch (SerializationException expected) {
+        }
+    }
+}
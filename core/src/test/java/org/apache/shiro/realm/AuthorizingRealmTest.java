@@ -22,10 +22,12 @@ import org.apache.shiro.authc.*;
 import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.PermissionMapper;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.authz.permission.RolePermissionResolver;
 import org.apache.shiro.authz.permission.WildcardPermission;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.junit.After;
@@ -35,6 +37,9 @@ import org.junit.Test;
 
 import java.security.Principal;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -214,6 +219,200 @@ public class AuthorizingRealmTest {
         assertTrue( realm.isPermitted( pCollection, "other:bar:foo" ) );
     }
 
+    @Test
+    public void testPermissionIndexWithAuthorizationCache() {
+        final Set<String> perms = new HashSet<String>();
+        perms.add("newsletter:view,edit");
+        perms.add("printer:*");
+
+        AuthorizingRealm realm = new AllowAllRealm() {
+            @Override
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+                info.setStringPermissions(new HashSet<String>(perms));
+                return info;
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        PrincipalCollection pCollection = new SimplePrincipalCollection(new UsernamePrincipal("indexed"), "indexRealm");
+
+        assertTrue(realm.isPermitted(pCollection, "newsletter:edit"));
+        assertTrue(realm.isPermitted(pCollection, "printer:print:lp7200"));
+        assertFalse(realm.isPermitted(pCollection, "newsletter:delete"));
+        assertArrayEquals(new boolean[]{true, false}, realm.isPermitted(pCollection, "newsletter:view", "user:view"));
+
+        //changed data is only visible after the cached info is cleared:
+        perms.add("newsletter:delete");
+        assertFalse(realm.isPermitted(pCollection, "newsletter:delete"));
+        realm.clearCachedAuthorizationInfo(pCollection);
+        assertTrue(realm.isPermitted(pCollection, "newsletter:delete"));
+
+        realm.setPermissionIndexingEnabled(false);
+        assertTrue(realm.isPermitted(pCollection, "newsletter:delete"));
+        assertFalse(realm.isPermitted(pCollection, "user:view"));
+    }
+
+    @Test
+    public void testFilterPermitted() {
+        AuthorizingRealm realm = new AllowAllRealm() {
+            @Override
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+                info.addStringPermission("document:read:1,3");
+                info.addStringPermission("document:*:5");
+                return info;
+            }
+        };
+        PrincipalCollection pCollection = new SimplePrincipalCollection(new UsernamePrincipal("filtered"), "filterRealm");
+        List<Integer> ids = Arrays.asList(0, 1, 2, 3, 4, 5, null);
+        PermissionMapper<Integer> mapper = new PermissionMapper<Integer>() {
+            public Permission getPermission(Integer id) {
+                return id != null ? new WildcardPermission("document:read:" + id) : null;
+            }
+        };
+
+        BitSet expected = new BitSet();
+        expected.set(1);
+        expected.set(3);
+        expected.set(5);
+        assertEquals(expected, realm.filterPermitted(pCollection, ids, mapper));
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        assertEquals(expected, realm.filterPermitted(pCollection, ids, mapper));
+        realm.setPermissionIndexingEnabled(false);
+        assertEquals(expected, realm.filterPermitted(pCollection, ids, mapper));
+    }
+
+    @Test
+    public void testFilterPermittedHonorsOverriddenIsPermitted() {
+        AuthorizingRealm realm = new AllowAllRealm() {
+            @Override
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+                info.addStringPermission("document:*");
+                return info;
+            }
+
+            @Override
+            public boolean isPermitted(PrincipalCollection principals, Permission permission) {
+                //further restricts the granted permissions:
+                return !permission.equals(new WildcardPermission("document:read:2")) &&
+                        super.isPermitted(principals, permission);
+            }
+        };
+        PrincipalCollection pCollection = new SimplePrincipalCollection(new UsernamePrincipal("filtered"), "filterRealm");
+        PermissionMapper<Integer> mapper = new PermissionMapper<Integer>() {
+            public Permission getPermission(Integer id) {
+                return new WildcardPermission("document:read:" + id);
+            }
+        };
+
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(2);
+        assertEquals(expected, realm.filterPermitted(pCollection, Arrays.asList(1, 2, 3), mapper));
+    }
+
+    @Test
+    public void testAuthorizationRefreshAhead() throws Exception {
+        final Set<String> perms = new HashSet<String>();
+        perms.add("newsletter:view");
+        final List<Runnable> refreshes = new ArrayList<Runnable>();
+
+        AuthorizingRealm realm = new AllowAllRealm() {
+            @Override
+            protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+                SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+                info.setStringPermissions(new HashSet<String>(perms));
+                return info;
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        realm.setAuthorizationRefreshAheadTime(1);
+        realm.setAuthorizationRefreshExecutor(new Executor() {
+            public void execute(Runnable command) {
+                refreshes.add(command);
+            }
+        });
+        PrincipalCollection pCollection = new SimplePrincipalCollection(new UsernamePrincipal("refreshed"), "refreshRealm");
+
+        assertTrue(realm.isPermitted(pCollection, "newsletter:view"));
+        assertTrue(refreshes.isEmpty());
+
+        perms.add("newsletter:edit");
+        Thread.sleep(10);
+        //the stale info is still used, but a single refresh is scheduled:
+        assertFalse(realm.isPermitted(pCollection, "newsletter:edit"));
+        assertFalse(realm.isPermitted(pCollection, "newsletter:edit"));
+        assertEquals(1, refreshes.size());
+        refreshes.remove(0).run();
+        assertTrue(realm.isPermitted(pCollection, "newsletter:edit"));
+
+        //a refresh that is in flight when the cached info is cleared must not re-populate the cache:
+        perms.add("newsletter:delete");
+        Thread.sleep(10);
+        assertFalse(realm.isPermitted(pCollection, "newsletter:delete"));
+        assertEquals(1, refreshes.size());
+        perms.remove("newsletter:delete");
+        realm.clearCachedAuthorizationInfo(pCollection);
+        perms.add("newsletter:delete");
+        refreshes.remove(0).run();
+        perms.remove("newsletter:delete");
+        assertFalse(realm.isPermitted(pCollection, "newsletter:delete"));
+
+        //stale info is never used beyond the maximum age:
+        realm.setAuthorizationMaxAge(5);
+        perms.add("newsletter:delete");
+        Thread.sleep(10);
+        assertTrue(realm.isPermitted(pCollection, "newsletter:delete"));
+        realm.destroy();
+    }
+
+    @Test
+    public void testConcurrentUnknownAccountLookups() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger();
+        final CountDownLatch lookingUp = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AuthorizingRealm realm = new AllowAllRealm() {
+            @Override
+            protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) {
+                lookups.incrementAndGet();
+                lookingUp.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+        realm.setCacheManager(new MemoryConstrainedCacheManager());
+        realm.setAuthenticationCachingEnabled(true);
+
+        final AuthenticationInfo[] results = new AuthenticationInfo[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    results[index] = realm.getAuthenticationInfo(new UsernamePasswordToken("unknown", PASSWORD));
+                }
+            };
+        }
+        threads[0].start();
+        lookingUp.await();
+        threads[1].start();
+        //let the second attempt wait for the first one's lookup:
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(results[0]);
+        assertNull(results[1]);
+        assertEquals(1, lookups.get());
+    }
+
     private void assertArrayEquals(boolean[] expected, boolean[] actual) {
         if (expected.length != actual.length) {
             fail("Expected array of length [" + expected.length + "] but received array of length [" + actual.length + "]");
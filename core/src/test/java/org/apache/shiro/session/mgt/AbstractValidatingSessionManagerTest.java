@@ -28,6 +28,8 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -88,4 +90,89 @@ public class AbstractValidatingSessionManagerTest {
         
         assertEquals(1, expirationCount.intValue());
     }
+
+    @Test
+    public void testParallelValidateSessions() throws Exception {
+        Date past = new Date(System.currentTimeMillis() - AbstractSessionManager.DEFAULT_GLOBAL_SESSION_TIMEOUT - 1);
+        final Collection<Session> sessions = new ArrayList<Session>();
+        for (int i = 0; i < 1000; i++) {
+            SimpleSession session = new SimpleSession();
+            session.setId(i);
+            if (i % 10 == 0) {
+                session.setLastAccessTime(past);
+            } else if (i % 10 == 1) {
+                session.stop();
+            }
+            sessions.add(session);
+        }
+
+        final AtomicInteger expirationCount = new AtomicInteger();
+        AbstractValidatingSessionManager sessionManager = new AbstractValidatingSessionManager() {
+            @Override
+            protected Session retrieveSession(SessionKey key) throws UnknownSessionException {
+                throw new UnsupportedOperationException("Should not be called in this test.");
+            }
+
+            @Override
+            protected Session doCreateSession(SessionContext initData) throws AuthorizationException {
+                throw new UnsupportedOperationException("Should not be called in this test.");
+            }
+
+            @Override
+            protected Collection<Session> getActiveSessions() {
+                return sessions;
+            }
+        };
+        sessionManager.setSessionListeners(Arrays.<SessionListener>asList(new SessionListenerAdapter() {
+            @Override
+            public void onExpiration(Session session) {
+                expirationCount.incrementAndGet();
+            }
+        }));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SessionValidationStatistics statistics = sessionManager.validateSessions(executor, 7, 8);
+            assertEquals(1000, statistics.getScannedCount());
+            assertEquals(100, statistics.getExpiredCount());
+            assertEquals(100, statistics.getStoppedCount());
+            assertEquals(0, statistics.getFailedCount());
+            assertEquals(100, expirationCount.intValue());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSchedulerCallsOverriddenValidateSessions() {
+        final AtomicInteger validations = new AtomicInteger();
+        AbstractValidatingSessionManager sessionManager = new AbstractValidatingSessionManager() {
+            @Override
+            protected Session retrieveSession(SessionKey key) throws UnknownSessionException {
+                throw new UnsupportedOperationException("Should not be called in this test.");
+            }
+
+            @Override
+            protected Session doCreateSession(SessionContext initData) throws AuthorizationException {
+                throw new UnsupportedOperationException("Should not be called in this test.");
+            }
+
+            @Override
+            protected Collection<Session> getActiveSessions() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void validateSessions() {
+                validations.incrementAndGet();
+            }
+        };
+
+        //a single thread does not use parallel validation, so the override is honored:
+        ExecutorServiceSessionValidationScheduler scheduler =
+                new ExecutorServiceSessionValidationScheduler(sessionManager);
+        scheduler.run();
+        assertEquals(1, validations.intValue());
+        assertNull(scheduler.getLastValidationStatistics());
+    }
 }
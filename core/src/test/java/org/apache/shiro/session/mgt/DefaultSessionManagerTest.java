@@ -19,6 +19,9 @@
 package org.apache.shiro.session.mgt;
 
 import org.apache.shiro.session.*;
+import org.apache.shiro.session.mgt.eis.AbstractSessionDAO;
+import org.apache.shiro.session.mgt.eis.DeltaSessionDAO;
+import org.apache.shiro.session.mgt.eis.EnterpriseCacheSessionDAO;
 import org.apache.shiro.session.mgt.eis.SessionDAO;
 import org.apache.shiro.util.ThreadContext;
 import org.easymock.EasyMock;
@@ -27,7 +30,16 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
@@ -169,6 +181,191 @@ public class DefaultSessionManagerTest {
         verify(sessionDAO); //verify that the delete call was actually made on the DAO
     }
 
+    @Test
+    public void testSessionTouchGranularity() {
+        PersistentSessionDAO sessionDAO = new PersistentSessionDAO();
+        sm.setSessionDAO(sessionDAO);
+        sm.setSessionTouchGranularity(60 * 1000);
+
+        Session session = sm.start(null);
+        SessionKey key = new DefaultSessionKey(session.getId());
+        int updates = sessionDAO.updateCount;
+        sleep(20);
+        for (int i = 0; i < 10; i++) {
+            session.touch();
+        }
+        //touches are only remembered in memory:
+        assertEquals(updates, sessionDAO.updateCount);
+        Date stored = sessionDAO.readStored(session.getId()).getLastAccessTime();
+        //...but are applied when the session is looked up:
+        Date lastAccessTime = sm.getLastAccessTime(key);
+        assertTrue(lastAccessTime.after(stored));
+
+        //other changes are written immediately:
+        session.setAttribute("foo", "bar");
+        assertEquals(updates + 1, sessionDAO.updateCount);
+
+        sm.flushSessionTouches();
+        assertEquals(updates + 2, sessionDAO.updateCount);
+        assertEquals(lastAccessTime, sessionDAO.readStored(session.getId()).getLastAccessTime());
+        assertEquals("bar", sessionDAO.readStored(session.getId()).getAttribute("foo"));
+
+        //nothing left to flush:
+        sm.flushSessionTouches();
+        assertEquals(updates + 2, sessionDAO.updateCount);
+    }
+
+    @Test
+    public void testSessionTouchWrittenAfterGranularity() {
+        PersistentSessionDAO sessionDAO = new PersistentSessionDAO();
+        sm.setSessionDAO(sessionDAO);
+        sm.setSessionTouchGranularity(50);
+
+        Session idle = sm.start(null);
+        Session active = sm.start(null);
+        sleep(10);
+        idle.touch();
+        Date deferred = sm.getLastAccessTime(new DefaultSessionKey(idle.getId()));
+        assertFalse(deferred.equals(sessionDAO.readStored(idle.getId()).getLastAccessTime()));
+
+        //once the granularity has elapsed, touching any session writes the deferred touch of the idle one:
+        sleep(100);
+        active.touch();
+        assertEquals(deferred, sessionDAO.readStored(idle.getId()).getLastAccessTime());
+    }
+
+    @Test
+    public void testSessionTouchWithoutGranularity() {
+        PersistentSessionDAO sessionDAO = new PersistentSessionDAO();
+        sm.setSessionDAO(sessionDAO);
+
+        Session session = sm.start(null);
+        int updates = sessionDAO.updateCount;
+        session.touch();
+        session.touch();
+        assertEquals(updates + 2, sessionDAO.updateCount);
+    }
+
+    @Test
+    public void testDeltaSessionDAO() {
+        final List<SessionDelta> deltas = new ArrayList<SessionDelta>();
+        PersistentSessionDAO sessionDAO = new DeltaPersistentSessionDAO(deltas);
+        sm.setSessionDAO(sessionDAO);
+
+        Session session = sm.start(null);
+        session.setAttribute("large", "value");
+        deltas.clear();
+
+        session.setAttribute("counter", 1);
+        assertEquals(1, deltas.size());
+        SessionDelta delta = deltas.get(0);
+        assertFalse(delta.isStateChanged());
+        assertEquals(Collections.<Object, Object>singletonMap("counter", 1), delta.getChangedAttributes());
+
+        session.removeAttribute("large");
+        assertEquals(Collections.<Object>singleton("large"), deltas.get(1).getRemovedAttributeKeys());
+        assertTrue(deltas.get(1).getChangedAttributes().isEmpty());
+
+        session.touch();
+        assertTrue(deltas.get(2).isStateChanged());
+        assertTrue(deltas.get(2).getChangedAttributes().isEmpty());
+    }
+
+    @Test
+    public void testCachingSessionDAODeltaSupport() {
+        assertFalse(new EnterpriseCacheSessionDAO().isDeltaSupported());
+        assertTrue(new EnterpriseCacheSessionDAO() {
+            @Override
+            protected void doUpdateDelta(Session session, SessionDelta delta) {
+            }
+
+            @Override
+            public boolean isDeltaSupported() {
+                return true;
+            }
+        }.isDeltaSupported());
+    }
+
+    /**
+     * Simulates a persistent data store by only ever handing out and storing copies of sessions.
+     */
+    private static class PersistentSessionDAO extends AbstractSessionDAO {
+
+        private final Map<Serializable, Session> store = new ConcurrentHashMap<Serializable, Session>();
+        private int updateCount;
+
+        @Override
+        protected Serializable doCreate(Session session) {
+            Serializable sessionId = generateSessionId(session);
+            assignSessionId(session, sessionId);
+            store.put(sessionId, copy(session));
+            return sessionId;
+        }
+
+        @Override
+        protected Session doReadSession(Serializable sessionId) {
+            return copy(store.get(sessionId));
+        }
+
+        public void update(Session session) throws UnknownSessionException {
+            updateCount++;
+            store(session);
+        }
+
+        public void delete(Session session) {
+            store.remove(session.getId());
+        }
+
+        public Collection<Session> getActiveSessions() {
+            return store.values();
+        }
+
+        protected void store(Session session) {
+            store.put(session.getId(), copy(session));
+        }
+
+        private SimpleSession readStored(Serializable sessionId) {
+            return (SimpleSession) store.get(sessionId);
+        }
+
+        private static Session copy(Session session) {
+            if (session == null) {
+                return null;
+            }
+            SimpleSession source = (SimpleSession) session;
+            SimpleSession copy = new SimpleSession(source.getHost());
+            copy.setId(source.getId());
+            copy.setStartTimestamp(source.getStartTimestamp());
+            copy.setStopTimestamp(source.getStopTimestamp());
+            copy.setLastAccessTime(source.getLastAccessTime());
+            copy.setTimeout(source.getTimeout());
+            copy.setExpired(source.isExpired());
+            if (source.getAttributes() != null) {
+                copy.setAttributes(new HashMap<Object, Object>(source.getAttributes()));
+            }
+            copy.clearDelta();
+            return copy;
+        }
+    }
+
+    private static class DeltaPersistentSessionDAO extends PersistentSessionDAO implements DeltaSessionDAO {
+
+        private final List<SessionDelta> deltas;
+
+        private DeltaPersistentSessionDAO(List<SessionDelta> deltas) {
+            this.deltas = deltas;
+        }
+
+        public void updateDelta(Session session, SessionDelta delta) throws UnknownSessionException {
+            deltas.add(delta);
+            store(session);
+        }
+
+        public boolean isDeltaSupported() {
+            return true;
+        }
+    }
+
     public static <T extends Session> T eqSessionTimeout(long timeout) {
         EasyMock.reportMatcher(new SessionTimeoutMatcher(timeout));
         return null;
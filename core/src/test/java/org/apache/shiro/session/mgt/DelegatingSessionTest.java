@@ -27,6 +27,7 @@ import org.junit.Test;
 import java.io.Serializable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 /**
@@ -73,4 +74,26 @@ public class DelegatingSessionTest {
         }
     }
 
+    @Test
+    public void testAttributeCaching() {
+        DelegatingSession cached = new DelegatingSession(sm, new DefaultSessionKey(session.getId()), true);
+        session.setAttribute("foo", "bar");
+        assertEquals("bar", cached.getAttribute("foo"));
+        assertNull(cached.getAttribute("baz"));
+
+        //reads are answered from the cache:
+        session.setAttribute("foo", "changed");
+        session.setAttribute("baz", "qux");
+        assertEquals("bar", cached.getAttribute("foo"));
+        assertNull(cached.getAttribute("baz"));
+
+        //writes go through to the session manager:
+        cached.setAttribute("foo", "written");
+        assertEquals("written", cached.getAttribute("foo"));
+        assertEquals("written", session.getAttribute("foo"));
+        cached.removeAttribute("foo");
+        assertNull(cached.getAttribute("foo"));
+        assertNull(session.getAttribute("foo"));
+    }
+
 }
@@ -22,9 +22,9 @@ import org.junit.Test;
 
 import java.io.*;
 import java.util.Date;
+import java.util.HashMap;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class SimpleSessionTest {
 
@@ -56,6 +56,56 @@ public class SimpleSessionTest {
         assertTrue(serializeAndDeserialize(session).isExpired());
     }
 
+    @Test
+    public void testDelta() throws Exception {
+        SimpleSession session = new SimpleSession();
+        assertFalse(session.isChanged());
+        assertTrue(session.getDelta().isEmpty());
+
+        session.setAttribute("counter", 1);
+        session.setAttribute("removed", "value");
+        session.clearDelta();
+
+        session.setAttribute("counter", 2);
+        session.removeAttribute("removed");
+        session.removeAttribute("missing");
+        assertTrue(session.isChanged());
+        SessionDelta delta = session.getDelta();
+        assertFalse(delta.isStateChanged());
+        assertFalse(delta.isAttributesReplaced());
+        assertEquals(1, delta.getChangedAttributes().size());
+        assertEquals(2, delta.getChangedAttributes().get("counter"));
+        assertEquals(1, delta.getRemovedAttributeKeys().size());
+        assertTrue(delta.getRemovedAttributeKeys().contains("removed"));
+
+        session.touch();
+        assertTrue(session.getDelta().isStateChanged());
+        session.setAttributes(new HashMap<Object, Object>());
+        assertTrue(session.getDelta().isAttributesReplaced());
+
+        session.clearDelta();
+        assertFalse(session.isChanged());
+        session.setAttribute("counter", 3);
+        //changes are not serialized:
+        assertFalse(serializeAndDeserialize(session).isChanged());
+    }
+
+    @Test
+    public void testTakeDelta() {
+        SimpleSession session = new SimpleSession();
+        session.setAttribute("counter", 1);
+        SessionDelta delta = session.takeDelta();
+        assertEquals(1, delta.getChangedAttributes().get("counter"));
+        assertFalse(session.isChanged());
+
+        //changes that could not be persisted are tracked again:
+        session.setAttribute("other", 2);
+        session.restoreDelta(delta);
+        delta = session.takeDelta();
+        assertEquals(2, delta.getChangedAttributes().size());
+        assertTrue(session.takeDelta().isEmpty());
+    }
+
     private SimpleSession serializeAndDeserialize(SimpleSession session) throws IOException, ClassNotFoundException {
         ByteArrayOutputStream serialized = new ByteArrayOutputStream();
         ObjectOutputStream serializer = new ObjectOutputStream(serialized);
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link CompactMemorySessionDAO} class.
+ *
+ * @since 1.3
+ */
+public class CompactMemorySessionDAOTest {
+
+    @Test
+    public void testCreateReadUpdateDelete() {
+        CompactMemorySessionDAO dao = new CompactMemorySessionDAO();
+        SimpleSession session = new SimpleSession("localhost");
+        session.setAttribute("foo", "bar");
+        Serializable id = dao.create(session);
+
+        SimpleSession read = (SimpleSession) dao.readSession(id);
+        assertNotSame(session, read);
+        assertEquals(id, read.getId());
+        assertEquals("localhost", read.getHost());
+        assertEquals(session.getStartTimestamp(), read.getStartTimestamp());
+        assertEquals(session.getLastAccessTime(), read.getLastAccessTime());
+        assertEquals(session.getTimeout(), read.getTimeout());
+        assertEquals("bar", read.getAttribute("foo"));
+        assertNull(read.getStopTimestamp());
+        assertFalse(read.isChanged());
+
+        read.removeAttribute("foo");
+        read.stop();
+        dao.update(read);
+        read = (SimpleSession) dao.readSession(id);
+        assertNull(read.getAttribute("foo"));
+        assertNotNull(read.getStopTimestamp());
+        assertEquals(1, dao.getActiveSessions().size());
+
+        dao.delete(read);
+        assertEquals(0, dao.size());
+        assertTrue(dao.getActiveSessions().isEmpty());
+        try {
+            dao.readSession(id);
+            fail("Deleted session should not be found.");
+        } catch (UnknownSessionException expected) {
+        }
+    }
+
+    @Test
+    public void testIds() {
+        CompactMemorySessionDAO dao = new CompactMemorySessionDAO();
+        String uuidString = UUID.randomUUID().toString();
+        Serializable[] ids = {uuidString, uuidString.toUpperCase(), UUID.fromString(uuidString), 42L, "42"};
+        for (Serializable id : ids) {
+            SimpleSession session = new SimpleSession();
+            session.setId(id);
+            dao.update(session);
+        }
+        assertEquals(ids.length, dao.size());
+        Set<Serializable> restored = new HashSet<Serializable>();
+        for (Session session : dao.getActiveSessions()) {
+            restored.add(session.getId());
+        }
+        for (Serializable id : ids) {
+            assertTrue(restored.contains(id));
+            assertEquals(id, dao.readSession(id).getId());
+        }
+    }
+
+    @Test
+    public void testManySessions() {
+        CompactMemorySessionDAO dao = new CompactMemorySessionDAO(4);
+        Serializable[] ids = new Serializable[5000];
+        for (int i = 0; i < ids.length; i++) {
+            SimpleSession session = new SimpleSession();
+            session.setAttribute("index", i);
+            ids[i] = dao.create(session);
+        }
+        for (int i = 0; i < ids.length; i += 2) {
+            dao.delete(dao.readSession(ids[i]));
+        }
+        assertEquals(ids.length / 2, dao.size());
+        //deleted slots are reused:
+        for (int i = 0; i < ids.length; i += 2) {
+            SimpleSession session = new SimpleSession();
+            session.setAttribute("index", i);
+            ids[i] = dao.create(session);
+        }
+        assertEquals(ids.length, dao.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, dao.readSession(ids[i]).getAttribute("index"));
+        }
+    }
+
+    @Test
+    public void testUpdateDelta() {
+        CompactMemorySessionDAO dao = new CompactMemorySessionDAO();
+        SimpleSession session = new SimpleSession();
+        session.setAttribute("a", 1);
+        session.setAttribute("b", 2);
+        Serializable id = dao.create(session);
+        session.clearDelta();
+
+        session.setAttribute("a", 10);
+        session.removeAttribute("b");
+        session.setAttribute("c", 3);
+        session.setLastAccessTime(new Date(session.getLastAccessTime().getTime() + 1000));
+        dao.updateDelta(session, session.getDelta());
+
+        Session read = dao.readSession(id);
+        assertEquals(10, read.getAttribute("a"));
+        assertNull(read.getAttribute("b"));
+        assertEquals(3, read.getAttribute("c"));
+        assertEquals(session.getLastAccessTime(), read.getLastAccessTime());
+    }
+
+    @Test
+    public void testAttributeView() throws Exception {
+        CompactMemorySessionDAO dao = new CompactMemorySessionDAO();
+        SimpleSession session = new SimpleSession();
+        session.setAttribute("a", 1);
+        session.setAttribute("b", 2);
+        Serializable id = dao.create(session);
+
+        SimpleSession read = (SimpleSession) dao.readSession(id);
+        assertEquals(1, read.getAttribute("a"));
+        assertNull(read.getAttribute("c"));
+        assertEquals(2, read.getAttributes().size());
+        assertEquals(session.getAttributes(), read.getAttributes());
+        read.touch();
+        dao.update(read);
+
+        read = (SimpleSession) dao.readSession(id);
+        read.setAttribute("c", 3);
+        read.removeAttribute("a");
+        assertEquals(new HashSet<Object>(Arrays.asList("b", "c")), new HashSet<Object>(read.getAttributeKeys()));
+        dao.update(read);
+        assertEquals(read.getAttributes(), ((SimpleSession) dao.readSession(id)).getAttributes());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(dao.readSession(id));
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SimpleSession deserialized = (SimpleSession) in.readObject();
+        assertEquals(HashMap.class, deserialized.getAttributes().getClass());
+        assertEquals(read.getAttributes(), deserialized.getAttributes());
+    }
+
+    @Test
+    public void testExpirationCandidates() {
+        CompactMemorySessionDAO dao = new CompactMemorySessionDAO();
+        long now = System.currentTimeMillis();
+
+        SimpleSession idle = new SimpleSession();
+        idle.setLastAccessTime(new Date(now - 60000));
+        idle.setTimeout(30000);
+        Serializable idleId = dao.create(idle);
+
+        SimpleSession active = new SimpleSession();
+        active.setTimeout(30000);
+        dao.create(active);
+
+        SimpleSession eternal = new SimpleSession();
+        eternal.setLastAccessTime(new Date(0));
+        eternal.setTimeout(-1);
+        dao.create(eternal);
+
+        Collection<Session> candidates = dao.getExpirationCandidates();
+        assertEquals(1, candidates.size());
+        assertEquals(idleId, candidates.iterator().next().getId());
+    }
+}
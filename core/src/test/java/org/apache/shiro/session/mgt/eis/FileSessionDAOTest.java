@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link FileSessionDAO} class.
+ *
+ * @since 1.3
+ */
+public class FileSessionDAOTest {
+
+    private File file;
+    private FileSessionDAO dao;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("shiro-sessions", ".log");
+        file.delete();
+        dao = newDAO();
+    }
+
+    @After
+    public void tearDown() {
+        dao.destroy();
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+
+    private FileSessionDAO newDAO() {
+        FileSessionDAO dao = new FileSessionDAO(file.getPath());
+        dao.setHotSetSize(0);
+        return dao;
+    }
+
+    private FileSessionDAO reopen() {
+        dao.destroy();
+        dao = newDAO();
+        return dao;
+    }
+
+    @Test
+    public void testCreateReadUpdateDelete() {
+        SimpleSession session = new SimpleSession("localhost");
+        session.setAttribute("foo", "bar");
+        Serializable id = dao.create(session);
+        assertEquals(1, dao.size());
+
+        Session read = dao.readSession(id);
+        assertNotSame(session, read);
+        assertEquals(session, read);
+        assertEquals("bar", read.getAttribute("foo"));
+
+        read.setAttribute("foo", "baz");
+        dao.update(read);
+        assertEquals("baz", dao.readSession(id).getAttribute("foo"));
+        assertEquals(1, dao.getActiveSessions().size());
+
+        dao.delete(read);
+        assertEquals(0, dao.size());
+        try {
+            dao.readSession(id);
+            fail("Deleted session should not be found.");
+        } catch (UnknownSessionException expected) {
+        }
+    }
+
+    @Test
+    public void testRecovery() {
+        SimpleSession kept = new SimpleSession();
+        Serializable keptId = dao.create(kept);
+        kept.setAttribute("foo", "bar");
+        dao.update(kept);
+        SimpleSession deleted = new SimpleSession();
+        Serializable deletedId = dao.create(deleted);
+        dao.delete(deleted);
+
+        reopen();
+        assertEquals(1, dao.size());
+        assertEquals("bar", dao.readSession(keptId).getAttribute("foo"));
+        try {
+            dao.readSession(deletedId);
+            fail("Deleted session should not be recovered.");
+        } catch (UnknownSessionException expected) {
+        }
+    }
+
+    @Test
+    public void testRecoveryTruncatesTornRecord() throws IOException {
+        Serializable id = dao.create(new SimpleSession());
+        dao.create(new SimpleSession());
+        dao.destroy();
+
+        //simulate a crash in the middle of appending the last record:
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 10);
+        } finally {
+            raf.close();
+        }
+
+        reopen();
+        assertEquals(1, dao.size());
+        assertEquals(id, dao.readSession(id).getId());
+        long size = dao.getLogSize();
+        assertEquals(size, file.length());
+        //appends continue after the last valid record:
+        Serializable created = dao.create(new SimpleSession());
+        reopen();
+        assertEquals(2, dao.size());
+        assertEquals(created, dao.readSession(created).getId());
+    }
+
+    @Test
+    public void testRecoveredExpiryIndex() {
+        SimpleSession idle = new SimpleSession();
+        idle.setLastAccessTime(new Date(System.currentTimeMillis() - 60000));
+        idle.setTimeout(30000);
+        Serializable id = dao.create(idle);
+        dao.create(new SimpleSession());
+
+        reopen();
+        assertEquals(1, dao.getExpirationCandidates().size());
+        assertEquals(id, dao.getExpirationCandidates().iterator().next().getId());
+    }
+
+    @Test
+    public void testCompact() {
+        SimpleSession session = new SimpleSession();
+        Serializable id = dao.create(session);
+        for (int i = 0; i < 100; i++) {
+            session.setAttribute("index", i);
+            dao.update(session);
+        }
+        long size = dao.getLogSize();
+        dao.compact();
+        assertTrue(dao.getLogSize() < size / 10);
+        assertEquals(99, dao.readSession(id).getAttribute("index"));
+
+        reopen();
+        assertEquals(99, dao.readSession(id).getAttribute("index"));
+    }
+
+    @Test
+    public void testFailedCompaction() {
+        SimpleSession session = new SimpleSession();
+        Serializable id = dao.create(session);
+        File temp = new File(file.getPath() + ".compact");
+        //a directory cannot be written as the compacted log:
+        assertTrue(temp.mkdir());
+        try {
+            dao.compact();
+            fail("Compaction should have failed.");
+        } catch (SessionException expected) {
+        } finally {
+            temp.delete();
+        }
+        session.setAttribute("key", "value");
+        dao.update(session);
+        assertEquals("value", dao.readSession(id).getAttribute("key"));
+    }
+
+    @Test
+    public void testNotASessionLog() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.write("definitely not a session log".getBytes("UTF-8"));
+        } finally {
+            raf.close();
+        }
+        try {
+            dao.size();
+            fail("Foreign files should not be treated as session logs.");
+        } catch (SessionException expected) {
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.apache.shiro.util.JdbcUtils;
+import org.hsqldb.jdbc.jdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link JdbcSessionDAO} class, using an in-memory HSQLDB database.
+ *
+ * @since 1.3
+ */
+public class JdbcSessionDAOTest {
+
+    private static int databases;
+
+    private jdbcDataSource ds;
+    private JdbcSessionDAO dao;
+
+    @Before
+    public void setUp() throws SQLException {
+        ds = new jdbcDataSource();
+        ds.setDatabase("jdbc:hsqldb:mem:sessions" + (databases++));
+        ds.setUser("SA");
+        ds.setPassword("");
+        execute("create table sessions (id varchar(64) primary key, start_timestamp bigint not null, " +
+                "last_access_time bigint not null, timeout bigint not null, expires_at bigint not null, " +
+                "stop_timestamp bigint, expired boolean not null, host varchar(255), attributes varbinary(65535))");
+        execute("create index sessions_expires_at on sessions (expires_at)");
+        dao = new JdbcSessionDAO();
+        dao.setDataSource(ds);
+        //flush explicitly:
+        dao.setFlushInterval(60 * 60 * 1000);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dao.destroy();
+        execute("shutdown");
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = null;
+        Statement statement = null;
+        try {
+            conn = ds.getConnection();
+            statement = conn.createStatement();
+            statement.execute(sql);
+        } finally {
+            JdbcUtils.closeStatement(statement);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    @Test
+    public void testCreateReadUpdateDelete() {
+        SimpleSession session = new SimpleSession("localhost");
+        session.setAttribute("foo", "bar");
+        Serializable id = dao.create(session);
+
+        Session read = dao.readSession(id);
+        assertNotSame(session, read);
+        assertEquals(session, read);
+        assertEquals("bar", read.getAttribute("foo"));
+
+        read.setAttribute("foo", "baz");
+        dao.update(read);
+        assertEquals("baz", dao.readSession(id).getAttribute("foo"));
+
+        dao.delete(read);
+        try {
+            dao.readSession(id);
+            fail("Deleted session should not be found.");
+        } catch (UnknownSessionException expected) {
+        }
+    }
+
+    @Test
+    public void testBatchedTouches() {
+        SimpleSession session = new SimpleSession();
+        session.setLastAccessTime(new Date(1000));
+        Serializable id = dao.create(session);
+
+        SimpleSession read = (SimpleSession) dao.readSession(id);
+        read.setLastAccessTime(new Date(5000));
+        dao.updateDelta(read, read.getDelta());
+        assertEquals(1, dao.getPendingTouchCount());
+        //queued touches are visible before they are written:
+        assertEquals(5000, dao.readSession(id).getLastAccessTime().getTime());
+
+        dao.flush();
+        assertEquals(0, dao.getPendingTouchCount());
+        JdbcSessionDAO other = new JdbcSessionDAO();
+        other.setDataSource(ds);
+        assertEquals(5000, other.readSession(id).getLastAccessTime().getTime());
+    }
+
+    @Test
+    public void testAttributeChangesWrittenImmediately() {
+        SimpleSession session = new SimpleSession();
+        Serializable id = dao.create(session);
+
+        SimpleSession read = (SimpleSession) dao.readSession(id);
+        read.touch();
+        read.setAttribute("foo", "bar");
+        dao.updateDelta(read, read.getDelta());
+        assertEquals(0, dao.getPendingTouchCount());
+        assertEquals("bar", dao.readSession(id).getAttribute("foo"));
+    }
+
+    @Test
+    public void testStaleTouchDoesNotOverwriteNewerAccess() {
+        SimpleSession session = new SimpleSession();
+        session.setLastAccessTime(new Date(1000));
+        Serializable id = dao.create(session);
+
+        SimpleSession read = (SimpleSession) dao.readSession(id);
+        read.setLastAccessTime(new Date(2000));
+        dao.updateDelta(read, read.getDelta());
+
+        //another node writes a more recent access in the meantime:
+        JdbcSessionDAO other = new JdbcSessionDAO();
+        other.setDataSource(ds);
+        SimpleSession newer = (SimpleSession) other.readSession(id);
+        newer.setLastAccessTime(new Date(3000));
+        other.update(newer);
+
+        dao.flush();
+        assertEquals(3000, other.readSession(id).getLastAccessTime().getTime());
+    }
+
+    @Test
+    public void testExpirationCandidates() {
+        SimpleSession idle = new SimpleSession();
+        idle.setLastAccessTime(new Date(System.currentTimeMillis() - 60000));
+        idle.setTimeout(30000);
+        Serializable idleId = dao.create(idle);
+        dao.create(new SimpleSession());
+
+        SimpleSession stopped = new SimpleSession();
+        Serializable stoppedId = dao.create(stopped);
+        stopped.stop();
+        dao.updateDelta(stopped, stopped.getDelta());
+
+        SimpleSession touched = new SimpleSession();
+        touched.setLastAccessTime(new Date(System.currentTimeMillis() - 60000));
+        touched.setTimeout(30000);
+        dao.create(touched);
+        touched.touch();
+        dao.updateDelta(touched, touched.getDelta());
+
+        assertEquals(2, dao.getExpirationCandidates().size());
+        for (Session candidate : dao.getExpirationCandidates()) {
+            assertTrue(idleId.equals(candidate.getId()) || stoppedId.equals(candidate.getId()));
+        }
+    }
+
+    @Test
+    public void testActiveSessionsStreamed() {
+        for (int i = 0; i < 25; i++) {
+            dao.create(new SimpleSession());
+        }
+        dao.setFetchSize(10);
+        assertEquals(25, dao.getActiveSessions().size());
+        int count = 0;
+        Iterator<Session> iterator = dao.getActiveSessions().iterator();
+        while (iterator.hasNext()) {
+            assertNotNull(iterator.next().getId());
+            count++;
+        }
+        assertEquals(25, count);
+    }
+
+    @Test
+    public void testAbandonedIterationReleasesConnections() {
+        final int[] open = new int[1];
+        dao.setDataSource((DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{DataSource.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        final Object result = method.invoke(ds, args);
+                        if (!(result instanceof Connection)) {
+                            return result;
+                        }
+                        open[0]++;
+                        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                                new InvocationHandler() {
+                                    public Object invoke(Object proxy, Method method, Object[] args)
+                                            throws Throwable {
+                                        if (method.getName().equals("close")) {
+                                            open[0]--;
+                                        }
+                                        return method.invoke(result, args);
+                                    }
+                                });
+                    }
+                }));
+        dao.setFetchSize(2);
+        SimpleSession session = null;
+        for (int i = 0; i < 5; i++) {
+            session = new SimpleSession();
+            dao.create(session);
+        }
+        Iterator<Session> iterator = dao.getActiveSessions().iterator();
+        iterator.next();
+        iterator.next();
+        iterator.next();
+        assertEquals(0, open[0]);
+        //stops iterating once found:
+        assertTrue(dao.getActiveSessions().contains(session));
+        assertEquals(0, open[0]);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.SessionException;
+import org.apache.shiro.session.UnknownSessionException;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link OffHeapSessionDAO} class.
+ *
+ * @since 1.3
+ */
+public class OffHeapSessionDAOTest {
+
+    private static OffHeapSessionDAO newDAO(int hotSetSize) {
+        OffHeapSessionDAO dao = new OffHeapSessionDAO();
+        dao.setMaxMemory(64 * 1024);
+        dao.setSlabSize(16 * 1024);
+        dao.setBlockSize(128);
+        dao.setHotSetSize(hotSetSize);
+        return dao;
+    }
+
+    @Test
+    public void testCreateReadUpdateDelete() {
+        OffHeapSessionDAO dao = newDAO(0);
+        SimpleSession session = new SimpleSession("localhost");
+        session.setAttribute("foo", "bar");
+        Serializable id = dao.create(session);
+        assertEquals(1, dao.size());
+        assertTrue(dao.getUsedMemory() > 0);
+        assertEquals(16 * 1024, dao.getAllocatedMemory());
+
+        Session read = dao.readSession(id);
+        assertNotSame(session, read);
+        assertEquals(session, read);
+        assertEquals("bar", read.getAttribute("foo"));
+
+        read.setAttribute("foo", "baz");
+        dao.update(read);
+        assertEquals("baz", dao.readSession(id).getAttribute("foo"));
+        assertEquals(1, dao.getActiveSessions().size());
+
+        dao.delete(read);
+        assertEquals(0, dao.size());
+        assertEquals(0, dao.getUsedMemory());
+        try {
+            dao.readSession(id);
+            fail("Deleted session should not be found.");
+        } catch (UnknownSessionException expected) {
+        }
+    }
+
+    @Test
+    public void testHotSet() {
+        OffHeapSessionDAO dao = newDAO(10);
+        Serializable[] ids = new Serializable[50];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dao.create(new SimpleSession());
+        }
+        assertTrue(dao.getActiveSessionsCache().size() <= 10);
+        //recently used sessions are returned from the hot set:
+        assertSame(dao.readSession(ids[49]), dao.readSession(ids[49]));
+        //all sessions remain available after eviction from the hot set:
+        for (Serializable id : ids) {
+            assertEquals(id, dao.readSession(id).getId());
+        }
+        assertEquals(ids.length, dao.getActiveSessions().size());
+    }
+
+    @Test
+    public void testExpirationCandidatesEvictedFromHotSet() {
+        OffHeapSessionDAO dao = newDAO(1);
+        SimpleSession idle = new SimpleSession();
+        idle.setLastAccessTime(new Date(System.currentTimeMillis() - 60000));
+        idle.setTimeout(30000);
+        Serializable id = dao.create(idle);
+        dao.create(new SimpleSession());
+        dao.create(new SimpleSession());
+
+        assertEquals(1, dao.getExpirationCandidates().size());
+        assertEquals(id, dao.getExpirationCandidates().iterator().next().getId());
+    }
+
+    @Test
+    public void testExpirationCandidatesWithoutHotSet() {
+        OffHeapSessionDAO dao = newDAO(0);
+        SimpleSession idle = new SimpleSession();
+        idle.setLastAccessTime(new Date(System.currentTimeMillis() - 60000));
+        idle.setTimeout(30000);
+        Serializable id = dao.create(idle);
+        dao.create(new SimpleSession());
+
+        assertEquals(1, dao.getExpirationCandidates().size());
+        Session candidate = dao.getExpirationCandidates().iterator().next();
+        assertEquals(id, candidate.getId());
+        dao.delete(candidate);
+        assertTrue(dao.getExpirationCandidates().isEmpty());
+    }
+
+    @Test
+    public void testMemoryReused() {
+        OffHeapSessionDAO dao = newDAO(0);
+        for (int i = 0; i < 1000; i++) {
+            SimpleSession session = new SimpleSession();
+            dao.create(session);
+            session.setAttribute("index", i);
+            dao.update(session);
+            dao.delete(session);
+            assertEquals(0, dao.size());
+        }
+        assertEquals(16 * 1024, dao.getAllocatedMemory());
+    }
+
+    @Test
+    public void testExhausted() {
+        OffHeapSessionDAO dao = newDAO(0);
+        SimpleSession session = new SimpleSession();
+        Serializable id = dao.create(session);
+        session.setAttribute("large", new byte[128 * 1024]);
+        try {
+            dao.update(session);
+            fail("Sessions larger than maxMemory cannot be stored.");
+        } catch (SessionException expected) {
+        }
+        //the previous state is retained:
+        assertNull(dao.readSession(id).getAttribute("large"));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.session.mgt.eis;
+
+import org.apache.shiro.cache.MapCache;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link SessionExpiryIndex} class.
+ *
+ * @since 1.3
+ */
+public class SessionExpiryIndexTest {
+
+    private static SimpleSession newSession(Serializable id, long lastAccessTime, long timeout) {
+        SimpleSession session = new SimpleSession();
+        session.setId(id);
+        session.setLastAccessTime(new Date(lastAccessTime));
+        session.setTimeout(timeout);
+        return session;
+    }
+
+    @Test
+    public void testCandidates() {
+        SessionExpiryIndex index = new SessionExpiryIndex(1000);
+        index.update(newSession(1, 0, 10000));
+        index.update(newSession(2, 5000, 10000));
+        index.update(newSession(3, 0, -1));
+        assertEquals(2, index.size());
+
+        assertTrue(index.getExpirationCandidates(9000).isEmpty());
+        Collection<?> candidates = index.getExpirationCandidates(10000);
+        assertEquals(1, candidates.size());
+        assertTrue(candidates.contains(1));
+        assertEquals(2, index.getExpirationCandidates(15000).size());
+
+        //touching moves the session to a later bucket:
+        index.update(newSession(1, 20000, 10000));
+        assertEquals(1, index.getExpirationCandidates(15000).size());
+        assertEquals(2, index.size());
+
+        index.remove(2);
+        assertTrue(index.getExpirationCandidates(15000).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testInvalidSessionsNotIndexed() {
+        SessionExpiryIndex index = new SessionExpiryIndex();
+        SimpleSession session = newSession(1, 0, 10000);
+        index.update(session);
+        assertEquals(1, index.size());
+        session.stop();
+        index.update(session);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testMemorySessionDAO() {
+        MemorySessionDAO dao = new MemorySessionDAO();
+        SimpleSession expired = new SimpleSession();
+        expired.setLastAccessTime(new Date(System.currentTimeMillis() - expired.getTimeout() - 1));
+        SimpleSession active = new SimpleSession();
+        dao.create(expired);
+        dao.create(active);
+        assertEquals(2, dao.getActiveSessions().size());
+
+        Collection<Session> candidates = dao.getExpirationCandidates();
+        assertEquals(1, candidates.size());
+        assertSame(expired, candidates.iterator().next());
+
+        dao.delete(expired);
+        assertTrue(dao.getExpirationCandidates().isEmpty());
+        assertEquals(1, dao.getExpiryIndex().size());
+
+        dao.setExpiryIndex(null);
+        assertEquals(1, dao.getExpirationCandidates().size());
+    }
+
+    @Test
+    public void testSharedCacheNotIndexedByDefault() {
+        EnterpriseCacheSessionDAO dao = new EnterpriseCacheSessionDAO();
+        assertNull(dao.getExpiryIndex());
+        MapCache<Serializable, Session> cache =
+                new MapCache<Serializable, Session>("shared", new HashMap<Serializable, Session>());
+        dao.setActiveSessionsCache(cache);
+
+        //stored by another node, which has since died:
+        SimpleSession orphan = newSession("orphan", 0, 1000);
+        cache.put(orphan.getId(), orphan);
+
+        Collection<Session> candidates = dao.getExpirationCandidates();
+        assertEquals(1, candidates.size());
+        assertSame(orphan, candidates.iterator().next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGranularity() {
+        new SessionExpiryIndex(0);
+    }
+}
@@ -19,8 +19,10 @@
 package org.apache.shiro.cache.ehcache;
 
 import net.sf.ehcache.Element;
-import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheLoader;
+import org.apache.shiro.cache.LoadingCache;
+import org.apache.shiro.cache.SingleFlight;
 import org.apache.shiro.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,10 +31,13 @@ import java.util.*;
 
 /**
  * Shiro {@link org.apache.shiro.cache.Cache} implementation that wraps an {@link net.sf.ehcache.Ehcache} instance.
+ * <p/>
+ * As of 1.3, this class is also a {@link LoadingCache LoadingCache}: concurrent
+ * {@link #get(Object, CacheLoader) loads} of the same key through this instance are coalesced into a single load.
  *
  * @since 0.2
  */
-public class EhCache<K, V> implements Cache<K, V> {
+public class EhCache<K, V> implements LoadingCache<K, V> {
 
     /**
      * Private internal log instance.
@@ -44,6 +49,11 @@ public class EhCache<K, V> implements Cache<K, V> {
      */
     private net.sf.ehcache.Ehcache cache;
 
+    /**
+     * Coordinates concurrent loads of absent keys.
+     */
+    private final SingleFlight<K, V> singleFlight = new SingleFlight<K, V>();
+
     /**
      * Constructs a new EhCache instance with the given cache.
      *
@@ -86,6 +96,18 @@ public class EhCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * Gets a value of an element which matches the given key, loading it with the given loader (and caching it) if
+     * it is absent.  Concurrent loads of the same key are coalesced into a single load.
+     *
+     * @param key    the key of the element to return.
+     * @param loader the loader used to compute the value if it is absent.
+     * @return The cached or loaded value, or null if the loader did not find a value
+     */
+    public V get(K key, CacheLoader<? super K, ? extends V> loader) throws CacheException {
+        return singleFlight.get(this, key, loader);
+    }
+
     /**
      * Puts an object into the cache.
      *
@@ -22,16 +22,26 @@ import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.shiro.session.mgt.ParallelValidatingSessionManager;
+import org.apache.shiro.session.mgt.SessionValidationStatistics;
 import org.apache.shiro.session.mgt.ValidatingSessionManager;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * A quartz job that basically just calls the {@link org.apache.shiro.session.mgt.ValidatingSessionManager#validateSessions()}
  * method on a configured session manager.  The session manager will automatically be injected by the
  * superclass if it is in the job data map or the scheduler map.
+ * <p/>
+ * If the Quartz scheduler context contains a {@link QuartzSessionValidationScheduler} with a worker pool under the
+ * {@link #SCHEDULER_KEY} key, and the session manager is a
+ * {@link ParallelValidatingSessionManager ParallelValidatingSessionManager}, sessions are validated in shards by that
+ * pool and the metrics of the run are reported to the scheduler.
  *
  * @since 0.1
  */
@@ -45,6 +55,14 @@ public class QuartzSessionValidationJob implements Job {
      */
     static final String SESSION_MANAGER_KEY = "sessionManager";
 
+    /**
+     * Key used to store the {@link QuartzSessionValidationScheduler} validating sessions in parallel in the Quartz
+     * scheduler context.  It is not stored in the job data map, as it is not serializable.
+     *
+     * @since 1.3
+     */
+    static final String SCHEDULER_KEY = QuartzSessionValidationScheduler.class.getName();
+
     /*--------------------------------------------
     |    I N S T A N C E   V A R I A B L E S    |
     ============================================*/
@@ -77,10 +95,31 @@ public class QuartzSessionValidationJob implements Job {
             log.debug("Executing session validation Quartz job...");
         }
 
+        QuartzSessionValidationScheduler scheduler = getParallelScheduler(context);
+        ExecutorService workers = scheduler != null ? scheduler.getWorkers() : null;
+        if (workers != null && sessionManager instanceof ParallelValidatingSessionManager) {
+            SessionValidationStatistics statistics = ((ParallelValidatingSessionManager) sessionManager)
+                    .validateSessions(workers, scheduler.getShardSize(), scheduler.getThreads() * 2);
+            scheduler.setLastValidationStatistics(statistics);
+            if (log.isDebugEnabled()) {
+                log.debug("Session validation Quartz job complete: " + statistics + ".");
+            }
+            return;
+        }
+
         sessionManager.validateSessions();
 
         if (log.isDebugEnabled()) {
             log.debug("Session validation Quartz job complete.");
         }
     }
+
+    private QuartzSessionValidationScheduler getParallelScheduler(JobExecutionContext context)
+            throws JobExecutionException {
+        try {
+            return (QuartzSessionValidationScheduler) context.getScheduler().getContext().get(SCHEDULER_KEY);
+        } catch (SchedulerException e) {
+            throw new JobExecutionException("Unable to access the Quartz scheduler context.", e, false);
+        }
+    }
 }
@@ -28,14 +28,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.shiro.session.mgt.DefaultSessionManager;
+import org.apache.shiro.session.mgt.ParallelValidatingSessionManager;
 import org.apache.shiro.session.mgt.SessionValidationScheduler;
+import org.apache.shiro.session.mgt.SessionValidationStatistics;
 import org.apache.shiro.session.mgt.ValidatingSessionManager;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 
 /**
  * An implementation of the {@link org.apache.shiro.session.mgt.SessionValidationScheduler SessionValidationScheduler} that uses Quartz to schedule a
  * job to call {@link org.apache.shiro.session.mgt.ValidatingSessionManager#validateSessions()} on
  * a regular basis.
+ * <p/>
+ * If more than one {@link #setThreads(int) thread} is configured and the session manager is a
+ * {@link ParallelValidatingSessionManager ParallelValidatingSessionManager} (as all of Shiro's native session managers
+ * are), sessions are validated in shards of {@link #getShardSize() shardSize} sessions by a pool of
+ * {@link #getThreads() threads} worker threads, and the metrics of the most recent run are available via
+ * {@link #getLastValidationStatistics()}.  The job finds this scheduler and its worker pool in the Quartz
+ * {@link org.quartz.SchedulerContext SchedulerContext}, so that the job data map only holds the (serializable)
+ * settings it held before.
  *
  * @since 0.1
  */
@@ -57,6 +71,11 @@ public class QuartzSessionValidationScheduler implements SessionValidationSchedu
      */
     private static final String JOB_NAME = "SessionValidationJob";
 
+    /**
+     * The default number of sessions validated as a single unit of work, equal to {@code 1000}.
+     */
+    public static final int DEFAULT_SHARD_SIZE = 1000;
+
     /*--------------------------------------------
     |    I N S T A N C E   V A R I A B L E S    |
     ============================================*/
@@ -82,6 +101,17 @@ public class QuartzSessionValidationScheduler implements SessionValidationSchedu
      */
     private long sessionValidationInterval = DEFAULT_SESSION_VALIDATION_INTERVAL;
 
+    private int threads = 1;
+
+    private int shardSize = DEFAULT_SHARD_SIZE;
+
+    /**
+     * The worker pool validating shards of sessions when {@link #getThreads() threads} is greater than one.
+     */
+    private volatile ExecutorService workers;
+
+    private volatile SessionValidationStatistics lastValidationStatistics;
+
     /*--------------------------------------------
     |         C O N S T R U C T O R S           |
     ============================================*/
@@ -137,6 +167,82 @@ public class QuartzSessionValidationScheduler implements SessionValidationSchedu
         this.sessionValidationInterval = sessionValidationInterval;
     }
 
+    /**
+     * Returns the number of threads validating sessions concurrently.  The default value is {@code 1}, in which case
+     * sessions are validated by the Quartz job thread itself.
+     *
+     * @return the number of threads validating sessions concurrently.
+     * @since 1.3
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads validating sessions concurrently.  Values greater than {@code 1} only take effect
+     * if the session manager is a {@link ParallelValidatingSessionManager ParallelValidatingSessionManager}, and
+     * must be set before validation is {@link #enableSessionValidation() enabled}.
+     *
+     * @param threads the number of threads validating sessions concurrently.
+     * @since 1.3
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than zero.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of sessions validated as a single unit of work.  The default value is
+     * {@link #DEFAULT_SHARD_SIZE}.
+     *
+     * @return the number of sessions validated as a single unit of work.
+     * @since 1.3
+     */
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    /**
+     * Sets the number of sessions validated as a single unit of work.  At most two shards per
+     * {@link #getThreads() thread} are pending at any time.  Must be set before validation is
+     * {@link #enableSessionValidation() enabled}.
+     *
+     * @param shardSize the number of sessions validated as a single unit of work.
+     * @since 1.3
+     */
+    public void setShardSize(int shardSize) {
+        if (shardSize < 1) {
+            throw new IllegalArgumentException("shardSize must be greater than zero.");
+        }
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * Returns the metrics of the most recently completed parallel validation run, or {@code null} if no such run has
+     * completed yet, because only one {@link #getThreads() thread} is configured or the session manager is not a
+     * {@link ParallelValidatingSessionManager ParallelValidatingSessionManager}.
+     *
+     * @return the metrics of the most recently completed validation run, or {@code null}.
+     * @since 1.3
+     */
+    public SessionValidationStatistics getLastValidationStatistics() {
+        return lastValidationStatistics;
+    }
+
+    void setLastValidationStatistics(SessionValidationStatistics lastValidationStatistics) {
+        this.lastValidationStatistics = lastValidationStatistics;
+    }
+
+    /**
+     * Returns the worker pool validating shards of sessions, or {@code null} if sessions are not validated in
+     * parallel.
+     */
+    ExecutorService getWorkers() {
+        return workers;
+    }
+
     /*--------------------------------------------
     |               M E T H O D S               |
     ============================================*/
@@ -163,6 +269,18 @@ public class QuartzSessionValidationScheduler implements SessionValidationSchedu
 
             Scheduler scheduler = getScheduler();
 
+            if (threads > 1 && sessionManager instanceof ParallelValidatingSessionManager) {
+                this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                //not serializable, so kept out of the job data map for persistent job stores:
+                scheduler.getContext().put(QuartzSessionValidationJob.SCHEDULER_KEY, this);
+            }
+
             scheduler.scheduleJob(detail, trigger);
             if (schedulerImplicitlyCreated) {
                 scheduler.start();
@@ -206,6 +324,21 @@ public class QuartzSessionValidationScheduler implements SessionValidationSchedu
             return;
         }
 
+        if (this.workers != null) {
+            this.workers.shutdownNow();
+            this.workers = null;
+            try {
+                if (scheduler.getContext().get(QuartzSessionValidationJob.SCHEDULER_KEY) == this) {
+                    scheduler.getContext().remove(QuartzSessionValidationJob.SCHEDULER_KEY);
+                }
+            } catch (SchedulerException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Could not remove the session validation scheduler from the Quartz scheduler " +
+                            "context.", e);
+                }
+            }
+        }
+
         try {
             scheduler.unscheduleJob(JOB_NAME, Scheduler.DEFAULT_GROUP);
             if (log.isDebugEnabled()) {
@@ -54,6 +54,8 @@ public class DefaultFilterChainManager implements FilterChainManager {
 
     private Map<String, NamedFilterList> filterChains; //key: chain name, value: chain
 
+    private volatile int chainsVersion; //incremented whenever a chain is added or the chains are replaced
+
     public DefaultFilterChainManager() {
         this.filters = new LinkedHashMap<String, Filter>();
         this.filterChains = new LinkedHashMap<String, NamedFilterList>();
@@ -101,6 +103,20 @@ public class DefaultFilterChainManager implements FilterChainManager {
     @SuppressWarnings({"UnusedDeclaration"})
     public void setFilterChains(Map<String, NamedFilterList> filterChains) {
         this.filterChains = filterChains;
+        this.chainsVersion++;
+    }
+
+    /**
+     * Returns a number that changes whenever a chain is created by this manager or the
+     * {@link #setFilterChains(java.util.Map) filter chains} are replaced, so that callers deriving data from the
+     * {@link #getChainNames() chain names} can cheaply tell whether it is stale.  Chains added or removed directly
+     * through the map returned by {@link #getFilterChains()} do not change this number.
+     *
+     * @return a number that changes whenever a chain is created or the filter chains are replaced.
+     * @since 1.3
+     */
+    public int getChainsVersion() {
+        return chainsVersion;
     }
 
     public Filter getFilter(String name) {
@@ -288,6 +304,7 @@ public class DefaultFilterChainManager implements FilterChainManager {
         if (chain == null) {
             chain = new SimpleNamedFilterList(chainName);
             this.filterChains.put(chainName, chain);
+            this.chainsVersion++;
         }
         return chain;
     }
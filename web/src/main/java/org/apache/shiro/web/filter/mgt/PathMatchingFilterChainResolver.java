@@ -18,6 +18,8 @@
  */
 package org.apache.shiro.web.filter.mgt;
 
+import org.apache.shiro.cache.BoundedCache;
+import org.apache.shiro.cache.Cache;
 import org.apache.shiro.util.AntPathMatcher;
 import org.apache.shiro.util.PatternMatcher;
 import org.apache.shiro.web.util.WebUtils;
@@ -28,6 +30,7 @@ import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import java.util.Map;
 
 /**
  * A {@code FilterChainResolver} that resolves {@link FilterChain}s based on url path
@@ -36,6 +39,11 @@ import javax.servlet.ServletResponse;
  * This implementation functions by consulting a {@link org.apache.shiro.web.filter.mgt.FilterChainManager} for all configured filter chains (keyed
  * by configured path pattern).  If an incoming Request path matches one of the configured path patterns (via
  * the {@code PathMatcher}, the corresponding configured {@code FilterChain} is returned.
+ * <p/>
+ * When the {@code PathMatcher} is an {@link AntPathMatcher AntPathMatcher} (the default), the configured path patterns
+ * are {@link #setPathPatternIndexEnabled(boolean) indexed} by their leading literal path segments, so only the few
+ * patterns that could possibly match a request are consulted, still in their configured order.  The resolved pattern
+ * for each request path may additionally be {@link #setPathCacheSize(int) cached}.
  *
  * @since 1.0
  */
@@ -43,18 +51,38 @@ public class PathMatchingFilterChainResolver implements FilterChainResolver {
 
     private static transient final Logger log = LoggerFactory.getLogger(PathMatchingFilterChainResolver.class);
 
+    /**
+     * Cached value for request paths that do not match any configured path pattern.  Compared by identity.
+     */
+    @SuppressWarnings({"RedundantStringConstructorCall"})
+    private static final String NO_MATCH = new String("");
+
     private FilterChainManager filterChainManager;
 
     private PatternMatcher pathMatcher;
 
+    private boolean pathPatternIndexEnabled = true;
+
+    private int pathCacheSize;
+
+    /**
+     * {@code true} if a subclass overrides {@link #pathMatches(String, String)}, in which case the path pattern index
+     * cannot be used, since it makes assumptions about how patterns are matched.
+     */
+    private final boolean pathMatchesOverridden;
+
+    private volatile PathPatternSnapshot pathPatternSnapshot;
+
     public PathMatchingFilterChainResolver() {
         this.pathMatcher = new AntPathMatcher();
         this.filterChainManager = new DefaultFilterChainManager();
+        this.pathMatchesOverridden = overridesPathMatches(getClass());
     }
 
     public PathMatchingFilterChainResolver(FilterConfig filterConfig) {
         this.pathMatcher = new AntPathMatcher();
         this.filterChainManager = new DefaultFilterChainManager(filterConfig);
+        this.pathMatchesOverridden = overridesPathMatches(getClass());
     }
 
     /**
@@ -90,6 +118,63 @@ public class PathMatchingFilterChainResolver implements FilterChainResolver {
         this.filterChainManager = filterChainManager;
     }
 
+    /**
+     * Returns {@code true} if configured path patterns are indexed by their leading literal path segments, so only
+     * patterns that could possibly match a request path are tested against it, {@code false} if every pattern is
+     * tested in turn.  The default value is {@code true}.
+     * <p/>
+     * The index is only used when the {@link #getPathMatcher() pathMatcher} is an
+     * {@link AntPathMatcher AntPathMatcher} and {@link #pathMatches(String, String) pathMatches} is not overridden.
+     * Either way, the first matching pattern in configuration order is the one resolved.
+     *
+     * @return {@code true} if configured path patterns are indexed, {@code false} otherwise.
+     * @since 1.3
+     */
+    public boolean isPathPatternIndexEnabled() {
+        return pathPatternIndexEnabled;
+    }
+
+    /**
+     * Sets whether configured path patterns are indexed by their leading literal path segments, so only patterns
+     * that could possibly match a request path are tested against it.  The default value is {@code true}.
+     *
+     * @param pathPatternIndexEnabled whether configured path patterns are indexed.
+     * @since 1.3
+     */
+    public void setPathPatternIndexEnabled(boolean pathPatternIndexEnabled) {
+        this.pathPatternIndexEnabled = pathPatternIndexEnabled;
+    }
+
+    /**
+     * Returns the maximum number of request paths whose resolved path pattern is cached, or {@code 0} if resolutions
+     * are not cached.  The default value is {@code 0}.
+     * <p/>
+     * The cache is only used along with the {@link #isPathPatternIndexEnabled() path pattern index}, and is discarded
+     * whenever the configured filter chains change.
+     *
+     * @return the maximum number of request paths whose resolved path pattern is cached.
+     * @since 1.3
+     */
+    public int getPathCacheSize() {
+        return pathCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of request paths whose resolved path pattern is cached, or {@code 0} to disable
+     * caching.  This is worthwhile for applications that serve a bounded set of paths from many path patterns;
+     * the cache is bounded and favors frequently requested paths, so unique paths (e.g. those containing ids) do not
+     * displace them.
+     *
+     * @param pathCacheSize the maximum number of request paths whose resolved path pattern is cached.
+     * @since 1.3
+     */
+    public void setPathCacheSize(int pathCacheSize) {
+        if (pathCacheSize < 0) {
+            throw new IllegalArgumentException("pathCacheSize cannot be negative.");
+        }
+        this.pathCacheSize = pathCacheSize;
+    }
+
     public FilterChain getChain(ServletRequest request, ServletResponse response, FilterChain originalChain) {
         FilterChainManager filterChainManager = getFilterChainManager();
         if (!filterChainManager.hasChains()) {
@@ -100,19 +185,101 @@ public class PathMatchingFilterChainResolver implements FilterChainResolver {
 
         //the 'chain names' in this implementation are actually path patterns defined by the user.  We just use them
         //as the chain name for the FilterChainManager's requirements
-        for (String pathPattern : filterChainManager.getChainNames()) {
+        String pathPattern = getMatchingPathPattern(filterChainManager, requestURI);
+        if (pathPattern != null) {
+            if (log.isTraceEnabled()) {
+                log.trace("Matched path pattern [" + pathPattern + "] for requestURI [" + requestURI + "].  " +
+                        "Utilizing corresponding filter chain...");
+            }
+            return filterChainManager.proxy(originalChain, pathPattern);
+        }
 
-            // If the path does match, then pass on to the subclass implementation for specific checks:
-            if (pathMatches(pathPattern, requestURI)) {
-                if (log.isTraceEnabled()) {
-                    log.trace("Matched path pattern [" + pathPattern + "] for requestURI [" + requestURI + "].  " +
-                            "Utilizing corresponding filter chain...");
+        return null;
+    }
+
+    /**
+     * Returns the first of the manager's path patterns (in iteration order) that matches the request path, or
+     * {@code null} if none match.
+     *
+     * @param filterChainManager the manager whose chain names are the configured path patterns
+     * @param requestURI         the request path
+     * @return the first matching path pattern, or {@code null} if none match.
+     */
+    private String getMatchingPathPattern(FilterChainManager filterChainManager, String requestURI) {
+        PathPatternSnapshot snapshot = getPathPatternSnapshot(filterChainManager);
+        if (snapshot == null) {
+            for (String pathPattern : filterChainManager.getChainNames()) {
+                if (pathMatches(pathPattern, requestURI)) {
+                    return pathPattern;
                 }
-                return filterChainManager.proxy(originalChain, pathPattern);
             }
+            return null;
         }
 
-        return null;
+        Cache<String, String> cache = snapshot.cache;
+        if (cache != null) {
+            String cached = cache.get(requestURI);
+            if (cached != null) {
+                return cached == NO_MATCH ? null : cached;
+            }
+        }
+
+        String match = null;
+        PathPatternIndex index = snapshot.index;
+        for (int candidate : index.getCandidates(requestURI)) {
+            String pathPattern = index.getPattern(candidate);
+            if (pathMatches(pathPattern, requestURI)) {
+                match = pathPattern;
+                break;
+            }
+        }
+
+        if (cache != null) {
+            cache.put(requestURI, match != null ? match : NO_MATCH);
+        }
+        return match;
+    }
+
+    /**
+     * Returns the index of the manager's path patterns, (re)building it if the patterns or configuration changed
+     * since it was last built, or {@code null} if the index cannot be used.
+     */
+    private PathPatternSnapshot getPathPatternSnapshot(FilterChainManager filterChainManager) {
+        if (!isPathPatternIndexEnabled() || this.pathMatchesOverridden) {
+            return null;
+        }
+        PatternMatcher pathMatcher = getPathMatcher();
+        //subclasses may match differently:
+        if (pathMatcher == null || pathMatcher.getClass() != AntPathMatcher.class) {
+            return null;
+        }
+        String separator = ((AntPathMatcher) pathMatcher).getPathSeparator();
+        int cacheSize = getPathCacheSize();
+
+        PathPatternSnapshot snapshot = this.pathPatternSnapshot;
+        if (snapshot == null || snapshot.pathMatcher != pathMatcher || !snapshot.separator.equals(separator) ||
+                snapshot.cacheSize != cacheSize || !snapshot.isCurrent(filterChainManager)) {
+            snapshot = new PathPatternSnapshot(pathMatcher, separator, cacheSize, filterChainManager);
+            this.pathPatternSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    private static boolean overridesPathMatches(Class<?> clazz) {
+        try {
+            for (Class<?> c = clazz; c != PathMatchingFilterChainResolver.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("pathMatches", String.class, String.class);
+                    return true;
+                } catch (NoSuchMethodException e) {
+                    //not declared here - check the superclass
+                }
+            }
+            return false;
+        } catch (SecurityException e) {
+            //can't tell - assume the worst:
+            return true;
+        }
     }
 
     /**
@@ -146,4 +313,62 @@ public class PathMatchingFilterChainResolver implements FilterChainResolver {
     protected String getPathWithinApplication(ServletRequest request) {
         return WebUtils.getPathWithinApplication(WebUtils.toHttp(request));
     }
+
+    /**
+     * The path pattern index and optional request path cache for a particular configuration.
+     */
+    private static final class PathPatternSnapshot {
+
+        private final PatternMatcher pathMatcher;
+        private final String separator;
+        private final int cacheSize;
+        private final PathPatternIndex index;
+        private final Cache<String, String> cache;
+
+        //the state of the manager the index was built from:
+        private final FilterChainManager filterChainManager;
+        private final int chainsVersion;
+        private final Map<String, NamedFilterList> filterChains;
+        private final int chainCount;
+
+        private PathPatternSnapshot(PatternMatcher pathMatcher, String separator, int cacheSize,
+                                    FilterChainManager filterChainManager) {
+            this.pathMatcher = pathMatcher;
+            this.separator = separator;
+            this.cacheSize = cacheSize;
+            this.filterChainManager = filterChainManager;
+            if (filterChainManager instanceof DefaultFilterChainManager) {
+                DefaultFilterChainManager manager = (DefaultFilterChainManager) filterChainManager;
+                //read the version first, so that concurrent changes make the snapshot stale rather than wrong:
+                this.chainsVersion = manager.getChainsVersion();
+                this.filterChains = manager.getFilterChains();
+                this.chainCount = this.filterChains.size();
+            } else {
+                this.chainsVersion = 0;
+                this.filterChains = null;
+                this.chainCount = 0;
+            }
+            this.index = new PathPatternIndex(filterChainManager.getChainNames(), separator);
+            this.cache = cacheSize > 0 ?
+                    new BoundedCache<String, String>(PathMatchingFilterChainResolver.class.getName(), cacheSize) : null;
+        }
+
+        /**
+         * Returns {@code true} if the index still reflects the manager's chain names.  This is a constant time check
+         * for a {@link DefaultFilterChainManager DefaultFilterChainManager}, while the chain names of other managers
+         * are compared with the indexed patterns.
+         */
+        private boolean isCurrent(FilterChainManager filterChainManager) {
+            if (filterChainManager != this.filterChainManager) {
+                return false;
+            }
+            if (this.filterChains != null) {
+                DefaultFilterChainManager manager = (DefaultFilterChainManager) filterChainManager;
+                //the size also catches most changes made directly to the map of filter chains:
+                return manager.getChainsVersion() == this.chainsVersion &&
+                        manager.getFilterChains() == this.filterChains && this.filterChains.size() == this.chainCount;
+            }
+            return this.index.isCurrent(filterChainManager.getChainNames());
+        }
+    }
 }
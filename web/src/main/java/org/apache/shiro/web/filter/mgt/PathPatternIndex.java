@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shiro.web.filter.mgt;
+
+import org.apache.shiro.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A segment trie over a set of {@link org.apache.shiro.util.AntPathMatcher Ant-style} path patterns that quickly
+ * narrows down which patterns could possibly match a given path.
+ * <p/>
+ * Each pattern is stored under its <em>literal prefix</em>: the leading path segments that contain neither {@code *}
+ * nor {@code ?}.  An Ant-style pattern can only match paths whose leading segments are exactly its literal prefix, so
+ * walking the trie along a path's segments yields every pattern that could match it (typically a handful), and skips
+ * all others.  Candidates are returned in declaration order, so the caller can verify them with the actual
+ * {@code PatternMatcher} and keep first-match-wins semantics.
+ * <p/>
+ * Instances are immutable and thread-safe.
+ *
+ * @since 1.3
+ */
+final class PathPatternIndex {
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    private final String[] patterns;
+    private final String separator;
+    private final Node root;
+
+    PathPatternIndex(Collection<String> patterns, String separator) {
+        this.patterns = patterns.toArray(new String[patterns.size()]);
+        this.separator = separator;
+        this.root = new Node();
+        for (int i = 0; i < this.patterns.length; i++) {
+            Node node = this.root;
+            for (String segment : StringUtils.tokenizeToStringArray(this.patterns[i], separator)) {
+                if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+                    break;
+                }
+                node = node.child(segment);
+            }
+            node.add(i);
+        }
+    }
+
+    /**
+     * Returns the pattern at the specified index, in declaration order.
+     *
+     * @param index the index of the pattern to return
+     * @return the pattern at the specified index.
+     */
+    String getPattern(int index) {
+        return this.patterns[index];
+    }
+
+    /**
+     * Returns {@code true} if this index was built from exactly the specified patterns, in the same order.
+     *
+     * @param patterns the current patterns
+     * @return {@code true} if this index was built from exactly the specified patterns, in the same order.
+     */
+    boolean isCurrent(Collection<String> patterns) {
+        if (patterns.size() != this.patterns.length) {
+            return false;
+        }
+        Iterator<String> it = patterns.iterator();
+        for (String pattern : this.patterns) {
+            String current = it.next();
+            if (current != pattern && !pattern.equals(current)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the indexes of all patterns that could match the specified path, in ascending (declaration) order.
+     *
+     * @param path the path to match
+     * @return the indexes of all patterns that could match the specified path, in ascending order.
+     */
+    int[] getCandidates(String path) {
+        int[] candidates = this.root.patterns;
+        Node node = this.root;
+        for (String segment : StringUtils.tokenizeToStringArray(path, this.separator)) {
+            node = node.children != null ? node.children.get(segment) : null;
+            if (node == null) {
+                break;
+            }
+            candidates = merge(candidates, node.patterns);
+        }
+        return candidates;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        int[] merged = new int[a.length + b.length];
+        System.arraycopy(a, 0, merged, 0, a.length);
+        System.arraycopy(b, 0, merged, a.length, b.length);
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> children;
+        //indexes of the patterns whose literal prefix ends at this node, ascending:
+        private int[] patterns = NO_CANDIDATES;
+
+        private Node child(String segment) {
+            if (this.children == null) {
+                this.children = new HashMap<String, Node>();
+            }
+            Node child = this.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                this.children.put(segment, child);
+            }
+            return child;
+        }
+
+        private void add(int index) {
+            int[] grown = new int[this.patterns.length + 1];
+            System.arraycopy(this.patterns, 0, grown, 0, this.patterns.length);
+            grown[this.patterns.length] = index;
+            this.patterns = grown;
+        }
+    }
+}
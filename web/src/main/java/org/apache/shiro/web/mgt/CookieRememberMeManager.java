@@ -18,10 +18,16 @@
  */
 package org.apache.shiro.web.mgt;
 
+import org.apache.shiro.cache.BoundedCache;
+import org.apache.shiro.cache.Cache;
 import org.apache.shiro.codec.Base64;
+import org.apache.shiro.crypto.hash.Sha256Hash;
 import org.apache.shiro.mgt.AbstractRememberMeManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.subject.SubjectContext;
+import org.apache.shiro.util.CollectionUtils;
 import org.apache.shiro.web.servlet.Cookie;
 import org.apache.shiro.web.servlet.ShiroHttpServletRequest;
 import org.apache.shiro.web.servlet.SimpleCookie;
@@ -65,6 +71,15 @@ import javax.servlet.http.HttpServletResponse;
  * <p/>
  * Note that because this class subclasses the {@link AbstractRememberMeManager} which already provides serialization
  * and encryption logic, this class utilizes both for added security before setting the cookie value.
+ * <h3>Identity Cache</h3>
+ * Decoding, decrypting and deserializing the cookie on every request of a session-less client can be expensive.  If
+ * an {@link #setIdentityCache(Cache) identityCache} is configured, or a positive
+ * {@link #setIdentityCacheSize(int) identityCacheSize} is set to create one, remembered principals are cached by a
+ * SHA-256 digest of the cookie value (never the value itself), so that repeated requests with the same cookie skip
+ * these steps.  Cached identities expire after the {@link #setIdentityCacheTimeToLive(long) identityCacheTimeToLive}
+ * and are removed when the identity is {@link #forgetIdentity(SubjectContext) forgotten} by this instance, for
+ * example on logout.  Other instances (such as on other cluster nodes) keep their cached identity until it expires,
+ * so the time to live should be short.
  *
  * @since 1.0
  */
@@ -79,8 +94,21 @@ public class CookieRememberMeManager extends AbstractRememberMeManager {
      */
     public static final String DEFAULT_REMEMBER_ME_COOKIE_NAME = "rememberMe";
 
+    /**
+     * The default time to live of cached identities, equal to five minutes.
+     *
+     * @since 1.3
+     */
+    public static final long DEFAULT_IDENTITY_CACHE_TIME_TO_LIVE = 5 * 60 * 1000;
+
+    private static final String IDENTITY_CACHE_NAME = "shiro-rememberMeIdentityCache";
+
     private Cookie cookie;
 
+    private volatile Cache<String, PrincipalCollection> identityCache;
+    private int identityCacheSize;
+    private long identityCacheTimeToLive = DEFAULT_IDENTITY_CACHE_TIME_TO_LIVE;
+
     /**
      * Constructs a new {@code CookieRememberMeManager} with a default {@code rememberMe} cookie template.
      */
@@ -122,6 +150,94 @@ public class CookieRememberMeManager extends AbstractRememberMeManager {
         this.cookie = cookie;
     }
 
+    /**
+     * Returns the cache of decoded remembered identities, keyed by the digest of the cookie value, or {@code null} if
+     * identities are not cached.  If no cache was {@link #setIdentityCache(Cache) set} and the
+     * {@link #getIdentityCacheSize() identityCacheSize} is positive, a {@link BoundedCache BoundedCache} of that size
+     * and the {@link #getIdentityCacheTimeToLive() identityCacheTimeToLive} is created on first use.
+     *
+     * @return the cache of decoded remembered identities, or {@code null} if identities are not cached.
+     * @since 1.3
+     */
+    public Cache<String, PrincipalCollection> getIdentityCache() {
+        Cache<String, PrincipalCollection> cache = identityCache;
+        if (cache == null && identityCacheSize > 0) {
+            //only synchronized while the default cache is created, as this is called for every request:
+            synchronized (this) {
+                cache = identityCache;
+                if (cache == null) {
+                    BoundedCache<String, PrincipalCollection> bounded =
+                            new BoundedCache<String, PrincipalCollection>(IDENTITY_CACHE_NAME, identityCacheSize);
+                    bounded.setTimeToLive(identityCacheTimeToLive);
+                    cache = bounded;
+                    identityCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Sets the cache of decoded remembered identities.  The cache should expire its entries after a short time, as
+     * identities forgotten by other instances remain cached until then.
+     *
+     * @param identityCache the cache of decoded remembered identities, or {@code null} to disable caching.
+     * @since 1.3
+     */
+    public synchronized void setIdentityCache(Cache<String, PrincipalCollection> identityCache) {
+        this.identityCache = identityCache;
+    }
+
+    /**
+     * Returns the maximum number of identities kept by the default identity cache.  The default value is {@code 0},
+     * which disables the default identity cache.
+     *
+     * @return the maximum number of identities kept by the default identity cache.
+     * @since 1.3
+     */
+    public int getIdentityCacheSize() {
+        return identityCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of identities kept by the default identity cache, or {@code 0} to not create one.  This
+     * has no effect once the identity cache has been created.
+     *
+     * @param identityCacheSize the maximum number of identities kept by the default identity cache.
+     * @since 1.3
+     */
+    public void setIdentityCacheSize(int identityCacheSize) {
+        if (identityCacheSize < 0) {
+            throw new IllegalArgumentException("identityCacheSize cannot be negative.");
+        }
+        this.identityCacheSize = identityCacheSize;
+    }
+
+    /**
+     * Returns the number of milliseconds identities are kept by the default identity cache.  The default value is
+     * {@link #DEFAULT_IDENTITY_CACHE_TIME_TO_LIVE} (five minutes).
+     *
+     * @return the number of milliseconds identities are kept by the default identity cache.
+     * @since 1.3
+     */
+    public long getIdentityCacheTimeToLive() {
+        return identityCacheTimeToLive;
+    }
+
+    /**
+     * Sets the number of milliseconds identities are kept by the default identity cache, or {@code 0} to keep them
+     * until they are evicted or forgotten.  This has no effect once the identity cache has been created.
+     *
+     * @param identityCacheTimeToLive the number of milliseconds identities are kept by the default identity cache.
+     * @since 1.3
+     */
+    public void setIdentityCacheTimeToLive(long identityCacheTimeToLive) {
+        if (identityCacheTimeToLive < 0) {
+            throw new IllegalArgumentException("identityCacheTimeToLive cannot be negative.");
+        }
+        this.identityCacheTimeToLive = identityCacheTimeToLive;
+    }
+
     /**
      * Base64-encodes the specified serialized byte array and sets that base64-encoded String as the cookie value.
      * <p/>
@@ -183,6 +299,68 @@ public class CookieRememberMeManager extends AbstractRememberMeManager {
      * @return a previously serialized identity byte array or {@code null} if the byte array could not be acquired.
      */
     protected byte[] getRememberedSerializedIdentity(SubjectContext subjectContext) {
+        String base64 = getRememberedCookieValue(subjectContext);
+        if (base64 != null) {
+            return decode(base64);
+        } else {
+            //no cookie set - new site visitor?
+            return null;
+        }
+    }
+
+    private byte[] decode(String base64) {
+        if (log.isTraceEnabled()) {
+            log.trace("Acquired Base64 encoded identity [" + base64 + "]");
+        }
+        byte[] decoded = Base64.decode(base64);
+        if (log.isTraceEnabled()) {
+            log.trace("Base64 decoded byte array length: " + (decoded != null ? decoded.length : 0) + " bytes.");
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the remembered principals from the {@link #getIdentityCache() identityCache} if they were decoded from
+     * the same cookie value before, or decodes them as usual and caches them otherwise.  Callers receive a copy of
+     * the cached principals, so modifying them does not affect the cache.
+     *
+     * @param subjectContext the contextual data, usually provided by a {@link Subject.Builder} implementation, that
+     *                       is being used to construct a {@link Subject} instance.
+     * @return the remembered principals or {@code null} if none could be acquired.
+     * @since 1.3
+     */
+    @Override
+    public PrincipalCollection getRememberedPrincipals(SubjectContext subjectContext) {
+        Cache<String, PrincipalCollection> cache = getIdentityCache();
+        String base64 = cache != null ? getRememberedCookieValue(subjectContext) : null;
+        if (base64 == null) {
+            return super.getRememberedPrincipals(subjectContext);
+        }
+        String key = getIdentityCacheKey(base64);
+        PrincipalCollection principals = cache.get(key);
+        if (principals != null) {
+            return new SimplePrincipalCollection(principals);
+        }
+        //the cookie has been read already, so decode its value directly rather than reading it again:
+        try {
+            byte[] bytes = decode(base64);
+            if (bytes == null || bytes.length == 0) {
+                return null;
+            }
+            principals = convertBytesToPrincipals(bytes, subjectContext);
+        } catch (RuntimeException re) {
+            return onRememberedPrincipalFailure(re, subjectContext);
+        }
+        if (!CollectionUtils.isEmpty(principals)) {
+            cache.put(key, new SimplePrincipalCollection(principals));
+        }
+        return principals;
+    }
+
+    /**
+     * Returns the padded Base64 value of the rememberMe cookie, or {@code null} if there is none or it was removed.
+     */
+    private String getRememberedCookieValue(SubjectContext subjectContext) {
 
         if (!WebUtils.isHttp(subjectContext)) {
             if (log.isDebugEnabled()) {
@@ -207,20 +385,15 @@ public class CookieRememberMeManager extends AbstractRememberMeManager {
         // ignore cookies that are scheduled for removal
         if (Cookie.DELETED_COOKIE_VALUE.equals(base64)) return null;
 
-        if (base64 != null) {
-            base64 = ensurePadding(base64);
-            if (log.isTraceEnabled()) {
-                log.trace("Acquired Base64 encoded identity [" + base64 + "]");
-            }
-            byte[] decoded = Base64.decode(base64);
-            if (log.isTraceEnabled()) {
-                log.trace("Base64 decoded byte array length: " + (decoded != null ? decoded.length : 0) + " bytes.");
-            }
-            return decoded;
-        } else {
-            //no cookie set - new site visitor?
-            return null;
-        }
+        return base64 != null ? ensurePadding(base64) : null;
+    }
+
+    /**
+     * Returns the identity cache key of a cookie value: its digest, so that the cache holds neither the value itself
+     * nor keys of arbitrary length.
+     */
+    private String getIdentityCacheKey(String base64) {
+        return new Sha256Hash(base64).toBase64();
     }
 
     /**
@@ -285,6 +458,13 @@ public class CookieRememberMeManager extends AbstractRememberMeManager {
      * @param response the outgoing HTTP servlet response
      */
     private void forgetIdentity(HttpServletRequest request, HttpServletResponse response) {
+        Cache<String, PrincipalCollection> cache = getIdentityCache();
+        if (cache != null) {
+            String base64 = getCookie().readValue(request, response);
+            if (base64 != null && !Cookie.DELETED_COOKIE_VALUE.equals(base64)) {
+                cache.remove(getIdentityCacheKey(ensurePadding(base64)));
+            }
+        }
         getCookie().removeFrom(request, response);
     }
 }
@@ -51,12 +51,14 @@ public class DefaultWebSessionManager extends DefaultSessionManager implements W
 
     private Cookie sessionIdCookie;
     private boolean sessionIdCookieEnabled;
+    private boolean sessionAttributeCachingEnabled;
 
     public DefaultWebSessionManager() {
         Cookie cookie = new SimpleCookie(ShiroHttpSession.DEFAULT_SESSION_ID_NAME);
         cookie.setHttpOnly(true); //more secure, protects against XSS attacks
         this.sessionIdCookie = cookie;
         this.sessionIdCookieEnabled = true;
+        this.sessionAttributeCachingEnabled = false;
     }
 
     public Cookie getSessionIdCookie() {
@@ -77,6 +79,35 @@ public class DefaultWebSessionManager extends DefaultSessionManager implements W
         this.sessionIdCookieEnabled = sessionIdCookieEnabled;
     }
 
+    /**
+     * Returns {@code true} if sessions exposed during a web request cache their attributes until the request ends, so
+     * that every attribute is read from the {@link #getSessionDAO() SessionDAO} at most once per request.  The
+     * default value is {@code false}.
+     * <p/>
+     * When enabled, a request does not see attribute changes made concurrently by other requests or cluster nodes,
+     * and cached attributes remain readable if the session is stopped or expires during the request, since cached
+     * reads do not validate the session.
+     *
+     * @return {@code true} if sessions exposed during a web request cache their attributes.
+     * @see DelegatingSession#DelegatingSession(org.apache.shiro.session.mgt.NativeSessionManager, SessionKey, boolean)
+     * @since 1.3
+     */
+    public boolean isSessionAttributeCachingEnabled() {
+        return sessionAttributeCachingEnabled;
+    }
+
+    /**
+     * Sets whether sessions exposed during a web request cache their attributes until the request ends.  Only
+     * enable this if requests do not need to see attribute changes made by concurrent requests for the same session,
+     * see {@link #isSessionAttributeCachingEnabled()}.
+     *
+     * @param sessionAttributeCachingEnabled whether sessions exposed during a web request cache their attributes.
+     * @since 1.3
+     */
+    public void setSessionAttributeCachingEnabled(boolean sessionAttributeCachingEnabled) {
+        this.sessionAttributeCachingEnabled = sessionAttributeCachingEnabled;
+    }
+
     private void storeSessionId(Serializable currentId, HttpServletRequest request, HttpServletResponse response) {
         if (currentId == null) {
             String msg = "sessionId cannot be null when persisting for subsequent requests.";
@@ -151,7 +182,7 @@ public class DefaultWebSessionManager extends DefaultSessionManager implements W
         ServletRequest request = WebUtils.getRequest(context);
         ServletResponse response = WebUtils.getResponse(context);
         SessionKey key = new WebSessionKey(session.getId(), request, response);
-        return new DelegatingSession(this, key);
+        return new DelegatingSession(this, key, isSessionAttributeCachingEnabled());
     }
 
     protected Session createExposedSession(Session session, SessionKey key) {
@@ -162,7 +193,7 @@ public class DefaultWebSessionManager extends DefaultSessionManager implements W
         ServletRequest request = WebUtils.getRequest(key);
         ServletResponse response = WebUtils.getResponse(key);
         SessionKey sessionKey = new WebSessionKey(session.getId(), request, response);
-        return new DelegatingSession(this, sessionKey);
+        return new DelegatingSession(this, sessionKey, isSessionAttributeCachingEnabled());
     }
 
     /**
@@ -30,6 +30,8 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
@@ -163,4 +165,132 @@ public class PathMatchingFilterChainResolverTest extends WebTest {
         assertNull(resolved);
         verify(request);
     }
+
+    @Test
+    public void testIndexedFirstMatchWins() {
+        RecordingFilterChainManager manager = new RecordingFilterChainManager();
+        for (String pattern : new String[]{"/index.html", "/admin/**", "/admin/users/**", "/**/*.css", "/api/v?/**", "/**"}) {
+            manager.addToChain(pattern, "authcBasic");
+        }
+        FixedPathResolver indexed = new FixedPathResolver(manager);
+        FixedPathResolver linear = new FixedPathResolver(manager);
+        linear.setPathPatternIndexEnabled(false);
+
+        String[] paths = {"/index.html", "/admin", "/admin/users/1", "/static/site.css", "/api/v1/users", "/api/v10",
+                "/foo", "/", "index.html"};
+        for (String path : paths) {
+            String expected = linear.resolve(path);
+            assertEquals(path, expected, indexed.resolve(path));
+        }
+        assertEquals("/admin/**", indexed.resolve("/admin/users/1"));
+        assertEquals("/api/v?/**", indexed.resolve("/api/v1/users"));
+        assertEquals("/**", indexed.resolve("/api/v10"));
+    }
+
+    @Test
+    public void testIndexRebuiltWhenChainsChange() {
+        RecordingFilterChainManager manager = new RecordingFilterChainManager();
+        manager.addToChain("/admin/**", "authcBasic");
+        FixedPathResolver resolver = new FixedPathResolver(manager);
+        resolver.setPathCacheSize(10);
+
+        assertNull(resolver.resolve("/public/index.html"));
+        assertEquals("/admin/**", resolver.resolve("/admin/index.html"));
+
+        manager.addToChain("/public/**", "anon");
+        assertEquals("/public/**", resolver.resolve("/public/index.html"));
+        assertEquals("/admin/**", resolver.resolve("/admin/index.html"));
+
+        Map<String, NamedFilterList> chains = new LinkedHashMap<String, NamedFilterList>();
+        chains.put("/public/**", manager.getChain("/public/**"));
+        manager.setFilterChains(chains);
+        assertNull(resolver.resolve("/admin/index.html"));
+        //changed directly:
+        chains.remove("/public/**");
+        assertNull(resolver.resolve("/public/index.html"));
+    }
+
+    @Test
+    public void testPathCacheSize() {
+        RecordingFilterChainManager manager = new RecordingFilterChainManager();
+        manager.addToChain("/admin/**", "authcBasic");
+        manager.addToChain("/**/*.css", "anon");
+        FixedPathResolver resolver = new FixedPathResolver(manager);
+        assertEquals(0, resolver.getPathCacheSize());
+        resolver.setPathCacheSize(2);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/admin/**", resolver.resolve("/admin/index.html"));
+            assertNull(resolver.resolve("/index.html"));
+            assertEquals("/**/*.css", resolver.resolve("/static/site.css"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativePathCacheSize() {
+        resolver.setPathCacheSize(-1);
+    }
+
+    @Test
+    public void testIndexNotUsedWhenPathMatchesOverridden() {
+        RecordingFilterChainManager manager = new RecordingFilterChainManager();
+        manager.addToChain("/admin/**", "authcBasic");
+        manager.addToChain("/public/**", "anon");
+        CountingResolver resolver = new CountingResolver(manager);
+
+        assertEquals("/public/**", resolver.resolve("/public/index.html"));
+        //both patterns were tested since the override may match differently than the index assumes:
+        assertEquals(2, resolver.matchCount);
+    }
+
+    private static class RecordingFilterChainManager extends DefaultFilterChainManager {
+
+        private String proxied;
+
+        @Override
+        public FilterChain proxy(FilterChain original, String chainName) {
+            this.proxied = chainName;
+            return original;
+        }
+    }
+
+    private static class FixedPathResolver extends PathMatchingFilterChainResolver {
+
+        private String path;
+
+        private FixedPathResolver(RecordingFilterChainManager manager) {
+            setFilterChainManager(manager);
+        }
+
+        @Override
+        protected String getPathWithinApplication(ServletRequest request) {
+            return this.path;
+        }
+
+        String resolve(String path) {
+            RecordingFilterChainManager manager = (RecordingFilterChainManager) getFilterChainManager();
+            manager.proxied = null;
+            this.path = path;
+            FilterChain chain = createNiceMock(FilterChain.class);
+            FilterChain resolved = getChain(createNiceMock(HttpServletRequest.class),
+                    createNiceMock(HttpServletResponse.class), chain);
+            assertTrue(resolved == null || resolved == chain);
+            return manager.proxied;
+        }
+    }
+
+    private static class CountingResolver extends FixedPathResolver {
+
+        private int matchCount;
+
+        private CountingResolver(RecordingFilterChainManager manager) {
+            super(manager);
+        }
+
+        @Override
+        protected boolean pathMatches(String pattern, String path) {
+            this.matchCount++;
+            return super.pathMatches(pattern, path);
+        }
+    }
 }
@@ -21,6 +21,7 @@ package org.apache.shiro.web.mgt;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.SimpleAuthenticationInfo;
 import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.crypto.AesCipherService;
 import org.apache.shiro.crypto.CryptoException;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.web.servlet.ShiroHttpServletRequest;
@@ -44,6 +45,16 @@ import static org.junit.Assert.*;
  */
 public class CookieRememberMeManagerTest {
 
+    //The following base64 string was determined from the log output of the 'onSuccessfulLogin' test.
+    //This will have to change any time the PrincipalCollection implementation changes:
+    private static final String USER_PC_AES_BASE64 = "WlD5MLzzZznN3dQ1lPJO/eScSuY245k29aECNmjUs31o7Yu478hWhaM5Sj" +
+            "jmoe900/72JNu3hcJaPG6Q17Vuz4F8x0kBjbFnPVx4PqzsZYT6yreeS2jwO6OwfI+efqXOKyB2a5KPtnr" +
+            "7jt5kZsyH38XJISb81cf6xqTGUru8zC+kNqJFz7E5RpO0kraBofS5jhMm45gDVjDRkjgPJAzocVWMtrza" +
+            "zy67P8eb+kMSBCqGI251JTNAGboVgQ28KjfaAJ/6LXRJUj7kB7CGia7mgRk+hxzEJGDs81at5VOPqODJr" +
+            "xb8tcIdemFUFIkiYVP9bGs4dP3ECtmw7aNrCzv+84sx3vRFUrd5DbDYpEuE12hF2Y9owDK9sxStbXoF0y" +
+            "A32dhfGDIqS+agsass0sWn8WX2TM9i8SxrUjiFbxqyIG49HbqGrZp5QLM9IuIwO+TzGfF1FzumQGdwmWT" +
+            "xkVapw5UESl34YvA615cb+82ue1I=";
+
     @Test
     public void onSuccessfulLogin() {
 
@@ -120,18 +131,8 @@ public class CookieRememberMeManagerTest {
 
         expect(mockRequest.getAttribute(ShiroHttpServletRequest.IDENTITY_REMOVED_KEY)).andReturn(null);
 
-        //The following base64 string was determined from the log output of the above 'onSuccessfulLogin' test.
-        //This will have to change any time the PrincipalCollection implementation changes:
-        final String userPCAesBase64 = "WlD5MLzzZznN3dQ1lPJO/eScSuY245k29aECNmjUs31o7Yu478hWhaM5Sj" +
-                "jmoe900/72JNu3hcJaPG6Q17Vuz4F8x0kBjbFnPVx4PqzsZYT6yreeS2jwO6OwfI+efqXOKyB2a5KPtnr" +
-                "7jt5kZsyH38XJISb81cf6xqTGUru8zC+kNqJFz7E5RpO0kraBofS5jhMm45gDVjDRkjgPJAzocVWMtrza" +
-                "zy67P8eb+kMSBCqGI251JTNAGboVgQ28KjfaAJ/6LXRJUj7kB7CGia7mgRk+hxzEJGDs81at5VOPqODJr" +
-                "xb8tcIdemFUFIkiYVP9bGs4dP3ECtmw7aNrCzv+84sx3vRFUrd5DbDYpEuE12hF2Y9owDK9sxStbXoF0y" +
-                "A32dhfGDIqS+agsass0sWn8WX2TM9i8SxrUjiFbxqyIG49HbqGrZp5QLM9IuIwO+TzGfF1FzumQGdwmWT" +
-                "xkVapw5UESl34YvA615cb+82ue1I=";
-
         Cookie[] cookies = new Cookie[]{
-                new Cookie(CookieRememberMeManager.DEFAULT_REMEMBER_ME_COOKIE_NAME, userPCAesBase64)
+                new Cookie(CookieRememberMeManager.DEFAULT_REMEMBER_ME_COOKIE_NAME, USER_PC_AES_BASE64)
         };
 
         expect(mockRequest.getCookies()).andReturn(cookies);
@@ -205,4 +206,47 @@ public class CookieRememberMeManagerTest {
         verify(mockResponse);
         verify(cookie);
     }
+
+    @Test
+    public void getRememberedPrincipalsCached() {
+        HttpServletRequest mockRequest = createNiceMock(HttpServletRequest.class);
+        HttpServletResponse mockResponse = createNiceMock(HttpServletResponse.class);
+        WebSubject mockSubject = createNiceMock(WebSubject.class);
+        expect(mockSubject.getServletRequest()).andReturn(mockRequest).anyTimes();
+        expect(mockSubject.getServletResponse()).andReturn(mockResponse).anyTimes();
+
+        WebSubjectContext context = new DefaultWebSubjectContext();
+        context.setServletRequest(mockRequest);
+        context.setServletResponse(mockResponse);
+
+        Cookie[] cookies = new Cookie[]{
+                new Cookie(CookieRememberMeManager.DEFAULT_REMEMBER_ME_COOKIE_NAME, USER_PC_AES_BASE64)
+        };
+        //the cookie is read once per look-up, and once to remove the identity on logout:
+        expect(mockRequest.getCookies()).andReturn(cookies).times(4);
+        replay(mockRequest);
+        replay(mockResponse);
+        replay(mockSubject);
+
+        CookieRememberMeManager mgr = new CookieRememberMeManager();
+        mgr.setIdentityCacheSize(10);
+        PrincipalCollection first = mgr.getRememberedPrincipals(context);
+        assertEquals("user", first.getPrimaryPrincipal());
+        assertEquals(1, mgr.getIdentityCache().size());
+
+        //the cookie can no longer be decrypted, so the identity must come from the cache:
+        mgr.setCipherKey(new AesCipherService().generateNewKey().getEncoded());
+        PrincipalCollection second = mgr.getRememberedPrincipals(context);
+        assertEquals(first, second);
+        assertNotSame(first, second);
+
+        mgr.onLogout(mockSubject);
+        assertEquals(0, mgr.getIdentityCache().size());
+        try {
+            mgr.getRememberedPrincipals(context);
+            fail("CryptoException was expected to be thrown");
+        } catch (CryptoException expected) {
+        }
+        verify(mockRequest);
+    }
 }